@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.uwetrottmann.tmdb.DateParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding {@code yyyy-MM-dd} dates with {@link DateParser} against the {@link SimpleDateFormat} previously
+ * used by {@link com.uwetrottmann.tmdb.TmdbHelper}.
+ * <p>
+ * The input resembles a results page: a few hundred distinct release dates that repeat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParserBenchmark {
+
+    private static final int DATE_COUNT = 1024;
+
+    private final String[] dates = new String[DATE_COUNT];
+    private int index;
+
+    private SimpleDateFormat simpleDateFormat;
+    private DateParser dateParser;
+    private DateParser cachingDateParser;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] distinct = new String[300];
+        for (int i = 0; i < distinct.length; i++) {
+            distinct[i] = String.format(Locale.US, "%04d-%02d-%02d",
+                    1950 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        }
+        for (int i = 0; i < DATE_COUNT; i++) {
+            dates[i] = distinct[random.nextInt(distinct.length)];
+        }
+
+        // confined to this benchmark thread, the best case for SimpleDateFormat
+        simpleDateFormat = new SimpleDateFormat("yyy-MM-dd");
+        dateParser = new DateParser(TimeZone.getDefault(), false);
+        cachingDateParser = new DateParser(TimeZone.getDefault(), true);
+    }
+
+    private String nextDate() {
+        return dates[index++ & (DATE_COUNT - 1)];
+    }
+
+    @Benchmark
+    public Date simpleDateFormat() throws ParseException {
+        return simpleDateFormat.parse(nextDate());
+    }
+
+    @Benchmark
+    public Date dateParser() {
+        return dateParser.parse(nextDate());
+    }
+
+    @Benchmark
+    public Date dateParserCached() {
+        return cachingDateParser.parse(nextDate());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.uwetrottmann.tmdb.discover.DiscoverIndex;
+import com.uwetrottmann.tmdb.discover.DiscoverQuery;
+import com.uwetrottmann.tmdb.entities.CastMember;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Genre;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.ProductionCompany;
+import com.uwetrottmann.tmdb.enumerations.SortBy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures discover queries against a {@link DiscoverIndex} of {@code size} movies with 1 to 3 of 20 genres, 1 to 3
+ * of 2000 companies and 10 of 20000 cast members.
+ * <p>
+ * Each query filters by a genre and a vote average, and in turn a company or a cast member, ordered by one of the
+ * {@link SortBy} values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoverIndexBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({ "10000", "50000" })
+    public int size;
+
+    private final DiscoverQuery[] queries = new DiscoverQuery[QUERY_COUNT];
+    private int index;
+
+    private DiscoverIndex<Movie> discoverIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        DiscoverIndex.Builder<Movie> builder = DiscoverIndex.movies();
+        for (int id = 1; id <= size; id++) {
+            Movie movie = new Movie();
+            movie.id = id;
+            movie.original_title = "Movie " + id;
+            movie.popularity = random.nextDouble() * 100;
+            movie.vote_average = random.nextInt(101) / 10d;
+            movie.vote_count = random.nextInt(10000);
+            movie.release_date = new Date(random.nextInt(20000) * 86400000L);
+            movie.genres = new ArrayList<Genre>();
+            for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                Genre genre = new Genre();
+                genre.id = random.nextInt(20);
+                movie.genres.add(genre);
+            }
+            movie.production_companies = new ArrayList<ProductionCompany>();
+            for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                ProductionCompany company = new ProductionCompany();
+                company.id = random.nextInt(2000);
+                movie.production_companies.add(company);
+            }
+            movie.credits = new Credits();
+            movie.credits.cast = new ArrayList<CastMember>();
+            for (int i = 0; i < 10; i++) {
+                CastMember member = new CastMember();
+                member.id = random.nextInt(20000);
+                movie.credits.cast.add(member);
+            }
+            builder.add(movie);
+        }
+        discoverIndex = builder.build();
+
+        SortBy[] orders = SortBy.values();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            DiscoverQuery query = new DiscoverQuery()
+                    .with(DiscoverIndex.Facet.GENRE, random.nextInt(20))
+                    .range(DiscoverIndex.Column.VOTE_AVERAGE, (double) random.nextInt(8), null)
+                    .sortBy(orders[random.nextInt(orders.length)]);
+            if (i % 2 == 0) {
+                query.with(DiscoverIndex.Facet.COMPANY, random.nextInt(2000));
+            } else {
+                query.withPeople(random.nextInt(20000));
+            }
+            queries[i] = query;
+        }
+    }
+
+    @Benchmark
+    public DiscoverIndex.Result<Movie> discover() {
+        return discoverIndex.discover(queries[index++ & (QUERY_COUNT - 1)], 0, 20);
+    }
+
+    @Benchmark
+    public DiscoverIndex.Result<Movie> discoverGenreOnly() {
+        DiscoverQuery query = new DiscoverQuery().with(DiscoverIndex.Facet.GENRE, index++ % 20);
+        return discoverIndex.discover(query, 0, 20);
+    }
+}
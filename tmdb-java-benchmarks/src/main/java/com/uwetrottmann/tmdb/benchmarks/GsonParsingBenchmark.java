@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.uwetrottmann.tmdb.TmdbHelper;
+import com.uwetrottmann.tmdb.adapters.IntegerTypeAdapter;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.PersonCredits;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserializes recorded responses like {@link retrofit.converter.GsonConverter} does, from the bytes of the body.
+ * <p>
+ * Compares the {@link Gson} of {@link TmdbHelper#getGsonBuilder()} against plain reflection with the same
+ * {@link Date} and {@link Integer} adapters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonParsingBenchmark {
+
+    /** Number of results of the synthetic {@code large_movie_results_page}. */
+    private static final int LARGE_PAGE_SIZE = 1000;
+
+    @Param({
+            "movie_append_all", "tv_show_append_all", "tv_season", "person_combined_credits", "movie_results_page",
+            "large_movie_results_page"
+    })
+    public String response;
+
+    private byte[] body;
+    private Class<?> type;
+    private Gson gson;
+    private Gson reflectiveGson;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        if ("movie_append_all".equals(response)) {
+            body = Fixtures.bytes("movie_550_append_all.json");
+            type = Movie.class;
+        } else if ("tv_show_append_all".equals(response)) {
+            body = Fixtures.bytes("tv_1396_append_all.json");
+            type = TvShowComplete.class;
+        } else if ("tv_season".equals(response)) {
+            body = Fixtures.bytes("tv_1396_season_1.json");
+            type = TvSeason.class;
+        } else if ("person_combined_credits".equals(response)) {
+            body = Fixtures.bytes("person_287_combined_credits.json");
+            type = PersonCredits.class;
+        } else if ("movie_results_page".equals(response)) {
+            body = Fixtures.bytes("movie_popular.json");
+            type = MovieResultsPage.class;
+        } else if ("large_movie_results_page".equals(response)) {
+            body = largeResultsPage(Fixtures.bytes("movie_popular.json"));
+            type = MovieResultsPage.class;
+        } else {
+            throw new IllegalArgumentException("Unknown response " + response);
+        }
+
+        gson = TmdbHelper.getGsonBuilder().create();
+        reflectiveGson = new GsonBuilder()
+                .registerTypeAdapter(Integer.class, new IntegerTypeAdapter())
+                .registerTypeAdapter(Date.class, gson.getAdapter(Date.class))
+                .create();
+    }
+
+    /**
+     * Repeats the results of the given page until it has {@link #LARGE_PAGE_SIZE} results.
+     */
+    private static byte[] largeResultsPage(byte[] page) throws UnsupportedEncodingException {
+        JsonObject json = new JsonParser().parse(new String(page, "UTF-8")).getAsJsonObject();
+        JsonArray results = json.getAsJsonArray("results");
+        JsonArray largeResults = new JsonArray();
+        while (largeResults.size() < LARGE_PAGE_SIZE) {
+            largeResults.add(results.get(largeResults.size() % results.size()));
+        }
+        json.add("results", largeResults);
+        return json.toString().getBytes("UTF-8");
+    }
+
+    private Object parse(Gson gson) throws UnsupportedEncodingException {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(body), "UTF-8"), type);
+    }
+
+    @Benchmark
+    public Object tmdbGson() throws UnsupportedEncodingException {
+        return parse(gson);
+    }
+
+    @Benchmark
+    public Object reflectiveGson() throws UnsupportedEncodingException {
+        return parse(reflectiveGson);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.search.SearchIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures type-ahead queries against a {@link SearchIndex} of {@code size} movies with titles of one to five words
+ * from a vocabulary of a few thousand words.
+ * <p>
+ * The queries are typed one character at a time, so most of them end with a short prefix matching many words.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    @Param({ "10000", "50000" })
+    public int size;
+
+    private final String[] queries = new String[QUERY_COUNT];
+    private int index;
+
+    private SearchIndex searchIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[4000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            vocabulary[i] = word.toString();
+        }
+
+        searchIndex = new SearchIndex(size);
+        String[] titles = new String[size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 1 + random.nextInt(5);
+            for (int j = 0; j < words; j++) {
+                title.append(j > 0 ? " " : "").append(vocabulary[random.nextInt(vocabulary.length)]);
+            }
+            Movie movie = new Movie();
+            movie.id = i;
+            movie.title = title.toString();
+            movie.popularity = random.nextDouble() * 100;
+            searchIndex.index(movie);
+            titles[i] = movie.title;
+        }
+
+        // prefixes of existing titles, as typed
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            String title = titles[random.nextInt(size)];
+            queries[i] = title.substring(0, 1 + random.nextInt(title.length()));
+        }
+    }
+
+    @Benchmark
+    public List<Movie> searchMovies() {
+        return searchIndex.searchMovies(queries[index++ & (QUERY_COUNT - 1)], 10);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.cache.ResponseCache;
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+import com.uwetrottmann.tmdb.services.MoviesService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import rx.Observable;
+
+/**
+ * Measures the overhead of calling a service method, without network.
+ * <p>
+ * {@code invoke} only calls the method, which returns an {@link Observable} that sends the request once subscribed.
+ * {@code request} subscribes and waits for the response of an in-memory client, so it includes building the request,
+ * switching threads and deserializing. Each is measured on the plain retrofit proxy and with the interceptors of a
+ * {@link ResponseCache} in front of it, {@code cachedRequest} is a response cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceProxyBenchmark {
+
+    private static final AppendToResponse APPEND_TO_RESPONSE = new AppendToResponse(AppendToResponseItem.CREDITS);
+
+    private MoviesService plain;
+    private MoviesService intercepted;
+    private MoviesService cached;
+
+    @Setup
+    public void setUp() {
+        Client client = new InMemoryClient(Fixtures.bytes("movie_550_credits.json"));
+        plain = tmdb(client).moviesService();
+        // a cache that never hits, to only add the interceptors
+        intercepted = tmdb(client).setResponseCache(new ResponseCache(1) {
+            @Override
+            public Object get(String key) {
+                return null;
+            }
+        }).moviesService();
+        cached = tmdb(client).setResponseCache(new ResponseCache(16)).moviesService();
+    }
+
+    private static Tmdb tmdb(final Client client) {
+        return new Tmdb() {
+            @Override
+            protected Client newClient() {
+                return client;
+            }
+        }.setApiKey("key");
+    }
+
+    @Benchmark
+    public Observable<Movie> invoke() {
+        return plain.summary(550, null, APPEND_TO_RESPONSE);
+    }
+
+    @Benchmark
+    public Observable<Movie> invokeIntercepted() {
+        return intercepted.summary(550, null, APPEND_TO_RESPONSE);
+    }
+
+    @Benchmark
+    public Movie request() {
+        return plain.summary(550, null, APPEND_TO_RESPONSE).toBlocking().first();
+    }
+
+    @Benchmark
+    public Movie requestIntercepted() {
+        return intercepted.summary(550, null, APPEND_TO_RESPONSE).toBlocking().first();
+    }
+
+    @Benchmark
+    public Movie cachedRequest() {
+        return cached.summary(550, null, APPEND_TO_RESPONSE).toBlocking().first();
+    }
+
+    /**
+     * Answers every request with the same body.
+     */
+    private static final class InMemoryClient implements Client {
+
+        private final byte[] body;
+
+        InMemoryClient(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public Response execute(Request request) {
+            return new Response(request.getUrl(), 200, "OK", Collections.<Header>emptyList(),
+                    new TypedByteArray("application/json", body));
+        }
+    }
+}
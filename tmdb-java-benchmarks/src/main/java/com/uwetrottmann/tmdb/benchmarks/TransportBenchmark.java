@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.services.MoviesService;
+import com.uwetrottmann.tmdb.testserver.FakeTmdbServer;
+import com.uwetrottmann.tmdb.transport.Transport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures requests over a real socket to a local {@link FakeTmdbServer}, so the difference between the transports
+ * is the cost of opening connections.
+ * <p>
+ * {@code default} is the client retrofit picks, {@code keepAlive} a {@link Transport} reusing connections and
+ * {@code newConnection} a {@link Transport} opening a new connection for each request. {@code burst} sends from 8
+ * threads at once, like a {@link com.uwetrottmann.tmdb.bulk.BulkFetcher}. Put OkHttp on the classpath to measure it
+ * instead of {@link java.net.HttpURLConnection}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({ "default", "keepAlive", "newConnection" })
+    public String transport;
+
+    private FakeTmdbServer server;
+    private MoviesService movies;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new FakeTmdbServer();
+        server.start();
+        Tmdb tmdb = new Tmdb().setApiUrl(server.url()).setApiKey("key");
+        if ("keepAlive".equals(transport)) {
+            tmdb.setTransport(new Transport());
+        } else if ("newConnection".equals(transport)) {
+            tmdb.setTransport(new Transport().setKeepAlive(false));
+        }
+        movies = tmdb.moviesService();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Movie request() {
+        return movies.summary(550, null, null).toBlocking().first();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Movie burst() {
+        return movies.summary(550, null, null).toBlocking().first();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.TmdbHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads values with the {@link Date} and {@link Integer} adapters of {@link TmdbHelper#getGsonBuilder()}, the time
+ * is per value.
+ * <p>
+ * The values are read from one array, so the time includes the JSON tokenizing but not setting up a reader. Like in
+ * the responses, a few values are empty strings or {@code null}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeAdapterBenchmark {
+
+    private static final int VALUE_COUNT = 1024;
+
+    private String dates;
+    private String integers;
+    private TypeAdapter<Date> dateAdapter;
+    private TypeAdapter<Integer> integerAdapter;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder dates = new StringBuilder("[");
+        StringBuilder integers = new StringBuilder("[");
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            if (i > 0) {
+                dates.append(',');
+                integers.append(',');
+            }
+            if (i % 64 == 0) {
+                dates.append("\"\"");
+                integers.append("null");
+            } else {
+                dates.append(String.format(Locale.US, "\"%04d-%02d-%02d\"",
+                        1950 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                integers.append(random.nextInt(1000000));
+            }
+        }
+        this.dates = dates.append(']').toString();
+        this.integers = integers.append(']').toString();
+
+        Gson gson = TmdbHelper.getGsonBuilder().create();
+        dateAdapter = gson.getAdapter(Date.class);
+        integerAdapter = gson.getAdapter(Integer.class);
+    }
+
+    private static <T> void readAll(String json, TypeAdapter<T> adapter, Blackhole blackhole) throws IOException {
+        JsonReader in = new JsonReader(new StringReader(json));
+        in.beginArray();
+        while (in.hasNext()) {
+            blackhole.consume(adapter.read(in));
+        }
+        in.endArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public void dateAdapter(Blackhole blackhole) throws IOException {
+        readAll(dates, dateAdapter, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUE_COUNT)
+    public void integerAdapter(Blackhole blackhole) throws IOException {
+        readAll(integers, integerAdapter, blackhole);
+    }
+}
@@ -0,0 +1,556 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.testserver;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the TMDb API, answering every route of the services with a recorded response.
+ * <p>
+ * Entities are answered with the same recorded entity for any id, only its {@code id} is replaced. Members
+ * appendable with {@code append_to_response} are only included if requested. Results pages have the requested
+ * {@code page}, pages after {@link #setTotalPages(int) the total} are empty and pages after {@link #MAX_PAGE} are
+ * rejected with {@code 422}. Requests without an {@code api_key} are rejected with {@code 401}, unknown routes with
+ * {@code 404}, all like by the API. Successful responses have an {@code ETag}, a request sending it back with
+ * {@code If-None-Match} is answered with {@code 304 Not Modified}. Bodies are compressed with gzip if the request
+ * accepts it.
+ * <p>
+ * To test how the client copes, responses may be delayed, fail at random or be rejected with
+ * {@code 429 Too Many Requests} once a key exceeds a rate limit. Requests are handled by a thread pool that grows as
+ * needed, so delayed responses do not limit throughput.
+ * <p>
+ * For example:
+ * <pre>
+ * FakeTmdbServer server = new FakeTmdbServer().setLatency(10, 50, TimeUnit.MILLISECONDS);
+ * server.start();
+ * Tmdb tmdb = new Tmdb().setApiUrl(server.url()).setApiKey("key");
+ * ...
+ * server.close();
+ * </pre>
+ */
+public class FakeTmdbServer implements Closeable {
+
+    /** Pages after this are rejected, like by the API. */
+    public static final int MAX_PAGE = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String VERSION_PATH = "/3";
+
+    private final List<Route> routes;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<String, Window>();
+    private final Random random = new Random();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile int rateLimit;
+    private volatile long rateLimitPeriodMillis;
+    private volatile int totalPages;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    public FakeTmdbServer() {
+        routes = routes();
+    }
+
+    /**
+     * Start listening on a free port of the loopback interface.
+     */
+    public void start() throws IOException {
+        start(0);
+    }
+
+    /**
+     * Start listening on the given port of the loopback interface.
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Already started");
+        }
+        // the JDK server writes headers and body separately, without TCP_NODELAY delayed ACKs stall each response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FakeTmdbServer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    respond(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the URL of API version 3 of this server, to pass to {@code Tmdb.setApiUrl(String)}.
+     */
+    public synchronized String url() {
+        if (server == null) {
+            throw new IllegalStateException("Not started");
+        }
+        return "http://127.0.0.1:" + server.getAddress().getPort() + VERSION_PATH;
+    }
+
+    /**
+     * Stop listening and abort responses in progress.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Delay each response by a random time between the given bounds. Defaults to no delay.
+     */
+    public FakeTmdbServer setLatency(long min, long max, TimeUnit unit) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid latency " + min + " to " + max);
+        }
+        minLatencyMillis = unit.toMillis(min);
+        maxLatencyMillis = unit.toMillis(max);
+        return this;
+    }
+
+    /**
+     * Answer the given fraction of requests with the given error status instead. Defaults to no errors.
+     *
+     * @param rate Between 0 and 1.
+     * @param status E.g. 500 or 503.
+     */
+    public FakeTmdbServer setErrorRate(double rate, int status) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("rate must be between 0 and 1");
+        }
+        errorRate = rate;
+        errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Reject requests of an API key with {@code 429 Too Many Requests} once it sent the given number of requests
+     * within a period. Like the API, each response has {@code X-RateLimit-Limit}, {@code X-RateLimit-Remaining} and
+     * {@code X-RateLimit-Reset} headers and rejections a {@code Retry-After} header. Defaults to no limit.
+     *
+     * @param requests The number of requests per period, or 0 for no limit.
+     */
+    public FakeTmdbServer setRateLimit(int requests, long period, TimeUnit unit) {
+        rateLimit = requests;
+        rateLimitPeriodMillis = unit.toMillis(period);
+        windows.clear();
+        return this;
+    }
+
+    /**
+     * Set the number of pages of all results pages. Defaults to the recorded number.
+     */
+    public FakeTmdbServer setTotalPages(int totalPages) {
+        this.totalPages = totalPages;
+        return this;
+    }
+
+    /**
+     * Returns the number of requests received.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests rejected for exceeding the rate limit.
+     */
+    public long rateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    /**
+     * Returns the number of requests answered with an injected error.
+     */
+    public long injectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    /**
+     * Returns the number of requests answered with {@code 304 Not Modified}.
+     */
+    public long notModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        delay();
+
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error(11, "Method not allowed."));
+            return;
+        }
+
+        URI uri = exchange.getRequestURI();
+        Map<String, String> query = parseQuery(uri.getRawQuery());
+        String apiKey = query.get("api_key");
+        if (apiKey == null || apiKey.isEmpty()) {
+            send(exchange, 401, error(7, "Invalid API key: You must be granted a valid key."));
+            return;
+        }
+        if (!checkRateLimit(apiKey, exchange.getResponseHeaders())) {
+            rateLimitedCount.incrementAndGet();
+            send(exchange, 429, error(25, "Your request count is over the allowed limit of " + rateLimit + "."));
+            return;
+        }
+        if (errorRate > 0 && nextDouble() < errorRate) {
+            injectedErrorCount.incrementAndGet();
+            send(exchange, errorStatus, error(11, "Internal error: Something went wrong, contact TMDb."));
+            return;
+        }
+
+        String path = uri.getPath();
+        if (path.startsWith(VERSION_PATH + "/")) {
+            path = path.substring(VERSION_PATH.length());
+            for (Route route : routes) {
+                Map<String, String> parameters = route.match(path);
+                if (parameters == null) {
+                    continue;
+                }
+                int page = 1;
+                if (route.isPaged() && query.containsKey("page")) {
+                    try {
+                        page = Integer.parseInt(query.get("page"));
+                    } catch (NumberFormatException e) {
+                        page = 0;
+                    }
+                    if (page < 1 || page > MAX_PAGE) {
+                        send(exchange, 422, "{\"errors\":[\"page must be between 1 and " + MAX_PAGE + "\"]}");
+                        return;
+                    }
+                }
+                String body = route.body(parameters, query.get("append_to_response"), page, totalPages);
+                if (body != null) {
+                    String etag = etag(body);
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        notModifiedCount.incrementAndGet();
+                        exchange.sendResponseHeaders(304, -1);
+                        exchange.close();
+                        return;
+                    }
+                    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                        sendGzip(exchange, body);
+                    } else {
+                        send(exchange, 200, body);
+                    }
+                    return;
+                }
+                break;
+            }
+        }
+        send(exchange, 404, error(34, "The resource you requested could not be found."));
+    }
+
+    private void delay() {
+        long min = minLatencyMillis;
+        long max = maxLatencyMillis;
+        if (max == 0) {
+            return;
+        }
+        long latency = min + (long) (nextDouble() * (max - min));
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    /**
+     * Counts the request in the current window of the key and adds the rate limit headers.
+     *
+     * @return Whether the request is within the limit.
+     */
+    private boolean checkRateLimit(String apiKey, Headers headers) {
+        int limit = rateLimit;
+        if (limit <= 0) {
+            return true;
+        }
+        Window window = windows.get(apiKey);
+        if (window == null) {
+            windows.putIfAbsent(apiKey, new Window());
+            window = windows.get(apiKey);
+        }
+
+        long now = System.currentTimeMillis();
+        int count;
+        long reset;
+        synchronized (window) {
+            if (now >= window.start + rateLimitPeriodMillis) {
+                window.start = now;
+                window.count = 0;
+            }
+            count = ++window.count;
+            reset = window.start + rateLimitPeriodMillis;
+        }
+
+        headers.add("X-RateLimit-Limit", String.valueOf(limit));
+        headers.add("X-RateLimit-Remaining", String.valueOf(Math.max(0, limit - count)));
+        headers.add("X-RateLimit-Reset", String.valueOf((reset + 999) / 1000));
+        if (count > limit) {
+            headers.add("Retry-After", String.valueOf(Math.max(1, (reset - now + 999) / 1000)));
+            return false;
+        }
+        return true;
+    }
+
+    private static String error(int statusCode, String statusMessage) {
+        JsonObject json = new JsonObject();
+        json.addProperty("status_code", statusCode);
+        json.addProperty("status_message", statusMessage);
+        return json.toString();
+    }
+
+    private static String etag(String body) {
+        return "\"" + Integer.toHexString(body.hashCode()) + "\"";
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private static void sendGzip(HttpExchange exchange, String body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(body.getBytes(UTF_8));
+        gzip.close();
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, compressed.size());
+        OutputStream out = exchange.getResponseBody();
+        compressed.writeTo(out);
+        out.close();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> query = new HashMap<String, String>();
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals != -1 ? parameter.substring(0, equals) : parameter;
+            String value = equals != -1 ? parameter.substring(equals + 1) : "";
+            query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return query;
+    }
+
+    /**
+     * The routes of the services and their recorded responses. Routes without parameters come first, so e.g.
+     * {@code /movie/latest} is not taken for {@code /movie/{id}}.
+     */
+    private static List<Route> routes() {
+        Fixtures fixtures = new Fixtures();
+        List<Route> routes = new ArrayList<Route>();
+
+        routes.add(new Route("/configuration", fixtures.get("configuration.json")));
+
+        routes.add(new Route("/collection/{id}", fixtures.get("collection_1241.json")).entity());
+        routes.add(new Route("/collection/{id}/images", fixtures.get("movie_550_append_all.json", "images")).entity());
+
+        routes.add(new Route("/discover/movie", fixtures.get("movie_popular.json")).paged());
+        routes.add(new Route("/discover/tv", fixtures.get("tv_popular.json")).paged());
+
+        routes.add(new Route("/find/{id}", fixtures.get("find_tt0137523.json")));
+
+        routes.add(new Route("/movie/latest", fixtures.get("movie_550.json")));
+        routes.add(new Route("/movie/upcoming", fixtures.get("movie_popular.json")).paged());
+        routes.add(new Route("/movie/now_playing", fixtures.get("movie_popular.json")).paged());
+        routes.add(new Route("/movie/popular", fixtures.get("movie_popular.json")).paged());
+        routes.add(new Route("/movie/top_rated", fixtures.get("movie_popular.json")).paged());
+        routes.add(new Route("/movie/{id}", fixtures.get("movie_550_append_all.json")).entity()
+                .appendable("credits", "images", "keywords", "releases", "similar", "videos"));
+        routes.add(new Route("/movie/{id}/alternative_titles", fixtures.get("movie_550_alternative_titles.json"))
+                .entity());
+        routes.add(new Route("/movie/{id}/credits", fixtures.get("movie_550_credits.json")).entity());
+        routes.add(new Route("/movie/{id}/images", fixtures.get("movie_550_append_all.json", "images")).entity());
+        routes.add(new Route("/movie/{id}/keywords", fixtures.get("movie_550_append_all.json", "keywords")).entity());
+        routes.add(new Route("/movie/{id}/releases", fixtures.get("movie_550_append_all.json", "releases")).entity());
+        routes.add(new Route("/movie/{id}/videos", fixtures.get("movie_550_append_all.json", "videos")).entity());
+        routes.add(new Route("/movie/{id}/translations", fixtures.get("movie_550_translations.json")).entity());
+        routes.add(new Route("/movie/{id}/similar", fixtures.get("movie_550_append_all.json", "similar")).paged());
+        routes.add(new Route("/movie/{id}/reviews", fixtures.get("movie_550_reviews.json")).paged());
+        routes.add(new Route("/movie/{id}/lists", fixtures.get("movie_550_lists.json")).paged());
+
+        routes.add(new Route("/person/popular", fixtures.get("person_popular.json")).paged());
+        routes.add(new Route("/person/latest", fixtures.get("person_287.json")));
+        routes.add(new Route("/person/{id}", fixtures.get("person_287.json")).entity());
+        routes.add(new Route("/person/{id}/movie_credits", fixtures.get("person_287_combined_credits.json")).entity());
+        routes.add(new Route("/person/{id}/tv_credits", fixtures.get("person_287_combined_credits.json")).entity());
+        routes.add(new Route("/person/{id}/combined_credits", fixtures.get("person_287_combined_credits.json"))
+                .entity());
+        routes.add(new Route("/person/{id}/external_ids", fixtures.get("person_287_external_ids.json")).entity());
+        routes.add(new Route("/person/{id}/images", fixtures.get("person_287_images.json")).entity());
+
+        routes.add(new Route("/search/company", fixtures.get("search_company.json")).paged());
+        routes.add(new Route("/search/collection", fixtures.get("search_collection.json")).paged());
+        routes.add(new Route("/search/movie", fixtures.get("movie_popular.json")).paged());
+        routes.add(new Route("/search/person", fixtures.get("person_popular.json")).paged());
+        routes.add(new Route("/search/tv", fixtures.get("tv_popular.json")).paged());
+
+        String episode = "/tv/{id}/season/{season_number}/episode/{episode_number}";
+        routes.add(new Route(episode, fixtures.get("tv_1396_season_1_episode_1.json")));
+        routes.add(new Route(episode + "/credits", fixtures.get("tv_1396_season_1_episode_1.json", "credits")));
+        routes.add(new Route(episode + "/external_ids",
+                fixtures.get("tv_1396_season_1_episode_1.json", "external_ids")));
+        routes.add(new Route(episode + "/images", fixtures.get("tv_1396_season_1_episode_1.json", "images")));
+        routes.add(new Route(episode + "/videos", fixtures.get("movie_550_append_all.json", "videos")));
+
+        String season = "/tv/{id}/season/{season_number}";
+        routes.add(new Route(season, fixtures.get("tv_1396_season_1.json")));
+        routes.add(new Route(season + "/credits", fixtures.get("tv_1396_append_all.json", "credits")));
+        routes.add(new Route(season + "/external_ids", fixtures.get("tv_1396_append_all.json", "external_ids")));
+        routes.add(new Route(season + "/images", fixtures.get("tv_1396_append_all.json", "images")));
+        routes.add(new Route(season + "/videos", fixtures.get("movie_550_append_all.json", "videos")));
+
+        routes.add(new Route("/tv/latest", fixtures.get("tv_1396.json")));
+        routes.add(new Route("/tv/on_the_air", fixtures.get("tv_popular.json")).paged());
+        routes.add(new Route("/tv/airing_today", fixtures.get("tv_popular.json")).paged());
+        routes.add(new Route("/tv/top_rated", fixtures.get("tv_popular.json")).paged());
+        routes.add(new Route("/tv/popular", fixtures.get("tv_popular.json")).paged());
+        routes.add(new Route("/tv/{id}", fixtures.get("tv_1396_append_all.json")).entity()
+                .appendable("credits", "external_ids", "images"));
+        routes.add(new Route("/tv/{id}/alternative_titles", fixtures.get("tv_1396_alternative_titles.json")).entity());
+        routes.add(new Route("/tv/{id}/credits", fixtures.get("tv_1396_append_all.json", "credits")).entity());
+        routes.add(new Route("/tv/{id}/external_ids", fixtures.get("tv_1396_append_all.json", "external_ids"))
+                .entity());
+        routes.add(new Route("/tv/{id}/images", fixtures.get("tv_1396_append_all.json", "images")).entity());
+        routes.add(new Route("/tv/{id}/keywords", fixtures.get("tv_1396_keywords.json")).entity());
+        routes.add(new Route("/tv/{id}/similar", fixtures.get("tv_popular.json")).paged());
+        routes.add(new Route("/tv/{id}/videos", fixtures.get("movie_550_append_all.json", "videos")).entity());
+
+        return routes;
+    }
+
+    /**
+     * Loads each recorded response once.
+     */
+    private static final class Fixtures {
+
+        private final Map<String, JsonObject> loaded = new HashMap<String, JsonObject>();
+
+        JsonObject get(String name) {
+            JsonObject fixture = loaded.get(name);
+            if (fixture == null) {
+                InputStream in = FakeTmdbServer.class.getResourceAsStream("/fixtures/" + name);
+                if (in == null) {
+                    throw new IllegalArgumentException("No fixture " + name);
+                }
+                try {
+                    try {
+                        fixture = new JsonParser().parse(new InputStreamReader(in, UTF_8)).getAsJsonObject();
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not read fixture " + name, e);
+                }
+                loaded.put(name, fixture);
+            }
+            return fixture;
+        }
+
+        /**
+         * Returns a member of a recorded response, e.g. the {@code credits} appended to a movie.
+         */
+        JsonObject get(String name, String member) {
+            return get(name).getAsJsonObject(member);
+        }
+    }
+
+    private static final class Window {
+
+        long start;
+        int count;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.testserver;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A route of the API, e.g. {@code /movie/{id}}, and the recorded response it is answered with.
+ */
+final class Route {
+
+    private static final Pattern PARAMETER = Pattern.compile("\\{([a-z_]+)\\}");
+
+    final String template;
+    private final Pattern pattern;
+    private final String[] parameterNames;
+    private final JsonObject response;
+
+    private boolean paged;
+    private boolean entity;
+    private Set<String> appendable = Collections.emptySet();
+
+    /** Rendered responses by their appended members, the same for all ids of an entity. */
+    private final Map<String, String> rendered = new ConcurrentHashMap<String, String>();
+
+    Route(String template, JsonObject response) {
+        this.template = template;
+        this.response = response;
+
+        StringBuilder regex = new StringBuilder();
+        Matcher matcher = PARAMETER.matcher(template);
+        int end = 0;
+        int count = 0;
+        while (matcher.find()) {
+            regex.append(Pattern.quote(template.substring(end, matcher.start()))).append("([^/]+)");
+            end = matcher.end();
+            count++;
+        }
+        regex.append(Pattern.quote(template.substring(end)));
+        pattern = Pattern.compile(regex.toString());
+
+        parameterNames = new String[count];
+        matcher.reset();
+        for (int i = 0; matcher.find(); i++) {
+            parameterNames[i] = matcher.group(1);
+        }
+    }
+
+    /**
+     * The response has the {@code page}, {@code results}, {@code total_pages} and {@code total_results} of a results
+     * page.
+     */
+    Route paged() {
+        paged = true;
+        return this;
+    }
+
+    /**
+     * The response is about the entity of the numeric {@code id} path parameter, so its {@code id} is replaced.
+     */
+    Route entity() {
+        entity = true;
+        return this;
+    }
+
+    /**
+     * The given members of the response are only included if requested with {@code append_to_response}.
+     */
+    Route appendable(String... members) {
+        appendable = new HashSet<String>(Arrays.asList(members));
+        return this;
+    }
+
+    boolean isPaged() {
+        return paged;
+    }
+
+    /**
+     * Returns the path parameters by name if the given path matches this route, otherwise {@code null}.
+     */
+    Map<String, String> match(String path) {
+        Matcher matcher = pattern.matcher(path);
+        if (!matcher.matches()) {
+            return null;
+        }
+        Map<String, String> parameters = new HashMap<String, String>();
+        for (int i = 0; i < parameterNames.length; i++) {
+            parameters.put(parameterNames[i], matcher.group(i + 1));
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns the body of the response, or {@code null} if the entity does not exist.
+     *
+     * @param parameters The path parameters returned by {@link #match(String)}.
+     * @param appendToResponse The {@code append_to_response} query parameter, or {@code null}.
+     * @param page The requested page of a paged route.
+     * @param totalPages The number of pages of a paged route, or 0 to keep the recorded number.
+     */
+    String body(Map<String, String> parameters, String appendToResponse, int page, int totalPages) {
+        if (paged) {
+            return page(page, totalPages).toString();
+        }
+
+        String appended = appended(appendToResponse);
+        String json = rendered.get(appended);
+        if (json == null) {
+            json = render(appended);
+            rendered.put(appended, json);
+        }
+        if (!entity) {
+            return json;
+        }
+
+        // the recorded id is rendered first, replace its value
+        String id = parameters.get("id");
+        if (id == null || !isNumber(id)) {
+            return null;
+        }
+        int idEnd = json.indexOf(',');
+        if (idEnd == -1) {
+            idEnd = json.indexOf('}');
+        }
+        return "{\"id\":" + id + json.substring(idEnd);
+    }
+
+    /**
+     * Returns the requested appendable members, sorted and separated by commas.
+     */
+    private String appended(String appendToResponse) {
+        if (appendToResponse == null || appendable.isEmpty()) {
+            return "";
+        }
+        Set<String> members = new TreeSet<String>();
+        for (String member : appendToResponse.split(",")) {
+            if (appendable.contains(member.trim())) {
+                members.add(member.trim());
+            }
+        }
+        StringBuilder appended = new StringBuilder();
+        for (String member : members) {
+            if (appended.length() > 0) {
+                appended.append(',');
+            }
+            appended.append(member);
+        }
+        return appended.toString();
+    }
+
+    private String render(String appended) {
+        Set<String> members = new HashSet<String>(Arrays.asList(appended.split(",")));
+        JsonObject json = new JsonObject();
+        if (entity) {
+            JsonElement id = response.get("id");
+            json.add("id", id != null ? id : new JsonPrimitive(0));
+        }
+        for (Map.Entry<String, JsonElement> member : response.entrySet()) {
+            if (entity && "id".equals(member.getKey())) {
+                continue;
+            }
+            if (appendable.contains(member.getKey()) && !members.contains(member.getKey())) {
+                continue;
+            }
+            json.add(member.getKey(), member.getValue());
+        }
+        return json.toString();
+    }
+
+    private JsonObject page(int page, int totalPages) {
+        JsonArray results = response.getAsJsonArray("results");
+        int totalResults = totalPages * results.size();
+        if (totalPages <= 0) {
+            totalPages = response.get("total_pages").getAsInt();
+            totalResults = response.get("total_results").getAsInt();
+        }
+
+        JsonObject json = new JsonObject();
+        for (Map.Entry<String, JsonElement> member : response.entrySet()) {
+            String name = member.getKey();
+            if (!"page".equals(name) && !"results".equals(name) && !"total_pages".equals(name)
+                    && !"total_results".equals(name)) {
+                json.add(name, member.getValue());
+            }
+        }
+        json.addProperty("page", page);
+        json.add("results", page <= totalPages ? results : new JsonArray());
+        json.addProperty("total_pages", totalPages);
+        json.addProperty("total_results", totalResults);
+        return json;
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
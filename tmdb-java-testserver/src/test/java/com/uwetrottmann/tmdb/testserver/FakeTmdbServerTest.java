@@ -0,0 +1,191 @@
+package com.uwetrottmann.tmdb.testserver;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.cache.ResponseCache;
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+import com.uwetrottmann.tmdb.metrics.MetricsRecorder;
+import com.uwetrottmann.tmdb.metrics.RouteMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.http.Path;
+import rx.Observable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FakeTmdbServerTest {
+
+    private FakeTmdbServer server;
+    private Tmdb tmdb;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeTmdbServer();
+        server.start();
+        tmdb = new Tmdb().setApiUrl(server.url()).setApiKey("key");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void test_every_route_is_answered() throws Exception {
+        Object[] services = {
+                tmdb.collectionService(), tmdb.configurationService(), tmdb.discoverService(), tmdb.findService(),
+                tmdb.moviesService(), tmdb.personService(), tmdb.searchService(), tmdb.tvService(),
+                tmdb.tvSeasonsService(), tmdb.tvEpisodesService()
+        };
+        int methods = 0;
+        for (Object service : services) {
+            for (Method method : service.getClass().getInterfaces()[0].getMethods()) {
+                Object response = ((Observable<?>) method.invoke(service, arguments(method))).toBlocking().first();
+                assertThat(response).as(method.toString()).isNotNull();
+                methods++;
+            }
+        }
+        assertThat((long) methods).isEqualTo(server.requestCount());
+    }
+
+    /**
+     * Returns an id for each path parameter, {@code null} or {@code false} for the query parameters.
+     */
+    private static Object[] arguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            boolean path = method.getParameterAnnotations()[i].length > 0
+                    && method.getParameterAnnotations()[i][0] instanceof Path;
+            if (types[i] == int.class || types[i] == Integer.class) {
+                arguments[i] = path ? 1 : null;
+            } else if (types[i] == boolean.class) {
+                arguments[i] = false;
+            } else if (types[i] == String.class && path) {
+                arguments[i] = "tt0137523";
+            }
+        }
+        return arguments;
+    }
+
+    @Test
+    public void test_entity_has_requested_id_and_appended_members() {
+        Movie movie = tmdb.moviesService()
+                .summary(603, null, new AppendToResponse(AppendToResponseItem.CREDITS))
+                .toBlocking().first();
+
+        assertThat(movie.id).isEqualTo(603);
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(movie.credits).isNotNull();
+        assertThat(movie.videos).isNull();
+    }
+
+    @Test
+    public void test_pagination() {
+        server.setTotalPages(3);
+
+        MovieResultsPage page = tmdb.moviesService().popular(2, null).toBlocking().first();
+        assertThat(page.page).isEqualTo(2);
+        assertThat(page.total_pages).isEqualTo(3);
+        assertThat(page.results).isNotEmpty();
+
+        page = tmdb.moviesService().popular(4, null).toBlocking().first();
+        assertThat(page.results).isEmpty();
+
+        try {
+            tmdb.moviesService().popular(FakeTmdbServer.MAX_PAGE + 1, null).toBlocking().first();
+            fail("page after the last allowed one was answered");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(422);
+        }
+    }
+
+    @Test
+    public void test_rate_limit() {
+        server.setRateLimit(2, 1, TimeUnit.MINUTES);
+
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        try {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            fail("request over the rate limit was answered");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(429);
+            boolean retryAfter = false;
+            for (Header header : e.getResponse().getHeaders()) {
+                retryAfter |= "Retry-After".equalsIgnoreCase(header.getName());
+            }
+            assertThat(retryAfter).isTrue();
+        }
+        assertThat(server.rateLimitedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_error_injection_and_latency() {
+        server.setErrorRate(1, 503).setLatency(50, 60, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        try {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            fail("injected error was not returned");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(503);
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(server.injectedErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_missing_api_key_is_rejected() {
+        try {
+            new Tmdb().setApiUrl(server.url()).setApiKey("").configurationService().configuration().toBlocking().first();
+            fail("request without api key was answered");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+    }
+
+    @Test
+    public void test_expired_responses_are_revalidated() {
+        final long[] now = {0};
+        ResponseCache cache = new ResponseCache(10) {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        tmdb.setResponseCache(cache);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        now[0] = ResponseCache.DEFAULT_TTL_MILLIS;
+        Movie revalidated = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(revalidated).isSameAs(movie);
+        assertThat(server.requestCount()).isEqualTo(2L);
+        assertThat(server.notModifiedCount()).isEqualTo(1L);
+        assertThat(cache.revalidatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_compressed_responses() {
+        MetricsRecorder recorder = new MetricsRecorder();
+        tmdb.setMetricsListener(recorder).setCompression(true);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        RouteMetrics route = recorder.route("/movie/{id}");
+        assertThat(route.decodedBytes()).isGreaterThan(route.responseBytes());
+    }
+}
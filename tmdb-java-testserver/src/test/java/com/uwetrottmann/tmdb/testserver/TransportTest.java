@@ -0,0 +1,71 @@
+package com.uwetrottmann.tmdb.testserver;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.transport.Transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TransportTest {
+
+    private FakeTmdbServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeTmdbServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void test_client_is_reused() {
+        Transport transport = new Transport();
+        assertThat(transport.client()).isSameAs(transport.client());
+
+        Object client = transport.client();
+        transport.setReadTimeout(1, TimeUnit.SECONDS);
+        assertThat(transport.client()).isNotSameAs(client);
+    }
+
+    @Test
+    public void test_requests_with_and_without_keep_alive() {
+        for (boolean keepAlive : new boolean[] { true, false }) {
+            Tmdb tmdb = new Tmdb().setApiUrl(server.url()).setApiKey("key")
+                    .setTransport(new Transport().setKeepAlive(keepAlive));
+            for (int i = 0; i < 3; i++) {
+                Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+                assertThat(movie.title).isEqualTo("Fight Club");
+            }
+        }
+        assertThat(server.requestCount()).isEqualTo(6L);
+    }
+
+    @Test
+    public void test_read_timeout() {
+        server.setLatency(500, 500, TimeUnit.MILLISECONDS);
+        Tmdb tmdb = new Tmdb().setApiUrl(server.url()).setApiKey("key")
+                .setTransport(new Transport().setReadTimeout(50, TimeUnit.MILLISECONDS));
+
+        try {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            fail("response slower than the read timeout was received");
+        } catch (RetrofitError e) {
+            assertThat(e.getKind()).isEqualTo(RetrofitError.Kind.NETWORK);
+            assertThat(e.getCause()).isInstanceOf(SocketTimeoutException.class);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How the responses of a service method taking an {@link AppendToResponse}, e.g.
+ * {@link com.uwetrottmann.tmdb.services.MoviesService#summary}, split into the resources which can also be requested
+ * on their own, e.g. {@link com.uwetrottmann.tmdb.services.MoviesService#credits}.
+ * <p>
+ * An appended item is a part of the response if the response type has a public field of the same name, e.g.
+ * {@code credits}, and the service has a method for the route of the response followed by the item, e.g.
+ * {@code /movie/{id}/credits}. The layouts are read once per method from the annotations and fields, so
+ * {@link com.uwetrottmann.tmdb.services.TvService#tv}, {@link com.uwetrottmann.tmdb.services.TvSeasonsService#season}
+ * and {@link com.uwetrottmann.tmdb.services.TvEpisodesService#episode} work alike.
+ */
+public final class AppendedResources {
+
+    private static final String APPEND_TO_RESPONSE = "append_to_response";
+
+    private static final ConcurrentHashMap<Method, AppendedResources> CACHE
+            = new ConcurrentHashMap<Method, AppendedResources>();
+    /** Marks methods without appended resources, as the map does not take null values. */
+    private static final AppendedResources NONE = new AppendedResources(-1, null);
+
+    private static final ConcurrentHashMap<Method, Appendable> APPENDABLES
+            = new ConcurrentHashMap<Method, Appendable>();
+    /** Marks methods whose resource can not be appended to another. */
+    private static final Appendable NOT_APPENDABLE = new Appendable(null, null, null, null);
+
+    private static final ConcurrentHashMap<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<Class<?>, Field[]>();
+
+    /** The index of the {@link AppendToResponse} parameter. */
+    private final int appendIndex;
+    private final Map<AppendToResponseItem, Part> parts;
+
+    private AppendedResources(int appendIndex, Map<AppendToResponseItem, Part> parts) {
+        this.appendIndex = appendIndex;
+        this.parts = parts;
+    }
+
+    /**
+     * Returns the layout of the responses of the given request, or {@code null} if they have no parts.
+     */
+    public static AppendedResources of(ServiceRequest request) {
+        return of(request.service(), ServiceMethod.get(request.method()));
+    }
+
+    private static AppendedResources of(Class<?> service, ServiceMethod serviceMethod) {
+        AppendedResources resources = CACHE.get(serviceMethod.method);
+        if (resources == null) {
+            resources = read(service, serviceMethod);
+            CACHE.putIfAbsent(serviceMethod.method, resources);
+        }
+        return resources != NONE ? resources : null;
+    }
+
+    private static AppendedResources read(Class<?> service, ServiceMethod serviceMethod) {
+        int appendIndex = Arrays.asList(serviceMethod.queryNames).indexOf(APPEND_TO_RESPONSE);
+        if (appendIndex == -1 || !(serviceMethod.responseType instanceof Class)) {
+            return NONE;
+        }
+
+        Class<?> responseType = (Class<?>) serviceMethod.responseType;
+        Map<AppendToResponseItem, Part> parts = new EnumMap<AppendToResponseItem, Part>(AppendToResponseItem.class);
+        for (AppendToResponseItem item : AppendToResponseItem.values()) {
+            Field field;
+            try {
+                field = responseType.getField(item.toString());
+            } catch (NoSuchFieldException e) {
+                continue;
+            }
+            ServiceMethod partMethod = find(service, serviceMethod.route + "/" + item);
+            if (partMethod != null) {
+                Set<String> queryNames = new HashSet<String>(Arrays.asList(partMethod.queryNames));
+                parts.put(item, new Part(field, partMethod.route, queryNames));
+            }
+        }
+        return parts.isEmpty() ? NONE : new AppendedResources(appendIndex, parts);
+    }
+
+    /**
+     * Returns the service method of the given route, or {@code null}.
+     */
+    private static ServiceMethod find(Class<?> service, String route) {
+        for (Method method : service.getMethods()) {
+            ServiceMethod serviceMethod = ServiceMethod.get(method);
+            if (serviceMethod != null && serviceMethod.idempotent && serviceMethod.route.equals(route)) {
+                return serviceMethod;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the item as which the resource of the given request can be appended to another request, e.g.
+     * {@link AppendToResponseItem#CREDITS} for {@link com.uwetrottmann.tmdb.services.MoviesService#credits}, or
+     * {@code null} if it can not.
+     */
+    public static AppendToResponseItem appendableItem(ServiceRequest request) {
+        Appendable appendable = appendable(request);
+        return appendable != null ? appendable.item : null;
+    }
+
+    /**
+     * Returns the request without appended items to which the resource of the given request can be appended, e.g.
+     * {@code summary(550, null, null)} for {@code credits(550)}, or {@code null} if there is none. The resource is
+     * then a part of the response to the returned request with {@link #appendableItem(ServiceRequest)} appended.
+     */
+    public static ServiceRequest appendableTo(ServiceRequest request) {
+        Appendable appendable = appendable(request);
+        if (appendable == null) {
+            return null;
+        }
+        Object[] args = new Object[appendable.argIndexes.length];
+        for (int i = 0; i < args.length; i++) {
+            int index = appendable.argIndexes[i];
+            args[i] = index != -1 ? request.args()[index] : null;
+        }
+        ServiceRequest composite = new ServiceRequest(request.service(), appendable.method, args);
+        // a part may depend on parameters the resource on its own does not take, e.g. credits of a movie in some
+        // language, then the resources differ
+        if (!request.key().equals(appendable.resources.partKey(composite, appendable.item))) {
+            return null;
+        }
+        return composite;
+    }
+
+    private static Appendable appendable(ServiceRequest request) {
+        Appendable appendable = APPENDABLES.get(request.method());
+        if (appendable == null) {
+            appendable = readAppendable(request.service(), ServiceMethod.get(request.method()));
+            APPENDABLES.putIfAbsent(request.method(), appendable);
+        }
+        return appendable != NOT_APPENDABLE ? appendable : null;
+    }
+
+    private static Appendable readAppendable(Class<?> service, ServiceMethod partMethod) {
+        for (AppendToResponseItem item : AppendToResponseItem.values()) {
+            String suffix = "/" + item;
+            if (!partMethod.route.endsWith(suffix)) {
+                continue;
+            }
+            ServiceMethod method = find(service,
+                    partMethod.route.substring(0, partMethod.route.length() - suffix.length()));
+            AppendedResources resources = method != null ? of(service, method) : null;
+            if (resources == null || !resources.hasPart(item)) {
+                continue;
+            }
+            List<String> pathNames = Arrays.asList(partMethod.pathNames);
+            List<String> queryNames = Arrays.asList(partMethod.queryNames);
+            Set<String> partQueryNames = new HashSet<String>(queryNames);
+            partQueryNames.remove(null);
+            if (!Arrays.asList(method.queryNames).containsAll(partQueryNames)) {
+                // e.g. a page of similar movies
+                continue;
+            }
+            int[] argIndexes = new int[method.pathNames.length];
+            boolean complete = true;
+            for (int i = 0; i < argIndexes.length; i++) {
+                if (method.pathNames[i] != null) {
+                    argIndexes[i] = pathNames.indexOf(method.pathNames[i]);
+                    complete &= argIndexes[i] != -1;
+                } else {
+                    argIndexes[i] = method.queryNames[i] != null ? queryNames.indexOf(method.queryNames[i]) : -1;
+                }
+            }
+            if (complete) {
+                return new Appendable(item, method, resources, argIndexes);
+            }
+        }
+        return NOT_APPENDABLE;
+    }
+
+    /**
+     * Returns the items appended to the request.
+     */
+    public List<AppendToResponseItem> items(ServiceRequest request) {
+        List<AppendToResponseItem> items = new ArrayList<AppendToResponseItem>();
+        String value = request.queryParameters().get(APPEND_TO_RESPONSE);
+        if (value == null) {
+            return items;
+        }
+        for (String name : value.split(",")) {
+            for (AppendToResponseItem item : AppendToResponseItem.values()) {
+                if (item.toString().equals(name)) {
+                    items.add(item);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Returns the request with only the given items appended.
+     */
+    public ServiceRequest withItems(ServiceRequest request, List<AppendToResponseItem> items) {
+        Object[] args = request.args().clone();
+        args[appendIndex] = items.isEmpty()
+                ? null : new AppendToResponse(items.toArray(new AppendToResponseItem[items.size()]));
+        return request.withArgs(args);
+    }
+
+    /**
+     * Returns the key of the request without any appended items.
+     */
+    public String baseKey(ServiceRequest request) {
+        return ServiceRequest.keyOf(request.path(), baseQuery(request));
+    }
+
+    /**
+     * Returns the key under which the given part of a response to the request is cached, or {@code null} if the
+     * response does not contain the part, or the resource of the part takes fewer query parameters so the part
+     * might differ from it, e.g. credits appended to a movie in some language.
+     */
+    public String partKey(ServiceRequest request, AppendToResponseItem item) {
+        Part part = parts.get(item);
+        if (part == null) {
+            return null;
+        }
+        Map<String, String> query = baseQuery(request);
+        if (!part.queryNames.containsAll(query.keySet())) {
+            return null;
+        }
+        return ServiceRequest.keyOf(request.path() + "/" + item, query);
+    }
+
+    /**
+     * Returns whether the responses contain the given item as a part.
+     */
+    public boolean hasPart(AppendToResponseItem item) {
+        return parts.containsKey(item);
+    }
+
+    /**
+     * Returns the route of the resource of the given part, e.g. {@code /movie/{id}/credits}.
+     */
+    public String partRoute(AppendToResponseItem item) {
+        return parts.get(item).route;
+    }
+
+    public Object getPart(Object response, AppendToResponseItem item) {
+        try {
+            return parts.get(item).field.get(response);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public void setPart(Object response, AppendToResponseItem item, Object value) {
+        try {
+            parts.get(item).field.set(response, value);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns a copy of the response with only the given parts.
+     */
+    public Object withOnlyParts(Object response, List<AppendToResponseItem> items) {
+        Object copy = copy(response);
+        for (AppendToResponseItem item : parts.keySet()) {
+            if (!items.contains(item)) {
+                setPart(copy, item, null);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the response without any parts.
+     */
+    public Object withoutParts(Object response) {
+        return withOnlyParts(response, new ArrayList<AppendToResponseItem>());
+    }
+
+    private static Map<String, String> baseQuery(ServiceRequest request) {
+        Map<String, String> query = new TreeMap<String, String>(request.queryParameters());
+        query.remove(APPEND_TO_RESPONSE);
+        return query;
+    }
+
+    /**
+     * Returns a shallow copy of the given response, so cached responses are not modified when parts are added or
+     * removed.
+     */
+    public static Object copy(Object response) {
+        Class<?> type = response.getClass();
+        Field[] fields = FIELDS.get(type);
+        if (fields == null) {
+            List<Field> instanceFields = new ArrayList<Field>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        instanceFields.add(field);
+                    }
+                }
+            }
+            fields = instanceFields.toArray(new Field[instanceFields.size()]);
+            FIELDS.putIfAbsent(type, fields);
+        }
+        try {
+            Object copy = type.newInstance();
+            for (Field field : fields) {
+                field.set(copy, field.get(response));
+            }
+            return copy;
+        } catch (InstantiationException e) {
+            throw new AssertionError(e);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static final class Part {
+
+        final Field field;
+        final String route;
+        final Set<String> queryNames;
+
+        Part(Field field, String route, Set<String> queryNames) {
+            this.field = field;
+            this.route = route;
+            this.queryNames = queryNames;
+        }
+    }
+
+    /**
+     * How to build the request to which the resource of a service method can be appended.
+     */
+    private static final class Appendable {
+
+        final AppendToResponseItem item;
+        final ServiceMethod method;
+        final AppendedResources resources;
+        /** For each parameter of the method, the index of the argument of the part method or -1. */
+        final int[] argIndexes;
+
+        Appendable(AppendToResponseItem item, ServiceMethod method, AppendedResources resources, int[] argIndexes) {
+            this.item = item;
+            this.method = method;
+            this.resources = resources;
+            this.argIndexes = argIndexes;
+        }
+    }
+}
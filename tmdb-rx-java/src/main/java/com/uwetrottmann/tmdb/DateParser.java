@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Decodes the {@code yyyy-MM-dd} dates used by TMDb (e.g. {@code release_date}, {@code first_air_date}) into a
+ * {@link java.util.Date} at midnight of that day in the parser's time zone, like a lenient
+ * {@link java.text.SimpleDateFormat} would.
+ * <p>
+ * Unlike {@link java.text.SimpleDateFormat} a parser has no mutable state and may be shared by any number of threads.
+ * The characters are scanned directly, so the only allocation is the returned {@link java.util.Date}. Optionally the
+ * parser remembers recently decoded days in a small lock-free table, as the same dates tend to repeat within a
+ * response (e.g. the release dates of a {@link com.uwetrottmann.tmdb.entities.MovieResultsPage}).
+ */
+public final class DateParser {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    /** Number of cached days, must be a power of two. */
+    private static final int CACHE_SIZE = 512;
+
+    private final TimeZone timeZone;
+    private final CachedDay[] cache;
+
+    /**
+     * @param timeZone The time zone in which the decoded dates start at midnight.
+     * @param cache Whether to remember recently decoded days.
+     */
+    public DateParser(TimeZone timeZone, boolean cache) {
+        this.timeZone = (TimeZone) timeZone.clone();
+        this.cache = cache ? new CachedDay[CACHE_SIZE] : null;
+    }
+
+    /**
+     * Decode the given {@code yyyy-MM-dd} date. Like {@link java.text.SimpleDateFormat#parse(String)} any characters
+     * after the date are ignored and out of range months or days roll over.
+     *
+     * @return The decoded date or {@code null} if the value is {@code null} or not a date.
+     */
+    public Date parse(String value) {
+        if (value == null || value.length() < 10
+                || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+
+        int key = year * 10000 + month * 100 + day;
+        if (cache == null) {
+            return new Date(toMillis(year, month, day));
+        }
+
+        int index = (key ^ (key >>> 9)) & (CACHE_SIZE - 1);
+        // entries are immutable, a racy read sees either a complete entry or none
+        CachedDay cached = cache[index];
+        if (cached == null || cached.key != key) {
+            cached = new CachedDay(key, toMillis(year, month, day));
+            cache[index] = cached;
+        }
+        return new Date(cached.millis);
+    }
+
+    /**
+     * Encode the day of the given date in the parser's time zone as {@code yyyy-MM-dd}, the inverse of
+     * {@link #parse(String)}.
+     */
+    public String format(Date date) {
+        Calendar calendar = Calendar.getInstance(timeZone, Locale.US);
+        calendar.setTime(date);
+        return String.format(Locale.US, "%04d-%02d-%02d", calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Returns the value of {@code count} ASCII digits starting at {@code start}, or -1 if any is not a digit.
+     */
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private long toMillis(int year, int month, int day) {
+        // roll over months like a lenient calendar does
+        year += (month - 1) / 12;
+        month = (month - 1) % 12 + 1;
+        if (month < 1) {
+            month += 12;
+            year -= 1;
+        }
+
+        long localMillis = (epochDay(year, month) + day - 1) * MILLIS_PER_DAY;
+
+        // find the instant whose local time is midnight, re-check in case it lies across a DST transition
+        int offset = timeZone.getOffset(localMillis - timeZone.getRawOffset());
+        long millis = localMillis - offset;
+        int actualOffset = timeZone.getOffset(millis);
+        if (actualOffset != offset) {
+            millis = localMillis - actualOffset;
+        }
+        return millis;
+    }
+
+    /**
+     * Days since 1970-01-01 of the first day of the given month in the proleptic Gregorian calendar.
+     */
+    private static long epochDay(int year, int month) {
+        // shift the year to start in March, so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        int shiftedMonth = month > 2 ? month - 3 : month + 9;
+        long dayOfYear = (153 * shiftedMonth + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static final class CachedDay {
+
+        final int key;
+        final long millis;
+
+        CachedDay(int key, long millis) {
+            this.key = key;
+            this.millis = millis;
+        }
+    }
+}
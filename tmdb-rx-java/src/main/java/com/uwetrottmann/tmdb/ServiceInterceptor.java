@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import rx.Observable;
+
+/**
+ * Observes, modifies or short-circuits the calls of the service methods of a {@link Tmdb} instance.
+ * <p>
+ * Interceptors are invoked in order when a service method is called, before anything is subscribed. Each one either
+ * returns an {@link rx.Observable} of its own (e.g. a cached value) or the one of the next interceptor by calling
+ * {@link Chain#proceed(ServiceRequest)}. The last one returns the {@link rx.Observable} of retrofit, so no request is
+ * sent until it is subscribed to.
+ */
+public interface ServiceInterceptor {
+
+    Observable<?> intercept(Chain chain);
+
+    interface Chain {
+
+        ServiceRequest request();
+
+        /**
+         * Pass the given request on to the next interceptor and return its {@link rx.Observable}.
+         */
+        Observable<?> proceed(ServiceRequest request);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+import rx.Observable;
+import rx.Subscriber;
+
+/**
+ * Passes the calls of a service proxy through the {@link ServiceInterceptor}s before handing them to the retrofit
+ * service.
+ */
+final class ServiceInvocationHandler implements InvocationHandler {
+
+    /** The {@link ServiceRequest#headers()} of the request retrofit is building on this thread. */
+    private static final ThreadLocal<Map<String, String>> HEADERS = new ThreadLocal<Map<String, String>>();
+
+    private final Class<?> service;
+    private final Object delegate;
+    private final List<ServiceInterceptor> interceptors;
+
+    ServiceInvocationHandler(Class<?> service, Object delegate, List<ServiceInterceptor> interceptors) {
+        this.service = service;
+        this.delegate = delegate;
+        this.interceptors = interceptors;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeDelegate(method, args);
+        }
+        ServiceMethod serviceMethod = ServiceMethod.get(method);
+        if (serviceMethod == null) {
+            return invokeDelegate(method, args);
+        }
+        return new RealChain(0, new ServiceRequest(service, serviceMethod, args)).proceed();
+    }
+
+    /**
+     * Returns the additional headers of the request retrofit is building on this thread, or {@code null}. Retrofit
+     * runs its {@link retrofit.RequestInterceptor} when a service {@link rx.Observable} is subscribed to, on the
+     * subscribing thread.
+     */
+    static Map<String, String> currentHeaders() {
+        return HEADERS.get();
+    }
+
+    private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class RealChain implements ServiceInterceptor.Chain {
+
+        private final int index;
+        private final ServiceRequest request;
+
+        RealChain(int index, ServiceRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+
+        @Override
+        public ServiceRequest request() {
+            return request;
+        }
+
+        @Override
+        public Observable<?> proceed(ServiceRequest request) {
+            return new RealChain(index + 1, request).proceed();
+        }
+
+        @SuppressWarnings("unchecked")
+        Observable<?> proceed() {
+            if (index < interceptors.size()) {
+                return interceptors.get(index).intercept(this);
+            }
+            final Observable<Object> call;
+            try {
+                call = (Observable<Object>) invokeDelegate(request.method(), request.args());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+            if (request.headers().isEmpty()) {
+                return call;
+            }
+            return Observable.create(new Observable.OnSubscribe<Object>() {
+                @Override
+                public void call(Subscriber<? super Object> subscriber) {
+                    HEADERS.set(request.headers());
+                    try {
+                        call.unsafeSubscribe(subscriber);
+                    } finally {
+                        HEADERS.remove();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrofit.http.GET;
+import retrofit.http.Path;
+import retrofit.http.Query;
+import rx.Observable;
+
+/**
+ * The route, parameter names and response type of a service method, read once from its retrofit annotations.
+ */
+final class ServiceMethod {
+
+    private static final ConcurrentHashMap<Method, ServiceMethod> CACHE
+            = new ConcurrentHashMap<Method, ServiceMethod>();
+
+    final Method method;
+    final String route;
+    /** Whether the method sends a {@code GET} request, which may be sent again without further effect. */
+    final boolean idempotent;
+    final Type responseType;
+    /** Name of the {@link retrofit.http.Path} of each parameter, or {@code null}. */
+    final String[] pathNames;
+    /** Name of the {@link retrofit.http.Query} of each parameter, or {@code null}. */
+    final String[] queryNames;
+
+    private ServiceMethod(Method method) {
+        this.method = method;
+
+        GET get = method.getAnnotation(GET.class);
+        route = get != null ? get.value() : method.getName();
+        idempotent = get != null;
+
+        Type returnType = method.getGenericReturnType();
+        responseType = returnType instanceof ParameterizedType
+                ? ((ParameterizedType) returnType).getActualTypeArguments()[0] : Object.class;
+
+        Annotation[][] annotations = method.getParameterAnnotations();
+        pathNames = new String[annotations.length];
+        queryNames = new String[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof Path) {
+                    pathNames[i] = ((Path) annotation).value();
+                } else if (annotation instanceof Query) {
+                    queryNames[i] = ((Query) annotation).value();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the parsed service method, or {@code null} if the method does not return an {@link rx.Observable}.
+     */
+    static ServiceMethod get(Method method) {
+        ServiceMethod serviceMethod = CACHE.get(method);
+        if (serviceMethod == null) {
+            if (method.getReturnType() != Observable.class) {
+                return null;
+            }
+            serviceMethod = new ServiceMethod(method);
+            CACHE.putIfAbsent(method, serviceMethod);
+        }
+        return serviceMethod;
+    }
+}
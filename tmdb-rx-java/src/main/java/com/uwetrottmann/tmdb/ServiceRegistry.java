@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrofit.RestAdapter;
+
+/**
+ * One generation of the {@link Tmdb} client: a {@link retrofit.RestAdapter} and the service proxies created from it.
+ * <p>
+ * Each service proxy is created at most once per registry. Lookups of an already created service do not lock, so the
+ * registry can be shared by any number of threads. A registry is never modified once {@link Tmdb} replaces it (e.g.
+ * after a new API key was set), so callers still holding services of the old generation are not affected.
+ * <p>
+ * If there are {@link ServiceInterceptor}s, the retrofit proxies are wrapped so each call passes through them.
+ */
+final class ServiceRegistry {
+
+    private final RestAdapter restAdapter;
+    private final List<ServiceInterceptor> interceptors;
+    private final ConcurrentHashMap<Class<?>, Object> services = new ConcurrentHashMap<Class<?>, Object>();
+
+    ServiceRegistry(RestAdapter restAdapter, List<ServiceInterceptor> interceptors) {
+        this.restAdapter = restAdapter;
+        this.interceptors = interceptors;
+    }
+
+    RestAdapter restAdapter() {
+        return restAdapter;
+    }
+
+    /**
+     * Return the proxy for the given service interface, creating it on first use.
+     */
+    <T> T get(Class<T> serviceClass) {
+        Object service = services.get(serviceClass);
+        if (service == null) {
+            // only serialize the (rare) creation, so each proxy is built exactly once
+            synchronized (services) {
+                service = services.get(serviceClass);
+                if (service == null) {
+                    service = create(serviceClass);
+                    services.put(serviceClass, service);
+                }
+            }
+        }
+        return serviceClass.cast(service);
+    }
+
+    private <T> Object create(Class<T> serviceClass) {
+        T service = restAdapter.create(serviceClass);
+        if (interceptors.isEmpty()) {
+            return service;
+        }
+        return Proxy.newProxyInstance(serviceClass.getClassLoader(), new Class<?>[] { serviceClass },
+                new ServiceInvocationHandler(serviceClass, service, interceptors));
+    }
+}
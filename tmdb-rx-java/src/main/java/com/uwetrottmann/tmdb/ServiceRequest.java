@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A call of a service method, as seen by the {@link ServiceInterceptor}s of a {@link Tmdb} instance.
+ * <p>
+ * Besides the invoked method and its arguments a request knows the resolved path and query parameters which retrofit
+ * will send. They make up its {@link #key()}, which is the same for all calls requesting the same resource: query
+ * parameters are sorted, parameters without value are left out and the items of an
+ * {@link com.uwetrottmann.tmdb.entities.AppendToResponse} are sorted and de-duplicated. The API key is not part of a
+ * request.
+ */
+public final class ServiceRequest {
+
+    private final ServiceMethod serviceMethod;
+    private final Class<?> service;
+    private final Object[] args;
+    private final String path;
+    private final Map<String, String> pathParameters;
+    private final Map<String, String> queryParameters;
+    private final String key;
+    private final Map<String, String> headers;
+
+    ServiceRequest(Class<?> service, ServiceMethod serviceMethod, Object[] args) {
+        this(service, serviceMethod, args, Collections.<String, String>emptyMap());
+    }
+
+    private ServiceRequest(Class<?> service, ServiceMethod serviceMethod, Object[] args, Map<String, String> headers) {
+        this.service = service;
+        this.serviceMethod = serviceMethod;
+        this.args = args != null ? args : new Object[0];
+        this.headers = headers;
+
+        Map<String, String> pathParameters = new LinkedHashMap<String, String>();
+        Map<String, String> queryParameters = new TreeMap<String, String>();
+        String path = serviceMethod.route;
+        for (int i = 0; i < this.args.length; i++) {
+            Object arg = this.args[i];
+            if (serviceMethod.pathNames[i] != null) {
+                String value = String.valueOf(arg);
+                pathParameters.put(serviceMethod.pathNames[i], value);
+                path = path.replace("{" + serviceMethod.pathNames[i] + "}", value);
+            } else if (serviceMethod.queryNames[i] != null && arg != null) {
+                String value = arg instanceof AppendToResponse
+                        ? canonicalItems(arg.toString()) : String.valueOf(arg);
+                if (value != null) {
+                    queryParameters.put(serviceMethod.queryNames[i], value);
+                }
+            }
+        }
+        this.path = path;
+        this.pathParameters = Collections.unmodifiableMap(pathParameters);
+        this.queryParameters = Collections.unmodifiableMap(queryParameters);
+
+        this.key = keyOf(path, this.queryParameters);
+    }
+
+    /**
+     * Returns the {@link #key()} of a request for the given path and query parameters.
+     *
+     * @param queryParameters The query parameters with a value, sorted by name.
+     */
+    public static String keyOf(String path, Map<String, String> queryParameters) {
+        StringBuilder key = new StringBuilder(path);
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : queryParameters.entrySet()) {
+            key.append(separator).append(parameter.getKey()).append('=').append(parameter.getValue());
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * Sort and de-duplicate the comma separated items, or return {@code null} if there are none.
+     */
+    private static String canonicalItems(String items) {
+        if (items == null || items.length() == 0) {
+            return null;
+        }
+        TreeSet<String> sorted = new TreeSet<String>(Arrays.asList(items.split(",")));
+        StringBuilder canonical = new StringBuilder(items.length());
+        for (String item : sorted) {
+            if (canonical.length() > 0) {
+                canonical.append(',');
+            }
+            canonical.append(item);
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * The service interface, e.g. {@link com.uwetrottmann.tmdb.services.MoviesService}.
+     */
+    public Class<?> service() {
+        return service;
+    }
+
+    public Method method() {
+        return serviceMethod.method;
+    }
+
+    /**
+     * The arguments the service method was called with. Do not modify.
+     */
+    public Object[] args() {
+        return args;
+    }
+
+    /**
+     * The path template of the service method, e.g. {@code /movie/{id}}.
+     */
+    public String route() {
+        return serviceMethod.route;
+    }
+
+    /**
+     * Whether sending this request again has no further effect, true for all {@code GET} requests.
+     */
+    public boolean isIdempotent() {
+        return serviceMethod.idempotent;
+    }
+
+    /**
+     * The path with all path parameters filled in, e.g. {@code /movie/550}.
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * The value of the given path parameter, e.g. {@code 550} for {@code id}, or {@code null}.
+     */
+    public String pathParameter(String name) {
+        return pathParameters.get(name);
+    }
+
+    /**
+     * The query parameters with a value, sorted by name.
+     */
+    public Map<String, String> queryParameters() {
+        return queryParameters;
+    }
+
+    /**
+     * The type of the items emitted by the service method, e.g. {@link com.uwetrottmann.tmdb.entities.Movie}.
+     */
+    public Type responseType() {
+        return serviceMethod.responseType;
+    }
+
+    /**
+     * The canonical path and query of this request, e.g. {@code /movie/550?append_to_response=credits,videos}.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * The additional HTTP headers to send, e.g. {@code If-None-Match}. They are not part of the {@link #key()}.
+     */
+    public Map<String, String> headers() {
+        return headers;
+    }
+
+    /**
+     * Returns a request for the same service method with the given arguments.
+     */
+    public ServiceRequest withArgs(Object... args) {
+        return new ServiceRequest(service, serviceMethod, args, headers);
+    }
+
+    /**
+     * Returns this request with the given additional HTTP header, replacing one of the same name.
+     */
+    public ServiceRequest withHeader(String name, String value) {
+        Map<String, String> headers = new LinkedHashMap<String, String>(this.headers);
+        headers.put(name, value);
+        return new ServiceRequest(service, serviceMethod, args, Collections.unmodifiableMap(headers));
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
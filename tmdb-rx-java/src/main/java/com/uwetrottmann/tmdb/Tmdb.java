@@ -17,6 +17,25 @@
 
 package com.uwetrottmann.tmdb;
 
+import com.google.gson.Gson;
+import com.uwetrottmann.tmdb.cache.BodyRecordingConverter;
+import com.uwetrottmann.tmdb.cache.CacheInterceptor;
+import com.uwetrottmann.tmdb.cache.DiskCache;
+import com.uwetrottmann.tmdb.cache.ResponseCache;
+import com.uwetrottmann.tmdb.cache.ValidatorRecordingClient;
+import com.uwetrottmann.tmdb.cache.ValidatorRecordingConverter;
+import com.uwetrottmann.tmdb.images.ImageUrlBuilder;
+import com.uwetrottmann.tmdb.interceptors.CircuitBreaker;
+import com.uwetrottmann.tmdb.interceptors.RateLimiter;
+import com.uwetrottmann.tmdb.interceptors.RequestCoalescer;
+import com.uwetrottmann.tmdb.interceptors.RequestHedger;
+import com.uwetrottmann.tmdb.interceptors.RequestMerger;
+import com.uwetrottmann.tmdb.interceptors.RetryPolicy;
+import com.uwetrottmann.tmdb.metrics.MeteredClient;
+import com.uwetrottmann.tmdb.metrics.MeteredConverter;
+import com.uwetrottmann.tmdb.metrics.MetricsInterceptor;
+import com.uwetrottmann.tmdb.metrics.MetricsListener;
+import com.uwetrottmann.tmdb.search.SearchIndex;
 import com.uwetrottmann.tmdb.services.CollectionService;
 import com.uwetrottmann.tmdb.services.ConfigurationService;
 import com.uwetrottmann.tmdb.services.DiscoverService;
@@ -27,9 +46,19 @@ import com.uwetrottmann.tmdb.services.SearchService;
 import com.uwetrottmann.tmdb.services.TvEpisodesService;
 import com.uwetrottmann.tmdb.services.TvSeasonsService;
 import com.uwetrottmann.tmdb.services.TvService;
+import com.uwetrottmann.tmdb.transport.DecompressingClient;
+import com.uwetrottmann.tmdb.transport.Transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import retrofit.RequestInterceptor;
 import retrofit.RestAdapter;
+import retrofit.client.Client;
+import retrofit.client.UrlConnectionClient;
+import retrofit.converter.Converter;
 import retrofit.converter.GsonConverter;
 
 /**
@@ -39,10 +68,13 @@ import retrofit.converter.GsonConverter;
  * <p>
  * The service methods take care of constructing the required {@link retrofit.RestAdapter} and creating the service. You
  * can customize the {@link retrofit.RestAdapter} by overriding {@link #newRestAdapterBuilder()} and setting e.g.
- * your own HTTP client instance or thread executor.
+ * your own HTTP client instance or thread executor. To decompress responses, limit the rate of requests, record metrics
+ * or revalidate cached responses the HTTP client is wrapped, so with those enabled provide it by overriding
+ * {@link #newClient()} or with {@link #setTransport(Transport)} instead.
  * <p>
  * Only one {@link retrofit.RestAdapter} instance is created upon the first and re-used for any consequent service
- * method call.
+ * method call. Likewise each service is only created once and the same instance is returned by further calls of its
+ * service method. All service methods may be called concurrently from any thread.
  */
 public class Tmdb {
 
@@ -56,9 +88,23 @@ public class Tmdb {
      */
     public static final String PARAM_API_KEY = "api_key";
 
-    private String apiKey;
-    private boolean isDebug;
-    private RestAdapter restAdapter;
+    private volatile String apiUrl = API_URL;
+    private volatile String apiKey;
+    private volatile boolean isDebug;
+    private volatile ResponseCache responseCache;
+    private volatile DiskCache diskCache;
+    private volatile RequestCoalescer requestCoalescer;
+    private volatile RequestMerger requestMerger;
+    private volatile RateLimiter rateLimiter;
+    private volatile RetryPolicy retryPolicy;
+    private volatile RequestHedger requestHedger;
+    private volatile CircuitBreaker circuitBreaker;
+    private volatile MetricsListener metricsListener;
+    private volatile SearchIndex searchIndex;
+    private volatile Transport transport;
+    private volatile boolean compression;
+    private volatile ServiceRegistry serviceRegistry;
+    private volatile ImageUrlBuilder imageUrlBuilder;
 
     /**
      * Create a new manager instance.
@@ -70,16 +116,37 @@ public class Tmdb {
      * Set the TMDB API key.
      * <p>
      * The next service method call will trigger a rebuild of the {@link retrofit.RestAdapter}. If you have cached any
-     * service instances, get a new one from its service method.
+     * service instances, get a new one from its service method. Service instances obtained before keep using the
+     * previous API key, so requests already in flight are not affected.
      *
      * @param value Your TMDB API key.
      */
     public Tmdb setApiKey(String value) {
-        this.apiKey = value;
-        restAdapter = null;
+        synchronized (this) {
+            this.apiKey = value;
+            serviceRegistry = null;
+        }
         return this;
     }
 
+    /**
+     * Send requests to the given URL instead of {@link #API_URL}, e.g. a local stand-in server. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param apiUrl The URL of API version 3, without a trailing slash.
+     */
+    public Tmdb setApiUrl(String apiUrl) {
+        synchronized (this) {
+            this.apiUrl = apiUrl;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
     /**
      * Set the {@link retrofit.RestAdapter} log level.
      *
@@ -87,15 +154,265 @@ public class Tmdb {
      *                Otherwise {@link retrofit.RestAdapter.LogLevel#NONE}.
      */
     public Tmdb setIsDebug(boolean isDebug) {
-        this.isDebug = isDebug;
-        if (restAdapter != null) {
-            restAdapter.setLogLevel(isDebug ? RestAdapter.LogLevel.FULL : RestAdapter.LogLevel.NONE);
+        synchronized (this) {
+            this.isDebug = isDebug;
+            ServiceRegistry registry = serviceRegistry;
+            if (registry != null) {
+                registry.restAdapter().setLogLevel(isDebug ? RestAdapter.LogLevel.FULL : RestAdapter.LogLevel.NONE);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Cache responses of the service methods in memory. Service methods whose response is cached emit it instead of
+     * sending a request. Expired responses with an {@code ETag} or {@code Last-Modified} header are revalidated with a
+     * conditional request and reused if TMDb answers {@code 304 Not Modified}. Like {@link #setApiKey(String)} this
+     * takes effect for services obtained afterwards.
+     * <p>
+     * To see the validators of responses the HTTP client is wrapped, so it has to be provided by {@link #newClient()} or
+     * a {@link Transport}.
+     *
+     * @param responseCache A cache, possibly shared with other instances, or {@code null} to not cache responses.
+     */
+    public Tmdb setResponseCache(ResponseCache responseCache) {
+        synchronized (this) {
+            this.responseCache = responseCache;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Keep the raw bodies of responses of the types cached by the given {@link DiskCache} on disk, so they are
+     * available after a restart. Service methods look up the {@link #setResponseCache(ResponseCache) memory cache}
+     * first. Like {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param diskCache An open cache, or {@code null} to not cache responses on disk. Closing it remains the
+     * responsibility of the caller.
+     */
+    public Tmdb setDiskCache(DiskCache diskCache) {
+        synchronized (this) {
+            this.diskCache = diskCache;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Index the movies, shows and people of all responses, including those answered from a cache, so
+     * {@link com.uwetrottmann.tmdb.search.LocalFirstSearch} can find them without a request. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param searchIndex An index, possibly shared with other instances, or {@code null} to not index responses.
+     */
+    public Tmdb setSearchIndex(SearchIndex searchIndex) {
+        synchronized (this) {
+            this.searchIndex = searchIndex;
+            serviceRegistry = null;
         }
         return this;
     }
 
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Let concurrent subscribers to identical requests share one call instead of each sending their own. Requests
+     * answered from a cache are not coalesced. Like {@link #setApiKey(String)} this takes effect for services obtained
+     * afterwards.
+     *
+     * @param requestCoalescer A coalescer, possibly shared with other instances, or {@code null} to send every request.
+     * Only requests with the same API key and API URL share a call.
+     */
+    public Tmdb setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        synchronized (this) {
+            this.requestCoalescer = requestCoalescer;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Merge requests for a movie, show, season or episode and its parts, e.g. its credits, arriving within a short
+     * window into one request with {@code append_to_response}. Requests answered from a cache are not merged. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param requestMerger A merger, possibly shared with other instances, or {@code null} to send every request.
+     * Only requests with the same API key and API URL are merged.
+     */
+    public Tmdb setRequestMerger(RequestMerger requestMerger) {
+        synchronized (this) {
+            this.requestMerger = requestMerger;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public RequestMerger getRequestMerger() {
+        return requestMerger;
+    }
+
+    /**
+     * Keep the requests within the request quota of the API key. Requests exceeding it are delayed until it is their
+     * turn, responses of TMDb with rate limit information adjust the limits. Only requests actually sent count, not
+     * ones answered from a cache or coalesced. Like {@link #setApiKey(String)} this takes effect for services obtained
+     * afterwards.
+     * <p>
+     * To see the response headers the HTTP client is wrapped, so it has to be provided by {@link #newClient()} or a
+     * {@link Transport}.
+     *
+     * @param rateLimiter A rate limiter, possibly shared with other instances, or {@code null} to not limit requests.
+     */
+    public Tmdb setRateLimiter(RateLimiter rateLimiter) {
+        synchronized (this) {
+            this.rateLimiter = rateLimiter;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Send requests failing for a transient reason, e.g. a connection reset or a {@code 503} response, again after a
+     * backoff. Each retry is sent through the rate limiter and coalescer, but not looked up in the cache again. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param retryPolicy A retry policy, possibly shared with other instances, or {@code null} to pass all errors on.
+     */
+    public Tmdb setRetryPolicy(RetryPolicy retryPolicy) {
+        synchronized (this) {
+            this.retryPolicy = retryPolicy;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Send a second request if a response is slower than most, and use whichever response arrives first. Hedges are
+     * not sent while the rate limiter has no tokens. Like {@link #setApiKey(String)} this takes effect for services
+     * obtained afterwards.
+     *
+     * @param requestHedger A hedger, possibly shared with other instances, or {@code null} to not hedge requests.
+     */
+    public Tmdb setRequestHedger(RequestHedger requestHedger) {
+        synchronized (this) {
+            this.requestHedger = requestHedger;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public RequestHedger getRequestHedger() {
+        return requestHedger;
+    }
+
+    /**
+     * Fail requests right away while their service interface keeps failing or is slow, or has too many requests in
+     * flight. Retries of a request each go through the circuit breaker, cached responses do not. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param circuitBreaker A circuit breaker, possibly shared with other instances, or {@code null} to send all
+     * requests.
+     */
+    public Tmdb setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        synchronized (this) {
+            this.circuitBreaker = circuitBreaker;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Report the latencies, status, size and source of each response or error of the service methods, e.g. to a
+     * {@link com.uwetrottmann.tmdb.metrics.MetricsRecorder}. Like {@link #setApiKey(String)} this takes effect for
+     * services obtained afterwards.
+     * <p>
+     * Like for {@link #setRateLimiter(RateLimiter)} the HTTP client is wrapped, so it has to be provided by
+     * {@link #newClient()} or a {@link Transport}.
+     *
+     * @param metricsListener A listener, possibly shared with other instances, or {@code null} to not measure requests.
+     */
+    public Tmdb setMetricsListener(MetricsListener metricsListener) {
+        synchronized (this) {
+            this.metricsListener = metricsListener;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Send requests with the HTTP client of the given transport, unless {@link #newClient()} provides one. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     *
+     * @param transport A transport, possibly shared with other instances to share connections, or {@code null} to let
+     * retrofit pick a client.
+     */
+    public Tmdb setTransport(Transport transport) {
+        synchronized (this) {
+            this.transport = transport;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Ask for gzip or deflate compressed responses and decompress them while they are parsed. Disabled by default. Like
+     * {@link #setApiKey(String)} this takes effect for services obtained afterwards.
+     * <p>
+     * To decompress responses the HTTP client is wrapped, so it has to be provided by {@link #newClient()} or a
+     * {@link Transport}.
+     */
+    public Tmdb setCompression(boolean compression) {
+        synchronized (this) {
+            this.compression = compression;
+            serviceRegistry = null;
+        }
+        return this;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
     /**
      * Create a new {@link retrofit.RestAdapter.Builder}. Override this to e.g. set your own client or executor.
+     * <p>
+     * A client set here is replaced by the one of {@link #newClient()} or the {@link #setTransport(Transport)
+     * transport} if they provide one, and by retrofit's default client if compression, a rate limiter, a metrics
+     * listener or a response cache need to wrap it.
      *
      * @return A {@link retrofit.RestAdapter.Builder} with no modifications.
      */
@@ -103,6 +420,17 @@ public class Tmdb {
         return new RestAdapter.Builder();
     }
 
+    /**
+     * Create the HTTP client of the {@link retrofit.RestAdapter}. Override this to use your own client, it takes
+     * precedence over the one of the {@link #setTransport(Transport) transport} and replaces one set on
+     * {@link #newRestAdapterBuilder()}.
+     *
+     * @return A client, or {@code null} to use the one of the transport or the retrofit default.
+     */
+    protected Client newClient() {
+        return null;
+    }
+
     /**
      * Return the current {@link retrofit.RestAdapter} instance. If none exists (first call, API key changed),
      * builds a new one.
@@ -111,64 +439,195 @@ public class Tmdb {
      * and a {@link retrofit.RequestInterceptor} which adds the API key as query param.
      */
     protected RestAdapter getRestAdapter() {
-        if (restAdapter == null) {
-            RestAdapter.Builder builder = newRestAdapterBuilder();
-
-            builder.setEndpoint(API_URL);
-            builder.setConverter(new GsonConverter(TmdbHelper.getGsonBuilder().create()));
-            builder.setRequestInterceptor(new RequestInterceptor() {
-                public void intercept(RequestFacade requestFacade) {
-                    requestFacade.addQueryParam(PARAM_API_KEY, apiKey);
+        return getServiceRegistry().restAdapter();
+    }
+
+    /**
+     * Return the current {@link ServiceRegistry}. If none exists (first call, API key changed), builds a new one.
+     * <p>
+     * Only the build is synchronized, returning an existing registry does not lock.
+     */
+    private ServiceRegistry getServiceRegistry() {
+        ServiceRegistry registry = serviceRegistry;
+        if (registry == null) {
+            synchronized (this) {
+                registry = serviceRegistry;
+                if (registry == null) {
+                    Gson gson = TmdbHelper.getGsonBuilder().create();
+                    RateLimiter.Bucket bucket = rateLimiter != null ? rateLimiter.bucket(apiKey) : null;
+                    registry = new ServiceRegistry(buildRestAdapter(gson, bucket), buildInterceptors(gson, bucket));
+                    serviceRegistry = registry;
                 }
-            });
+            }
+        }
+        return registry;
+    }
+
+    private RestAdapter buildRestAdapter(Gson gson, RateLimiter.Bucket bucket) {
+        RestAdapter.Builder builder = newRestAdapterBuilder();
+
+        // capture the key, so requests of this generation keep using it even if a new one is set
+        final String apiKey = this.apiKey;
+
+        builder.setEndpoint(apiUrl);
+        Converter converter = new GsonConverter(gson);
+        if (diskCache != null) {
+            converter = new BodyRecordingConverter(converter);
+        }
+        if (responseCache != null) {
+            converter = new ValidatorRecordingConverter(converter);
+        }
+        if (metricsListener != null) {
+            converter = new MeteredConverter(converter);
+        }
+        builder.setConverter(converter);
 
-            if (isDebug) {
-                builder.setLogLevel(RestAdapter.LogLevel.FULL);
+        Client client = newClient();
+        if (client == null && transport != null) {
+            client = transport.client();
+        }
+        if (metricsListener != null) {
+            client = new MeteredClient(client != null ? client : defaultClient());
+        }
+        if (compression) {
+            // outside the metered client, which then counts the compressed bytes
+            client = new DecompressingClient(client != null ? client : defaultClient());
+        }
+        if (responseCache != null) {
+            client = new ValidatorRecordingClient(client != null ? client : defaultClient());
+        }
+        if (bucket != null) {
+            client = new TmdbClient(client != null ? client : defaultClient(), bucket);
+        }
+        if (client != null) {
+            builder.setClient(client);
+        }
+        builder.setRequestInterceptor(new RequestInterceptor() {
+            public void intercept(RequestFacade requestFacade) {
+                requestFacade.addQueryParam(PARAM_API_KEY, apiKey);
+                Map<String, String> headers = ServiceInvocationHandler.currentHeaders();
+                if (headers != null) {
+                    for (Map.Entry<String, String> header : headers.entrySet()) {
+                        requestFacade.addHeader(header.getKey(), header.getValue());
+                    }
+                }
             }
+        });
 
-            restAdapter = builder.build();
+        if (isDebug) {
+            builder.setLogLevel(RestAdapter.LogLevel.FULL);
         }
 
-        return restAdapter;
+        return builder.build();
+    }
+
+    /**
+     * Returns the client retrofit would use: OkHttp if available, otherwise {@link java.net.HttpURLConnection}. Used
+     * as the client to wrap if neither {@link #newClient()} nor the transport provide one.
+     */
+    private static Client defaultClient() {
+        try {
+            Class.forName("com.squareup.okhttp.OkHttpClient");
+            return (Client) Class.forName("retrofit.client.OkClient").newInstance();
+        } catch (Exception e) {
+            return new UrlConnectionClient();
+        }
+    }
+
+    private List<ServiceInterceptor> buildInterceptors(Gson gson, RateLimiter.Bucket bucket) {
+        List<ServiceInterceptor> interceptors = new ArrayList<ServiceInterceptor>();
+        if (metricsListener != null) {
+            // outermost, to also see responses from a cache
+            interceptors.add(new MetricsInterceptor(metricsListener));
+        }
+        if (searchIndex != null) {
+            // outside the cache, to also index responses read from disk after a restart
+            interceptors.add(searchIndex);
+        }
+        if (responseCache != null || diskCache != null) {
+            interceptors.add(new CacheInterceptor(responseCache, diskCache, gson));
+        }
+        if (requestMerger != null) {
+            // inside the cache, which then caches each part as requested, outside the retry policy, which retries
+            // the merged request
+            interceptors.add(requestMerger.forApiKey(apiUrl, apiKey));
+        }
+        if (retryPolicy != null) {
+            interceptors.add(retryPolicy);
+        }
+        if (requestCoalescer != null) {
+            interceptors.add(requestCoalescer.forApiKey(apiUrl, apiKey));
+        }
+        if (circuitBreaker != null) {
+            // inside the coalescer, whose callers share a slot of the bulkhead, outside the hedger, whose hedges do too
+            interceptors.add(circuitBreaker);
+        }
+        if (requestHedger != null) {
+            // inside the coalescer, whose callers share a hedge, outside the bucket, so hedges take tokens
+            interceptors.add(bucket != null ? requestHedger.withRateLimit(bucket) : requestHedger);
+        }
+        if (bucket != null) {
+            // innermost, only requests actually sent take a token
+            interceptors.add(bucket);
+        }
+        return Collections.unmodifiableList(interceptors);
     }
 
     public ConfigurationService configurationService() {
-        return getRestAdapter().create(ConfigurationService.class);
+        return getServiceRegistry().get(ConfigurationService.class);
+    }
+
+    /**
+     * Returns the {@link ImageUrlBuilder} shared by all users of this instance, which loads the configuration through
+     * {@link #configurationService()} and keeps it up to date in the background.
+     */
+    public ImageUrlBuilder imageUrlBuilder() {
+        ImageUrlBuilder builder = imageUrlBuilder;
+        if (builder == null) {
+            synchronized (this) {
+                builder = imageUrlBuilder;
+                if (builder == null) {
+                    builder = new ImageUrlBuilder(this);
+                    imageUrlBuilder = builder;
+                }
+            }
+        }
+        return builder;
     }
 
     public FindService findService() {
-        return getRestAdapter().create(FindService.class);
+        return getServiceRegistry().get(FindService.class);
     }
 
     public MoviesService moviesService() {
-        return getRestAdapter().create(MoviesService.class);
+        return getServiceRegistry().get(MoviesService.class);
     }
 
     public PeopleService personService() {
-        return getRestAdapter().create(PeopleService.class);
+        return getServiceRegistry().get(PeopleService.class);
     }
 
     public SearchService searchService() {
-        return getRestAdapter().create(SearchService.class);
+        return getServiceRegistry().get(SearchService.class);
     }
 
     public TvService tvService() {
-        return getRestAdapter().create(TvService.class);
+        return getServiceRegistry().get(TvService.class);
     }
 
     public TvSeasonsService tvSeasonsService() {
-        return getRestAdapter().create(TvSeasonsService.class);
+        return getServiceRegistry().get(TvSeasonsService.class);
     }
     
     public TvEpisodesService tvEpisodesService() {
-        return getRestAdapter().create(TvEpisodesService.class);
+        return getServiceRegistry().get(TvEpisodesService.class);
     }
     
     public DiscoverService discoverService() {
-        return getRestAdapter().create(DiscoverService.class);
+        return getServiceRegistry().get(DiscoverService.class);
     }
 
     public CollectionService collectionService() {
-        return getRestAdapter().create(CollectionService.class);
+        return getServiceRegistry().get(CollectionService.class);
     }
 }
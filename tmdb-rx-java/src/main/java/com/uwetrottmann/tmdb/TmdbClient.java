@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb;
+
+import com.uwetrottmann.tmdb.interceptors.RateLimiter;
+
+import java.io.IOException;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+/**
+ * Wraps the HTTP client of a {@link Tmdb} generation to observe what only the transport sees, e.g. response headers.
+ */
+final class TmdbClient implements Client {
+
+    private final Client delegate;
+    private final RateLimiter.Bucket bucket;
+
+    TmdbClient(Client delegate, RateLimiter.Bucket bucket) {
+        this.delegate = delegate;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Response response = delegate.execute(request);
+        if (bucket != null) {
+            bucket.onResponse(response.getStatus(), response.getHeaders());
+        }
+        return response;
+    }
+}
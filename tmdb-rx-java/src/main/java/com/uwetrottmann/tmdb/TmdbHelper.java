@@ -18,20 +18,17 @@
 package com.uwetrottmann.tmdb;
 
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
+import com.uwetrottmann.tmdb.adapters.DateTypeAdapter;
+import com.uwetrottmann.tmdb.adapters.EntityTypeAdapterFactory;
+import com.uwetrottmann.tmdb.adapters.IntegerTypeAdapter;
 
-import java.lang.reflect.Type;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
 public class TmdbHelper {
 
-    /** Format for decoding JSON dates in string format. */
-    private static final SimpleDateFormat JSON_STRING_DATE = new SimpleDateFormat("yyy-MM-dd");
+    /** Thread-safe parser for decoding JSON dates in string format. */
+    private static final DateParser JSON_STRING_DATE = new DateParser(TimeZone.getDefault(), true);
 
     /**
      * Create a {@link com.google.gson.GsonBuilder} and register all of the custom types needed in
@@ -43,29 +40,11 @@ public class TmdbHelper {
         GsonBuilder builder = new GsonBuilder();
 
         // class types
-        builder.registerTypeAdapter(Integer.class, new JsonDeserializer<Integer>() {
-            @Override
-            public Integer deserialize(JsonElement json, Type typeOfT,
-                    JsonDeserializationContext context) throws JsonParseException {
-                try {
-                    return Integer.valueOf(json.getAsInt());
-                } catch (NumberFormatException e) {
-                    return null;
-                }
-            }
-        });
-        builder.registerTypeAdapter(Date.class, new JsonDeserializer<Date>() {
-            @Override
-            public Date deserialize(JsonElement json, Type typeOfT,
-                    JsonDeserializationContext context) throws JsonParseException {
+        builder.registerTypeAdapter(Integer.class, new IntegerTypeAdapter());
+        builder.registerTypeAdapter(Date.class, new DateTypeAdapter(JSON_STRING_DATE));
 
-                try {
-                    return JSON_STRING_DATE.parse(json.getAsString());
-                } catch (ParseException e) {
-                    return null;
-                }
-            }
-        });
+        // streaming adapters for the most common entities, avoids reflection
+        builder.registerTypeAdapterFactory(new EntityTypeAdapterFactory());
 
         return builder;
     }
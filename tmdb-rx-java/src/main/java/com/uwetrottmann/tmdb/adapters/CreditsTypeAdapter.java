@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.BaseMember;
+import com.uwetrottmann.tmdb.entities.CastMember;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.CrewMember;
+
+import java.io.IOException;
+
+/**
+ * Reads {@link com.uwetrottmann.tmdb.entities.Credits}, the nested adapters read its (often hundreds of) cast and crew
+ * members.
+ */
+public class CreditsTypeAdapter extends EntityTypeAdapter<Credits> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "cast", "crew", "guest_stars"
+    };
+
+    private static final int ID = 0;
+    private static final int CAST = 1;
+    private static final int CREW = 2;
+    private static final int GUEST_STARS = 3;
+
+    private final TypeAdapter<CastMember> castMemberAdapter;
+    private final TypeAdapter<CrewMember> crewMemberAdapter;
+
+    public CreditsTypeAdapter(Gson gson, TypeAdapter<Credits> delegate) {
+        super(delegate, FIELD_NAMES);
+        castMemberAdapter = gson.getAdapter(CastMember.class);
+        crewMemberAdapter = gson.getAdapter(CrewMember.class);
+    }
+
+    @Override
+    protected Credits newEntity() {
+        return new Credits();
+    }
+
+    @Override
+    protected void readField(JsonReader in, Credits credits, int field) throws IOException {
+        switch (field) {
+            case ID:
+                credits.id = readInteger(in);
+                break;
+            case CAST:
+                credits.cast = readList(in, castMemberAdapter);
+                break;
+            case CREW:
+                credits.crew = readList(in, crewMemberAdapter);
+                break;
+            case GUEST_STARS:
+                credits.guest_stars = readList(in, castMemberAdapter);
+                break;
+        }
+    }
+
+    private static final String[] MEMBER_FIELD_NAMES = {
+            "id", "credit_id", "name", "profile_path"
+    };
+
+    private static final int MEMBER_ID = 0;
+    private static final int MEMBER_CREDIT_ID = 1;
+    private static final int MEMBER_NAME = 2;
+    private static final int MEMBER_PROFILE_PATH = 3;
+    private static final int MEMBER_FIELD_COUNT = 4;
+
+    private static void readMemberField(JsonReader in, BaseMember member, int field) throws IOException {
+        switch (field) {
+            case MEMBER_ID:
+                member.id = readInteger(in);
+                break;
+            case MEMBER_CREDIT_ID:
+                member.credit_id = readString(in);
+                break;
+            case MEMBER_NAME:
+                member.name = readString(in);
+                break;
+            case MEMBER_PROFILE_PATH:
+                member.profile_path = readString(in);
+                break;
+        }
+    }
+
+    public static class CastMemberTypeAdapter extends EntityTypeAdapter<CastMember> {
+
+        private static final int CHARACTER = MEMBER_FIELD_COUNT;
+        private static final int ORDER = MEMBER_FIELD_COUNT + 1;
+
+        public CastMemberTypeAdapter(TypeAdapter<CastMember> delegate) {
+            super(delegate, fieldNames(MEMBER_FIELD_NAMES, "character", "order"));
+        }
+
+        @Override
+        protected CastMember newEntity() {
+            return new CastMember();
+        }
+
+        @Override
+        protected void readField(JsonReader in, CastMember member, int field) throws IOException {
+            switch (field) {
+                case CHARACTER:
+                    member.character = readString(in);
+                    break;
+                case ORDER:
+                    member.order = readInteger(in);
+                    break;
+                default:
+                    readMemberField(in, member, field);
+            }
+        }
+    }
+
+    public static class CrewMemberTypeAdapter extends EntityTypeAdapter<CrewMember> {
+
+        private static final int DEPARTMENT = MEMBER_FIELD_COUNT;
+        private static final int JOB = MEMBER_FIELD_COUNT + 1;
+
+        public CrewMemberTypeAdapter(TypeAdapter<CrewMember> delegate) {
+            super(delegate, fieldNames(MEMBER_FIELD_NAMES, "department", "job"));
+        }
+
+        @Override
+        protected CrewMember newEntity() {
+            return new CrewMember();
+        }
+
+        @Override
+        protected void readField(JsonReader in, CrewMember member, int field) throws IOException {
+            switch (field) {
+                case DEPARTMENT:
+                    member.department = readString(in);
+                    break;
+                case JOB:
+                    member.job = readString(in);
+                    break;
+                default:
+                    readMemberField(in, member, field);
+            }
+        }
+    }
+}
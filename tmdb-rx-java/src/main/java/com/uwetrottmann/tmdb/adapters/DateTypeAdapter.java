@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.uwetrottmann.tmdb.DateParser;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Reads and writes {@code yyyy-MM-dd} dates using a {@link com.uwetrottmann.tmdb.DateParser}, values that are not a
+ * date become {@code null}.
+ */
+public class DateTypeAdapter extends TypeAdapter<Date> {
+
+    private final DateParser parser;
+
+    public DateTypeAdapter(DateParser parser) {
+        this.parser = parser;
+    }
+
+    @Override
+    public void write(JsonWriter out, Date value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(parser.format(value));
+        }
+    }
+
+    @Override
+    public Date read(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                in.skipValue();
+                return null;
+            default:
+                return parser.parse(in.nextString());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of the hand-written streaming adapters for the TMDb entities.
+ * <p>
+ * Reads the tokens of a JSON object directly into a new entity, looking up each property name in a table of the known
+ * fields and skipping any other property without decoding it. Writing is left to the reflective adapter Gson would
+ * have used otherwise.
+ */
+public abstract class EntityTypeAdapter<T> extends TypeAdapter<T> {
+
+    private final TypeAdapter<T> delegate;
+    private final Map<String, Integer> fields;
+
+    /**
+     * @param delegate The adapter used for writing.
+     * @param fieldNames The JSON property names of the fields, {@link #readField} receives the index of the name.
+     */
+    protected EntityTypeAdapter(TypeAdapter<T> delegate, String... fieldNames) {
+        this.delegate = delegate;
+        this.fields = new HashMap<String, Integer>(fieldNames.length * 2);
+        for (int i = 0; i < fieldNames.length; i++) {
+            fields.put(fieldNames[i], i);
+        }
+    }
+
+    /**
+     * Returns the concatenation of the given field name arrays, e.g. for an entity extending another one.
+     */
+    protected static String[] fieldNames(String[] inherited, String... own) {
+        String[] names = new String[inherited.length + own.length];
+        System.arraycopy(inherited, 0, names, 0, inherited.length);
+        System.arraycopy(own, 0, names, inherited.length, own.length);
+        return names;
+    }
+
+    protected abstract T newEntity();
+
+    /**
+     * Read the value of the known field at the given index of the field names into the entity.
+     */
+    protected abstract void readField(JsonReader in, T entity, int field) throws IOException;
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+        delegate.write(out, value);
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        T entity = newEntity();
+        in.beginObject();
+        while (in.hasNext()) {
+            Integer field = fields.get(in.nextName());
+            if (field == null) {
+                in.skipValue();
+            } else {
+                readField(in, entity, field);
+            }
+        }
+        in.endObject();
+        return entity;
+    }
+
+    /**
+     * Reads an integer like the {@link Integer} adapter of {@link com.uwetrottmann.tmdb.TmdbHelper#getGsonBuilder()}:
+     * values that are not a number become {@code null}.
+     */
+    public static Integer readInteger(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NUMBER:
+                try {
+                    return in.nextInt();
+                } catch (NumberFormatException e) {
+                    // not an int, the reader still holds the number
+                    return toInt(in.nextString());
+                }
+            case STRING:
+                try {
+                    return Integer.valueOf(in.nextString());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            default:
+                in.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Narrows a decimal or too large number the same way {@link com.google.gson.JsonPrimitive#getAsInt()} does.
+     */
+    private static Integer toInt(String number) {
+        try {
+            return (int) Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            try {
+                return new BigDecimal(number).intValue();
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+    }
+
+    public static Double readDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextDouble();
+    }
+
+    public static Float readFloat(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return (float) in.nextDouble();
+    }
+
+    public static Boolean readBoolean(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case STRING:
+                return Boolean.parseBoolean(in.nextString());
+            default:
+                return in.nextBoolean();
+        }
+    }
+
+    public static String readString(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(in.nextBoolean());
+            default:
+                return in.nextString();
+        }
+    }
+
+    /**
+     * Reads a JSON array into an {@link java.util.ArrayList} using the given adapter for its elements.
+     */
+    public static <E> List<E> readList(JsonReader in, TypeAdapter<E> elementAdapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<E> list = new ArrayList<E>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.CastMember;
+import com.uwetrottmann.tmdb.entities.Collection;
+import com.uwetrottmann.tmdb.entities.CollectionResultsPage;
+import com.uwetrottmann.tmdb.entities.Company;
+import com.uwetrottmann.tmdb.entities.CompanyResultsPage;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.CrewMember;
+import com.uwetrottmann.tmdb.entities.Image;
+import com.uwetrottmann.tmdb.entities.Images;
+import com.uwetrottmann.tmdb.entities.Keyword;
+import com.uwetrottmann.tmdb.entities.KeywordResultsPage;
+import com.uwetrottmann.tmdb.entities.ListResultsPage;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.PersonResultsPage;
+import com.uwetrottmann.tmdb.entities.Review;
+import com.uwetrottmann.tmdb.entities.ReviewResultsPage;
+import com.uwetrottmann.tmdb.entities.TvEpisode;
+import com.uwetrottmann.tmdb.entities.TvResultsPage;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.entities.TvShow;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+import com.uwetrottmann.tmdb.entities.Videos;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Provides the streaming {@link EntityTypeAdapter}s for the entities that make up most of the TMDb responses, in
+ * particular of large {@code append_to_response} requests. Any other entity is left to Gson's reflective adapter.
+ */
+public class EntityTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+
+        if (rawType == Movie.class) {
+            return (TypeAdapter<T>) new MovieTypeAdapter(gson, delegate(gson, Movie.class));
+        }
+        if (rawType == TvShow.class) {
+            return (TypeAdapter<T>) new TvShowTypeAdapter(gson, delegate(gson, TvShow.class));
+        }
+        if (rawType == TvShowComplete.class) {
+            return (TypeAdapter<T>) new TvShowCompleteTypeAdapter(gson, delegate(gson, TvShowComplete.class));
+        }
+        if (rawType == TvSeason.class) {
+            return (TypeAdapter<T>) new TvSeasonTypeAdapter(gson, delegate(gson, TvSeason.class));
+        }
+        if (rawType == TvEpisode.class) {
+            return (TypeAdapter<T>) new TvEpisodeTypeAdapter(gson, delegate(gson, TvEpisode.class));
+        }
+        if (rawType == Person.class) {
+            return (TypeAdapter<T>) new PersonTypeAdapter(gson, delegate(gson, Person.class));
+        }
+        if (rawType == Credits.class) {
+            return (TypeAdapter<T>) new CreditsTypeAdapter(gson, delegate(gson, Credits.class));
+        }
+        if (rawType == CastMember.class) {
+            return (TypeAdapter<T>) new CreditsTypeAdapter.CastMemberTypeAdapter(delegate(gson, CastMember.class));
+        }
+        if (rawType == CrewMember.class) {
+            return (TypeAdapter<T>) new CreditsTypeAdapter.CrewMemberTypeAdapter(delegate(gson, CrewMember.class));
+        }
+        if (rawType == Images.class) {
+            return (TypeAdapter<T>) new ImagesTypeAdapter(gson, delegate(gson, Images.class));
+        }
+        if (rawType == Image.class) {
+            return (TypeAdapter<T>) new ImagesTypeAdapter.ImageTypeAdapter(delegate(gson, Image.class));
+        }
+        if (rawType == Videos.class) {
+            return (TypeAdapter<T>) new VideosTypeAdapter(gson, delegate(gson, Videos.class));
+        }
+        if (rawType == Videos.Video.class) {
+            return (TypeAdapter<T>) new VideosTypeAdapter.VideoTypeAdapter(delegate(gson, Videos.Video.class));
+        }
+
+        if (rawType == MovieResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<MovieResultsPage, Movie>(
+                    delegate(gson, MovieResultsPage.class), gson.getAdapter(Movie.class)) {
+                @Override
+                protected MovieResultsPage newEntity() {
+                    return new MovieResultsPage();
+                }
+
+                @Override
+                protected void setResults(MovieResultsPage page, List<Movie> results) {
+                    page.results = results;
+                }
+            };
+        }
+        if (rawType == TvResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<TvResultsPage, TvShow>(
+                    delegate(gson, TvResultsPage.class), gson.getAdapter(TvShow.class)) {
+                @Override
+                protected TvResultsPage newEntity() {
+                    return new TvResultsPage();
+                }
+
+                @Override
+                protected void setResults(TvResultsPage page, List<TvShow> results) {
+                    page.results = results;
+                }
+            };
+        }
+        if (rawType == PersonResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<PersonResultsPage, PersonResultsPage.ResultsPage>(
+                    delegate(gson, PersonResultsPage.class), gson.getAdapter(PersonResultsPage.ResultsPage.class)) {
+                @Override
+                protected PersonResultsPage newEntity() {
+                    return new PersonResultsPage();
+                }
+
+                @Override
+                protected void setResults(PersonResultsPage page, List<PersonResultsPage.ResultsPage> results) {
+                    page.results = results;
+                }
+            };
+        }
+        if (rawType == CollectionResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<CollectionResultsPage, Collection>(
+                    delegate(gson, CollectionResultsPage.class), gson.getAdapter(Collection.class)) {
+                @Override
+                protected CollectionResultsPage newEntity() {
+                    return new CollectionResultsPage();
+                }
+
+                @Override
+                protected void setResults(CollectionResultsPage page, List<Collection> results) {
+                    page.results = results;
+                }
+            };
+        }
+        if (rawType == CompanyResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<CompanyResultsPage, Company>(
+                    delegate(gson, CompanyResultsPage.class), gson.getAdapter(Company.class)) {
+                @Override
+                protected CompanyResultsPage newEntity() {
+                    return new CompanyResultsPage();
+                }
+
+                @Override
+                protected void setResults(CompanyResultsPage page, List<Company> results) {
+                    page.results = results;
+                }
+            };
+        }
+        if (rawType == KeywordResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<KeywordResultsPage, Keyword>(
+                    delegate(gson, KeywordResultsPage.class), gson.getAdapter(Keyword.class)) {
+                @Override
+                protected KeywordResultsPage newEntity() {
+                    return new KeywordResultsPage();
+                }
+
+                @Override
+                protected void setResults(KeywordResultsPage page, List<Keyword> results) {
+                    page.results = results;
+                }
+            };
+        }
+        if (rawType == ListResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<ListResultsPage, com.uwetrottmann.tmdb.entities.List>(
+                    delegate(gson, ListResultsPage.class),
+                    gson.getAdapter(com.uwetrottmann.tmdb.entities.List.class), "id") {
+                @Override
+                protected ListResultsPage newEntity() {
+                    return new ListResultsPage();
+                }
+
+                @Override
+                protected void setResults(ListResultsPage page, List<com.uwetrottmann.tmdb.entities.List> results) {
+                    page.results = results;
+                }
+
+                @Override
+                protected void readExtraField(JsonReader in, ListResultsPage page, int field) throws IOException {
+                    page.id = readInteger(in);
+                }
+            };
+        }
+        if (rawType == ReviewResultsPage.class) {
+            return (TypeAdapter<T>) new ResultsPageTypeAdapter<ReviewResultsPage, Review>(
+                    delegate(gson, ReviewResultsPage.class), gson.getAdapter(Review.class), "id", "url") {
+                @Override
+                protected ReviewResultsPage newEntity() {
+                    return new ReviewResultsPage();
+                }
+
+                @Override
+                protected void setResults(ReviewResultsPage page, List<Review> results) {
+                    page.results = results;
+                }
+
+                @Override
+                protected void readExtraField(JsonReader in, ReviewResultsPage page, int field) throws IOException {
+                    if (field == FIELD_COUNT) {
+                        page.id = readInteger(in);
+                    } else {
+                        page.url = readString(in);
+                    }
+                }
+            };
+        }
+
+        return null;
+    }
+
+    private <E> TypeAdapter<E> delegate(Gson gson, Class<E> type) {
+        return gson.getDelegateAdapter(this, TypeToken.get(type));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.Image;
+import com.uwetrottmann.tmdb.entities.Images;
+
+import java.io.IOException;
+
+public class ImagesTypeAdapter extends EntityTypeAdapter<Images> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "backdrops", "posters", "stills"
+    };
+
+    private static final int ID = 0;
+    private static final int BACKDROPS = 1;
+    private static final int POSTERS = 2;
+    private static final int STILLS = 3;
+
+    private final TypeAdapter<Image> imageAdapter;
+
+    public ImagesTypeAdapter(Gson gson, TypeAdapter<Images> delegate) {
+        super(delegate, FIELD_NAMES);
+        imageAdapter = gson.getAdapter(Image.class);
+    }
+
+    @Override
+    protected Images newEntity() {
+        return new Images();
+    }
+
+    @Override
+    protected void readField(JsonReader in, Images images, int field) throws IOException {
+        switch (field) {
+            case ID:
+                images.id = readInteger(in);
+                break;
+            case BACKDROPS:
+                images.backdrops = readList(in, imageAdapter);
+                break;
+            case POSTERS:
+                images.posters = readList(in, imageAdapter);
+                break;
+            case STILLS:
+                images.stills = readList(in, imageAdapter);
+                break;
+        }
+    }
+
+    public static class ImageTypeAdapter extends EntityTypeAdapter<Image> {
+
+        private static final String[] FIELD_NAMES = {
+                "file_path", "width", "height", "iso_639_1", "aspect_ratio", "vote_average", "vote_count"
+        };
+
+        private static final int FILE_PATH = 0;
+        private static final int WIDTH = 1;
+        private static final int HEIGHT = 2;
+        private static final int ISO_639_1 = 3;
+        private static final int ASPECT_RATIO = 4;
+        private static final int VOTE_AVERAGE = 5;
+        private static final int VOTE_COUNT = 6;
+
+        public ImageTypeAdapter(TypeAdapter<Image> delegate) {
+            super(delegate, FIELD_NAMES);
+        }
+
+        @Override
+        protected Image newEntity() {
+            return new Image();
+        }
+
+        @Override
+        protected void readField(JsonReader in, Image image, int field) throws IOException {
+            switch (field) {
+                case FILE_PATH:
+                    image.file_path = readString(in);
+                    break;
+                case WIDTH:
+                    image.width = readInteger(in);
+                    break;
+                case HEIGHT:
+                    image.height = readInteger(in);
+                    break;
+                case ISO_639_1:
+                    image.iso_639_1 = readString(in);
+                    break;
+                case ASPECT_RATIO:
+                    image.aspect_ratio = readFloat(in);
+                    break;
+                case VOTE_AVERAGE:
+                    image.vote_average = readFloat(in);
+                    break;
+                case VOTE_COUNT:
+                    image.vote_count = readInteger(in);
+                    break;
+            }
+        }
+    }
+}
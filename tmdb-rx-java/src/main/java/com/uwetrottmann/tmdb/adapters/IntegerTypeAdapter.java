@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads integers, values that are not a number (e.g. an empty string) become {@code null}.
+ *
+ * @see EntityTypeAdapter#readInteger(com.google.gson.stream.JsonReader)
+ */
+public class IntegerTypeAdapter extends TypeAdapter<Integer> {
+
+    @Override
+    public void write(JsonWriter out, Integer value) throws IOException {
+        out.value(value);
+    }
+
+    @Override
+    public Integer read(JsonReader in) throws IOException {
+        return EntityTypeAdapter.readInteger(in);
+    }
+}
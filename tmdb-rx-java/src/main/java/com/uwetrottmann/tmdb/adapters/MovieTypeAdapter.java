@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.Collection;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Genre;
+import com.uwetrottmann.tmdb.entities.Images;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.ProductionCompany;
+import com.uwetrottmann.tmdb.entities.ProductionCountry;
+import com.uwetrottmann.tmdb.entities.Releases;
+import com.uwetrottmann.tmdb.entities.SpokenLanguage;
+import com.uwetrottmann.tmdb.entities.Videos;
+
+import java.io.IOException;
+import java.util.Date;
+
+public class MovieTypeAdapter extends EntityTypeAdapter<Movie> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "adult", "backdrop_path", "belongs_to_collection", "budget", "genres", "homepage", "imdb_id",
+            "original_title", "overview", "popularity", "poster_path", "production_companies",
+            "production_countries", "release_date", "revenue", "runtime", "spoken_languages", "tagline", "title",
+            "vote_average", "vote_count", "videos", "releases", "credits", "similar",
+            "images"
+    };
+
+    private static final int ID = 0;
+    private static final int ADULT = 1;
+    private static final int BACKDROP_PATH = 2;
+    private static final int BELONGS_TO_COLLECTION = 3;
+    private static final int BUDGET = 4;
+    private static final int GENRES = 5;
+    private static final int HOMEPAGE = 6;
+    private static final int IMDB_ID = 7;
+    private static final int ORIGINAL_TITLE = 8;
+    private static final int OVERVIEW = 9;
+    private static final int POPULARITY = 10;
+    private static final int POSTER_PATH = 11;
+    private static final int PRODUCTION_COMPANIES = 12;
+    private static final int PRODUCTION_COUNTRIES = 13;
+    private static final int RELEASE_DATE = 14;
+    private static final int REVENUE = 15;
+    private static final int RUNTIME = 16;
+    private static final int SPOKEN_LANGUAGES = 17;
+    private static final int TAGLINE = 18;
+    private static final int TITLE = 19;
+    private static final int VOTE_AVERAGE = 20;
+    private static final int VOTE_COUNT = 21;
+    private static final int VIDEOS = 22;
+    private static final int RELEASES = 23;
+    private static final int CREDITS = 24;
+    private static final int SIMILAR = 25;
+    private static final int IMAGES = 26;
+
+    private final TypeAdapter<Date> dateAdapter;
+    private final TypeAdapter<Collection> collectionAdapter;
+    private final TypeAdapter<Genre> genreAdapter;
+    private final TypeAdapter<ProductionCompany> productionCompanyAdapter;
+    private final TypeAdapter<ProductionCountry> productionCountryAdapter;
+    private final TypeAdapter<SpokenLanguage> spokenLanguageAdapter;
+    private final TypeAdapter<Videos> videosAdapter;
+    private final TypeAdapter<Releases> releasesAdapter;
+    private final TypeAdapter<Credits> creditsAdapter;
+    private final TypeAdapter<MovieResultsPage> similarAdapter;
+    private final TypeAdapter<Images> imagesAdapter;
+
+    public MovieTypeAdapter(Gson gson, TypeAdapter<Movie> delegate) {
+        super(delegate, FIELD_NAMES);
+        dateAdapter = gson.getAdapter(Date.class);
+        collectionAdapter = gson.getAdapter(Collection.class);
+        genreAdapter = gson.getAdapter(Genre.class);
+        productionCompanyAdapter = gson.getAdapter(ProductionCompany.class);
+        productionCountryAdapter = gson.getAdapter(ProductionCountry.class);
+        spokenLanguageAdapter = gson.getAdapter(SpokenLanguage.class);
+        videosAdapter = gson.getAdapter(Videos.class);
+        releasesAdapter = gson.getAdapter(Releases.class);
+        creditsAdapter = gson.getAdapter(Credits.class);
+        similarAdapter = gson.getAdapter(MovieResultsPage.class);
+        imagesAdapter = gson.getAdapter(Images.class);
+    }
+
+    @Override
+    protected Movie newEntity() {
+        return new Movie();
+    }
+
+    @Override
+    protected void readField(JsonReader in, Movie movie, int field) throws IOException {
+        switch (field) {
+            case ID:
+                movie.id = readInteger(in);
+                break;
+            case ADULT:
+                movie.adult = readBoolean(in);
+                break;
+            case BACKDROP_PATH:
+                movie.backdrop_path = readString(in);
+                break;
+            case BELONGS_TO_COLLECTION:
+                movie.belongs_to_collection = collectionAdapter.read(in);
+                break;
+            case BUDGET:
+                movie.budget = readInteger(in);
+                break;
+            case GENRES:
+                movie.genres = readList(in, genreAdapter);
+                break;
+            case HOMEPAGE:
+                movie.homepage = readString(in);
+                break;
+            case IMDB_ID:
+                movie.imdb_id = readString(in);
+                break;
+            case ORIGINAL_TITLE:
+                movie.original_title = readString(in);
+                break;
+            case OVERVIEW:
+                movie.overview = readString(in);
+                break;
+            case POPULARITY:
+                movie.popularity = readDouble(in);
+                break;
+            case POSTER_PATH:
+                movie.poster_path = readString(in);
+                break;
+            case PRODUCTION_COMPANIES:
+                movie.production_companies = readList(in, productionCompanyAdapter);
+                break;
+            case PRODUCTION_COUNTRIES:
+                movie.production_countries = readList(in, productionCountryAdapter);
+                break;
+            case RELEASE_DATE:
+                movie.release_date = dateAdapter.read(in);
+                break;
+            case REVENUE:
+                movie.revenue = readInteger(in);
+                break;
+            case RUNTIME:
+                movie.runtime = readInteger(in);
+                break;
+            case SPOKEN_LANGUAGES:
+                movie.spoken_languages = readList(in, spokenLanguageAdapter);
+                break;
+            case TAGLINE:
+                movie.tagline = readString(in);
+                break;
+            case TITLE:
+                movie.title = readString(in);
+                break;
+            case VOTE_AVERAGE:
+                movie.vote_average = readDouble(in);
+                break;
+            case VOTE_COUNT:
+                movie.vote_count = readInteger(in);
+                break;
+            case VIDEOS:
+                movie.videos = videosAdapter.read(in);
+                break;
+            case RELEASES:
+                movie.releases = releasesAdapter.read(in);
+                break;
+            case CREDITS:
+                movie.credits = creditsAdapter.read(in);
+                break;
+            case SIMILAR:
+                movie.similar = similarAdapter.read(in);
+                break;
+            case IMAGES:
+                movie.images = imagesAdapter.read(in);
+                break;
+        }
+    }
+}
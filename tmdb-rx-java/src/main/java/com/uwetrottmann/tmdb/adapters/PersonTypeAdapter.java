@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.Person;
+
+import java.io.IOException;
+import java.util.Date;
+
+public class PersonTypeAdapter extends EntityTypeAdapter<Person> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "name", "place_of_birth", "profile_path", "homepage", "biography", "birthday", "deathday"
+    };
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int PLACE_OF_BIRTH = 2;
+    private static final int PROFILE_PATH = 3;
+    private static final int HOMEPAGE = 4;
+    private static final int BIOGRAPHY = 5;
+    private static final int BIRTHDAY = 6;
+    private static final int DEATHDAY = 7;
+
+    private final TypeAdapter<Date> dateAdapter;
+
+    public PersonTypeAdapter(Gson gson, TypeAdapter<Person> delegate) {
+        super(delegate, FIELD_NAMES);
+        dateAdapter = gson.getAdapter(Date.class);
+    }
+
+    @Override
+    protected Person newEntity() {
+        return new Person();
+    }
+
+    @Override
+    protected void readField(JsonReader in, Person person, int field) throws IOException {
+        switch (field) {
+            case ID:
+                person.id = readInteger(in);
+                break;
+            case NAME:
+                person.name = readString(in);
+                break;
+            case PLACE_OF_BIRTH:
+                person.place_of_birth = readString(in);
+                break;
+            case PROFILE_PATH:
+                person.profile_path = readString(in);
+                break;
+            case HOMEPAGE:
+                person.homepage = readString(in);
+                break;
+            case BIOGRAPHY:
+                person.biography = readString(in);
+                break;
+            case BIRTHDAY:
+                person.birthday = dateAdapter.read(in);
+                break;
+            case DEATHDAY:
+                person.deathday = dateAdapter.read(in);
+                break;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.BaseResultsPage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads a {@link com.uwetrottmann.tmdb.entities.BaseResultsPage} subclass, its results are read with the adapter of
+ * the result type.
+ */
+public abstract class ResultsPageTypeAdapter<P extends BaseResultsPage, E> extends EntityTypeAdapter<P> {
+
+    private static final String[] FIELD_NAMES = {
+            "page", "total_pages", "total_results", "results"
+    };
+
+    private static final int PAGE = 0;
+    private static final int TOTAL_PAGES = 1;
+    private static final int TOTAL_RESULTS = 2;
+    private static final int RESULTS = 3;
+
+    /** Index of the first of the extra field names passed to the constructor. */
+    protected static final int FIELD_COUNT = 4;
+
+    private final TypeAdapter<E> resultAdapter;
+
+    /**
+     * @param extraFieldNames Names of fields only this page type has, read by {@link #readExtraField}.
+     */
+    protected ResultsPageTypeAdapter(TypeAdapter<P> delegate, TypeAdapter<E> resultAdapter,
+            String... extraFieldNames) {
+        super(delegate, fieldNames(FIELD_NAMES, extraFieldNames));
+        this.resultAdapter = resultAdapter;
+    }
+
+    protected abstract void setResults(P page, List<E> results);
+
+    /**
+     * Read a field of the extra field names, the index starts at {@link #FIELD_COUNT}.
+     */
+    protected void readExtraField(JsonReader in, P page, int field) throws IOException {
+        in.skipValue();
+    }
+
+    @Override
+    protected void readField(JsonReader in, P page, int field) throws IOException {
+        switch (field) {
+            case PAGE:
+                page.page = readInteger(in);
+                break;
+            case TOTAL_PAGES:
+                page.total_pages = readInteger(in);
+                break;
+            case TOTAL_RESULTS:
+                page.total_results = readInteger(in);
+                break;
+            case RESULTS:
+                setResults(page, readList(in, resultAdapter));
+                break;
+            default:
+                readExtraField(in, page, field);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.CastMember;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.CrewMember;
+import com.uwetrottmann.tmdb.entities.ExternalIds;
+import com.uwetrottmann.tmdb.entities.Images;
+import com.uwetrottmann.tmdb.entities.TvEpisode;
+
+import java.io.IOException;
+import java.util.Date;
+
+public class TvEpisodeTypeAdapter extends EntityTypeAdapter<TvEpisode> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "air_date", "crew", "episode_number", "guest_stars", "name", "overview", "production_code",
+            "season_number", "still_path", "vote_average", "vote_count", "images", "external_ids", "credits"
+    };
+
+    private static final int ID = 0;
+    private static final int AIR_DATE = 1;
+    private static final int CREW = 2;
+    private static final int EPISODE_NUMBER = 3;
+    private static final int GUEST_STARS = 4;
+    private static final int NAME = 5;
+    private static final int OVERVIEW = 6;
+    private static final int PRODUCTION_CODE = 7;
+    private static final int SEASON_NUMBER = 8;
+    private static final int STILL_PATH = 9;
+    private static final int VOTE_AVERAGE = 10;
+    private static final int VOTE_COUNT = 11;
+    private static final int IMAGES = 12;
+    private static final int EXTERNAL_IDS = 13;
+    private static final int CREDITS = 14;
+
+    private final TypeAdapter<Date> dateAdapter;
+    private final TypeAdapter<CrewMember> crewMemberAdapter;
+    private final TypeAdapter<CastMember> castMemberAdapter;
+    private final TypeAdapter<Images> imagesAdapter;
+    private final TypeAdapter<ExternalIds> externalIdsAdapter;
+    private final TypeAdapter<Credits> creditsAdapter;
+
+    public TvEpisodeTypeAdapter(Gson gson, TypeAdapter<TvEpisode> delegate) {
+        super(delegate, FIELD_NAMES);
+        dateAdapter = gson.getAdapter(Date.class);
+        crewMemberAdapter = gson.getAdapter(CrewMember.class);
+        castMemberAdapter = gson.getAdapter(CastMember.class);
+        imagesAdapter = gson.getAdapter(Images.class);
+        externalIdsAdapter = gson.getAdapter(ExternalIds.class);
+        creditsAdapter = gson.getAdapter(Credits.class);
+    }
+
+    @Override
+    protected TvEpisode newEntity() {
+        return new TvEpisode();
+    }
+
+    @Override
+    protected void readField(JsonReader in, TvEpisode episode, int field) throws IOException {
+        switch (field) {
+            case ID:
+                episode.id = readInteger(in);
+                break;
+            case AIR_DATE:
+                episode.air_date = dateAdapter.read(in);
+                break;
+            case CREW:
+                episode.crew = readList(in, crewMemberAdapter);
+                break;
+            case EPISODE_NUMBER:
+                episode.episode_number = readInteger(in);
+                break;
+            case GUEST_STARS:
+                episode.guest_stars = readList(in, castMemberAdapter);
+                break;
+            case NAME:
+                episode.name = readString(in);
+                break;
+            case OVERVIEW:
+                episode.overview = readString(in);
+                break;
+            case PRODUCTION_CODE:
+                episode.production_code = readString(in);
+                break;
+            case SEASON_NUMBER:
+                episode.season_number = readInteger(in);
+                break;
+            case STILL_PATH:
+                episode.still_path = readString(in);
+                break;
+            case VOTE_AVERAGE:
+                episode.vote_average = readDouble(in);
+                break;
+            case VOTE_COUNT:
+                episode.vote_count = readInteger(in);
+                break;
+            case IMAGES:
+                episode.images = imagesAdapter.read(in);
+                break;
+            case EXTERNAL_IDS:
+                episode.external_ids = externalIdsAdapter.read(in);
+                break;
+            case CREDITS:
+                episode.credits = creditsAdapter.read(in);
+                break;
+        }
+    }
+}
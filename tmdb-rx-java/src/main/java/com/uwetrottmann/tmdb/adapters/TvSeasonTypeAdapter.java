@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.ExternalIds;
+import com.uwetrottmann.tmdb.entities.Images;
+import com.uwetrottmann.tmdb.entities.TvEpisode;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+
+import java.io.IOException;
+import java.util.Date;
+
+public class TvSeasonTypeAdapter extends EntityTypeAdapter<TvSeason> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "air_date", "episodes", "episode_count", "name", "overview", "poster_path", "season_number",
+            "credits", "images", "external_ids"
+    };
+
+    private static final int ID = 0;
+    private static final int AIR_DATE = 1;
+    private static final int EPISODES = 2;
+    private static final int EPISODE_COUNT = 3;
+    private static final int NAME = 4;
+    private static final int OVERVIEW = 5;
+    private static final int POSTER_PATH = 6;
+    private static final int SEASON_NUMBER = 7;
+    private static final int CREDITS = 8;
+    private static final int IMAGES = 9;
+    private static final int EXTERNAL_IDS = 10;
+
+    private final TypeAdapter<Date> dateAdapter;
+    private final TypeAdapter<TvEpisode> episodeAdapter;
+    private final TypeAdapter<Credits> creditsAdapter;
+    private final TypeAdapter<Images> imagesAdapter;
+    private final TypeAdapter<ExternalIds> externalIdsAdapter;
+
+    public TvSeasonTypeAdapter(Gson gson, TypeAdapter<TvSeason> delegate) {
+        super(delegate, FIELD_NAMES);
+        dateAdapter = gson.getAdapter(Date.class);
+        episodeAdapter = gson.getAdapter(TvEpisode.class);
+        creditsAdapter = gson.getAdapter(Credits.class);
+        imagesAdapter = gson.getAdapter(Images.class);
+        externalIdsAdapter = gson.getAdapter(ExternalIds.class);
+    }
+
+    @Override
+    protected TvSeason newEntity() {
+        return new TvSeason();
+    }
+
+    @Override
+    protected void readField(JsonReader in, TvSeason season, int field) throws IOException {
+        switch (field) {
+            case ID:
+                season.id = readInteger(in);
+                break;
+            case AIR_DATE:
+                season.air_date = dateAdapter.read(in);
+                break;
+            case EPISODES:
+                season.episodes = readList(in, episodeAdapter);
+                break;
+            case EPISODE_COUNT:
+                season.episode_count = readInteger(in);
+                break;
+            case NAME:
+                season.name = readString(in);
+                break;
+            case OVERVIEW:
+                season.overview = readString(in);
+                break;
+            case POSTER_PATH:
+                season.poster_path = readString(in);
+                break;
+            case SEASON_NUMBER:
+                season.season_number = readInteger(in);
+                break;
+            case CREDITS:
+                season.credits = creditsAdapter.read(in);
+                break;
+            case IMAGES:
+                season.images = imagesAdapter.read(in);
+                break;
+            case EXTERNAL_IDS:
+                season.external_ids = externalIdsAdapter.read(in);
+                break;
+        }
+    }
+}
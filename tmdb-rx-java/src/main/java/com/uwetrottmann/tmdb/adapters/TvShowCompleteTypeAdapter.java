@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.ExternalIds;
+import com.uwetrottmann.tmdb.entities.Genre;
+import com.uwetrottmann.tmdb.entities.Images;
+import com.uwetrottmann.tmdb.entities.Network;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.ProductionCompany;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import java.io.IOException;
+import java.util.Date;
+
+public class TvShowCompleteTypeAdapter extends EntityTypeAdapter<TvShowComplete> {
+
+    private static final String[] FIELD_NAMES = fieldNames(TvShowTypeAdapter.FIELD_NAMES,
+            "created_by", "networks", "episode_run_time", "genres", "homepage", "in_production", "languages",
+            "last_air_date", "number_of_episodes", "number_of_seasons", "original_language", "overview",
+            "production_companies", "seasons", "status", "type", "images", "credits", "external_ids"
+    );
+
+    private static final int CREATED_BY = TvShowTypeAdapter.FIELD_COUNT;
+    private static final int NETWORKS = CREATED_BY + 1;
+    private static final int EPISODE_RUN_TIME = CREATED_BY + 2;
+    private static final int GENRES = CREATED_BY + 3;
+    private static final int HOMEPAGE = CREATED_BY + 4;
+    private static final int IN_PRODUCTION = CREATED_BY + 5;
+    private static final int LANGUAGES = CREATED_BY + 6;
+    private static final int LAST_AIR_DATE = CREATED_BY + 7;
+    private static final int NUMBER_OF_EPISODES = CREATED_BY + 8;
+    private static final int NUMBER_OF_SEASONS = CREATED_BY + 9;
+    private static final int ORIGINAL_LANGUAGE = CREATED_BY + 10;
+    private static final int OVERVIEW = CREATED_BY + 11;
+    private static final int PRODUCTION_COMPANIES = CREATED_BY + 12;
+    private static final int SEASONS = CREATED_BY + 13;
+    private static final int STATUS = CREATED_BY + 14;
+    private static final int TYPE = CREATED_BY + 15;
+    private static final int IMAGES = CREATED_BY + 16;
+    private static final int CREDITS = CREATED_BY + 17;
+    private static final int EXTERNAL_IDS = CREATED_BY + 18;
+
+    private final TypeAdapter<Date> dateAdapter;
+    private final TypeAdapter<String> stringAdapter;
+    private final TypeAdapter<Integer> integerAdapter;
+    private final TypeAdapter<Person> personAdapter;
+    private final TypeAdapter<Network> networkAdapter;
+    private final TypeAdapter<Genre> genreAdapter;
+    private final TypeAdapter<ProductionCompany> productionCompanyAdapter;
+    private final TypeAdapter<TvSeason> seasonAdapter;
+    private final TypeAdapter<Images> imagesAdapter;
+    private final TypeAdapter<Credits> creditsAdapter;
+    private final TypeAdapter<ExternalIds> externalIdsAdapter;
+
+    public TvShowCompleteTypeAdapter(Gson gson, TypeAdapter<TvShowComplete> delegate) {
+        super(delegate, FIELD_NAMES);
+        dateAdapter = gson.getAdapter(Date.class);
+        stringAdapter = gson.getAdapter(String.class);
+        integerAdapter = gson.getAdapter(Integer.class);
+        personAdapter = gson.getAdapter(Person.class);
+        networkAdapter = gson.getAdapter(Network.class);
+        genreAdapter = gson.getAdapter(Genre.class);
+        productionCompanyAdapter = gson.getAdapter(ProductionCompany.class);
+        seasonAdapter = gson.getAdapter(TvSeason.class);
+        imagesAdapter = gson.getAdapter(Images.class);
+        creditsAdapter = gson.getAdapter(Credits.class);
+        externalIdsAdapter = gson.getAdapter(ExternalIds.class);
+    }
+
+    @Override
+    protected TvShowComplete newEntity() {
+        return new TvShowComplete();
+    }
+
+    @Override
+    protected void readField(JsonReader in, TvShowComplete show, int field) throws IOException {
+        switch (field) {
+            case CREATED_BY:
+                show.created_by = readList(in, personAdapter);
+                break;
+            case NETWORKS:
+                show.networks = readList(in, networkAdapter);
+                break;
+            case EPISODE_RUN_TIME:
+                show.episode_run_time = readList(in, integerAdapter);
+                break;
+            case GENRES:
+                show.genres = readList(in, genreAdapter);
+                break;
+            case HOMEPAGE:
+                show.homepage = readString(in);
+                break;
+            case IN_PRODUCTION:
+                Boolean inProduction = readBoolean(in);
+                if (inProduction != null) {
+                    show.in_production = inProduction;
+                }
+                break;
+            case LANGUAGES:
+                show.languages = readList(in, stringAdapter);
+                break;
+            case LAST_AIR_DATE:
+                show.last_air_date = dateAdapter.read(in);
+                break;
+            case NUMBER_OF_EPISODES:
+                show.number_of_episodes = readInteger(in);
+                break;
+            case NUMBER_OF_SEASONS:
+                show.number_of_seasons = readInteger(in);
+                break;
+            case ORIGINAL_LANGUAGE:
+                show.original_language = readString(in);
+                break;
+            case OVERVIEW:
+                show.overview = readString(in);
+                break;
+            case PRODUCTION_COMPANIES:
+                show.production_companies = readList(in, productionCompanyAdapter);
+                break;
+            case SEASONS:
+                show.seasons = readList(in, seasonAdapter);
+                break;
+            case STATUS:
+                show.status = readString(in);
+                break;
+            case TYPE:
+                show.type = readString(in);
+                break;
+            case IMAGES:
+                show.images = imagesAdapter.read(in);
+                break;
+            case CREDITS:
+                show.credits = creditsAdapter.read(in);
+                break;
+            case EXTERNAL_IDS:
+                show.external_ids = externalIdsAdapter.read(in);
+                break;
+            default:
+                TvShowTypeAdapter.readShowField(in, show, field, dateAdapter, stringAdapter);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.TvShow;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Reads {@link com.uwetrottmann.tmdb.entities.TvShow}, also provides the fields shared with
+ * {@link TvShowCompleteTypeAdapter}.
+ */
+public class TvShowTypeAdapter extends EntityTypeAdapter<TvShow> {
+
+    static final String[] FIELD_NAMES = {
+            "id", "original_name", "name", "origin_country", "first_air_date", "backdrop_path", "poster_path",
+            "popularity", "vote_average", "vote_count"
+    };
+
+    /** Number of {@link #FIELD_NAMES}, fields of extending entities start at this index. */
+    static final int FIELD_COUNT = 10;
+
+    private static final int ID = 0;
+    private static final int ORIGINAL_NAME = 1;
+    private static final int NAME = 2;
+    private static final int ORIGIN_COUNTRY = 3;
+    private static final int FIRST_AIR_DATE = 4;
+    private static final int BACKDROP_PATH = 5;
+    private static final int POSTER_PATH = 6;
+    private static final int POPULARITY = 7;
+    private static final int VOTE_AVERAGE = 8;
+    private static final int VOTE_COUNT = 9;
+
+    private final TypeAdapter<Date> dateAdapter;
+    private final TypeAdapter<String> stringAdapter;
+
+    public TvShowTypeAdapter(Gson gson, TypeAdapter<TvShow> delegate) {
+        super(delegate, FIELD_NAMES);
+        dateAdapter = gson.getAdapter(Date.class);
+        stringAdapter = gson.getAdapter(String.class);
+    }
+
+    @Override
+    protected TvShow newEntity() {
+        return new TvShow();
+    }
+
+    @Override
+    protected void readField(JsonReader in, TvShow show, int field) throws IOException {
+        readShowField(in, show, field, dateAdapter, stringAdapter);
+    }
+
+    /**
+     * Reads one of the {@link #FIELD_NAMES} into the given show.
+     */
+    static void readShowField(JsonReader in, TvShow show, int field, TypeAdapter<Date> dateAdapter,
+            TypeAdapter<String> stringAdapter) throws IOException {
+        switch (field) {
+            case ID:
+                show.id = readInteger(in);
+                break;
+            case ORIGINAL_NAME:
+                show.original_name = readString(in);
+                break;
+            case NAME:
+                show.name = readString(in);
+                break;
+            case ORIGIN_COUNTRY:
+                show.origin_country = readList(in, stringAdapter);
+                break;
+            case FIRST_AIR_DATE:
+                show.first_air_date = dateAdapter.read(in);
+                break;
+            case BACKDROP_PATH:
+                show.backdrop_path = readString(in);
+                break;
+            case POSTER_PATH:
+                show.poster_path = readString(in);
+                break;
+            case POPULARITY:
+                show.popularity = readDouble(in);
+                break;
+            case VOTE_AVERAGE:
+                show.vote_average = readDouble(in);
+                break;
+            case VOTE_COUNT:
+                show.vote_count = readInteger(in);
+                break;
+        }
+    }
+}
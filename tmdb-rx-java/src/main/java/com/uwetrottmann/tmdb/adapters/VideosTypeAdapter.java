@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.uwetrottmann.tmdb.entities.Videos;
+
+import java.io.IOException;
+
+public class VideosTypeAdapter extends EntityTypeAdapter<Videos> {
+
+    private static final String[] FIELD_NAMES = {
+            "id", "results"
+    };
+
+    private static final int ID = 0;
+    private static final int RESULTS = 1;
+
+    private final TypeAdapter<Videos.Video> videoAdapter;
+
+    public VideosTypeAdapter(Gson gson, TypeAdapter<Videos> delegate) {
+        super(delegate, FIELD_NAMES);
+        videoAdapter = gson.getAdapter(Videos.Video.class);
+    }
+
+    @Override
+    protected Videos newEntity() {
+        return new Videos();
+    }
+
+    @Override
+    protected void readField(JsonReader in, Videos videos, int field) throws IOException {
+        switch (field) {
+            case ID:
+                videos.id = readInteger(in);
+                break;
+            case RESULTS:
+                videos.results = readList(in, videoAdapter);
+                break;
+        }
+    }
+
+    public static class VideoTypeAdapter extends EntityTypeAdapter<Videos.Video> {
+
+        private static final String[] FIELD_NAMES = {
+                "id", "iso_639_1", "key", "name", "site", "size", "type"
+        };
+
+        private static final int ID = 0;
+        private static final int ISO_639_1 = 1;
+        private static final int KEY = 2;
+        private static final int NAME = 3;
+        private static final int SITE = 4;
+        private static final int SIZE = 5;
+        private static final int TYPE = 6;
+
+        public VideoTypeAdapter(TypeAdapter<Videos.Video> delegate) {
+            super(delegate, FIELD_NAMES);
+        }
+
+        @Override
+        protected Videos.Video newEntity() {
+            return new Videos.Video();
+        }
+
+        @Override
+        protected void readField(JsonReader in, Videos.Video video, int field) throws IOException {
+            switch (field) {
+                case ID:
+                    video.id = readString(in);
+                    break;
+                case ISO_639_1:
+                    video.iso_639_1 = readString(in);
+                    break;
+                case KEY:
+                    video.key = readString(in);
+                    break;
+                case NAME:
+                    video.name = readString(in);
+                    break;
+                case SITE:
+                    video.site = readString(in);
+                    break;
+                case SIZE:
+                    video.size = readInteger(in);
+                    break;
+                case TYPE:
+                    video.type = readString(in);
+                    break;
+            }
+        }
+    }
+}
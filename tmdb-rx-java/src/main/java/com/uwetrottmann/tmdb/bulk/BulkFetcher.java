@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.bulk;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Fetches the responses for many ids, a bounded number at a time.
+ * <p>
+ * {@link #fetch(Iterable)} emits a {@link BulkResult} per id as soon as it completes, so results arrive in completion
+ * order, not in the order of the ids. A failed id does not stop the fetch, its result carries the error instead. At
+ * most {@link #setParallelism(int) parallelism} requests are in flight, further ids are only read from the iterable when
+ * one completes.
+ * <p>
+ * To stay within the request quota, install a {@link com.uwetrottmann.tmdb.interceptors.RateLimiter} on the
+ * {@link com.uwetrottmann.tmdb.Tmdb} instance: requests waiting for a token then hold a slot without blocking a thread.
+ * A request rejected with {@code 429 Too Many Requests} is tried again after its {@code Retry-After} time, up to
+ * {@link #setMaxRateLimitRetries(int)} times.
+ * <p>
+ * For example:
+ * <pre>
+ * BulkStatistics statistics = new BulkStatistics();
+ * BulkFetcher.movies(tmdb, null, new AppendToResponse(AppendToResponseItem.CREDITS))
+ *         .setParallelism(16)
+ *         .fetch(ids, statistics)
+ *         .subscribe(...);
+ * </pre>
+ */
+public class BulkFetcher<T> {
+
+    public static final int DEFAULT_PARALLELISM = 8;
+    public static final int DEFAULT_MAX_RATE_LIMIT_RETRIES = 3;
+
+    /** Wait before retrying a rejected request without {@code Retry-After}. */
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final Func1<Integer, Observable<T>> request;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxRateLimitRetries = DEFAULT_MAX_RATE_LIMIT_RETRIES;
+
+    /**
+     * @param request Returns the request for the given id.
+     */
+    public BulkFetcher(Func1<Integer, Observable<T>> request) {
+        this.request = request;
+    }
+
+    /**
+     * Fetch movies with {@link com.uwetrottmann.tmdb.services.MoviesService#summary}.
+     */
+    public static BulkFetcher<Movie> movies(final Tmdb tmdb, final String language,
+            final AppendToResponse appendToResponse) {
+        return new BulkFetcher<Movie>(new Func1<Integer, Observable<Movie>>() {
+            @Override
+            public Observable<Movie> call(Integer id) {
+                return tmdb.moviesService().summary(id, language, appendToResponse);
+            }
+        });
+    }
+
+    /**
+     * Fetch shows with {@link com.uwetrottmann.tmdb.services.TvService#tv}.
+     */
+    public static BulkFetcher<TvShowComplete> tvShows(final Tmdb tmdb, final String language,
+            final AppendToResponse appendToResponse) {
+        return new BulkFetcher<TvShowComplete>(new Func1<Integer, Observable<TvShowComplete>>() {
+            @Override
+            public Observable<TvShowComplete> call(Integer id) {
+                return tmdb.tvService().tv(id, language, appendToResponse);
+            }
+        });
+    }
+
+    /**
+     * Fetch people with {@link com.uwetrottmann.tmdb.services.PeopleService#summary}.
+     */
+    public static BulkFetcher<Person> people(final Tmdb tmdb) {
+        return new BulkFetcher<Person>(new Func1<Integer, Observable<Person>>() {
+            @Override
+            public Observable<Person> call(Integer id) {
+                return tmdb.personService().summary(id);
+            }
+        });
+    }
+
+    /**
+     * Set the maximum number of requests in flight. Defaults to {@link #DEFAULT_PARALLELISM}.
+     */
+    public BulkFetcher<T> setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set how often a request rejected with {@code 429 Too Many Requests} is tried again. Defaults to
+     * {@link #DEFAULT_MAX_RATE_LIMIT_RETRIES}.
+     */
+    public BulkFetcher<T> setMaxRateLimitRetries(int maxRateLimitRetries) {
+        this.maxRateLimitRetries = maxRateLimitRetries;
+        return this;
+    }
+
+    /**
+     * Emits the result of each id as it completes.
+     */
+    public Observable<BulkResult<T>> fetch(Iterable<Integer> ids) {
+        return fetch(ids, new BulkStatistics());
+    }
+
+    /**
+     * Emits the result of each id as it completes and records it in the given statistics.
+     */
+    public Observable<BulkResult<T>> fetch(Iterable<Integer> ids, final BulkStatistics statistics) {
+        return Observable.from(ids)
+                .flatMap(new Func1<Integer, Observable<BulkResult<T>>>() {
+                    @Override
+                    public Observable<BulkResult<T>> call(Integer id) {
+                        return fetchOne(id, statistics);
+                    }
+                }, parallelism)
+                .doOnSubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        statistics.start();
+                    }
+                })
+                .doOnTerminate(new Action0() {
+                    @Override
+                    public void call() {
+                        statistics.finish();
+                    }
+                });
+    }
+
+    private Observable<BulkResult<T>> fetchOne(final int id, final BulkStatistics statistics) {
+        return Observable.defer(new Func0<Observable<BulkResult<T>>>() {
+            @Override
+            public Observable<BulkResult<T>> call() {
+                final long start = System.nanoTime();
+                return attempt(id, maxRateLimitRetries)
+                        .last()
+                        .map(new Func1<T, BulkResult<T>>() {
+                            @Override
+                            public BulkResult<T> call(T value) {
+                                return BulkResult.success(id, value, millisSince(start));
+                            }
+                        })
+                        .onErrorReturn(new Func1<Throwable, BulkResult<T>>() {
+                            @Override
+                            public BulkResult<T> call(Throwable error) {
+                                return BulkResult.failure(id, error, millisSince(start));
+                            }
+                        })
+                        .doOnNext(new Action1<BulkResult<T>>() {
+                            @Override
+                            public void call(BulkResult<T> result) {
+                                statistics.record(result);
+                            }
+                        });
+            }
+        });
+    }
+
+    private Observable<T> attempt(final int id, final int retries) {
+        return request.call(id).onErrorResumeNext(new Func1<Throwable, Observable<T>>() {
+            @Override
+            public Observable<T> call(Throwable error) {
+                long retryAfter = retryAfterMillis(error);
+                if (retries <= 0 || retryAfter < 0) {
+                    return Observable.error(error);
+                }
+                return attempt(id, retries - 1).delaySubscription(retryAfter, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Returns how long to wait before retrying a request rejected for exceeding the rate limit, or -1 if the error is
+     * not such a rejection.
+     */
+    private static long retryAfterMillis(Throwable error) {
+        if (!(error instanceof RetrofitError) || ((RetrofitError) error).getResponse() == null
+                || ((RetrofitError) error).getResponse().getStatus() != 429) {
+            return -1;
+        }
+        for (Header header : ((RetrofitError) error).getResponse().getHeaders()) {
+            if ("Retry-After".equalsIgnoreCase(header.getName())) {
+                try {
+                    return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return DEFAULT_RETRY_AFTER_MILLIS;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+}
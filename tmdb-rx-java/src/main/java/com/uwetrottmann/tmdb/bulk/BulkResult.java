@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.bulk;
+
+/**
+ * The outcome of fetching one id of a bulk fetch: either the response or the error.
+ */
+public final class BulkResult<T> {
+
+    private final int id;
+    private final T value;
+    private final Throwable error;
+    private final long latencyMillis;
+
+    private BulkResult(int id, T value, Throwable error, long latencyMillis) {
+        this.id = id;
+        this.value = value;
+        this.error = error;
+        this.latencyMillis = latencyMillis;
+    }
+
+    static <T> BulkResult<T> success(int id, T value, long latencyMillis) {
+        return new BulkResult<T>(id, value, null, latencyMillis);
+    }
+
+    static <T> BulkResult<T> failure(int id, Throwable error, long latencyMillis) {
+        return new BulkResult<T>(id, null, error, latencyMillis);
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * The response, or {@code null} if fetching failed.
+     */
+    public T value() {
+        return value;
+    }
+
+    /**
+     * The error of the last attempt, or {@code null} if fetching succeeded.
+     */
+    public Throwable error() {
+        return error;
+    }
+
+    /**
+     * The time from subscribing to the request until its outcome, including waiting for the rate limiter and retries.
+     */
+    public long latencyMillis() {
+        return latencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResult[id=" + id + (error == null ? ",success" : ",error=" + error) + ",latency="
+                + latencyMillis + "ms]";
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.bulk;
+
+import com.uwetrottmann.tmdb.metrics.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import retrofit.RetrofitError;
+
+/**
+ * Summary of a bulk fetch: how many ids were fetched, how fast and with which errors.
+ * <p>
+ * Pass a new instance to {@link BulkFetcher#fetch(Iterable, BulkStatistics)}. It is updated as results arrive, so it
+ * may be read while the fetch is still running. All methods are thread-safe.
+ */
+public class BulkStatistics {
+
+    private long startNanos = -1;
+    private long endNanos = -1;
+    private int successCount;
+    private int failureCount;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Map<String, Integer> errorCounts = new TreeMap<String, Integer>();
+
+    synchronized void start() {
+        if (startNanos == -1) {
+            startNanos = System.nanoTime();
+        }
+    }
+
+    synchronized void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    synchronized void record(BulkResult<?> result) {
+        latencies.record(result.latencyMillis());
+        if (result.isSuccess()) {
+            successCount++;
+        } else {
+            failureCount++;
+            String reason = reason(result.error());
+            Integer errors = errorCounts.get(reason);
+            errorCounts.put(reason, errors != null ? errors + 1 : 1);
+        }
+    }
+
+    /**
+     * Groups errors by HTTP status code, e.g. {@code HTTP 404}, or by kind or type of error.
+     */
+    private static String reason(Throwable error) {
+        if (error instanceof RetrofitError) {
+            RetrofitError retrofitError = (RetrofitError) error;
+            if (retrofitError.getKind() == RetrofitError.Kind.HTTP && retrofitError.getResponse() != null) {
+                return "HTTP " + retrofitError.getResponse().getStatus();
+            }
+            return retrofitError.getKind().name();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    public synchronized int completedCount() {
+        return successCount + failureCount;
+    }
+
+    public synchronized int successCount() {
+        return successCount;
+    }
+
+    public synchronized int failureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Returns the number of failures per reason, e.g. {@code HTTP 404} or {@code NETWORK}.
+     */
+    public synchronized Map<String, Integer> errorCounts() {
+        return Collections.unmodifiableMap(new TreeMap<String, Integer>(errorCounts));
+    }
+
+    /**
+     * Returns the time since the fetch was subscribed to, until it completed if it did.
+     */
+    public synchronized long elapsedMillis() {
+        if (startNanos == -1) {
+            return 0;
+        }
+        return ((endNanos != -1 ? endNanos : System.nanoTime()) - startNanos) / 1000000;
+    }
+
+    /**
+     * Returns the completed ids per second.
+     */
+    public synchronized double throughput() {
+        long elapsed = elapsedMillis();
+        return elapsed > 0 ? completedCount() * 1000.0 / elapsed : 0;
+    }
+
+    /**
+     * Returns the latency not exceeded by the given fraction of the completed ids, within the precision of a
+     * {@link LatencyHistogram}.
+     *
+     * @param percentile Between 0 and 1, e.g. 0.99.
+     */
+    public long latencyMillis(double percentile) {
+        return latencies.valueAtPercentile(percentile);
+    }
+
+    public long p50LatencyMillis() {
+        return latencyMillis(0.5);
+    }
+
+    public long p99LatencyMillis() {
+        return latencyMillis(0.99);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "BulkStatistics[completed=%d,failed=%d,elapsed=%dms,throughput=%.1f/s,p50=%dms,p99=%dms,errors=%s]",
+                completedCount(), failureCount, elapsedMillis(), throughput(), p50LatencyMillis(),
+                p99LatencyMillis(), errorCounts);
+    }
+}
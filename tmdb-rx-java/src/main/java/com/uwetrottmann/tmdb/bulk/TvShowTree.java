@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.bulk;
+
+import com.uwetrottmann.tmdb.AppendedResources;
+import com.uwetrottmann.tmdb.entities.TvEpisode;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A show with all its seasons, and optionally the full details of their episodes, as fetched by a
+ * {@link TvShowTreeFetcher}.
+ * <p>
+ * Pass a tree to the next fetch of the same show, so only the seasons which changed are fetched again.
+ */
+public final class TvShowTree {
+
+    private final TvShowComplete show;
+    private final SortedMap<Integer, TvSeason> seasons;
+
+    private TvShowTree(TvShowComplete show, SortedMap<Integer, TvSeason> seasons) {
+        this.show = show;
+        this.seasons = Collections.unmodifiableSortedMap(seasons);
+    }
+
+    /**
+     * Puts the nodes emitted by {@link TvShowTreeFetcher#fetch} together. The seasons of episode nodes are copied
+     * with the fetched episodes in place of those listed in the season.
+     */
+    public static TvShowTree of(List<Node> nodes) {
+        TvShowComplete show = null;
+        SortedMap<Integer, TvSeason> seasons = new TreeMap<Integer, TvSeason>();
+        Map<Integer, List<TvEpisode>> episodes = new HashMap<Integer, List<TvEpisode>>();
+        for (Node node : nodes) {
+            if (node.episode != null) {
+                List<TvEpisode> seasonEpisodes = episodes.get(node.seasonNumber);
+                if (seasonEpisodes == null) {
+                    seasonEpisodes = new ArrayList<TvEpisode>();
+                    episodes.put(node.seasonNumber, seasonEpisodes);
+                }
+                seasonEpisodes.add(node.episode);
+            } else if (node.season != null) {
+                seasons.put(node.seasonNumber, node.season);
+            } else {
+                show = node.show;
+            }
+        }
+        for (Map.Entry<Integer, List<TvEpisode>> entry : episodes.entrySet()) {
+            TvSeason season = seasons.get(entry.getKey());
+            if (season != null) {
+                seasons.put(entry.getKey(), withEpisodes(season, entry.getValue()));
+            }
+        }
+        return new TvShowTree(show, seasons);
+    }
+
+    private static TvSeason withEpisodes(TvSeason season, List<TvEpisode> fetched) {
+        Map<Integer, TvEpisode> byNumber = new HashMap<Integer, TvEpisode>();
+        for (TvEpisode episode : fetched) {
+            byNumber.put(episode.episode_number, episode);
+        }
+        List<TvEpisode> episodes = new ArrayList<TvEpisode>();
+        if (season.episodes != null) {
+            for (TvEpisode episode : season.episodes) {
+                TvEpisode full = byNumber.get(episode.episode_number);
+                episodes.add(full != null ? full : episode);
+            }
+        }
+        // the season may be shared with a cache, do not modify it
+        TvSeason copy = (TvSeason) AppendedResources.copy(season);
+        copy.episodes = episodes;
+        return copy;
+    }
+
+    public TvShowComplete show() {
+        return show;
+    }
+
+    /**
+     * Returns the seasons, sorted by number.
+     */
+    public List<TvSeason> seasons() {
+        return new ArrayList<TvSeason>(seasons.values());
+    }
+
+    /**
+     * Returns the season with the given number, or {@code null}.
+     */
+    public TvSeason season(int seasonNumber) {
+        return seasons.get(seasonNumber);
+    }
+
+    /**
+     * One part of a tree: the show, a season or an episode.
+     */
+    public static final class Node {
+
+        private final TvShowComplete show;
+        private final int seasonNumber;
+        private final TvSeason season;
+        private final TvEpisode episode;
+        private final boolean reused;
+
+        private Node(TvShowComplete show, int seasonNumber, TvSeason season, TvEpisode episode, boolean reused) {
+            this.show = show;
+            this.seasonNumber = seasonNumber;
+            this.season = season;
+            this.episode = episode;
+            this.reused = reused;
+        }
+
+        static Node show(TvShowComplete show) {
+            return new Node(show, -1, null, null, false);
+        }
+
+        static Node season(int seasonNumber, TvSeason season, boolean reused) {
+            return new Node(null, seasonNumber, season, null, reused);
+        }
+
+        static Node episode(int seasonNumber, TvEpisode episode) {
+            return new Node(null, seasonNumber, null, episode, false);
+        }
+
+        /**
+         * Returns the show, or {@code null} if this is a season or episode.
+         */
+        public TvShowComplete show() {
+            return show;
+        }
+
+        /**
+         * Returns the number of the season of this season or episode, or -1 if this is the show.
+         */
+        public int seasonNumber() {
+            return seasonNumber;
+        }
+
+        /**
+         * Returns the season, or {@code null} if this is the show or an episode.
+         */
+        public TvSeason season() {
+            return season;
+        }
+
+        /**
+         * Returns the episode, or {@code null} if this is the show or a season.
+         */
+        public TvEpisode episode() {
+            return episode;
+        }
+
+        /**
+         * Returns whether this season was taken from the previous tree instead of being fetched again.
+         */
+        public boolean isReused() {
+            return reused;
+        }
+    }
+}
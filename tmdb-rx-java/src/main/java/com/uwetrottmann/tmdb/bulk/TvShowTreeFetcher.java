@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.bulk;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.TvEpisode;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+import com.uwetrottmann.tmdb.interceptors.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Fetches a show with all its seasons, and optionally all their episodes, requesting the seasons and episodes in
+ * parallel.
+ * <p>
+ * {@link #fetch(int, TvShowTree)} first emits the show, then each season and episode as soon as it arrives. At most
+ * {@link #setParallelism(int) parallelism} season requests and as many episode requests are in flight. By default the
+ * parallelism follows the burst of the {@link RateLimiter} of the {@link Tmdb} instance, so requests do not just queue
+ * up for tokens. Credits, images and external ids are appended to every request by default.
+ * <p>
+ * Given the tree of a previous fetch, a season is only fetched again if its air date or episode count in the show
+ * changed; otherwise the previous season, with its episodes, is emitted again. The show itself is always fetched.
+ * <p>
+ * For example:
+ * <pre>
+ * TvShowTree tree = new TvShowTreeFetcher(tmdb).fetchTree(1396, null).toBlocking().first();
+ * ...
+ * tree = new TvShowTreeFetcher(tmdb).fetchTree(1396, tree).toBlocking().first();
+ * </pre>
+ */
+public class TvShowTreeFetcher {
+
+    /** Parallelism if there is no rate limiter. */
+    public static final int DEFAULT_PARALLELISM = BulkFetcher.DEFAULT_PARALLELISM;
+    /** The most parallelism chosen based on a rate limiter. */
+    public static final int MAX_DEFAULT_PARALLELISM = 16;
+
+    private final Tmdb tmdb;
+    private int parallelism;
+    private String language;
+    private AppendToResponse appendToResponse = new AppendToResponse(AppendToResponseItem.CREDITS,
+            AppendToResponseItem.IMAGES, AppendToResponseItem.EXTERNAL_IDS);
+    private boolean fetchEpisodes;
+
+    public TvShowTreeFetcher(Tmdb tmdb) {
+        this.tmdb = tmdb;
+        RateLimiter rateLimiter = tmdb.getRateLimiter();
+        this.parallelism = rateLimiter != null
+                ? Math.min(rateLimiter.permits(), MAX_DEFAULT_PARALLELISM) : DEFAULT_PARALLELISM;
+    }
+
+    /**
+     * Set the maximum number of season requests, and of episode requests, in flight.
+     */
+    public TvShowTreeFetcher setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the language of the show, seasons and episodes, or {@code null} for the default.
+     */
+    public TvShowTreeFetcher setLanguage(String language) {
+        this.language = language;
+        return this;
+    }
+
+    /**
+     * Set what to append to the show, season and episode requests, or {@code null} to append nothing. Defaults to
+     * credits, images and external ids.
+     */
+    public TvShowTreeFetcher setAppendToResponse(AppendToResponse appendToResponse) {
+        this.appendToResponse = appendToResponse;
+        return this;
+    }
+
+    /**
+     * Set whether to also request every episode on its own, e.g. for their credits, instead of only using the
+     * episodes listed in the seasons. Defaults to {@code false}.
+     */
+    public TvShowTreeFetcher setFetchEpisodes(boolean fetchEpisodes) {
+        this.fetchEpisodes = fetchEpisodes;
+        return this;
+    }
+
+    /**
+     * Emits the show, then its seasons and episodes as they arrive.
+     *
+     * @param previous The tree of a previous fetch of the show, or {@code null} to fetch all seasons.
+     */
+    public Observable<TvShowTree.Node> fetch(final int showId, final TvShowTree previous) {
+        final String language = this.language;
+        final AppendToResponse appendToResponse = this.appendToResponse;
+        final boolean fetchEpisodes = this.fetchEpisodes;
+        final int parallelism = this.parallelism;
+        return tmdb.tvService().tv(showId, language, appendToResponse)
+                .flatMap(new Func1<TvShowComplete, Observable<TvShowTree.Node>>() {
+                    @Override
+                    public Observable<TvShowTree.Node> call(TvShowComplete show) {
+                        List<TvShowTree.Node> reused = new ArrayList<TvShowTree.Node>();
+                        List<Integer> changed = new ArrayList<Integer>();
+                        if (show.seasons != null) {
+                            for (TvSeason season : show.seasons) {
+                                TvSeason previousSeason = unchanged(previous, season);
+                                if (previousSeason != null) {
+                                    reused.add(TvShowTree.Node.season(season.season_number, previousSeason, true));
+                                } else {
+                                    changed.add(season.season_number);
+                                }
+                            }
+                        }
+                        Observable<TvShowTree.Node> seasons = Observable.from(changed)
+                                .flatMap(new Func1<Integer, Observable<TvShowTree.Node>>() {
+                                    @Override
+                                    public Observable<TvShowTree.Node> call(Integer seasonNumber) {
+                                        return season(showId, seasonNumber, language, appendToResponse);
+                                    }
+                                }, parallelism);
+                        if (fetchEpisodes) {
+                            seasons = seasons.publish(
+                                    new Func1<Observable<TvShowTree.Node>, Observable<TvShowTree.Node>>() {
+                                        @Override
+                                        public Observable<TvShowTree.Node> call(Observable<TvShowTree.Node> seasons) {
+                                            return Observable.merge(seasons, episodes(showId, seasons, language,
+                                                    appendToResponse, parallelism));
+                                        }
+                                    });
+                        }
+                        return Observable.just(TvShowTree.Node.show(show))
+                                .concatWith(Observable.from(reused))
+                                .concatWith(seasons);
+                    }
+                });
+    }
+
+    /**
+     * Like {@link #fetch(int, TvShowTree)}, but emits the complete tree once all of it arrived.
+     */
+    public Observable<TvShowTree> fetchTree(int showId, TvShowTree previous) {
+        return fetch(showId, previous).toList().map(new Func1<List<TvShowTree.Node>, TvShowTree>() {
+            @Override
+            public TvShowTree call(List<TvShowTree.Node> nodes) {
+                return TvShowTree.of(nodes);
+            }
+        });
+    }
+
+    /**
+     * Returns the season of the previous tree if the given season of the show has not changed since, otherwise
+     * {@code null}.
+     */
+    private static TvSeason unchanged(TvShowTree previous, TvSeason season) {
+        if (previous == null || previous.show() == null || previous.show().seasons == null
+                || season.season_number == null) {
+            return null;
+        }
+        TvSeason previousSeason = previous.season(season.season_number);
+        if (previousSeason == null) {
+            return null;
+        }
+        for (TvSeason listed : previous.show().seasons) {
+            if (season.season_number.equals(listed.season_number)) {
+                return equal(season.air_date, listed.air_date) && equal(season.episode_count, listed.episode_count)
+                        ? previousSeason : null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private Observable<TvShowTree.Node> season(int showId, final int seasonNumber, String language,
+            AppendToResponse appendToResponse) {
+        return tmdb.tvSeasonsService().season(showId, seasonNumber, language, appendToResponse)
+                .map(new Func1<TvSeason, TvShowTree.Node>() {
+                    @Override
+                    public TvShowTree.Node call(TvSeason season) {
+                        return TvShowTree.Node.season(seasonNumber, season, false);
+                    }
+                });
+    }
+
+    private Observable<TvShowTree.Node> episodes(final int showId, Observable<TvShowTree.Node> seasons,
+            final String language, final AppendToResponse appendToResponse, int parallelism) {
+        return seasons
+                .concatMap(new Func1<TvShowTree.Node, Observable<TvShowTree.Node>>() {
+                    @Override
+                    public Observable<TvShowTree.Node> call(TvShowTree.Node node) {
+                        List<TvShowTree.Node> listed = new ArrayList<TvShowTree.Node>();
+                        if (node.season().episodes != null) {
+                            for (TvEpisode episode : node.season().episodes) {
+                                listed.add(TvShowTree.Node.episode(node.seasonNumber(), episode));
+                            }
+                        }
+                        return Observable.from(listed);
+                    }
+                })
+                .flatMap(new Func1<TvShowTree.Node, Observable<TvShowTree.Node>>() {
+                    @Override
+                    public Observable<TvShowTree.Node> call(final TvShowTree.Node listed) {
+                        return tmdb.tvEpisodesService().episode(showId, listed.seasonNumber(),
+                                listed.episode().episode_number, language, appendToResponse)
+                                .map(new Func1<TvEpisode, TvShowTree.Node>() {
+                                    @Override
+                                    public TvShowTree.Node call(TvEpisode episode) {
+                                        return TvShowTree.Node.episode(listed.seasonNumber(), episode);
+                                    }
+                                });
+                    }
+                }, parallelism);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Remembers the raw body of the last response converted on the current thread, so the {@link CacheInterceptor} can
+ * store it in a {@link DiskCache} as received.
+ * <p>
+ * Retrofit emits a converted response on the thread which converted it, right after converting it. To make sure a body
+ * is never stored for a different response, {@link #takeBody(Object)} only returns it for the very instance converted
+ * from it.
+ */
+public final class BodyRecordingConverter implements Converter {
+
+    private static final ThreadLocal<RecordedBody> LAST_BODY = new ThreadLocal<RecordedBody>();
+
+    private final Converter delegate;
+
+    public BodyRecordingConverter(Converter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object fromBody(TypedInput body, Type type) throws ConversionException {
+        byte[] bytes;
+        if (body instanceof TypedByteArray) {
+            // retrofit already buffered the body
+            bytes = ((TypedByteArray) body).getBytes();
+        } else {
+            try {
+                bytes = readFully(body.in());
+            } catch (IOException e) {
+                throw new ConversionException(e);
+            }
+            body = new TypedByteArray(body.mimeType(), bytes);
+        }
+        Object response = delegate.fromBody(body, type);
+        LAST_BODY.set(new RecordedBody(response, bytes));
+        return response;
+    }
+
+    @Override
+    public TypedOutput toBody(Object object) {
+        return delegate.toBody(object);
+    }
+
+    /**
+     * Returns the raw body the given response was converted from on this thread, or {@code null} if it was not the last
+     * converted response.
+     */
+    public static byte[] takeBody(Object response) {
+        RecordedBody recorded = LAST_BODY.get();
+        if (recorded == null || recorded.response != response) {
+            return null;
+        }
+        LAST_BODY.remove();
+        return recorded.body;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class RecordedBody {
+
+        final Object response;
+        final byte[] body;
+
+        RecordedBody(Object response, byte[] body) {
+            this.response = response;
+            this.body = body;
+        }
+    }
+}
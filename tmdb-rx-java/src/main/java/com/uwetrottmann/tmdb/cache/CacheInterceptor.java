@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import com.google.gson.Gson;
+import com.uwetrottmann.tmdb.AppendedResources;
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Emits responses from a {@link ResponseCache} or {@link DiskCache} and caches the responses of requests they could
+ * not answer.
+ * <p>
+ * The memory cache is looked up first. A body found on disk is deserialized and then also kept in memory. The caches
+ * are looked up on subscription, so an {@link rx.Observable} subscribed again later sees a fresh response.
+ * <p>
+ * If the memory cache holds an expired response with {@link Validators}, the request is sent with
+ * {@code If-None-Match} and {@code If-Modified-Since} headers. If TMDb answers {@code 304 Not Modified}, the already
+ * deserialized response is emitted and cached again. Validators are only known if retrofit uses a
+ * {@link ValidatorRecordingClient} and a {@link ValidatorRecordingConverter}.
+ * <p>
+ * Responses with appended resources, e.g. a movie with its credits, are also cached in parts: a later request for the
+ * credits alone is answered from memory, and a later request for the movie with its credits and videos only asks TMDb
+ * for the parts which are not cached and puts the response together. Parts are only cached in memory.
+ * <p>
+ * Bodies are only stored on disk if retrofit uses a {@link BodyRecordingConverter}. Failing to read from or write to
+ * the disk cache is treated like a miss.
+ */
+public class CacheInterceptor implements ServiceInterceptor {
+
+    private final ResponseCache memoryCache;
+    private final DiskCache diskCache;
+    private final Gson gson;
+
+    public CacheInterceptor(ResponseCache cache) {
+        this(cache, null, null);
+    }
+
+    /**
+     * @param memoryCache A memory cache or {@code null}.
+     * @param diskCache A disk cache or {@code null}.
+     * @param gson Deserializes bodies from the disk cache, required if there is one.
+     */
+    public CacheInterceptor(ResponseCache memoryCache, DiskCache diskCache, Gson gson) {
+        this.memoryCache = memoryCache;
+        this.diskCache = diskCache;
+        this.gson = gson;
+    }
+
+    @Override
+    public Observable<?> intercept(final Chain chain) {
+        final ServiceRequest request = chain.request();
+        final long memoryTtlMillis = memoryCache != null ? memoryCache.ttlMillis(request.route()) : 0;
+        final long diskTtlMillis = diskCache != null ? diskCache.ttlMillis(request.responseType()) : 0;
+        if (memoryTtlMillis <= 0 && diskTtlMillis <= 0) {
+            return chain.proceed(request);
+        }
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            public Observable<Object> call() {
+                if (memoryTtlMillis > 0) {
+                    Object cached = memoryCache.get(request.key());
+                    if (cached != null) {
+                        return Observable.just(cached);
+                    }
+                }
+                if (diskTtlMillis > 0) {
+                    Object stored = readFromDisk(request);
+                    if (stored != null) {
+                        if (memoryTtlMillis > 0) {
+                            memoryCache.put(request.key(), stored, memoryTtlMillis);
+                        }
+                        return Observable.just(stored);
+                    }
+                }
+                final ResponseCache.Stale stale = memoryTtlMillis > 0 ? memoryCache.getStale(request.key()) : null;
+                if (stale == null && memoryTtlMillis > 0) {
+                    AppendedResources appended = AppendedResources.of(request);
+                    if (appended != null) {
+                        return assemble(chain, request, appended, memoryTtlMillis, diskTtlMillis);
+                    }
+                }
+                Observable<Object> network = send(chain, stale != null ? conditional(request, stale.validators())
+                        : request, memoryTtlMillis, diskTtlMillis);
+                if (stale == null) {
+                    return network;
+                }
+                return network.onErrorResumeNext(new Func1<Throwable, Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call(Throwable e) {
+                        Response notModified = e instanceof RetrofitError ? ((RetrofitError) e).getResponse() : null;
+                        if (notModified == null || notModified.getStatus() != 304) {
+                            return Observable.error(e);
+                        }
+                        Validators validators = Validators.fromHeaders(notModified.getHeaders());
+                        memoryCache.putRevalidated(request.key(), stale.value(), memoryTtlMillis,
+                                validators != null ? validators : stale.validators());
+                        return Observable.just(stale.value());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sends the request and caches the response, as well as its parts if it has resources appended.
+     */
+    @SuppressWarnings("unchecked")
+    private Observable<Object> send(Chain chain, final ServiceRequest request, final long memoryTtlMillis,
+            final long diskTtlMillis) {
+        return ((Observable<Object>) chain.proceed(request)).doOnNext(new Action1<Object>() {
+            @Override
+            public void call(Object response) {
+                if (memoryTtlMillis > 0) {
+                    memoryCache.put(request.key(), response, memoryTtlMillis,
+                            ValidatorRecordingConverter.takeValidators(response));
+                    AppendedResources appended = AppendedResources.of(request);
+                    if (appended != null) {
+                        decompose(request, appended, response);
+                    }
+                }
+                if (diskTtlMillis > 0) {
+                    byte[] body = BodyRecordingConverter.takeBody(response);
+                    if (body != null) {
+                        writeToDisk(request, body, diskTtlMillis);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Emits a response with appended resources from the cached parts, only requesting the parts which are not cached.
+     */
+    private Observable<Object> assemble(Chain chain, final ServiceRequest request, final AppendedResources appended,
+            final long memoryTtlMillis, long diskTtlMillis) {
+        final Map<AppendToResponseItem, Object> cachedParts
+                = new EnumMap<AppendToResponseItem, Object>(AppendToResponseItem.class);
+        List<AppendToResponseItem> missing = new ArrayList<AppendToResponseItem>();
+        for (AppendToResponseItem item : appended.items(request)) {
+            String partKey = appended.partKey(request, item);
+            Object part = partKey != null ? memoryCache.peek(partKey) : null;
+            if (part != null) {
+                cachedParts.put(item, part);
+            } else {
+                missing.add(item);
+            }
+        }
+        if (cachedParts.isEmpty()) {
+            return send(chain, request, memoryTtlMillis, diskTtlMillis);
+        }
+        if (missing.isEmpty()) {
+            Object base = memoryCache.peek(appended.baseKey(request));
+            if (base != null) {
+                return Observable.just(withParts(request, appended, base, cachedParts, memoryTtlMillis));
+            }
+        }
+        return send(chain, appended.withItems(request, missing), memoryTtlMillis, diskTtlMillis)
+                .map(new Func1<Object, Object>() {
+                    @Override
+                    public Object call(Object response) {
+                        return withParts(request, appended, response, cachedParts, memoryTtlMillis);
+                    }
+                });
+    }
+
+    private Object withParts(ServiceRequest request, AppendedResources appended, Object response,
+            Map<AppendToResponseItem, Object> parts, long memoryTtlMillis) {
+        Object assembled = AppendedResources.copy(response);
+        for (Map.Entry<AppendToResponseItem, Object> part : parts.entrySet()) {
+            appended.setPart(assembled, part.getKey(), part.getValue());
+        }
+        memoryCache.put(request.key(), assembled, memoryTtlMillis);
+        return assembled;
+    }
+
+    /**
+     * Caches the appended parts of the response on their own, e.g. the credits of a movie as if requested with
+     * {@link com.uwetrottmann.tmdb.services.MoviesService#credits}, and the response without them.
+     */
+    private void decompose(ServiceRequest request, AppendedResources appended, Object response) {
+        List<AppendToResponseItem> items = appended.items(request);
+        if (items.isEmpty()) {
+            return;
+        }
+        boolean cachedParts = false;
+        for (AppendToResponseItem item : items) {
+            Object part = appended.hasPart(item) ? appended.getPart(response, item) : null;
+            String partKey = appended.partKey(request, item);
+            if (part != null && partKey != null) {
+                memoryCache.put(partKey, part, memoryCache.ttlMillis(appended.partRoute(item)));
+                cachedParts = true;
+            }
+        }
+        if (cachedParts) {
+            // to put it together with the parts later
+            memoryCache.put(appended.baseKey(request), appended.withoutParts(response),
+                    memoryCache.ttlMillis(request.route()));
+        }
+    }
+
+    private static ServiceRequest conditional(ServiceRequest request, Validators validators) {
+        if (validators.etag() != null) {
+            request = request.withHeader(Validators.IF_NONE_MATCH, validators.etag());
+        }
+        if (validators.lastModified() != null) {
+            request = request.withHeader(Validators.IF_MODIFIED_SINCE, validators.lastModified());
+        }
+        return request;
+    }
+
+    private Object readFromDisk(ServiceRequest request) {
+        try {
+            byte[] body = diskCache.get(request.key());
+            if (body == null) {
+                return null;
+            }
+            return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(body), "UTF-8"),
+                    request.responseType());
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // a body which no longer deserializes, e.g. after entities changed
+            diskCache.remove(request.key());
+            return null;
+        }
+    }
+
+    private void writeToDisk(ServiceRequest request, byte[] body, long ttlMillis) {
+        try {
+            diskCache.put(request.key(), body, ttlMillis);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import com.uwetrottmann.tmdb.entities.Configuration;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of raw response bodies, keyed by {@link com.uwetrottmann.tmdb.ServiceRequest#key()}.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setDiskCache(DiskCache)}. Responses of the cached types (by
+ * default {@link com.uwetrottmann.tmdb.entities.Movie}, {@link com.uwetrottmann.tmdb.entities.TvShowComplete} and
+ * {@link com.uwetrottmann.tmdb.entities.Configuration}) are then kept on disk and survive restarts of the process.
+ * <p>
+ * Bodies are appended to segment files, which are never modified. A hash table in a memory-mapped index file maps each
+ * key to the location of its latest body, so opening a cache reads nothing but the index header, and a lookup touches
+ * one slot of the index and reads one record. Each record is checked against its CRC and key, a corrupt or partially
+ * written record is treated as a miss.
+ * <p>
+ * Replaced and expired bodies stay in their segment until it is compacted: when the cache grows beyond its maximum
+ * size, segments with less than half of their bytes still in use are rewritten. If that is not enough, the oldest
+ * segments are evicted including their bodies.
+ * <p>
+ * All methods are thread-safe, but a directory must only be used by one cache at a time. Call {@link #close()} when
+ * done.
+ */
+public class DiskCache implements Closeable {
+
+    /** Default time to live of the cached types, one day. */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final String INDEX_FILE = "index";
+    private static final String SEGMENT_PREFIX = "segment.";
+
+    private static final int MAGIC = 0x544d4443;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_USED = 12;
+    private static final int HEADER_LIVE = 16;
+    private static final int HEADER_ACTIVE = 20;
+    private static final int HEADER_ACTIVE_RECORDS = 24;
+
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOT_STATE = 0;
+    private static final int SLOT_SEGMENT = 4;
+    private static final int SLOT_HASH = 8;
+    private static final int SLOT_OFFSET = 16;
+    private static final int SLOT_LENGTH = 20;
+    private static final int SLOT_EXPIRES = 24;
+
+    private static final int STATE_EMPTY = 0;
+    private static final int STATE_LIVE = 1;
+    private static final int STATE_REMOVED = 2;
+
+    /** Key length, expiry, body length and CRC of a record. */
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4 + 4;
+
+    private final File directory;
+    private final long maxSize;
+    private final long segmentSize;
+    private final int capacity;
+    private final Map<Type, Long> ttls = new HashMap<Type, Long>();
+
+    private final RandomAccessFile indexFile;
+    private final MappedByteBuffer index;
+    /** Open segment files by id, the highest id is the active segment. */
+    private final TreeMap<Integer, RandomAccessFile> segments = new TreeMap<Integer, RandomAccessFile>();
+    private long size;
+    private boolean closed;
+
+    private int hitCount;
+    private int missCount;
+    private int writeCount;
+    private int evictionCount;
+    private int compactionCount;
+
+    /**
+     * Open the cache in the given directory, creating it if necessary.
+     *
+     * @param maxSize The maximum number of bytes of all segment files.
+     * @param maxEntries The maximum number of cached bodies. If it differs from the one the cache was created with,
+     * the cache is cleared.
+     */
+    public DiskCache(File directory, long maxSize, int maxEntries) throws IOException {
+        if (maxSize <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0 || maxEntries <= 0");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.segmentSize = Math.min(Math.max(maxSize / 8, 64 * 1024), Integer.MAX_VALUE);
+
+        // keep the hash table at most half full
+        int capacity = 16;
+        while (capacity < maxEntries * 2L && capacity < (1 << 26)) {
+            capacity <<= 1;
+        }
+        this.capacity = capacity;
+
+        ttls.put(Movie.class, DEFAULT_TTL_MILLIS);
+        ttls.put(TvShowComplete.class, DEFAULT_TTL_MILLIS);
+        ttls.put(Configuration.class, DEFAULT_TTL_MILLIS);
+
+        indexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        boolean valid = indexFile.length() == HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        valid = valid && index.getInt(HEADER_MAGIC) == MAGIC && index.getInt(HEADER_VERSION) == VERSION
+                && index.getInt(HEADER_CAPACITY) == capacity;
+        if (!valid) {
+            clearIndex(0);
+            index.putInt(HEADER_MAGIC, MAGIC);
+            index.putInt(HEADER_VERSION, VERSION);
+            index.putInt(HEADER_CAPACITY, capacity);
+        }
+
+        // open the segments the index may point to, delete any left over from an older index
+        int active = index.getInt(HEADER_ACTIVE);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.startsWith(SEGMENT_PREFIX)) {
+                    continue;
+                }
+                int id;
+                try {
+                    id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (!valid || id > active) {
+                    file.delete();
+                } else {
+                    segments.put(id, new RandomAccessFile(file, "rw"));
+                    size += file.length();
+                }
+            }
+        }
+        if (!segments.containsKey(active)) {
+            segments.put(active, new RandomAccessFile(segmentFile(active), "rw"));
+        }
+    }
+
+    /**
+     * Set how long responses of the given type are kept. Only responses of types with a time to live are cached.
+     *
+     * @param duration Zero to not cache responses of this type.
+     */
+    public synchronized DiskCache setTtl(Class<?> type, long duration, TimeUnit unit) {
+        ttls.put(type, unit.toMillis(duration));
+        return this;
+    }
+
+    /**
+     * Returns how long responses of the given type are kept, zero if they are not cached.
+     */
+    public synchronized long ttlMillis(Type type) {
+        Long ttl = ttls.get(type);
+        return ttl != null ? ttl : 0;
+    }
+
+    /**
+     * Returns the body cached for the given key, or {@code null} if there is none, it has expired or is corrupt.
+     */
+    public synchronized byte[] get(String key) throws IOException {
+        checkNotClosed();
+        long hash = hash(key);
+        int slot = probe(hash);
+        if (slot < 0) {
+            missCount++;
+            return null;
+        }
+        int position = slotPosition(slot);
+        if (index.getLong(position + SLOT_EXPIRES) <= currentTimeMillis()) {
+            removeSlot(slot);
+            missCount++;
+            return null;
+        }
+        byte[] record = readRecord(slot);
+        byte[] body = record != null ? parseBody(record, key) : null;
+        if (body == null) {
+            removeSlot(slot);
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return body;
+    }
+
+    /**
+     * Appends the given body to the active segment and points the key at it. May compact or evict segments to stay
+     * within the maximum size.
+     */
+    public synchronized void put(String key, byte[] body, long ttlMillis) throws IOException {
+        checkNotClosed();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long expiresAt = currentTimeMillis() + ttlMillis;
+        byte[] keyBytes = key.getBytes("UTF-8");
+        int length = RECORD_OVERHEAD + keyBytes.length + body.length;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(keyBytes.length);
+        record.put(keyBytes);
+        record.putLong(expiresAt);
+        record.putInt(body.length);
+        record.put(body);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length - 4);
+        record.putInt((int) crc.getValue());
+
+        long hash = hash(key);
+        int slot = probe(hash);
+        if (slot < 0) {
+            slot = -slot - 1;
+            if (stateOf(slot) == STATE_EMPTY) {
+                addToHeader(HEADER_USED, 1);
+            }
+            addToHeader(HEADER_LIVE, 1);
+        }
+        int offset = append(record.array());
+        int position = slotPosition(slot);
+        index.putInt(position + SLOT_SEGMENT, activeSegment());
+        index.putLong(position + SLOT_HASH, hash);
+        index.putInt(position + SLOT_OFFSET, offset);
+        index.putInt(position + SLOT_LENGTH, length);
+        index.putLong(position + SLOT_EXPIRES, expiresAt);
+        index.putInt(position + SLOT_STATE, STATE_LIVE);
+        writeCount++;
+
+        trimToSize();
+    }
+
+    /**
+     * Removes the body cached for the given key, if any.
+     */
+    public synchronized void remove(String key) {
+        checkNotClosed();
+        int slot = probe(hash(key));
+        if (slot >= 0) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Removes all cached bodies and deletes all but an empty active segment.
+     */
+    public synchronized void evictAll() throws IOException {
+        checkNotClosed();
+        while (segments.size() > 1) {
+            evictSegment(segments.firstKey());
+        }
+        evictSegment(activeSegment());
+    }
+
+    /**
+     * Appends the record to the active segment, starting a new one if it is full. A segment holds at most an eighth
+     * of the index capacity, so evicting the oldest segment frees enough slots.
+     *
+     * @return The offset of the record in the active segment.
+     */
+    private int append(byte[] record) throws IOException {
+        RandomAccessFile segment = segments.get(activeSegment());
+        long offset = segment.length();
+        if (offset > 0 && (offset + record.length > segmentSize
+                || index.getInt(HEADER_ACTIVE_RECORDS) >= capacity / 8)) {
+            int active = activeSegment() + 1;
+            segment = new RandomAccessFile(segmentFile(active), "rw");
+            segment.setLength(0);
+            segments.put(active, segment);
+            index.putInt(HEADER_ACTIVE, active);
+            index.putInt(HEADER_ACTIVE_RECORDS, 0);
+            offset = 0;
+        }
+        addToHeader(HEADER_ACTIVE_RECORDS, 1);
+        segment.seek(offset);
+        segment.write(record);
+        size += record.length;
+        return (int) offset;
+    }
+
+    private void trimToSize() throws IOException {
+        if (size > maxSize) {
+            compact();
+            while (size > maxSize && segments.size() > 1) {
+                evictSegment(segments.firstKey());
+            }
+        }
+        if (index.getInt(HEADER_USED) > capacity * 3 / 4) {
+            while (index.getInt(HEADER_LIVE) > capacity / 2) {
+                evictSegment(segments.firstKey());
+            }
+            rehash();
+        }
+    }
+
+    /**
+     * Rewrites the live records of sealed segments which are less than half in use to the active segment and deletes
+     * them. Expired records are dropped.
+     */
+    private void compact() throws IOException {
+        int active = activeSegment();
+        Map<Integer, Long> liveBytes = new HashMap<Integer, Long>();
+        Map<Integer, List<Integer>> liveSlots = new HashMap<Integer, List<Integer>>();
+        long now = currentTimeMillis();
+        for (int slot = 0; slot < capacity; slot++) {
+            if (stateOf(slot) != STATE_LIVE) {
+                continue;
+            }
+            int position = slotPosition(slot);
+            int segment = index.getInt(position + SLOT_SEGMENT);
+            if (segment == active) {
+                continue;
+            }
+            if (index.getLong(position + SLOT_EXPIRES) <= now) {
+                removeSlot(slot);
+                continue;
+            }
+            Long bytes = liveBytes.get(segment);
+            liveBytes.put(segment, (bytes != null ? bytes : 0) + index.getInt(position + SLOT_LENGTH));
+            List<Integer> slots = liveSlots.get(segment);
+            if (slots == null) {
+                slots = new ArrayList<Integer>();
+                liveSlots.put(segment, slots);
+            }
+            slots.add(slot);
+        }
+
+        for (Integer segment : new ArrayList<Integer>(segments.headMap(active).keySet())) {
+            Long bytes = liveBytes.get(segment);
+            if (bytes != null && bytes * 2 >= segments.get(segment).length()) {
+                continue;
+            }
+            List<Integer> slots = liveSlots.get(segment);
+            if (slots != null) {
+                for (int slot : slots) {
+                    byte[] record = readRecord(slot);
+                    if (record == null) {
+                        removeSlot(slot);
+                        continue;
+                    }
+                    int offset = append(record);
+                    int position = slotPosition(slot);
+                    index.putInt(position + SLOT_SEGMENT, activeSegment());
+                    index.putInt(position + SLOT_OFFSET, offset);
+                }
+            }
+            deleteSegment(segment);
+            compactionCount++;
+        }
+    }
+
+    /**
+     * Removes all records of the given segment from the index and deletes it. The active segment is emptied instead.
+     */
+    private void evictSegment(int segment) throws IOException {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (stateOf(slot) == STATE_LIVE && index.getInt(slotPosition(slot) + SLOT_SEGMENT) == segment) {
+                removeSlot(slot);
+                evictionCount++;
+            }
+        }
+        if (segment == activeSegment()) {
+            RandomAccessFile file = segments.get(segment);
+            size -= file.length();
+            file.setLength(0);
+            index.putInt(HEADER_ACTIVE_RECORDS, 0);
+        } else {
+            deleteSegment(segment);
+        }
+    }
+
+    private void deleteSegment(int segment) throws IOException {
+        RandomAccessFile file = segments.remove(segment);
+        size -= file.length();
+        file.close();
+        segmentFile(segment).delete();
+    }
+
+    /**
+     * Re-inserts all live slots into a cleared table, dropping removed slots which lengthen probing.
+     */
+    private void rehash() {
+        int live = index.getInt(HEADER_LIVE);
+        byte[] slots = new byte[live * SLOT_SIZE];
+        int count = 0;
+        for (int slot = 0; slot < capacity && count < live; slot++) {
+            if (stateOf(slot) == STATE_LIVE) {
+                index.position(slotPosition(slot));
+                index.get(slots, count * SLOT_SIZE, SLOT_SIZE);
+                count++;
+            }
+        }
+        clearIndex(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            long hash = ByteBuffer.wrap(slots, i * SLOT_SIZE + SLOT_HASH, 8).getLong();
+            int slot = -probe(hash) - 1;
+            index.position(slotPosition(slot));
+            index.put(slots, i * SLOT_SIZE, SLOT_SIZE);
+        }
+        index.putInt(HEADER_USED, count);
+        index.putInt(HEADER_LIVE, count);
+    }
+
+    private void clearIndex(int from) {
+        byte[] zeros = new byte[8192];
+        index.position(from);
+        while (index.hasRemaining()) {
+            index.put(zeros, 0, Math.min(zeros.length, index.remaining()));
+        }
+    }
+
+    /**
+     * Returns the live slot with the given hash or, if there is none, {@code -slot - 1} of the slot to insert it at.
+     */
+    private int probe(long hash) {
+        int mask = capacity - 1;
+        int free = -1;
+        for (int i = 0, slot = (int) hash & mask; i < capacity; i++, slot = (slot + 1) & mask) {
+            int state = stateOf(slot);
+            if (state == STATE_EMPTY) {
+                return -(free != -1 ? free : slot) - 1;
+            }
+            if (state == STATE_REMOVED) {
+                if (free == -1) {
+                    free = slot;
+                }
+            } else if (index.getLong(slotPosition(slot) + SLOT_HASH) == hash) {
+                return slot;
+            }
+        }
+        return -free - 1;
+    }
+
+    private byte[] readRecord(int slot) throws IOException {
+        int position = slotPosition(slot);
+        RandomAccessFile segment = segments.get(index.getInt(position + SLOT_SEGMENT));
+        int offset = index.getInt(position + SLOT_OFFSET);
+        int length = index.getInt(position + SLOT_LENGTH);
+        if (segment == null || length < RECORD_OVERHEAD || offset + (long) length > segment.length()) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        segment.seek(offset);
+        segment.readFully(record);
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, length - 4);
+        if (ByteBuffer.wrap(record, length - 4, 4).getInt() != (int) crc.getValue()) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Returns the body of the given record, or {@code null} if it is not the record of the given key.
+     */
+    private static byte[] parseBody(byte[] record, String key) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int keyLength = buffer.getInt();
+        if (keyLength < 0 || keyLength > record.length - RECORD_OVERHEAD
+                || !key.equals(new String(record, 4, keyLength, "UTF-8"))) {
+            return null;
+        }
+        buffer.position(4 + keyLength + 8);
+        int bodyLength = buffer.getInt();
+        if (bodyLength != record.length - RECORD_OVERHEAD - keyLength) {
+            return null;
+        }
+        byte[] body = new byte[bodyLength];
+        buffer.get(body);
+        return body;
+    }
+
+    private void removeSlot(int slot) {
+        index.putInt(slotPosition(slot) + SLOT_STATE, STATE_REMOVED);
+        addToHeader(HEADER_LIVE, -1);
+    }
+
+    private int stateOf(int slot) {
+        return index.getInt(slotPosition(slot) + SLOT_STATE);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private void addToHeader(int field, int delta) {
+        index.putInt(field, index.getInt(field) + delta);
+    }
+
+    private int activeSegment() {
+        return segments.lastKey();
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, SEGMENT_PREFIX + segment);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the key, with its bits mixed so the low bits can be used as table index.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * The current time, override to control expiry in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("cache is closed");
+        }
+    }
+
+    /**
+     * Returns the number of bytes of all segment files.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of cached bodies, including expired ones not yet removed.
+     */
+    public synchronized int entryCount() {
+        return closed ? 0 : index.getInt(HEADER_LIVE);
+    }
+
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    public synchronized int writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * Returns the number of bodies removed with their segment to stay within the maximum size.
+     */
+    public synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of segments which were compacted.
+     */
+    public synchronized int compactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Writes the index to disk and closes all files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        index.force();
+        indexFile.close();
+        for (RandomAccessFile segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded in-memory cache of deserialized responses, keyed by {@link com.uwetrottmann.tmdb.ServiceRequest#key()}.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setResponseCache(ResponseCache)}. Service methods will then emit
+ * a cached response instead of sending a request, as long as it has not expired. How long a response is kept is set
+ * per route (e.g. {@code /movie/{id}}), all other routes use the default time to live. When the cache is full, the
+ * least recently used response is evicted.
+ * <p>
+ * Expired responses which came with {@link Validators} are kept until they are evicted, so the
+ * {@link CacheInterceptor} can revalidate them with a conditional request and, if TMDb answers {@code 304 Not
+ * Modified}, emit them again without downloading and deserializing the body.
+ * <p>
+ * Cached responses are shared by all callers requesting the same resource, so they should be treated as read-only.
+ * All methods are thread-safe.
+ */
+public class ResponseCache {
+
+    /** Default time to live of responses, one hour. */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final LinkedHashMap<String, Entry> map;
+    private final Map<String, Long> routeTtls = new HashMap<String, Long>();
+    private final int maxSize;
+    private long defaultTtlMillis = DEFAULT_TTL_MILLIS;
+
+    private int size;
+    private int putCount;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+    private int expiredCount;
+    private int revalidatedCount;
+
+    /**
+     * @param maxSize The maximum number of responses to keep.
+     */
+    public ResponseCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<String, Entry>(0, 0.75f, true);
+        // the configuration rarely changes
+        routeTtls.put("/configuration", TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * Set how long responses of routes without their own time to live are kept. Defaults to
+     * {@link #DEFAULT_TTL_MILLIS}.
+     *
+     * @param duration Zero to not cache responses of these routes.
+     */
+    public synchronized ResponseCache setDefaultTtl(long duration, TimeUnit unit) {
+        defaultTtlMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Set how long responses of the given route are kept.
+     *
+     * @param route The path template of a service method, e.g. {@code /movie/{id}}.
+     * @param duration Zero to not cache responses of this route.
+     */
+    public synchronized ResponseCache setTtl(String route, long duration, TimeUnit unit) {
+        routeTtls.put(route, unit.toMillis(duration));
+        return this;
+    }
+
+    /**
+     * Returns how long responses of the given route are kept, zero if they are not cached.
+     */
+    public synchronized long ttlMillis(String route) {
+        Long ttl = routeTtls.get(route);
+        return ttl != null ? ttl : defaultTtlMillis;
+    }
+
+    /**
+     * Returns the cached response for the given key, or {@code null} if there is none or it has expired. A returned
+     * response is moved to the head of the queue.
+     */
+    public synchronized Object get(String key) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        if (entry.expiresAt <= currentTimeMillis()) {
+            if (entry.validators == null) {
+                map.remove(key);
+                size--;
+                expiredCount++;
+            }
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * Like {@link #get(String)}, but does not count as a hit or miss, as when looking up the parts of a response.
+     */
+    synchronized Object peek(String key) {
+        Entry entry = map.get(key);
+        return entry != null && entry.expiresAt > currentTimeMillis() ? entry.value : null;
+    }
+
+    /**
+     * Returns the expired response for the given key if it can be revalidated, or {@code null}. Does not count as a hit
+     * or miss.
+     */
+    public synchronized Stale getStale(String key) {
+        Entry entry = map.get(key);
+        if (entry == null || entry.validators == null || entry.expiresAt > currentTimeMillis()) {
+            return null;
+        }
+        return new Stale(entry.value, entry.validators);
+    }
+
+    /**
+     * Caches the response for the given key until the time to live has passed. If the cache is full, evicts the least
+     * recently used responses.
+     */
+    public synchronized void put(String key, Object value, long ttlMillis) {
+        put(key, value, ttlMillis, null);
+    }
+
+    /**
+     * Like {@link #put(String, Object, long)}, but keeps the response after it expired so it can be revalidated.
+     *
+     * @param validators The validators of the response or {@code null}.
+     */
+    public synchronized void put(String key, Object value, long ttlMillis, Validators validators) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+        if (ttlMillis <= 0) {
+            return;
+        }
+        putCount++;
+        Entry previous = map.put(key, new Entry(value, currentTimeMillis() + ttlMillis, validators));
+        if (previous == null) {
+            size++;
+        }
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Caches an expired response again after TMDb confirmed it has not been modified.
+     *
+     * @param validators The validators sent with the confirmation, or those of the response if there were none.
+     */
+    public synchronized void putRevalidated(String key, Object value, long ttlMillis, Validators validators) {
+        revalidatedCount++;
+        put(key, value, ttlMillis, validators);
+    }
+
+    /**
+     * Removes the cached response for the given key, if any.
+     */
+    public synchronized void remove(String key) {
+        if (map.remove(key) != null) {
+            size--;
+        }
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public synchronized void evictAll() {
+        map.clear();
+        size = 0;
+    }
+
+    private void trimToSize(int maxSize) {
+        Iterator<Entry> iterator = map.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            size--;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * The current time, override to control expiry in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of cached responses, including expired ones not yet removed.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a response.
+     */
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned {@code null}.
+     */
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    public synchronized int putCount() {
+        return putCount;
+    }
+
+    /**
+     * Returns the number of responses removed to make room for others.
+     */
+    public synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of responses removed because their time to live had passed.
+     */
+    public synchronized int expiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Returns the number of expired responses TMDb confirmed to be unmodified.
+     */
+    public synchronized int revalidatedCount() {
+        return revalidatedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return String.format(Locale.US, "ResponseCache[maxSize=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                maxSize, hitCount, missCount, hitPercent);
+    }
+
+    /**
+     * An expired response and the validators to ask TMDb whether it is still current.
+     */
+    public static final class Stale {
+
+        private final Object value;
+        private final Validators validators;
+
+        Stale(Object value, Validators validators) {
+            this.value = value;
+            this.validators = validators;
+        }
+
+        public Object value() {
+            return value;
+        }
+
+        public Validators validators() {
+            return validators;
+        }
+    }
+
+    private static final class Entry {
+
+        final Object value;
+        final long expiresAt;
+        final Validators validators;
+
+        Entry(Object value, long expiresAt, Validators validators) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.validators = validators;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import java.io.IOException;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+/**
+ * Remembers the {@link Validators} of the last response received on the current thread, until the
+ * {@link ValidatorRecordingConverter} binds them to the response converted from its body.
+ */
+public final class ValidatorRecordingClient implements Client {
+
+    private static final ThreadLocal<Validators> RECEIVED_VALIDATORS = new ThreadLocal<Validators>();
+
+    private final Client delegate;
+
+    public ValidatorRecordingClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Response response = delegate.execute(request);
+        Validators validators = Validators.fromHeaders(response.getHeaders());
+        if (validators != null) {
+            RECEIVED_VALIDATORS.set(validators);
+        } else {
+            RECEIVED_VALIDATORS.remove();
+        }
+        return response;
+    }
+
+    /**
+     * Returns and forgets the validators of the last response received on this thread, or {@code null} if it had none.
+     */
+    static Validators takeReceived() {
+        Validators validators = RECEIVED_VALIDATORS.get();
+        RECEIVED_VALIDATORS.remove();
+        return validators;
+    }
+}
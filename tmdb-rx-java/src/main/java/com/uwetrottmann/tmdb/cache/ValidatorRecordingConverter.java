@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import java.lang.reflect.Type;
+
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Binds the {@link Validators} recorded by the {@link ValidatorRecordingClient} to the response converted from the
+ * body they were received with, so the {@link CacheInterceptor} can store them with it in a {@link ResponseCache}.
+ * <p>
+ * Retrofit emits a converted response on the thread which converted it, but interceptors may emit other objects on it
+ * first, e.g. the parts of a response delivered by a {@link com.uwetrottmann.tmdb.interceptors.RequestMerger}. Like
+ * {@link BodyRecordingConverter#takeBody(Object)}, {@link #takeValidators(Object)} therefore only returns the
+ * validators for the very instance converted from the body. They are not forgotten once taken, so several subscribers
+ * sharing a response see the same validators.
+ */
+public final class ValidatorRecordingConverter implements Converter {
+
+    private static final ThreadLocal<RecordedValidators> LAST_VALIDATORS = new ThreadLocal<RecordedValidators>();
+
+    private final Converter delegate;
+
+    public ValidatorRecordingConverter(Converter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object fromBody(TypedInput body, Type type) throws ConversionException {
+        Validators validators = ValidatorRecordingClient.takeReceived();
+        Object response = delegate.fromBody(body, type);
+        if (validators != null) {
+            LAST_VALIDATORS.set(new RecordedValidators(response, validators));
+        } else {
+            LAST_VALIDATORS.remove();
+        }
+        return response;
+    }
+
+    @Override
+    public TypedOutput toBody(Object object) {
+        return delegate.toBody(object);
+    }
+
+    /**
+     * Returns the validators of the response the given response was converted from on this thread, or {@code null} if
+     * there were none or it was not the last converted response.
+     */
+    public static Validators takeValidators(Object response) {
+        RecordedValidators recorded = LAST_VALIDATORS.get();
+        if (recorded == null || recorded.response != response) {
+            return null;
+        }
+        return recorded.validators;
+    }
+
+    private static final class RecordedValidators {
+
+        final Object response;
+        final Validators validators;
+
+        RecordedValidators(Object response, Validators validators) {
+            this.response = response;
+            this.validators = validators;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.cache;
+
+import java.util.List;
+
+import retrofit.client.Header;
+
+/**
+ * The {@code ETag} and {@code Last-Modified} headers of a response, which let a {@link ResponseCache} ask TMDb whether
+ * an expired response is still current instead of downloading it again.
+ */
+public final class Validators {
+
+    public static final String ETAG = "ETag";
+    public static final String LAST_MODIFIED = "Last-Modified";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * @param etag The entity tag or {@code null}.
+     * @param lastModified The last modification date as sent by the server or {@code null}.
+     */
+    public Validators(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the validators found in the given response headers, or {@code null} if there are none.
+     */
+    public static Validators fromHeaders(List<Header> headers) {
+        String etag = null;
+        String lastModified = null;
+        if (headers != null) {
+            for (Header header : headers) {
+                if (ETAG.equalsIgnoreCase(header.getName())) {
+                    etag = header.getValue();
+                } else if (LAST_MODIFIED.equalsIgnoreCase(header.getName())) {
+                    lastModified = header.getValue();
+                }
+            }
+        }
+        return etag != null || lastModified != null ? new Validators(etag, lastModified) : null;
+    }
+
+    public String etag() {
+        return etag;
+    }
+
+    public String lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "Validators[etag=" + etag + ",lastModified=" + lastModified + "]";
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.discover;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of document numbers, stored as a sorted array if it is sparse, else as one bit per document of the
+ * index. Like the containers of a roaring bitmap, the array is chosen if it is smaller than the bits.
+ * <p>
+ * Queries combine bitmaps into a {@code long[]} of one bit per document.
+ */
+final class Bitmap {
+
+    static final Bitmap EMPTY = new Bitmap(new int[0], null, 0);
+
+    /** The sorted numbers if sparse, else {@code null}. */
+    private final int[] numbers;
+    /** The bits if dense, else {@code null}. */
+    private final long[] words;
+    private final int cardinality;
+
+    private Bitmap(int[] numbers, long[] words, int cardinality) {
+        this.numbers = numbers;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param numbers Increasing document numbers, only the first {@code count} are used.
+     * @param size The number of documents of the index.
+     */
+    static Bitmap of(int[] numbers, int count, int size) {
+        // an int per document against a bit per document of the index
+        if ((long) count * 32 < size) {
+            return new Bitmap(Arrays.copyOf(numbers, count), null, count);
+        }
+        long[] words = new long[wordCount(size)];
+        for (int i = 0; i < count; i++) {
+            words[numbers[i] >>> 6] |= 1L << numbers[i];
+        }
+        return new Bitmap(null, words, count);
+    }
+
+    static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Returns bits set for all of the given number of documents.
+     */
+    static long[] all(int size) {
+        long[] words = new long[wordCount(size)];
+        Arrays.fill(words, -1L);
+        if ((size & 63) != 0) {
+            words[words.length - 1] = (1L << size) - 1;
+        }
+        return words;
+    }
+
+    static int cardinality(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Clears the bits of the given set which are not in this bitmap.
+     */
+    void andInto(long[] target) {
+        if (words != null) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] &= words[i];
+            }
+            return;
+        }
+        int next = 0;
+        for (int i = 0; i < target.length; i++) {
+            if (target[i] == 0) {
+                continue;
+            }
+            long mask = 0;
+            while (next < numbers.length && numbers[next] >>> 6 < i) {
+                next++;
+            }
+            while (next < numbers.length && numbers[next] >>> 6 == i) {
+                mask |= 1L << numbers[next++];
+            }
+            target[i] &= mask;
+        }
+    }
+
+    /**
+     * Clears the bits of the given set which are in this bitmap.
+     */
+    void andNotInto(long[] target) {
+        if (words != null) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] &= ~words[i];
+            }
+            return;
+        }
+        for (int number : numbers) {
+            target[number >>> 6] &= ~(1L << number);
+        }
+    }
+
+    /**
+     * Sets the bits of the given set which are in this bitmap.
+     */
+    void orInto(long[] target) {
+        if (words != null) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] |= words[i];
+            }
+            return;
+        }
+        for (int number : numbers) {
+            target[number >>> 6] |= 1L << number;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by the numbers or bits.
+     */
+    long sizeInBytes() {
+        return numbers != null ? 4L * numbers.length : 8L * words.length;
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.discover;
+
+import com.uwetrottmann.tmdb.entities.BaseMember;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Genre;
+import com.uwetrottmann.tmdb.entities.Keyword;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.Network;
+import com.uwetrottmann.tmdb.entities.ProductionCompany;
+import com.uwetrottmann.tmdb.entities.TvShow;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of a catalog of movies or shows, to run discover queries locally instead of crawling the pages of
+ * {@link com.uwetrottmann.tmdb.services.DiscoverService}.
+ * <p>
+ * Each entity is a document with a number. For each genre, company, keyword, cast and crew member and network the
+ * index keeps a {@link Bitmap} of the documents having it, for each sortable property a {@link NumericColumn} of
+ * primitive arrays sorted by value. A query sets a bit per document and clears those failing each filter, so its cost
+ * depends on the size of the catalog rather than on the number of filters. Ordering walks a precomputed order instead
+ * of sorting.
+ * <p>
+ * Build an index with {@link #movies()} or {@link #tvShows()}, e.g. from movies fetched by a
+ * {@link com.uwetrottmann.tmdb.bulk.BulkFetcher} with their credits appended. To update the catalog build a new index
+ * and swap it in, e.g. with {@link LocalDiscoverService#setMovies(DiscoverIndex)}. Indexes are thread-safe.
+ */
+public final class DiscoverIndex<T> {
+
+    /**
+     * Properties with a set of ids per entity.
+     */
+    public enum Facet {
+        GENRE,
+        COMPANY,
+        KEYWORD,
+        CAST,
+        CREW,
+        /** The networks of shows. */
+        NETWORK
+    }
+
+    /**
+     * Properties with a value per entity to filter by a range or sort by.
+     */
+    public enum Column {
+        POPULARITY,
+        VOTE_AVERAGE,
+        VOTE_COUNT,
+        /** The release date of movies or first air date of shows, in milliseconds since the epoch. */
+        RELEASE_DATE,
+        REVENUE,
+        /** The rank of the original title or name in alphabetical order. */
+        ORIGINAL_TITLE
+    }
+
+    private final Object[] entities;
+    private final List<Map<Integer, Bitmap>> facets;
+    private final NumericColumn[] columns;
+    private final Bitmap adult;
+
+    private DiscoverIndex(Object[] entities, List<Map<Integer, Bitmap>> facets, NumericColumn[] columns,
+            Bitmap adult) {
+        this.entities = entities;
+        this.facets = facets;
+        this.columns = columns;
+        this.adult = adult;
+    }
+
+    /**
+     * Returns a builder of an index of movies. Movies are indexed by their genres, production companies, credits,
+     * popularity, votes, release date, revenue and original title.
+     */
+    public static Builder<Movie> movies() {
+        return new Builder<Movie>() {
+            @Override
+            void describe(Movie movie, Document document) {
+                document.adult = movie.adult != null && movie.adult;
+                addGenres(document, movie.genres);
+                addCompanies(document, movie.production_companies);
+                addCredits(document, movie.credits);
+                document.values[Column.POPULARITY.ordinal()] = value(movie.popularity);
+                document.values[Column.VOTE_AVERAGE.ordinal()] = value(movie.vote_average);
+                document.values[Column.VOTE_COUNT.ordinal()] = value(movie.vote_count);
+                document.values[Column.RELEASE_DATE.ordinal()] = value(movie.release_date);
+                document.values[Column.REVENUE.ordinal()] = value(movie.revenue);
+                document.title = movie.original_title != null ? movie.original_title : movie.title;
+            }
+
+            @Override
+            Integer id(Movie movie) {
+                return movie.id;
+            }
+        };
+    }
+
+    /**
+     * Returns a builder of an index of shows. Shows are indexed by their popularity, votes, first air date and original
+     * name, and if they are a {@link TvShowComplete} also by their genres, production companies, networks and credits.
+     */
+    public static Builder<TvShow> tvShows() {
+        return new Builder<TvShow>() {
+            @Override
+            void describe(TvShow show, Document document) {
+                if (show instanceof TvShowComplete) {
+                    TvShowComplete complete = (TvShowComplete) show;
+                    addGenres(document, complete.genres);
+                    addCompanies(document, complete.production_companies);
+                    addCredits(document, complete.credits);
+                    if (complete.networks != null) {
+                        for (Network network : complete.networks) {
+                            document.add(Facet.NETWORK, network != null ? network.id : null);
+                        }
+                    }
+                }
+                document.values[Column.POPULARITY.ordinal()] = value(show.popularity);
+                document.values[Column.VOTE_AVERAGE.ordinal()] = value(show.vote_average);
+                document.values[Column.VOTE_COUNT.ordinal()] = value(show.vote_count);
+                document.values[Column.RELEASE_DATE.ordinal()] = value(show.first_air_date);
+                document.title = show.original_name != null ? show.original_name : show.name;
+            }
+
+            @Override
+            Integer id(TvShow show) {
+                return show.id;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of indexed entities.
+     */
+    public int size() {
+        return entities.length;
+    }
+
+    /**
+     * Returns the number of entities with the given id, e.g. of a genre.
+     */
+    public int count(Facet facet, int id) {
+        Bitmap bitmap = facets.get(facet.ordinal()).get(id);
+        return bitmap != null ? bitmap.cardinality() : 0;
+    }
+
+    /**
+     * Returns the approximate number of bytes used by the bitmaps and columns, not counting the entities.
+     */
+    public long sizeInBytes() {
+        long size = adult.sizeInBytes();
+        for (Map<Integer, Bitmap> bitmaps : facets) {
+            for (Bitmap bitmap : bitmaps.values()) {
+                // and about 48 bytes for the entry, key and bitmap
+                size += bitmap.sizeInBytes() + 48;
+            }
+        }
+        for (NumericColumn column : columns) {
+            size += column.sizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the entities matching the query at positions {@code offset} to {@code offset + limit} of its order, and
+     * the number of all matches.
+     */
+    @SuppressWarnings("unchecked")
+    public Result<T> discover(DiscoverQuery query, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset < 0 || limit < 0");
+        }
+        long[] matches = Bitmap.all(entities.length);
+        if (!query.includesAdult()) {
+            adult.andNotInto(matches);
+        }
+        for (DiscoverQuery.Clause clause : query.clauses()) {
+            if (clause.facets.length == 1 && clause.ids.length == 1) {
+                Bitmap bitmap = facets.get(clause.facets[0].ordinal()).get(clause.ids[0]);
+                (bitmap != null ? bitmap : Bitmap.EMPTY).andInto(matches);
+            } else {
+                long[] any = new long[matches.length];
+                for (Facet facet : clause.facets) {
+                    for (int id : clause.ids) {
+                        Bitmap bitmap = facets.get(facet.ordinal()).get(id);
+                        if (bitmap != null) {
+                            bitmap.orInto(any);
+                        }
+                    }
+                }
+                for (int i = 0; i < matches.length; i++) {
+                    matches[i] &= any[i];
+                }
+            }
+        }
+        for (DiscoverQuery.Range range : query.ranges()) {
+            columns[range.column.ordinal()].andRange(matches, range.min, range.max);
+        }
+
+        int count = Bitmap.cardinality(matches);
+        int[] selected = columns[query.sortColumn().ordinal()]
+                .select(matches, count, query.isDescending(), offset, limit);
+        List<T> results = new ArrayList<T>(selected.length);
+        for (int number : selected) {
+            results.add((T) entities[number]);
+        }
+        return new Result<T>(results, count);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "DiscoverIndex[size=%d,genres=%d,companies=%d,people=%d]", entities.length,
+                facets.get(Facet.GENRE.ordinal()).size(), facets.get(Facet.COMPANY.ordinal()).size(),
+                facets.get(Facet.CAST.ordinal()).size() + facets.get(Facet.CREW.ordinal()).size());
+    }
+
+    /**
+     * A page of the entities matching a query and the number of all matches.
+     */
+    public static final class Result<T> {
+
+        private final List<T> results;
+        private final int totalResults;
+
+        Result(List<T> results, int totalResults) {
+            this.results = Collections.unmodifiableList(results);
+            this.totalResults = totalResults;
+        }
+
+        public List<T> results() {
+            return results;
+        }
+
+        public int totalResults() {
+            return totalResults;
+        }
+    }
+
+    /**
+     * Collects the entities of an index. An entity added again replaces the one with the same id, entities without an
+     * id are ignored. Builders are not thread-safe.
+     */
+    public abstract static class Builder<T> {
+
+        private final Map<Integer, Document> documents = new LinkedHashMap<Integer, Document>();
+
+        Builder() {
+        }
+
+        /**
+         * Adds the given entity.
+         */
+        public Builder<T> add(T entity) {
+            return add(entity, null);
+        }
+
+        /**
+         * Adds the given entity with its keywords, e.g. from {@link com.uwetrottmann.tmdb.services.MoviesService}.
+         *
+         * @param keywords The keywords, or {@code null}.
+         */
+        public Builder<T> add(T entity, List<Keyword> keywords) {
+            Integer id = entity != null ? id(entity) : null;
+            if (id == null) {
+                return this;
+            }
+            Document document = new Document(entity);
+            describe(entity, document);
+            if (keywords != null) {
+                for (Keyword keyword : keywords) {
+                    document.add(Facet.KEYWORD, keyword != null ? keyword.id : null);
+                }
+            }
+            documents.remove(id);
+            documents.put(id, document);
+            return this;
+        }
+
+        public DiscoverIndex<T> build() {
+            int size = documents.size();
+            Object[] entities = new Object[size];
+            Document[] indexed = documents.values().toArray(new Document[size]);
+
+            // postings of each facet id, appended in document order so they are sorted
+            List<Map<Integer, Postings>> postings = new ArrayList<Map<Integer, Postings>>();
+            for (int i = 0; i < Facet.values().length; i++) {
+                postings.add(new HashMap<Integer, Postings>());
+            }
+            Postings adult = new Postings();
+            double[][] values = new double[Column.values().length][size];
+            for (int number = 0; number < size; number++) {
+                Document document = indexed[number];
+                entities[number] = document.entity;
+                for (int facet = 0; facet < document.ids.size(); facet++) {
+                    if (document.ids.get(facet) == null) {
+                        continue;
+                    }
+                    for (Integer id : document.ids.get(facet)) {
+                        Postings list = postings.get(facet).get(id);
+                        if (list == null) {
+                            list = new Postings();
+                            postings.get(facet).put(id, list);
+                        }
+                        list.append(number);
+                    }
+                }
+                if (document.adult) {
+                    adult.append(number);
+                }
+                for (int column = 0; column < values.length; column++) {
+                    values[column][number] = document.values[column];
+                }
+            }
+            values[Column.ORIGINAL_TITLE.ordinal()] = titleRanks(indexed);
+
+            List<Map<Integer, Bitmap>> facets = new ArrayList<Map<Integer, Bitmap>>();
+            for (Map<Integer, Postings> lists : postings) {
+                Map<Integer, Bitmap> bitmaps = new HashMap<Integer, Bitmap>(lists.size() * 4 / 3 + 1);
+                for (Map.Entry<Integer, Postings> entry : lists.entrySet()) {
+                    Postings list = entry.getValue();
+                    bitmaps.put(entry.getKey(), Bitmap.of(list.numbers, list.size, size));
+                }
+                facets.add(bitmaps);
+            }
+            NumericColumn[] columns = new NumericColumn[values.length];
+            for (int column = 0; column < values.length; column++) {
+                columns[column] = new NumericColumn(values[column]);
+            }
+            return new DiscoverIndex<T>(entities, facets, columns, Bitmap.of(adult.numbers, adult.size, size));
+        }
+
+        abstract Integer id(T entity);
+
+        /**
+         * Sets the facet ids and column values of the given entity.
+         */
+        abstract void describe(T entity, Document document);
+
+        private static double[] titleRanks(final Document[] documents) {
+            Integer[] numbers = new Integer[documents.length];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = i;
+            }
+            Arrays.sort(numbers, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    String titleA = documents[a].title;
+                    String titleB = documents[b].title;
+                    if (titleA == null || titleB == null) {
+                        return titleA != null ? -1 : (titleB != null ? 1 : 0);
+                    }
+                    return titleA.compareToIgnoreCase(titleB);
+                }
+            });
+            double[] ranks = new double[documents.length];
+            for (int rank = 0; rank < numbers.length; rank++) {
+                Document document = documents[numbers[rank]];
+                ranks[numbers[rank]] = document.title != null ? rank : Double.NaN;
+            }
+            return ranks;
+        }
+
+        static void addGenres(Document document, List<Genre> genres) {
+            if (genres != null) {
+                for (Genre genre : genres) {
+                    document.add(Facet.GENRE, genre != null ? genre.id : null);
+                }
+            }
+        }
+
+        static void addCompanies(Document document, List<ProductionCompany> companies) {
+            if (companies != null) {
+                for (ProductionCompany company : companies) {
+                    document.add(Facet.COMPANY, company != null ? company.id : null);
+                }
+            }
+        }
+
+        static void addCredits(Document document, Credits credits) {
+            if (credits == null) {
+                return;
+            }
+            if (credits.cast != null) {
+                for (BaseMember member : credits.cast) {
+                    document.add(Facet.CAST, member != null ? member.id : null);
+                }
+            }
+            if (credits.crew != null) {
+                for (BaseMember member : credits.crew) {
+                    document.add(Facet.CREW, member != null ? member.id : null);
+                }
+            }
+        }
+
+        static double value(Number value) {
+            return value != null ? value.doubleValue() : Double.NaN;
+        }
+
+        static double value(Date date) {
+            return date != null ? date.getTime() : Double.NaN;
+        }
+    }
+
+    /**
+     * An entity while it is being indexed.
+     */
+    static final class Document {
+
+        final Object entity;
+        /** The distinct ids of each facet by its ordinal, or {@code null}. */
+        final List<Set<Integer>> ids = new ArrayList<Set<Integer>>(
+                Collections.<Set<Integer>>nCopies(Facet.values().length, null));
+        final double[] values = new double[Column.values().length];
+        boolean adult;
+        String title;
+
+        Document(Object entity) {
+            this.entity = entity;
+            Arrays.fill(values, Double.NaN);
+        }
+
+        void add(Facet facet, Integer id) {
+            if (id == null) {
+                return;
+            }
+            Set<Integer> facetIds = ids.get(facet.ordinal());
+            if (facetIds == null) {
+                facetIds = new HashSet<Integer>();
+                ids.set(facet.ordinal(), facetIds);
+            }
+            facetIds.add(id);
+        }
+    }
+
+    private static final class Postings {
+
+        int[] numbers = new int[4];
+        int size;
+
+        void append(int number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            numbers[size++] = number;
+        }
+    }
+}
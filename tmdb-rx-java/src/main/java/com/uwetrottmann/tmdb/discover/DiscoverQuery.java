@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.discover;
+
+import com.uwetrottmann.tmdb.enumerations.SortBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The filters and order of a {@link DiscoverIndex#discover(DiscoverQuery, int, int)} query, like the parameters of
+ * {@link com.uwetrottmann.tmdb.services.DiscoverService}.
+ * <p>
+ * A query matches the documents matching all of its filters. By default adult movies are excluded and the matches are
+ * ordered by decreasing popularity. Queries are not thread-safe, but may be reused once built.
+ */
+public class DiscoverQuery {
+
+    private final List<Clause> clauses = new ArrayList<Clause>();
+    private final List<Range> ranges = new ArrayList<Range>();
+    private boolean includeAdult;
+    private DiscoverIndex.Column sortColumn = DiscoverIndex.Column.POPULARITY;
+    private boolean descending = true;
+
+    /**
+     * Include adult movies. Defaults to {@code false}.
+     */
+    public DiscoverQuery includeAdult(boolean includeAdult) {
+        this.includeAdult = includeAdult;
+        return this;
+    }
+
+    /**
+     * Only match documents with all of the given ids, e.g. all of the given genres.
+     */
+    public DiscoverQuery with(DiscoverIndex.Facet facet, int... ids) {
+        for (int id : ids) {
+            clauses.add(new Clause(new DiscoverIndex.Facet[] { facet }, id));
+        }
+        return this;
+    }
+
+    /**
+     * Only match documents with at least one of the given ids, e.g. one of the given companies.
+     */
+    public DiscoverQuery withAny(DiscoverIndex.Facet facet, int... ids) {
+        if (ids.length > 0) {
+            clauses.add(new Clause(new DiscoverIndex.Facet[] { facet }, ids));
+        }
+        return this;
+    }
+
+    /**
+     * Only match documents with each of the given people in their cast or crew, like {@code with_people}.
+     */
+    public DiscoverQuery withPeople(int... personIds) {
+        DiscoverIndex.Facet[] facets = { DiscoverIndex.Facet.CAST, DiscoverIndex.Facet.CREW };
+        for (int id : personIds) {
+            clauses.add(new Clause(facets, id));
+        }
+        return this;
+    }
+
+    /**
+     * Only match documents whose value of the given column is within {@code min} and {@code max}, both inclusive.
+     * Documents without a value do not match.
+     *
+     * @param min The minimum, or {@code null} for no minimum.
+     * @param max The maximum, or {@code null} for no maximum.
+     */
+    public DiscoverQuery range(DiscoverIndex.Column column, Double min, Double max) {
+        if (min != null || max != null) {
+            ranges.add(new Range(column, min != null ? min : Double.NEGATIVE_INFINITY,
+                    max != null ? max : Double.POSITIVE_INFINITY));
+        }
+        return this;
+    }
+
+    /**
+     * Order the matches by the given column.
+     */
+    public DiscoverQuery sortBy(DiscoverIndex.Column column, boolean descending) {
+        this.sortColumn = column;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Order the matches like TMDb would for the given value, {@code null} for decreasing popularity. Release and
+     * primary release date both order by the release date, or the first air date of shows.
+     */
+    public DiscoverQuery sortBy(SortBy sortBy) {
+        if (sortBy == null) {
+            return sortBy(DiscoverIndex.Column.POPULARITY, true);
+        }
+        switch (sortBy) {
+            case POPULARITY_ASC:
+                return sortBy(DiscoverIndex.Column.POPULARITY, false);
+            case RELEASE_DATE_ASC:
+            case PRIMARY_RELEASE_DATE_ASC:
+                return sortBy(DiscoverIndex.Column.RELEASE_DATE, false);
+            case RELEASE_DATE_DESC:
+            case PRIMARY_RELEASE_DATE_DESC:
+                return sortBy(DiscoverIndex.Column.RELEASE_DATE, true);
+            case REVENUE_ASC:
+                return sortBy(DiscoverIndex.Column.REVENUE, false);
+            case REVENUE_DESC:
+                return sortBy(DiscoverIndex.Column.REVENUE, true);
+            case ORIGINAL_TITLE_ASC:
+                return sortBy(DiscoverIndex.Column.ORIGINAL_TITLE, false);
+            case ORIGINAL_TITLE_DESC:
+                return sortBy(DiscoverIndex.Column.ORIGINAL_TITLE, true);
+            case VOTE_AVERAGE_ASC:
+                return sortBy(DiscoverIndex.Column.VOTE_AVERAGE, false);
+            case VOTE_AVERAGE_DESC:
+                return sortBy(DiscoverIndex.Column.VOTE_AVERAGE, true);
+            case VOTE_COUNT_ASC:
+                return sortBy(DiscoverIndex.Column.VOTE_COUNT, false);
+            case VOTE_COUNT_DESC:
+                return sortBy(DiscoverIndex.Column.VOTE_COUNT, true);
+            default:
+                return sortBy(DiscoverIndex.Column.POPULARITY, true);
+        }
+    }
+
+    boolean includesAdult() {
+        return includeAdult;
+    }
+
+    List<Clause> clauses() {
+        return Collections.unmodifiableList(clauses);
+    }
+
+    List<Range> ranges() {
+        return Collections.unmodifiableList(ranges);
+    }
+
+    DiscoverIndex.Column sortColumn() {
+        return sortColumn;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Matches documents with any of the ids in any of the facets.
+     */
+    static final class Clause {
+
+        final DiscoverIndex.Facet[] facets;
+        final int[] ids;
+
+        Clause(DiscoverIndex.Facet[] facets, int... ids) {
+            this.facets = facets;
+            this.ids = ids.clone();
+        }
+    }
+
+    static final class Range {
+
+        final DiscoverIndex.Column column;
+        final double min;
+        final double max;
+
+        Range(DiscoverIndex.Column column, double min, double max) {
+            this.column = column;
+            this.min = min;
+            this.max = max;
+        }
+    }
+}
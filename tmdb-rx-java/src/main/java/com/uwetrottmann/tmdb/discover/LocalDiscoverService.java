@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.discover;
+
+import com.uwetrottmann.tmdb.entities.AppendToDiscoverResponse;
+import com.uwetrottmann.tmdb.entities.BaseResultsPage;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.TvResultsPage;
+import com.uwetrottmann.tmdb.entities.TvShow;
+import com.uwetrottmann.tmdb.enumerations.SortBy;
+import com.uwetrottmann.tmdb.services.DiscoverService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.functions.Func0;
+
+/**
+ * A {@link DiscoverService} answering from a {@link DiscoverIndex} of movies and one of shows instead of TMDb, so
+ * discover queries take microseconds and no requests.
+ * <p>
+ * The parameters mean the same as for TMDb, with these differences: only the movies and shows in the indexes are
+ * found, the language and whether to include videos are ignored, and all date filters and the release and primary
+ * release date orders use the one release date of a movie. Pages have 20 results like those of TMDb. Years and dates
+ * are in the default time zone, like the dates decoded by {@link com.uwetrottmann.tmdb.TmdbHelper}.
+ * <p>
+ * Searching for a kind without an index emits an {@link IllegalStateException}. All methods are thread-safe.
+ */
+public class LocalDiscoverService implements DiscoverService {
+
+    /** Number of results per page, like TMDb. */
+    public static final int PAGE_SIZE = 20;
+
+    private volatile DiscoverIndex<Movie> movies;
+    private volatile DiscoverIndex<TvShow> tvShows;
+
+    private final AtomicLong queryCount = new AtomicLong();
+
+    /**
+     * @param movies The index of movies, or {@code null}.
+     * @param tvShows The index of shows, or {@code null}.
+     */
+    public LocalDiscoverService(DiscoverIndex<Movie> movies, DiscoverIndex<TvShow> tvShows) {
+        this.movies = movies;
+        this.tvShows = tvShows;
+    }
+
+    /**
+     * Use the given index of movies for queries subscribed to afterwards, e.g. after the catalog was updated.
+     */
+    public LocalDiscoverService setMovies(DiscoverIndex<Movie> movies) {
+        this.movies = movies;
+        return this;
+    }
+
+    public DiscoverIndex<Movie> getMovies() {
+        return movies;
+    }
+
+    /**
+     * Use the given index of shows for queries subscribed to afterwards.
+     */
+    public LocalDiscoverService setTvShows(DiscoverIndex<TvShow> tvShows) {
+        this.tvShows = tvShows;
+        return this;
+    }
+
+    public DiscoverIndex<TvShow> getTvShows() {
+        return tvShows;
+    }
+
+    @Override
+    public Observable<MovieResultsPage> discoverMovie(final boolean includeAdult, boolean includeVideo,
+            String language, final Integer page, final String primaryReleaseYear, final Date primaryReleaseYearGte,
+            final Date primaryReleaseYearLte, final Date releaseDateGte, final Date releaseDateLte,
+            final SortBy sortBy, final Integer voteCountGte, final Integer voteCountLte, final Float voteAverageGte,
+            final Float voteAverageLte, final AppendToDiscoverResponse withCast,
+            final AppendToDiscoverResponse withCrew, final AppendToDiscoverResponse withCompanies,
+            final AppendToDiscoverResponse withGenres, final AppendToDiscoverResponse withKeywords,
+            final AppendToDiscoverResponse withPeople, final Integer year) {
+        return Observable.defer(new Func0<Observable<MovieResultsPage>>() {
+            @Override
+            public Observable<MovieResultsPage> call() {
+                // built on subscription, so an invalid year is emitted as an error like by the remote service
+                DiscoverQuery query = new DiscoverQuery()
+                        .includeAdult(includeAdult)
+                        .sortBy(sortBy)
+                        .range(DiscoverIndex.Column.RELEASE_DATE, millis(primaryReleaseYearGte),
+                                millis(primaryReleaseYearLte))
+                        .range(DiscoverIndex.Column.RELEASE_DATE, millis(releaseDateGte), millis(releaseDateLte))
+                        .range(DiscoverIndex.Column.VOTE_COUNT, value(voteCountGte), value(voteCountLte))
+                        .range(DiscoverIndex.Column.VOTE_AVERAGE, value(voteAverageGte), value(voteAverageLte))
+                        .with(DiscoverIndex.Facet.CAST, ids(withCast))
+                        .with(DiscoverIndex.Facet.CREW, ids(withCrew))
+                        .with(DiscoverIndex.Facet.COMPANY, ids(withCompanies))
+                        .with(DiscoverIndex.Facet.GENRE, ids(withGenres))
+                        .with(DiscoverIndex.Facet.KEYWORD, ids(withKeywords))
+                        .withPeople(ids(withPeople));
+                try {
+                    year(query, primaryReleaseYear);
+                } catch (NumberFormatException e) {
+                    return Observable.error(e);
+                }
+                year(query, year);
+
+                DiscoverIndex<Movie> index = movies;
+                if (index == null) {
+                    return Observable.error(new IllegalStateException("no index of movies"));
+                }
+                MovieResultsPage resultsPage = new MovieResultsPage();
+                resultsPage.results = discover(index, query, page, resultsPage);
+                return Observable.just(resultsPage);
+            }
+        });
+    }
+
+    @Override
+    public Observable<TvResultsPage> discoverTv(final Integer page, String language, final SortBy sortBy,
+            final String firstAirDateYear, final Integer voteCountGte, final Float voteAverageGte,
+            final AppendToDiscoverResponse withGenres, final AppendToDiscoverResponse withNetworks,
+            final Date firstAirDateGte, final Date firstAirDateLte) {
+        return Observable.defer(new Func0<Observable<TvResultsPage>>() {
+            @Override
+            public Observable<TvResultsPage> call() {
+                DiscoverQuery query = new DiscoverQuery()
+                        .includeAdult(true)
+                        .sortBy(sortBy)
+                        .range(DiscoverIndex.Column.RELEASE_DATE, millis(firstAirDateGte), millis(firstAirDateLte))
+                        .range(DiscoverIndex.Column.VOTE_COUNT, value(voteCountGte), null)
+                        .range(DiscoverIndex.Column.VOTE_AVERAGE, value(voteAverageGte), null)
+                        .with(DiscoverIndex.Facet.GENRE, ids(withGenres))
+                        .with(DiscoverIndex.Facet.NETWORK, ids(withNetworks));
+                try {
+                    year(query, firstAirDateYear);
+                } catch (NumberFormatException e) {
+                    return Observable.error(e);
+                }
+
+                DiscoverIndex<TvShow> index = tvShows;
+                if (index == null) {
+                    return Observable.error(new IllegalStateException("no index of shows"));
+                }
+                TvResultsPage resultsPage = new TvResultsPage();
+                resultsPage.results = discover(index, query, page, resultsPage);
+                return Observable.just(resultsPage);
+            }
+        });
+    }
+
+    private <T> List<T> discover(DiscoverIndex<T> index, DiscoverQuery query, Integer page,
+            BaseResultsPage resultsPage) {
+        queryCount.incrementAndGet();
+        int pageNumber = page != null && page > 1 ? page : 1;
+        DiscoverIndex.Result<T> result = index.discover(query, (pageNumber - 1) * PAGE_SIZE, PAGE_SIZE);
+        resultsPage.page = pageNumber;
+        resultsPage.total_results = result.totalResults();
+        resultsPage.total_pages = (result.totalResults() + PAGE_SIZE - 1) / PAGE_SIZE;
+        return new ArrayList<T>(result.results());
+    }
+
+    /**
+     * Only match entities released in the given year, e.g. {@code 2015}.
+     *
+     * @throws NumberFormatException If the year is not a number.
+     */
+    private static void year(DiscoverQuery query, String year) {
+        if (year != null) {
+            year(query, Integer.valueOf(year.trim()));
+        }
+    }
+
+    /**
+     * Only match entities released in the given year.
+     */
+    private static void year(DiscoverQuery query, Integer year) {
+        if (year == null) {
+            return;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        double start = calendar.getTimeInMillis();
+        calendar.add(Calendar.YEAR, 1);
+        query.range(DiscoverIndex.Column.RELEASE_DATE, start, calendar.getTimeInMillis() - 1d);
+    }
+
+    private static int[] ids(AppendToDiscoverResponse ids) {
+        Integer[] items = ids != null ? ids.items() : null;
+        if (items == null) {
+            return new int[0];
+        }
+        int[] values = new int[items.length];
+        int count = 0;
+        for (Integer item : items) {
+            if (item != null) {
+                values[count++] = item;
+            }
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static Double millis(Date date) {
+        return date != null ? (double) date.getTime() : null;
+    }
+
+    private static Double value(Number value) {
+        return value != null ? value.doubleValue() : null;
+    }
+
+    /**
+     * Returns the number of discover queries answered.
+     */
+    public long queryCount() {
+        return queryCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LocalDiscoverService[movies=" + movies + ",tvShows=" + tvShows + ",queries=" + queryCount.get() + "]";
+    }
+}
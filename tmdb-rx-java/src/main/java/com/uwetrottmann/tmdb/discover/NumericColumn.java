@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.discover;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The values of one sortable property of the documents of an index, e.g. their popularity, as primitive arrays sorted
+ * once when the index is built.
+ * <p>
+ * A range filter is two binary searches and clearing the bits of the documents outside, or checking the rank of each
+ * document left if there are few. Sorting the matches of a query only walks the precomputed order, or, if there are
+ * few matches, sorts their ranks in that order.
+ */
+final class NumericColumn {
+
+    /** The numbers of the documents with a value, by increasing value, then number. */
+    private final int[] order;
+    /** The values in {@link #order}. */
+    private final double[] sortedValues;
+    /** The position of each document in {@link #order}, or -1 if it has no value. */
+    private final int[] rank;
+    /** The increasing numbers of the documents without a value, which sort last. */
+    private final int[] missing;
+
+    /**
+     * @param values The value of each document, {@link Double#NaN} if it has none.
+     */
+    NumericColumn(final double[] values) {
+        int count = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                count++;
+            }
+        }
+        Integer[] sorted = new Integer[count];
+        missing = new int[values.length - count];
+        int next = 0;
+        int nextMissing = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i])) {
+                missing[nextMissing++] = i;
+            } else {
+                sorted[next++] = i;
+            }
+        }
+        // only sorted once per index, boxing is fine
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Double.compare(values[a], values[b]);
+                return result != 0 ? result : a.compareTo(b);
+            }
+        });
+
+        order = new int[count];
+        sortedValues = new double[count];
+        rank = new int[values.length];
+        Arrays.fill(rank, -1);
+        for (int i = 0; i < count; i++) {
+            order[i] = sorted[i];
+            sortedValues[i] = values[order[i]];
+            rank[order[i]] = i;
+        }
+    }
+
+    /**
+     * Clears the bits of the given set of documents whose value is not within {@code min} and {@code max}, both
+     * inclusive. Documents without a value are cleared as well.
+     */
+    void andRange(long[] target, double min, double max) {
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        int inRange = to - from;
+        if (Bitmap.cardinality(target) < inRange / 4) {
+            // few documents left, check each of their ranks
+            for (int i = 0; i < target.length; i++) {
+                long word = target[i];
+                while (word != 0) {
+                    int number = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (rank[number] < from || rank[number] >= to) {
+                        target[i] &= ~(1L << number);
+                    }
+                }
+            }
+        } else if (inRange > rank.length / 2) {
+            // most documents are in range, clear those which are not
+            for (int i = 0; i < from; i++) {
+                target[order[i] >>> 6] &= ~(1L << order[i]);
+            }
+            for (int i = to; i < order.length; i++) {
+                target[order[i] >>> 6] &= ~(1L << order[i]);
+            }
+            for (int number : missing) {
+                target[number >>> 6] &= ~(1L << number);
+            }
+        } else {
+            long[] range = new long[target.length];
+            for (int i = from; i < to; i++) {
+                range[order[i] >>> 6] |= 1L << order[i];
+            }
+            for (int i = 0; i < target.length; i++) {
+                target[i] &= range[i];
+            }
+        }
+    }
+
+    /** The index of the first value not less than the given one. */
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** The index after the last value not greater than the given one. */
+    private int upperBound(double value) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the numbers of the documents of the given set at positions {@code offset} to {@code offset + limit} when
+     * ordered by this column. Documents without a value come last in either direction.
+     *
+     * @param count The number of documents in the set.
+     */
+    int[] select(long[] set, int count, boolean descending, int offset, int limit) {
+        int length = Math.max(0, Math.min(limit, count - offset));
+        int[] selected = new int[length];
+        if (length == 0) {
+            return selected;
+        }
+
+        if ((long) count * 16 < order.length) {
+            // few matches, sort their ranks instead of walking the whole order
+            int[] ranks = new int[count];
+            int[] unranked = new int[count];
+            int rankCount = 0;
+            int unrankedCount = 0;
+            for (int i = 0; i < set.length; i++) {
+                long word = set[i];
+                while (word != 0) {
+                    int number = (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (rank[number] >= 0) {
+                        ranks[rankCount++] = rank[number];
+                    } else {
+                        unranked[unrankedCount++] = number;
+                    }
+                }
+            }
+            Arrays.sort(ranks, 0, rankCount);
+            for (int i = 0; i < length; i++) {
+                int position = offset + i;
+                if (position < rankCount) {
+                    selected[i] = order[descending ? ranks[rankCount - 1 - position] : ranks[position]];
+                } else {
+                    selected[i] = unranked[position - rankCount];
+                }
+            }
+            return selected;
+        }
+
+        int skipped = 0;
+        int next = 0;
+        for (int i = 0; i < order.length && next < length; i++) {
+            int number = order[descending ? order.length - 1 - i : i];
+            if ((set[number >>> 6] & (1L << number)) != 0 && skipped++ >= offset) {
+                selected[next++] = number;
+            }
+        }
+        for (int i = 0; i < missing.length && next < length; i++) {
+            int number = missing[i];
+            if ((set[number >>> 6] & (1L << number)) != 0 && skipped++ >= offset) {
+                selected[next++] = number;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the number of bytes used by the arrays.
+     */
+    long sizeInBytes() {
+        return 4L * order.length + 8L * sortedValues.length + 4L * rank.length + 4L * missing.length;
+    }
+}
@@ -25,6 +25,13 @@ public class AppendToDiscoverResponse {
         this.items = items;
     }
 
+    /**
+     * Returns a copy of the ids, or {@code null}.
+     */
+    public Integer[] items() {
+        return items != null ? items.clone() : null;
+    }
+
     @Override
     public String toString() {
         if (items != null && items.length > 0) {
@@ -29,6 +29,7 @@ public class Configuration {
         public List<String> backdrop_sizes;
         public List<String> profile_sizes;
         public List<String> logo_sizes;
+        public List<String> still_sizes;
     }
 
     public ImagesConfiguration images;
@@ -51,4 +51,5 @@ public class Movie {
     public Releases releases;
     public Credits credits;
     public MovieResultsPage similar;
+    public Images images;
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.images;
+
+import com.uwetrottmann.tmdb.entities.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the image configuration of TMDb: the base URL and the sizes available for each
+ * {@link ImageUrlBuilder.Type} of image.
+ * <p>
+ * The sizes are parsed once, so picking the size for a width is a scan of a short {@code int} array and building a URL
+ * only allocates the URL itself. Height based sizes like the {@code h632} of profiles are not considered.
+ */
+public final class ImageConfiguration {
+
+    /**
+     * The configuration served by TMDb at the time of writing, used until the actual configuration is loaded.
+     */
+    public static final ImageConfiguration DEFAULT = new ImageConfiguration("https://image.tmdb.org/t/p/",
+            new String[][] {
+                    { "w92", "w154", "w185", "w342", "w500", "w780", "original" },
+                    { "w300", "w780", "w1280", "original" },
+                    { "w45", "w185", "h632", "original" },
+                    { "w45", "w92", "w154", "w185", "w300", "w500", "original" },
+                    { "w92", "w185", "w300", "original" }
+            });
+
+    private final String baseUrl;
+    /** The sizes of each type, indexed by its ordinal. */
+    private final Sizes[] sizes;
+
+    private ImageConfiguration(String baseUrl, String[][] sizeNames) {
+        this.baseUrl = baseUrl;
+        this.sizes = new Sizes[sizeNames.length];
+        for (int i = 0; i < sizeNames.length; i++) {
+            sizes[i] = new Sizes(sizeNames[i]);
+        }
+    }
+
+    /**
+     * Parses the images part of the given configuration. Types without sizes, like the {@code still_sizes} missing from
+     * older responses, get the sizes of {@link #DEFAULT}.
+     *
+     * @throws IllegalArgumentException If the configuration has no images or base URL.
+     */
+    public static ImageConfiguration from(Configuration configuration) {
+        Configuration.ImagesConfiguration images = configuration.images;
+        if (images == null) {
+            throw new IllegalArgumentException("configuration has no images");
+        }
+        String baseUrl = images.secure_base_url != null ? images.secure_base_url : images.base_url;
+        if (baseUrl == null) {
+            throw new IllegalArgumentException("configuration has no image base URL");
+        }
+        List<?>[] lists = { images.poster_sizes, images.backdrop_sizes, images.profile_sizes, images.logo_sizes,
+                images.still_sizes };
+        String[][] sizeNames = new String[lists.length][];
+        for (int i = 0; i < lists.length; i++) {
+            sizeNames[i] = lists[i] != null && !lists[i].isEmpty()
+                    ? lists[i].toArray(new String[lists[i].size()]) : DEFAULT.sizes[i].names;
+        }
+        return new ImageConfiguration(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/", sizeNames);
+    }
+
+    /**
+     * The base URL all image URLs start with, ending with a slash.
+     */
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * The names of the sizes of the given type, in the order TMDb listed them.
+     */
+    public List<String> sizes(ImageUrlBuilder.Type type) {
+        return Arrays.asList(sizes[type.ordinal()].names.clone());
+    }
+
+    /**
+     * Returns the smallest size of the given type at least as wide as the given width. If there is none, or the width
+     * is zero or less, returns {@code original} or else the widest size.
+     */
+    public String size(ImageUrlBuilder.Type type, int width) {
+        return sizes[type.ordinal()].bestFit(width);
+    }
+
+    /**
+     * Returns the URL of the image at the given path in the {@link #size(ImageUrlBuilder.Type, int)} best fitting
+     * the given width.
+     *
+     * @param path A file path as found in the entities, e.g. a {@code poster_path}, or {@code null}.
+     * @return The URL, or {@code null} if the path is {@code null}.
+     */
+    public String url(ImageUrlBuilder.Type type, String path, int width) {
+        if (path == null) {
+            return null;
+        }
+        String size = size(type, width);
+        return new StringBuilder(baseUrl.length() + size.length() + path.length())
+                .append(baseUrl).append(size).append(path).toString();
+    }
+
+    /**
+     * Like {@link #url(ImageUrlBuilder.Type, String, int)}, but appends the URL to the given builder, e.g. to reuse one
+     * builder for many URLs without allocating.
+     *
+     * @return The given builder, unchanged if the path is {@code null}.
+     */
+    public StringBuilder appendUrl(StringBuilder out, ImageUrlBuilder.Type type, String path, int width) {
+        if (path != null) {
+            out.append(baseUrl).append(size(type, width)).append(path);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageConfiguration[baseUrl=" + baseUrl + "]";
+    }
+
+    private static final class Sizes {
+
+        final String[] names;
+        /** The {@code w} sizes by increasing width. */
+        final int[] widths;
+        final String[] widthNames;
+        final String largest;
+
+        Sizes(String[] names) {
+            this.names = names;
+            int[] widths = new int[names.length];
+            String[] widthNames = new String[names.length];
+            String original = null;
+            int count = 0;
+            for (String name : names) {
+                if ("original".equals(name)) {
+                    original = name;
+                    continue;
+                }
+                int width = width(name);
+                if (width <= 0) {
+                    continue;
+                }
+                // insertion sort, there are only a handful of sizes
+                int i = count++;
+                while (i > 0 && widths[i - 1] > width) {
+                    widths[i] = widths[i - 1];
+                    widthNames[i] = widthNames[i - 1];
+                    i--;
+                }
+                widths[i] = width;
+                widthNames[i] = name;
+            }
+            this.widths = Arrays.copyOf(widths, count);
+            this.widthNames = Arrays.copyOf(widthNames, count);
+            if (original != null) {
+                largest = original;
+            } else if (count > 0) {
+                largest = widthNames[count - 1];
+            } else {
+                largest = names.length > 0 ? names[names.length - 1] : "original";
+            }
+        }
+
+        String bestFit(int width) {
+            if (width > 0) {
+                for (int i = 0; i < widths.length; i++) {
+                    if (widths[i] >= width) {
+                        return widthNames[i];
+                    }
+                }
+            }
+            return largest;
+        }
+
+        /**
+         * Returns the width of a size like {@code w342}, or -1 if it is not a width.
+         */
+        private static int width(String name) {
+            if (name == null || name.length() < 2 || name.charAt(0) != 'w') {
+                return -1;
+            }
+            int width = 0;
+            for (int i = 1; i < name.length(); i++) {
+                int digit = name.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                width = width * 10 + digit;
+            }
+            return width;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.images;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Configuration;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Builds the URLs of the images referenced by entities, e.g. their {@code poster_path}, {@code backdrop_path},
+ * {@code profile_path} or {@code still_path}, in the size best fitting a width in pixels.
+ * <p>
+ * The builder keeps an {@link ImageConfiguration} snapshot in memory and loads the configuration again in the
+ * background once the snapshot is older than the refresh interval, so building a URL never waits for a request. Until
+ * the configuration has been loaded for the first time, and while loading it fails, the last snapshot or
+ * {@link ImageConfiguration#DEFAULT} is used. The configuration is loaded through
+ * {@link Tmdb#configurationService()}, so with a {@link com.uwetrottmann.tmdb.cache.DiskCache} installed it is read
+ * from disk after a restart instead of being requested again.
+ * <p>
+ * Share one builder, e.g. the one of {@link Tmdb#imageUrlBuilder()}, instead of requesting the configuration before
+ * building URLs. All methods are thread-safe.
+ */
+public class ImageUrlBuilder {
+
+    /**
+     * The types of images, each with its own sizes.
+     */
+    public enum Type {
+        POSTER,
+        BACKDROP,
+        PROFILE,
+        LOGO,
+        STILL
+    }
+
+    /** Default age after which the configuration is loaded again, one day. */
+    public static final long DEFAULT_REFRESH_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** How long to wait before loading the configuration again after it failed. */
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Tmdb tmdb;
+    private final Scheduler scheduler;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private volatile ImageConfiguration configuration = ImageConfiguration.DEFAULT;
+    private volatile boolean loaded;
+    /** When to load the configuration again, zero to load it on first use. */
+    private volatile long refreshAt;
+    private volatile long refreshMillis = DEFAULT_REFRESH_MILLIS;
+
+    /**
+     * Loads the configuration on the {@link rx.schedulers.Schedulers#io()} scheduler.
+     */
+    public ImageUrlBuilder(Tmdb tmdb) {
+        this(tmdb, Schedulers.io());
+    }
+
+    /**
+     * @param scheduler The scheduler to load the configuration on in the background.
+     */
+    public ImageUrlBuilder(Tmdb tmdb, Scheduler scheduler) {
+        this.tmdb = tmdb;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Set after how long the configuration is loaded again. Defaults to {@link #DEFAULT_REFRESH_MILLIS}.
+     */
+    public ImageUrlBuilder setRefreshInterval(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("duration <= 0");
+        }
+        refreshMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Returns the current snapshot, starting to load the configuration in the background if it is due.
+     */
+    public ImageConfiguration configuration() {
+        refreshIfDue();
+        return configuration;
+    }
+
+    /**
+     * Returns whether the configuration has been loaded at least once, else {@link ImageConfiguration#DEFAULT} is used.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns whether the configuration is being loaded in the background.
+     */
+    public boolean isRefreshing() {
+        return refreshing.get();
+    }
+
+    /**
+     * Loads the configuration now and makes it the current snapshot, e.g. to wait for it before building the first
+     * URLs.
+     */
+    public Observable<ImageConfiguration> load() {
+        return tmdb.configurationService().configuration().map(new Func1<Configuration, ImageConfiguration>() {
+            @Override
+            public ImageConfiguration call(Configuration response) {
+                ImageConfiguration loaded = ImageConfiguration.from(response);
+                configuration = loaded;
+                ImageUrlBuilder.this.loaded = true;
+                refreshAt = currentTimeMillis() + refreshMillis;
+                loadCount.incrementAndGet();
+                return loaded;
+            }
+        });
+    }
+
+    /**
+     * Returns the URL of the image at the given path in the size best fitting the given width, see
+     * {@link ImageConfiguration#size(Type, int)}.
+     *
+     * @param path A file path as found in the entities, or {@code null}.
+     * @param width The width in pixels the image is displayed at, zero or less for the original size.
+     * @return The URL, or {@code null} if the path is {@code null}.
+     */
+    public String url(Type type, String path, int width) {
+        return path != null ? configuration().url(type, path, width) : null;
+    }
+
+    /**
+     * Like {@link #url(Type, String, int)}, but appends the URL to the given builder.
+     */
+    public StringBuilder appendUrl(StringBuilder out, Type type, String path, int width) {
+        return configuration().appendUrl(out, type, path, width);
+    }
+
+    public String posterUrl(String posterPath, int width) {
+        return url(Type.POSTER, posterPath, width);
+    }
+
+    public String backdropUrl(String backdropPath, int width) {
+        return url(Type.BACKDROP, backdropPath, width);
+    }
+
+    public String profileUrl(String profilePath, int width) {
+        return url(Type.PROFILE, profilePath, width);
+    }
+
+    public String logoUrl(String logoPath, int width) {
+        return url(Type.LOGO, logoPath, width);
+    }
+
+    public String stillUrl(String stillPath, int width) {
+        return url(Type.STILL, stillPath, width);
+    }
+
+    private void refreshIfDue() {
+        if (currentTimeMillis() < refreshAt || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        load().subscribeOn(scheduler).subscribe(new Subscriber<ImageConfiguration>() {
+            @Override
+            public void onCompleted() {
+                refreshing.set(false);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                // keep the last snapshot, try again later
+                failureCount.incrementAndGet();
+                refreshAt = currentTimeMillis() + RETRY_MILLIS;
+                refreshing.set(false);
+            }
+
+            @Override
+            public void onNext(ImageConfiguration configuration) {
+            }
+        });
+    }
+
+    /**
+     * The current time, override to control refreshing in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of times the configuration was loaded.
+     */
+    public long loadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Returns the number of times loading the configuration in the background failed.
+     */
+    public long failureCount() {
+        return failureCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "ImageUrlBuilder[loaded=%b,loads=%d,failures=%d]",
+                loaded, loadCount.get(), failureCount.get());
+    }
+}
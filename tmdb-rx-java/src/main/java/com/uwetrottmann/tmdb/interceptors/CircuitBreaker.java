@@ -0,0 +1,489 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit.RetrofitError;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Isolates the service interfaces from each other, so a failing or slow part of TMDb does not tie up the requests of
+ * all others.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setCircuitBreaker(CircuitBreaker)}. Each service interface, e.g.
+ * {@link com.uwetrottmann.tmdb.services.MoviesService}, gets its own circuit and bulkhead:
+ * <ul>
+ * <li>The bulkhead limits the number of requests of the service in flight. Further requests fail right away with a
+ * {@link RequestRejectedException}, instead of waiting for a backend which is not keeping up.</li>
+ * <li>The circuit remembers the outcome of the last requests of the service. Once enough of them failed for a
+ * transient reason (they could not connect or read the response, or TMDb answered with a {@code 5xx} status), or were
+ * slower than the slow call threshold, the circuit opens and all requests of the service fail right away with a
+ * {@link RequestRejectedException}. After the open duration the circuit is half-open and lets a few probe requests
+ * through. If they all succeed the circuit closes again, if any fails it opens again.</li>
+ * </ul>
+ * State changes are reported to the {@link Listener}, e.g. a {@link com.uwetrottmann.tmdb.metrics.MetricsRecorder}:
+ * <pre>
+ * tmdb.setCircuitBreaker(new CircuitBreaker().setListener(metrics));
+ * </pre>
+ * All methods are thread-safe, a circuit breaker may be shared by several {@link com.uwetrottmann.tmdb.Tmdb} instances,
+ * which then share its circuits.
+ */
+public class CircuitBreaker implements ServiceInterceptor {
+
+    public enum State {
+        /** Requests are sent. */
+        CLOSED,
+        /** Requests fail right away. */
+        OPEN,
+        /** A few probe requests are sent to find out whether the service recovered. */
+        HALF_OPEN
+    }
+
+    /**
+     * Is told about every state change of a circuit, to e.g. record or alert on them.
+     */
+    public interface Listener {
+
+        /**
+         * @param service The service interface of the circuit, e.g. {@code MoviesService.class}.
+         */
+        void onStateChanged(Class<?> service, State from, State to);
+    }
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+    public static final int DEFAULT_WINDOW = 20;
+    public static final int DEFAULT_MIN_REQUESTS = 10;
+    public static final double DEFAULT_FAILURE_RATE = 0.5;
+    public static final long DEFAULT_SLOW_CALL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    public static final double DEFAULT_SLOW_CALL_RATE = 0.5;
+    public static final long DEFAULT_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_PROBES = 3;
+
+    private final ConcurrentHashMap<Class<?>, Circuit> circuits = new ConcurrentHashMap<Class<?>, Circuit>();
+
+    private volatile int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private volatile int window = DEFAULT_WINDOW;
+    private volatile int minRequests = DEFAULT_MIN_REQUESTS;
+    private volatile double failureRate = DEFAULT_FAILURE_RATE;
+    private volatile long slowCallMillis = DEFAULT_SLOW_CALL_MILLIS;
+    private volatile double slowCallRate = DEFAULT_SLOW_CALL_RATE;
+    private volatile long openMillis = DEFAULT_OPEN_MILLIS;
+    private volatile int probes = DEFAULT_PROBES;
+    private volatile Listener listener;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong circuitOpenCount = new AtomicLong();
+    private final AtomicLong bulkheadFullCount = new AtomicLong();
+
+    /**
+     * Set how many requests of each service may be in flight. Defaults to {@link #DEFAULT_MAX_CONCURRENT_REQUESTS}.
+     */
+    public CircuitBreaker setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests <= 0");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    /**
+     * Set how many of the last outcomes of each service are considered. Defaults to {@link #DEFAULT_WINDOW} and
+     * {@link #DEFAULT_MIN_REQUESTS}. Takes effect for circuits created afterwards.
+     *
+     * @param window The number of outcomes remembered.
+     * @param minRequests The number of outcomes needed before the circuit may open.
+     */
+    public synchronized CircuitBreaker setWindow(int window, int minRequests) {
+        if (window <= 0 || minRequests <= 0 || minRequests > window) {
+            throw new IllegalArgumentException("window <= 0 || minRequests <= 0 || minRequests > window");
+        }
+        this.window = window;
+        this.minRequests = minRequests;
+        return this;
+    }
+
+    /**
+     * Set the fraction of failed requests at which the circuit opens. Defaults to {@link #DEFAULT_FAILURE_RATE}.
+     */
+    public CircuitBreaker setFailureRate(double failureRate) {
+        if (failureRate <= 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate <= 0 || failureRate > 1");
+        }
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * Set when a request is slow and the fraction of slow requests at which the circuit opens. Default to
+     * {@link #DEFAULT_SLOW_CALL_MILLIS} and {@link #DEFAULT_SLOW_CALL_RATE}.
+     */
+    public CircuitBreaker setSlowCalls(long duration, TimeUnit unit, double slowCallRate) {
+        if (duration <= 0 || slowCallRate <= 0 || slowCallRate > 1) {
+            throw new IllegalArgumentException("duration <= 0 || slowCallRate <= 0 || slowCallRate > 1");
+        }
+        this.slowCallMillis = unit.toMillis(duration);
+        this.slowCallRate = slowCallRate;
+        return this;
+    }
+
+    /**
+     * Set how long a circuit stays open and how many probes it sends when half-open. Default to
+     * {@link #DEFAULT_OPEN_MILLIS} and {@link #DEFAULT_PROBES}.
+     */
+    public CircuitBreaker setOpenDuration(long duration, TimeUnit unit, int probes) {
+        if (duration < 0 || probes <= 0) {
+            throw new IllegalArgumentException("duration < 0 || probes <= 0");
+        }
+        this.openMillis = unit.toMillis(duration);
+        this.probes = probes;
+        return this;
+    }
+
+    /**
+     * Set a listener told about every state change, or {@code null}.
+     */
+    public CircuitBreaker setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public Observable<?> intercept(final Chain chain) {
+        final ServiceRequest request = chain.request();
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Observable<Object> call() {
+                requestCount.incrementAndGet();
+                final Circuit circuit = circuit(request.service());
+                final Permit permit = circuit.acquire();
+                if (permit == null) {
+                    return Observable.error(new RequestRejectedException(request.service(),
+                            RequestRejectedException.Reason.CIRCUIT_OPEN));
+                }
+                if (!circuit.enter(permit, maxConcurrentRequests)) {
+                    circuit.release(permit, Outcome.CANCELLED);
+                    return Observable.error(new RequestRejectedException(request.service(),
+                            RequestRejectedException.Reason.BULKHEAD_FULL));
+                }
+                final long start = System.nanoTime();
+                return ((Observable<Object>) chain.proceed(request))
+                        .doOnError(new Action1<Throwable>() {
+                            @Override
+                            public void call(Throwable error) {
+                                circuit.release(permit, isFailure(error) ? Outcome.FAILED : Outcome.SUCCEEDED);
+                            }
+                        })
+                        .doOnNext(new Action1<Object>() {
+                            @Override
+                            public void call(Object response) {
+                                // callers often unsubscribe after the response, before it completes
+                                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                                circuit.release(permit, millis >= slowCallMillis ? Outcome.SLOW : Outcome.SUCCEEDED);
+                            }
+                        })
+                        .doOnUnsubscribe(new Action0() {
+                            @Override
+                            public void call() {
+                                // if the response was not awaited
+                                circuit.release(permit, Outcome.CANCELLED);
+                            }
+                        });
+            }
+        });
+    }
+
+    private Circuit circuit(Class<?> service) {
+        Circuit circuit = circuits.get(service);
+        if (circuit == null) {
+            int window;
+            int minRequests;
+            synchronized (this) {
+                window = this.window;
+                minRequests = this.minRequests;
+            }
+            circuits.putIfAbsent(service, new Circuit(service, window, minRequests));
+            circuit = circuits.get(service);
+        }
+        return circuit;
+    }
+
+    /**
+     * Returns whether the error hints at a struggling backend, rather than e.g. a resource which does not exist.
+     */
+    private static boolean isFailure(Throwable error) {
+        if (!(error instanceof RetrofitError)) {
+            return false;
+        }
+        RetrofitError retrofitError = (RetrofitError) error;
+        if (retrofitError.getKind() == RetrofitError.Kind.NETWORK) {
+            return true;
+        }
+        return retrofitError.getKind() == RetrofitError.Kind.HTTP && retrofitError.getResponse() != null
+                && retrofitError.getResponse().getStatus() >= 500;
+    }
+
+    /**
+     * The current time, override to control when open circuits become half-open in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the state of the circuit of the given service interface, {@link State#CLOSED} if it had no requests.
+     */
+    public State state(Class<?> service) {
+        Circuit circuit = circuits.get(service);
+        return circuit != null ? circuit.state() : State.CLOSED;
+    }
+
+    /**
+     * Returns the states of the circuits of all service interfaces with requests, by simple name.
+     */
+    public Map<String, State> states() {
+        Map<String, State> states = new TreeMap<String, State>();
+        for (Circuit circuit : circuits.values()) {
+            states.put(circuit.service.getSimpleName(), circuit.state());
+        }
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Returns the number of requests of the given service interface in flight.
+     */
+    public int inFlight(Class<?> service) {
+        Circuit circuit = circuits.get(service);
+        return circuit != null ? circuit.inFlight() : 0;
+    }
+
+    /**
+     * Returns the number of requests subscribed to, including rejected ones.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests rejected because their circuit was open.
+     */
+    public long circuitOpenCount() {
+        return circuitOpenCount.get();
+    }
+
+    /**
+     * Returns the number of requests rejected because their service had too many requests in flight.
+     */
+    public long bulkheadFullCount() {
+        return bulkheadFullCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker[requests=" + requestCount.get() + ",circuitOpen=" + circuitOpenCount.get()
+                + ",bulkheadFull=" + bulkheadFullCount.get() + ",states=" + states() + "]";
+    }
+
+    private enum Outcome {
+        SUCCEEDED, FAILED, SLOW, CANCELLED
+    }
+
+    /**
+     * Allows one request through a circuit, released exactly once.
+     */
+    private static final class Permit {
+
+        final boolean probe;
+        final AtomicBoolean released = new AtomicBoolean();
+        boolean entered;
+
+        Permit(boolean probe) {
+            this.probe = probe;
+        }
+    }
+
+    /**
+     * The state, the last outcomes and the requests in flight of one service interface.
+     */
+    private final class Circuit {
+
+        final Class<?> service;
+        final int minRequests;
+        /** Ring buffers of the last outcomes. */
+        final boolean[] failed;
+        final boolean[] slow;
+
+        int count;
+        int next;
+        int failedCount;
+        int slowCount;
+        int inFlight;
+        State state = State.CLOSED;
+        long openedAt;
+        int probesInFlight;
+        int probesSucceeded;
+
+        Circuit(Class<?> service, int window, int minRequests) {
+            this.service = service;
+            this.minRequests = minRequests;
+            this.failed = new boolean[window];
+            this.slow = new boolean[window];
+        }
+
+        /**
+         * Returns a permit to send a request, or {@code null} if the circuit is open.
+         */
+        Permit acquire() {
+            Permit permit = null;
+            State from;
+            State to;
+            synchronized (this) {
+                from = state;
+                if (state == State.OPEN && currentTimeMillis() - openedAt >= openMillis) {
+                    state = State.HALF_OPEN;
+                    probesInFlight = 0;
+                    probesSucceeded = 0;
+                }
+                if (state == State.CLOSED) {
+                    permit = new Permit(false);
+                } else if (state == State.HALF_OPEN && probesInFlight + probesSucceeded < probes) {
+                    probesInFlight++;
+                    permit = new Permit(true);
+                }
+                to = state;
+            }
+            if (permit == null) {
+                circuitOpenCount.incrementAndGet();
+            }
+            notifyListener(from, to);
+            return permit;
+        }
+
+        /**
+         * Counts the permitted request as in flight, returns {@code false} if the bulkhead is full.
+         */
+        synchronized boolean enter(Permit permit, int maxConcurrentRequests) {
+            if (inFlight >= maxConcurrentRequests) {
+                bulkheadFullCount.incrementAndGet();
+                return false;
+            }
+            inFlight++;
+            permit.entered = true;
+            return true;
+        }
+
+        void release(Permit permit, Outcome outcome) {
+            if (!permit.released.compareAndSet(false, true)) {
+                return;
+            }
+            State from;
+            State to;
+            synchronized (this) {
+                if (permit.entered) {
+                    inFlight--;
+                }
+                from = state;
+                if (permit.probe) {
+                    releaseProbe(outcome);
+                } else if (state == State.CLOSED && outcome != Outcome.CANCELLED) {
+                    record(outcome);
+                }
+                to = state;
+            }
+            notifyListener(from, to);
+        }
+
+        private void releaseProbe(Outcome outcome) {
+            if (state != State.HALF_OPEN) {
+                // another probe already reopened the circuit
+                return;
+            }
+            probesInFlight--;
+            if (outcome == Outcome.FAILED || outcome == Outcome.SLOW) {
+                open();
+            } else if (outcome == Outcome.SUCCEEDED && ++probesSucceeded >= probes) {
+                state = State.CLOSED;
+                count = 0;
+                next = 0;
+                failedCount = 0;
+                slowCount = 0;
+            }
+        }
+
+        private void record(Outcome outcome) {
+            if (count == failed.length) {
+                // forget the oldest outcome
+                if (failed[next]) {
+                    failedCount--;
+                }
+                if (slow[next]) {
+                    slowCount--;
+                }
+            } else {
+                count++;
+            }
+            failed[next] = outcome == Outcome.FAILED;
+            slow[next] = outcome == Outcome.SLOW;
+            if (failed[next]) {
+                failedCount++;
+            }
+            if (slow[next]) {
+                slowCount++;
+            }
+            next = (next + 1) % failed.length;
+
+            if (count >= minRequests
+                    && (failedCount >= failureRate * count || slowCount >= slowCallRate * count)) {
+                open();
+            }
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openedAt = currentTimeMillis();
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        private void notifyListener(State from, State to) {
+            Listener listener = CircuitBreaker.this.listener;
+            if (listener != null && from != to) {
+                listener.onStateChanged(service, from, to);
+            }
+        }
+    }
+}
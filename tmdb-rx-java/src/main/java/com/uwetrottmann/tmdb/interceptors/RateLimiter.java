@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit.client.Header;
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Keeps the requests sent with each API key within the request quota of TMDb.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setRateLimiter(RateLimiter)}. Each API key gets a token bucket
+ * which holds up to {@code permits} tokens and is refilled at {@code permits} per {@code period}. A request which finds
+ * the bucket empty is not sent right away, instead its subscription is delayed until it is its turn: requests are
+ * granted tokens strictly in the order they were subscribed to, and no thread is blocked while waiting. A request
+ * unsubscribed from while waiting returns its token.
+ * <p>
+ * The buckets follow what TMDb reports: a {@code 429} response pauses the bucket for the {@code Retry-After} seconds,
+ * {@code X-RateLimit-Remaining} lowers the stored tokens if other clients used some, and once it reaches zero the
+ * bucket is paused until {@code X-RateLimit-Reset}.
+ * <p>
+ * All methods are thread-safe, a rate limiter may be shared by several {@link com.uwetrottmann.tmdb.Tmdb} instances.
+ */
+public class RateLimiter {
+
+    /** TMDb allows 40 requests every 10 seconds. */
+    public static final int DEFAULT_PERMITS = 40;
+    public static final long DEFAULT_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /** Longest pause for a reset time in the future, limits the effect of clocks out of sync. */
+    private static final long MAX_RESET_PAUSE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int permits;
+    private final long periodMillis;
+    private final Scheduler scheduler;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+    /**
+     * Create a rate limiter allowing {@link #DEFAULT_PERMITS} requests per {@link #DEFAULT_PERIOD_MILLIS}.
+     */
+    public RateLimiter() {
+        this(DEFAULT_PERMITS, DEFAULT_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param permits The number of requests allowed per period, also the largest burst.
+     */
+    public RateLimiter(int permits, long period, TimeUnit unit) {
+        this(permits, period, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler Schedules the delayed subscriptions.
+     */
+    public RateLimiter(int permits, long period, TimeUnit unit, Scheduler scheduler) {
+        if (permits <= 0 || period <= 0) {
+            throw new IllegalArgumentException("permits <= 0 || period <= 0");
+        }
+        this.permits = permits;
+        this.periodMillis = unit.toMillis(period);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the number of requests allowed per period, also the largest burst.
+     */
+    public int permits() {
+        return permits;
+    }
+
+    /**
+     * Returns the bucket of the given API key, creating it on first use.
+     */
+    public Bucket bucket(String apiKey) {
+        String key = apiKey != null ? apiKey : "";
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket();
+            Bucket existing = buckets.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * The current time, override to control the buckets in tests.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * The token bucket of one API key, delays the requests passing through it.
+     */
+    public class Bucket implements ServiceInterceptor {
+
+        private final double millisPerPermit = (double) periodMillis / permits;
+
+        /** Tokens available at {@link #nextFreeMillis}, which is later than now while requests wait or paused. */
+        private double storedPermits = permits;
+        private double nextFreeMillis;
+
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong delayedCount = new AtomicLong();
+        private final AtomicLong rejectedCount = new AtomicLong();
+
+        Bucket() {
+            nextFreeMillis = currentTimeMillis();
+        }
+
+        @Override
+        public Observable<?> intercept(final Chain chain) {
+            return Observable.defer(new Func0<Observable<Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Observable<Object> call() {
+                    long delay = reserve();
+                    requestCount.incrementAndGet();
+                    Observable<Object> request = (Observable<Object>) chain.proceed(chain.request());
+                    if (delay <= 0) {
+                        return request;
+                    }
+                    delayedCount.incrementAndGet();
+                    final AtomicBoolean sent = new AtomicBoolean();
+                    return request.doOnSubscribe(new Action0() {
+                        @Override
+                        public void call() {
+                            sent.set(true);
+                        }
+                    }).delaySubscription(delay, TimeUnit.MILLISECONDS, scheduler).doOnUnsubscribe(new Action0() {
+                        @Override
+                        public void call() {
+                            // unsubscribed from while waiting, the token was not used
+                            if (sent.compareAndSet(false, true)) {
+                                release();
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        /**
+         * Takes the next token, waiting in line after all requests that took one before.
+         *
+         * @return The milliseconds until the token is available.
+         */
+        public synchronized long reserve() {
+            long now = currentTimeMillis();
+            refill(now);
+            if (storedPermits >= 1) {
+                storedPermits -= 1;
+            } else {
+                // wait until the missing fraction of a token has been refilled
+                nextFreeMillis += (1 - storedPermits) * millisPerPermit;
+                storedPermits = 0;
+            }
+            return Math.max(0, (long) Math.ceil(nextFreeMillis - now));
+        }
+
+        /**
+         * Returns a token taken with {@link #reserve()} but not used, e.g. because the request was cancelled. It goes
+         * to the next request taking a token, requests already waiting keep their turn.
+         */
+        public synchronized void release() {
+            refill(currentTimeMillis());
+            storedPermits = Math.min(permits, storedPermits + 1);
+        }
+
+        /**
+         * Do not grant any tokens before the given time.
+         */
+        public synchronized void pauseUntil(long timeMillis) {
+            refill(currentTimeMillis());
+            if (timeMillis > nextFreeMillis) {
+                // let one request try again at that time, the rest refill from there
+                nextFreeMillis = timeMillis;
+                storedPermits = 1;
+            }
+        }
+
+        /**
+         * Adapt to the status and rate limit headers of a response sent with this bucket's API key.
+         */
+        public void onResponse(int status, List<Header> headers) {
+            long retryAfter = -1;
+            long remaining = -1;
+            long reset = -1;
+            if (headers != null) {
+                for (Header header : headers) {
+                    String name = header.getName();
+                    if (name == null) {
+                        continue;
+                    }
+                    if ("Retry-After".equalsIgnoreCase(name)) {
+                        retryAfter = parseLong(header.getValue());
+                    } else if ("X-RateLimit-Remaining".equalsIgnoreCase(name)) {
+                        remaining = parseLong(header.getValue());
+                    } else if ("X-RateLimit-Reset".equalsIgnoreCase(name)) {
+                        reset = parseLong(header.getValue());
+                    }
+                }
+            }
+
+            long now = currentTimeMillis();
+            if (status == 429) {
+                rejectedCount.incrementAndGet();
+                if (retryAfter >= 0) {
+                    pauseUntil(now + TimeUnit.SECONDS.toMillis(retryAfter));
+                } else if (reset >= 0) {
+                    pauseUntil(resetMillis(now, reset));
+                } else {
+                    pauseUntil(now + periodMillis);
+                }
+            } else if (remaining == 0 && reset >= 0) {
+                pauseUntil(resetMillis(now, reset));
+            } else if (remaining > 0) {
+                synchronized (this) {
+                    refill(now);
+                    storedPermits = Math.min(storedPermits, remaining);
+                }
+            }
+        }
+
+        private long resetMillis(long now, long resetSeconds) {
+            return Math.min(TimeUnit.SECONDS.toMillis(resetSeconds), now + MAX_RESET_PAUSE_MILLIS);
+        }
+
+        private void refill(long now) {
+            if (now > nextFreeMillis) {
+                storedPermits = Math.min(permits, storedPermits + (now - nextFreeMillis) / millisPerPermit);
+                nextFreeMillis = now;
+            }
+        }
+
+        /**
+         * Returns the number of tokens available right now.
+         */
+        public synchronized int availablePermits() {
+            refill(currentTimeMillis());
+            return nextFreeMillis > currentTimeMillis() ? 0 : (int) storedPermits;
+        }
+
+        /**
+         * Returns the number of requests which passed through this bucket.
+         */
+        public long requestCount() {
+            return requestCount.get();
+        }
+
+        /**
+         * Returns the number of requests which had to wait for a token.
+         */
+        public long delayedCount() {
+            return delayedCount.get();
+        }
+
+        /**
+         * Returns the number of responses with status {@code 429 Too Many Requests}.
+         */
+        public long rejectedCount() {
+            return rejectedCount.get();
+        }
+
+        @Override
+        public String toString() {
+            return "RateLimiter.Bucket[requests=" + requestCount.get() + ",delayed=" + delayedCount.get()
+                    + ",rejected=" + rejectedCount.get() + "]";
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
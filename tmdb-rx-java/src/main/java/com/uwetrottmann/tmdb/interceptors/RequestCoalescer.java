@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Notification;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Lets concurrent subscribers to identical requests share one call.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setRequestCoalescer(RequestCoalescer)}. While a request is in
+ * flight, further subscribers to a request with the same {@link ServiceRequest#key()} do not send their own, but
+ * receive the same response (or error) as the first one. Once the response arrived, the next subscriber sends a new
+ * request. The call is cancelled only if all its subscribers unsubscribe.
+ * <p>
+ * All methods are thread-safe, a coalescer may be shared by several {@link com.uwetrottmann.tmdb.Tmdb} instances. Each
+ * instance installs it {@link #forApiKey(String, String) for its endpoint and API key}, so only requests sent with the
+ * same key to the same endpoint share a call.
+ */
+public class RequestCoalescer implements ServiceInterceptor {
+
+    private final ConcurrentHashMap<String, Observable<Object>> inFlight
+            = new ConcurrentHashMap<String, Observable<Object>>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong collapsedCount = new AtomicLong();
+
+    @Override
+    public Observable<?> intercept(Chain chain) {
+        return intercept(chain, "");
+    }
+
+    /**
+     * Returns an interceptor which coalesces like this one, but only requests sent to the given endpoint with the given
+     * API key. The API key is added to requests after the interceptors, so it is not part of their
+     * {@link ServiceRequest#key()}.
+     */
+    public ServiceInterceptor forApiKey(String apiUrl, String apiKey) {
+        final String scope = apiUrl + "?" + apiKey + " ";
+        return new ServiceInterceptor() {
+            @Override
+            public Observable<?> intercept(Chain chain) {
+                return RequestCoalescer.this.intercept(chain, scope);
+            }
+        };
+    }
+
+    private Observable<?> intercept(final Chain chain, final String scope) {
+        final ServiceRequest request = chain.request();
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Observable<Object> call() {
+                requestCount.incrementAndGet();
+                // a conditional request must not share the response of an unconditional one, or vice versa
+                final String key = scope + (request.headers().isEmpty() ? request.key()
+                        : request.key() + request.headers());
+                Observable<Object> shared = inFlight.get(key);
+                if (shared != null) {
+                    collapsedCount.incrementAndGet();
+                    return shared;
+                }
+
+                final AtomicReference<Observable<Object>> flight = new AtomicReference<Observable<Object>>();
+                final Action0 land = new Action0() {
+                    @Override
+                    public void call() {
+                        inFlight.remove(key, flight.get());
+                    }
+                };
+                // land before the response is passed on, so later subscribers send a new request; replay, so
+                // subscribers which already joined but subscribe late still receive it
+                shared = ((Observable<Object>) chain.proceed(request))
+                        .doOnEach(new Action1<Notification<? super Object>>() {
+                            @Override
+                            public void call(Notification<? super Object> notification) {
+                                land.call();
+                            }
+                        })
+                        .doOnUnsubscribe(land)
+                        .replay(1)
+                        .refCount();
+                flight.set(shared);
+
+                Observable<Object> existing = inFlight.putIfAbsent(key, shared);
+                if (existing != null) {
+                    collapsedCount.incrementAndGet();
+                    return existing;
+                }
+                return shared;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of requests subscribed to.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests which joined a call already in flight instead of sending their own.
+     */
+    public long collapsedCount() {
+        return collapsedCount.get();
+    }
+
+    /**
+     * Returns the number of distinct requests currently in flight.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestCoalescer[requests=" + requestCount.get() + ",collapsed=" + collapsedCount.get() + "]";
+    }
+}
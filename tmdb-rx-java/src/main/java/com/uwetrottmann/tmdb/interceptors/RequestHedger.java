@@ -0,0 +1,323 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+import com.uwetrottmann.tmdb.metrics.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Sends a second, hedging request if the response to a request is slower than most, and emits whichever response
+ * arrives first. The slower request is cancelled.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setRequestHedger(RequestHedger)}. The latency of the responses is
+ * observed per route, a hedge is sent once a request has been waiting longer than the given percentile of the
+ * latencies of the last {@code window} responses. Until a route has seen a full window, its requests are not hedged.
+ * Only idempotent requests are hedged, by default of all routes. The latency of a request is recorded whether or not
+ * its hedge won: a request cancelled for a faster hedge counts with the time it had been waiting, so slow requests
+ * keep raising the hedge delay instead of being hidden by their hedges.
+ * <p>
+ * Hedges are limited by a budget like the one of a {@link RetryPolicy}: each request adds a fraction of a hedge, each
+ * hedge takes a whole one. Hedges pass the {@link RateLimiter} like any request, and are not sent at all while the
+ * rate limiter would have to delay them. An error of a hedge is ignored, the original request decides.
+ * <p>
+ * All methods are thread-safe, a hedger may be shared by several {@link com.uwetrottmann.tmdb.Tmdb} instances.
+ */
+public class RequestHedger implements ServiceInterceptor {
+
+    /** By default a hedge is sent after the 95th percentile latency. */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final int DEFAULT_WINDOW = 100;
+    /** By default at most one in twenty requests is hedged. */
+    public static final double DEFAULT_BUDGET_RATIO = 0.05;
+    public static final int DEFAULT_MIN_HEDGES = 2;
+
+    private final double percentile;
+    private final int window;
+    private final Scheduler scheduler;
+    private final ConcurrentHashMap<String, RouteLatency> latencies = new ConcurrentHashMap<String, RouteLatency>();
+
+    private volatile Set<String> routes = Collections.emptySet();
+    private double budgetRatio = DEFAULT_BUDGET_RATIO;
+    private int minHedges = DEFAULT_MIN_HEDGES;
+    private double budget = DEFAULT_MIN_HEDGES;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWonCount = new AtomicLong();
+    private final AtomicLong budgetExhaustedCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+
+    /**
+     * Create a hedger sending hedges after the {@link #DEFAULT_PERCENTILE} latency of the last {@link #DEFAULT_WINDOW}
+     * responses.
+     */
+    public RequestHedger() {
+        this(DEFAULT_PERCENTILE, DEFAULT_WINDOW, Schedulers.computation());
+    }
+
+    /**
+     * @param percentile Between 0 and 1, e.g. 0.95 to hedge requests slower than 95% of the responses.
+     * @param window The number of responses of a route the percentile is taken of.
+     * @param scheduler Schedules the hedges.
+     */
+    public RequestHedger(double percentile, int window, Scheduler scheduler) {
+        if (percentile <= 0 || percentile > 1 || window <= 0) {
+            throw new IllegalArgumentException("percentile <= 0 || percentile > 1 || window <= 0");
+        }
+        this.percentile = percentile;
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Only hedge requests of the given routes, e.g. {@code /movie/{id}} and {@code /search/movie}. Without routes,
+     * requests of all routes are hedged.
+     */
+    public RequestHedger setRoutes(String... routes) {
+        this.routes = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(routes)));
+        return this;
+    }
+
+    /**
+     * Set the hedge budget. Defaults to {@link #DEFAULT_BUDGET_RATIO} and {@link #DEFAULT_MIN_HEDGES}.
+     *
+     * @param ratio The fraction of requests which may be hedged, e.g. 0.05 for one in twenty.
+     * @param minHedges The number of hedges allowed regardless of the ratio, also the most the budget saves up.
+     */
+    public synchronized RequestHedger setBudget(double ratio, int minHedges) {
+        if (ratio < 0 || minHedges < 0) {
+            throw new IllegalArgumentException("ratio < 0 || minHedges < 0");
+        }
+        this.budgetRatio = ratio;
+        this.minHedges = minHedges;
+        this.budget = minHedges;
+        return this;
+    }
+
+    /**
+     * Returns the time after which a request of the given route is hedged in microseconds, or -1 if its requests are
+     * not hedged (yet).
+     */
+    public long hedgeDelayMicros(String route) {
+        RouteLatency latency = latencies.get(route);
+        return latency != null ? latency.hedgeDelayMicros : -1;
+    }
+
+    @Override
+    public Observable<?> intercept(Chain chain) {
+        return intercept(chain, null);
+    }
+
+    /**
+     * Returns an interceptor which hedges like this one, but does not send hedges while the given bucket has no
+     * tokens.
+     */
+    public ServiceInterceptor withRateLimit(final RateLimiter.Bucket bucket) {
+        return new ServiceInterceptor() {
+            @Override
+            public Observable<?> intercept(Chain chain) {
+                return RequestHedger.this.intercept(chain, bucket);
+            }
+        };
+    }
+
+    private Observable<?> intercept(final Chain chain, final RateLimiter.Bucket bucket) {
+        final ServiceRequest request = chain.request();
+        Set<String> routes = this.routes;
+        if (!request.isIdempotent() || (!routes.isEmpty() && !routes.contains(request.route()))) {
+            return chain.proceed(request);
+        }
+        final RouteLatency latency = latency(request.route());
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            public Observable<Object> call() {
+                requestCount.incrementAndGet();
+                deposit();
+                final AtomicBoolean hedgeWon = new AtomicBoolean();
+                Observable<Object> primary = primary(chain, request, latency, hedgeWon);
+                long delay = latency.hedgeDelayMicros;
+                if (delay < 0) {
+                    return primary;
+                }
+                Observable<Object> hedge = Observable.defer(new Func0<Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call() {
+                        if (bucket != null && bucket.availablePermits() < 1) {
+                            rateLimitedCount.incrementAndGet();
+                            return Observable.never();
+                        }
+                        if (!withdraw()) {
+                            budgetExhaustedCount.incrementAndGet();
+                            return Observable.never();
+                        }
+                        hedgeCount.incrementAndGet();
+                        return hedge(chain, request, hedgeWon).onErrorResumeNext(Observable.<Object>never());
+                    }
+                }).delaySubscription(delay, TimeUnit.MICROSECONDS, scheduler);
+                return Observable.amb(primary, hedge);
+            }
+        });
+    }
+
+    /**
+     * Sends the request, recording the latency of its response, or if it is cancelled because the hedge won, the time
+     * it had been waiting.
+     */
+    @SuppressWarnings("unchecked")
+    private static Observable<Object> primary(final Chain chain, final ServiceRequest request,
+            final RouteLatency latency, final AtomicBoolean hedgeWon) {
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            public Observable<Object> call() {
+                final long start = System.nanoTime();
+                final AtomicBoolean recorded = new AtomicBoolean();
+                return ((Observable<Object>) chain.proceed(request)).doOnNext(new Action1<Object>() {
+                    @Override
+                    public void call(Object response) {
+                        if (recorded.compareAndSet(false, true)) {
+                            latency.record((System.nanoTime() - start) / 1000);
+                        }
+                    }
+                }).doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        // the response would have taken at least this long
+                        if (hedgeWon.get() && recorded.compareAndSet(false, true)) {
+                            latency.record((System.nanoTime() - start) / 1000);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sends the hedge, flagging that it won once its response arrives. Its latency is not recorded, it only started
+     * after the hedge delay.
+     */
+    @SuppressWarnings("unchecked")
+    private Observable<Object> hedge(Chain chain, ServiceRequest request, final AtomicBoolean hedgeWon) {
+        return ((Observable<Object>) chain.proceed(request)).doOnNext(new Action1<Object>() {
+            @Override
+            public void call(Object response) {
+                hedgeWon.set(true);
+                hedgeWonCount.incrementAndGet();
+            }
+        });
+    }
+
+    private RouteLatency latency(String route) {
+        RouteLatency latency = latencies.get(route);
+        if (latency == null) {
+            latencies.putIfAbsent(route, new RouteLatency());
+            latency = latencies.get(route);
+        }
+        return latency;
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(minHedges, budget + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    /**
+     * Returns the number of requests which could have been hedged.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of hedges sent.
+     */
+    public long hedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * Returns the number of hedges which were faster than the request they hedged.
+     */
+    public long hedgeWonCount() {
+        return hedgeWonCount.get();
+    }
+
+    /**
+     * Returns the number of hedges not sent because the budget was used up.
+     */
+    public long budgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    /**
+     * Returns the number of hedges not sent because the rate limiter had no tokens.
+     */
+    public long rateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestHedger[requests=" + requestCount.get() + ",hedges=" + hedgeCount.get() + ",won="
+                + hedgeWonCount.get() + ",budgetExhausted=" + budgetExhaustedCount.get() + ",rateLimited="
+                + rateLimitedCount.get() + "]";
+    }
+
+    /**
+     * The latencies of the current window of a route, and the hedge delay taken from the last full one.
+     */
+    private final class RouteLatency {
+
+        private final AtomicReference<LatencyHistogram> current
+                = new AtomicReference<LatencyHistogram>(new LatencyHistogram());
+        volatile long hedgeDelayMicros = -1;
+
+        void record(long micros) {
+            LatencyHistogram histogram = current.get();
+            histogram.record(micros);
+            // only one of the recordings completing the window starts the next one
+            if (histogram.count() >= window && current.compareAndSet(histogram, new LatencyHistogram())) {
+                hedgeDelayMicros = histogram.valueAtPercentile(percentile);
+            }
+        }
+    }
+}
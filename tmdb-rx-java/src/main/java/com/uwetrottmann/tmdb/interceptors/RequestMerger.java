@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.AppendedResources;
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+
+/**
+ * Merges requests for the parts of the same movie, show, season or episode which arrive within a short window into
+ * one request with {@code append_to_response}.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setRequestMerger(RequestMerger)}. For example, if a movie is
+ * requested with {@link com.uwetrottmann.tmdb.services.MoviesService#summary} while its credits, videos and images are
+ * requested with {@link com.uwetrottmann.tmdb.services.MoviesService#credits} and so on, only one request for the
+ * movie with its credits, videos and images appended is sent. Each subscriber receives its own part of the response,
+ * like from a request of its own. This saves round trips and rate limit tokens, at the cost of holding back these
+ * requests for the window. Which requests can be merged is described by {@link AppendedResources}.
+ * <p>
+ * If a part is missing from the merged response, the request for it is sent on its own. The merged request is
+ * cancelled only if all its subscribers unsubscribe.
+ * <p>
+ * All methods are thread-safe. A merger may be shared by several {@link com.uwetrottmann.tmdb.Tmdb} instances. Each
+ * instance installs it {@link #forApiKey(String, String) for its endpoint and API key}, so only requests sent with the
+ * same key to the same endpoint are merged.
+ */
+public class RequestMerger implements ServiceInterceptor {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 10;
+
+    private final long windowMillis;
+    private final Scheduler scheduler;
+    /** The batches waiting for their window to pass, by the key of the request without appended items. */
+    private final Map<String, Batch> batches = new HashMap<String, Batch>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong mergedCount = new AtomicLong();
+    private final AtomicLong missingPartCount = new AtomicLong();
+
+    public RequestMerger() {
+        this(DEFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS, Schedulers.computation());
+    }
+
+    /**
+     * @param window How long to wait for further requests to merge with the first one.
+     * @param scheduler Schedules the end of the windows.
+     */
+    public RequestMerger(long window, TimeUnit unit, Scheduler scheduler) {
+        if (window < 0) {
+            throw new IllegalArgumentException("window < 0");
+        }
+        this.windowMillis = unit.toMillis(window);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Observable<?> intercept(Chain chain) {
+        return intercept(chain, "");
+    }
+
+    /**
+     * Returns an interceptor which merges like this one, but only requests sent to the given endpoint with the given
+     * API key. The API key is added to requests after the interceptors, so it is not part of their
+     * {@link ServiceRequest#key()}.
+     */
+    public ServiceInterceptor forApiKey(String apiUrl, String apiKey) {
+        final String scope = apiUrl + "?" + apiKey + " ";
+        return new ServiceInterceptor() {
+            @Override
+            public Observable<?> intercept(Chain chain) {
+                return RequestMerger.this.intercept(chain, scope);
+            }
+        };
+    }
+
+    private Observable<?> intercept(final Chain chain, final String scope) {
+        final ServiceRequest request = chain.request();
+        if (!request.headers().isEmpty()) {
+            return chain.proceed(request);
+        }
+        final ServiceRequest composite;
+        final AppendToResponseItem item;
+        if (AppendedResources.of(request) != null) {
+            composite = request;
+            item = null;
+        } else {
+            composite = AppendedResources.appendableTo(request);
+            if (composite == null) {
+                return chain.proceed(request);
+            }
+            item = AppendedResources.appendableItem(request);
+        }
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            public Observable<Object> call() {
+                requestCount.incrementAndGet();
+                return join(new Member(chain, request, item), composite, scope);
+            }
+        });
+    }
+
+    private Observable<Object> join(final Member member, ServiceRequest composite, String scope) {
+        AppendedResources resources = AppendedResources.of(composite);
+        final Batch batch;
+        boolean first = false;
+        synchronized (this) {
+            String key = scope + resources.baseKey(composite);
+            Batch existing = batches.get(key);
+            if (existing == null) {
+                existing = new Batch(key, composite, resources);
+                batches.put(key, existing);
+                first = true;
+            }
+            batch = existing;
+            batch.members.add(member);
+            batch.active.incrementAndGet();
+        }
+        if (first) {
+            final Scheduler.Worker worker = scheduler.createWorker();
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    try {
+                        send(batch);
+                    } finally {
+                        worker.unsubscribe();
+                    }
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return member.subject.doOnUnsubscribe(new Action0() {
+            @Override
+            public void call() {
+                if (batch.active.decrementAndGet() == 0) {
+                    batch.cancel();
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void send(final Batch batch) {
+        synchronized (this) {
+            batches.remove(batch.key);
+        }
+        if (batch.active.get() == 0) {
+            return;
+        }
+        callCount.incrementAndGet();
+        final List<Member> members = batch.members;
+        if (members.size() == 1) {
+            Member member = members.get(0);
+            batch.setCall(((Observable<Object>) member.chain.proceed(member.request)).subscribe(member.subject));
+            return;
+        }
+
+        final EnumSet<AppendToResponseItem> items = EnumSet.noneOf(AppendToResponseItem.class);
+        for (Member member : members) {
+            if (member.item != null) {
+                items.add(member.item);
+            } else {
+                items.addAll(batch.resources.items(member.request));
+            }
+        }
+        mergedCount.addAndGet(members.size());
+        final ServiceRequest merged = batch.resources.withItems(batch.composite,
+                new ArrayList<AppendToResponseItem>(items));
+        batch.setCall(((Observable<Object>) members.get(0).chain.proceed(merged)).subscribe(new Subscriber<Object>() {
+            @Override
+            public void onNext(Object response) {
+                for (Member member : members) {
+                    deliver(batch.resources, member, merged, response);
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                for (Member member : members) {
+                    member.subject.onError(e);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Passes the part of the merged response the member asked for on, or sends its request if the part is missing.
+     * <p>
+     * Only a member which asked for exactly the merged request receives the converted response itself. The others
+     * receive a part or a copy, so the validators and the body recorded for the merged response are not cached as
+     * theirs, see {@link com.uwetrottmann.tmdb.cache.ValidatorRecordingConverter}.
+     */
+    @SuppressWarnings("unchecked")
+    private void deliver(AppendedResources resources, Member member, ServiceRequest merged, Object response) {
+        Object value;
+        if (member.item != null) {
+            value = resources.getPart(response, member.item);
+        } else if (member.request.key().equals(merged.key())) {
+            value = response;
+        } else {
+            // do not hand out parts not asked for
+            value = resources.withOnlyParts(response, resources.items(member.request));
+        }
+        if (value == null) {
+            missingPartCount.incrementAndGet();
+            ((Observable<Object>) member.chain.proceed(member.request)).subscribe(member.subject);
+            return;
+        }
+        member.subject.onNext(value);
+        member.subject.onCompleted();
+    }
+
+    /**
+     * Returns the number of requests subscribed to which could be merged.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests sent, merged or not.
+     */
+    public long callCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Returns the number of requests which were answered by a merged request.
+     */
+    public long mergedCount() {
+        return mergedCount.get();
+    }
+
+    /**
+     * Returns the number of requests sent on their own because their part was missing from the merged response.
+     */
+    public long missingPartCount() {
+        return missingPartCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMerger[requests=" + requestCount.get() + ",calls=" + callCount.get() + ",merged="
+                + mergedCount.get() + ",missingParts=" + missingPartCount.get() + "]";
+    }
+
+    /**
+     * A subscriber to a request which may be merged.
+     */
+    private static final class Member {
+
+        final Chain chain;
+        final ServiceRequest request;
+        /** The item as which the request is appended, or {@code null} if it is for the merged resource itself. */
+        final AppendToResponseItem item;
+        final AsyncSubject<Object> subject = AsyncSubject.create();
+
+        Member(Chain chain, ServiceRequest request, AppendToResponseItem item) {
+            this.chain = chain;
+            this.request = request;
+            this.item = item;
+        }
+    }
+
+    /**
+     * The requests for the parts of one resource arriving within a window.
+     */
+    private static final class Batch {
+
+        final String key;
+        final ServiceRequest composite;
+        final AppendedResources resources;
+        /** Complete once the batch is no longer in the map of batches. */
+        final List<Member> members = new ArrayList<Member>();
+        /** The number of members still subscribed. */
+        final AtomicInteger active = new AtomicInteger();
+        private Subscription call;
+        private boolean cancelled;
+
+        Batch(String key, ServiceRequest composite, AppendedResources resources) {
+            this.key = key;
+            this.composite = composite;
+            this.resources = resources;
+        }
+
+        void setCall(Subscription call) {
+            boolean cancelled;
+            synchronized (this) {
+                this.call = call;
+                cancelled = this.cancelled;
+            }
+            if (cancelled) {
+                call.unsubscribe();
+            }
+        }
+
+        void cancel() {
+            Subscription call;
+            synchronized (this) {
+                cancelled = true;
+                call = this.call;
+            }
+            if (call != null) {
+                call.unsubscribe();
+            }
+        }
+    }
+}
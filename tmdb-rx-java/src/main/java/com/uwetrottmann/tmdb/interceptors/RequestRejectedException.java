@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+/**
+ * Signals that a request was not sent because the {@link CircuitBreaker} of its service is open, or too many requests
+ * of its service are already in flight.
+ */
+public class RequestRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        /** The circuit of the service is open, or half-open with all probes in flight. */
+        CIRCUIT_OPEN,
+        /** The service has the maximum number of requests in flight. */
+        BULKHEAD_FULL
+    }
+
+    private final Class<?> service;
+    private final Reason reason;
+
+    public RequestRejectedException(Class<?> service, Reason reason) {
+        super(reason == Reason.CIRCUIT_OPEN
+                ? "Circuit of " + service.getSimpleName() + " is open"
+                : "Too many requests of " + service.getSimpleName() + " in flight");
+        this.service = service;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns the service interface of the rejected request, e.g. {@code MoviesService.class}.
+     */
+    public Class<?> service() {
+        return service;
+    }
+
+    public Reason reason() {
+        return reason;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Sends requests failing for a transient reason again, after an exponential backoff with full jitter.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setRetryPolicy(RetryPolicy)}. A request is tried again if it
+ * failed to connect or read the response (e.g. the connection was reset), or TMDb answered with a {@code 5xx} status
+ * other than {@code 501}, or with {@code 429 Too Many Requests}. Other errors, like {@code 404}, are passed on right
+ * away. Only idempotent requests are tried again, which are all {@code GET} requests.
+ * <p>
+ * Before the {@code n}-th retry the policy waits a random time between zero and {@code baseDelay * 2^(n-1)}, at most
+ * the maximum delay, so clients failing at the same time do not retry in lockstep. If TMDb sent a
+ * {@code Retry-After} header, the policy waits at least that long. If that is longer than the maximum delay, the error
+ * is passed on instead, as an earlier retry would only be rejected again.
+ * <p>
+ * To not amplify an outage with retries, they are limited by a budget: each request adds a fraction of a retry to
+ * the budget, each retry takes a whole one. The budget starts with and holds at most the minimum number of retries, so
+ * occasional failures are always retried, while during an outage at most the given fraction of requests is retried.
+ * <p>
+ * All methods are thread-safe, a retry policy may be shared by several {@link com.uwetrottmann.tmdb.Tmdb} instances,
+ * which then share its budget.
+ */
+public class RetryPolicy implements ServiceInterceptor {
+
+    /**
+     * Is told about every failed attempt of a request, to e.g. measure how often and why requests are retried.
+     */
+    public interface Listener {
+
+        /**
+         * @param attempt The number of the failed attempt, starting at 1.
+         * @param error The error the attempt failed with.
+         * @param delayMillis The time until the request is tried again, or -1 if the error is passed on.
+         */
+        void onAttemptFailed(ServiceRequest request, int attempt, Throwable error, long delayMillis);
+    }
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 250;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    /** By default at most one in ten requests is retried. */
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    public static final int DEFAULT_MIN_RETRIES = 10;
+
+    private final Scheduler scheduler;
+    private final Random random = new Random();
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+    private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private double budgetRatio = DEFAULT_BUDGET_RATIO;
+    private int minRetries = DEFAULT_MIN_RETRIES;
+    private double budget = DEFAULT_MIN_RETRIES;
+    private volatile Listener listener;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong attemptCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong recoveredCount = new AtomicLong();
+    private final AtomicLong budgetExhaustedCount = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> retryReasons = new ConcurrentHashMap<String, AtomicLong>();
+
+    public RetryPolicy() {
+        this(Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler Schedules the delayed retries.
+     */
+    public RetryPolicy(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Set how often a request is tried again at most. Defaults to {@link #DEFAULT_MAX_RETRIES}.
+     *
+     * @param maxRetries Zero to not retry requests.
+     */
+    public synchronized RetryPolicy setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries < 0");
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Set the backoff before the first retry and the longest backoff. Default to
+     * {@link #DEFAULT_BASE_DELAY_MILLIS} and {@link #DEFAULT_MAX_DELAY_MILLIS}.
+     */
+    public synchronized RetryPolicy setBackoff(long baseDelay, long maxDelay, TimeUnit unit) {
+        if (baseDelay < 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("baseDelay < 0 || maxDelay < baseDelay");
+        }
+        this.baseDelayMillis = unit.toMillis(baseDelay);
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+        return this;
+    }
+
+    /**
+     * Set the retry budget. Defaults to {@link #DEFAULT_BUDGET_RATIO} and {@link #DEFAULT_MIN_RETRIES}.
+     *
+     * @param ratio The fraction of requests which may be retried, e.g. 0.1 for one in ten.
+     * @param minRetries The number of retries allowed regardless of the ratio, also the most the budget saves up.
+     */
+    public synchronized RetryPolicy setBudget(double ratio, int minRetries) {
+        if (ratio < 0 || minRetries < 0) {
+            throw new IllegalArgumentException("ratio < 0 || minRetries < 0");
+        }
+        this.budgetRatio = ratio;
+        this.minRetries = minRetries;
+        this.budget = minRetries;
+        return this;
+    }
+
+    /**
+     * Set a listener told about every failed attempt, or {@code null}.
+     */
+    public RetryPolicy setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public Observable<?> intercept(final Chain chain) {
+        final ServiceRequest request = chain.request();
+        if (!request.isIdempotent()) {
+            return chain.proceed(request);
+        }
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            public Observable<Object> call() {
+                requestCount.incrementAndGet();
+                deposit();
+                return attempt(chain, request, 1);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Observable<Object> attempt(final Chain chain, final ServiceRequest request, final int attempt) {
+        attemptCount.incrementAndGet();
+        Observable<Object> response = (Observable<Object>) chain.proceed(request);
+        if (attempt > 1) {
+            response = response.doOnNext(new Action1<Object>() {
+                @Override
+                public void call(Object ignored) {
+                    recoveredCount.incrementAndGet();
+                }
+            });
+        }
+        return response.onErrorResumeNext(new Func1<Throwable, Observable<Object>>() {
+            @Override
+            public Observable<Object> call(Throwable error) {
+                long delay = retryDelayMillis(attempt, error);
+                Listener listener = RetryPolicy.this.listener;
+                if (listener != null) {
+                    listener.onAttemptFailed(request, attempt, error, delay);
+                }
+                if (delay < 0) {
+                    return Observable.error(error);
+                }
+                return Observable.defer(new Func0<Observable<Object>>() {
+                    @Override
+                    public Observable<Object> call() {
+                        return attempt(chain, request, attempt + 1);
+                    }
+                }).delaySubscription(delay, TimeUnit.MILLISECONDS, scheduler);
+            }
+        });
+    }
+
+    /**
+     * Returns how long to wait before trying again after the given attempt failed, or -1 to pass the error on.
+     */
+    private long retryDelayMillis(int attempt, Throwable error) {
+        String reason = retryReason(error);
+        if (reason == null) {
+            return -1;
+        }
+        long retryAfter = retryAfterMillis(error);
+        long backoff;
+        synchronized (this) {
+            if (attempt > maxRetries || retryAfter > maxDelayMillis) {
+                return -1;
+            }
+            if (budget < 1) {
+                budgetExhaustedCount.incrementAndGet();
+                return -1;
+            }
+            budget -= 1;
+            // avoid overflowing for many retries
+            backoff = attempt > 30 ? maxDelayMillis : Math.min(maxDelayMillis, baseDelayMillis << (attempt - 1));
+        }
+        retryCount.incrementAndGet();
+        AtomicLong count = retryReasons.get(reason);
+        if (count == null) {
+            retryReasons.putIfAbsent(reason, new AtomicLong());
+            count = retryReasons.get(reason);
+        }
+        count.incrementAndGet();
+
+        // full jitter
+        long delay = (long) (random.nextDouble() * backoff);
+        return Math.max(delay, retryAfter);
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(minRetries, budget + budgetRatio);
+    }
+
+    /**
+     * Returns why the error is worth another attempt, e.g. {@code HTTP 503}, or {@code null} if it is not.
+     */
+    private static String retryReason(Throwable error) {
+        if (!(error instanceof RetrofitError)) {
+            return null;
+        }
+        RetrofitError retrofitError = (RetrofitError) error;
+        if (retrofitError.getKind() == RetrofitError.Kind.NETWORK) {
+            return "network";
+        }
+        Response response = retrofitError.getResponse();
+        if (retrofitError.getKind() != RetrofitError.Kind.HTTP || response == null) {
+            return null;
+        }
+        int status = response.getStatus();
+        if (status == 429 || (status >= 500 && status != 501)) {
+            return "HTTP " + status;
+        }
+        return null;
+    }
+
+    private static long retryAfterMillis(Throwable error) {
+        Response response = ((RetrofitError) error).getResponse();
+        if (response == null || response.getHeaders() == null) {
+            return -1;
+        }
+        for (Header header : response.getHeaders()) {
+            if ("Retry-After".equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                try {
+                    return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of requests subscribed to, not counting retries.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of attempts, i.e. requests plus retries.
+     */
+    public long attemptCount() {
+        return attemptCount.get();
+    }
+
+    public long retryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Returns the number of requests which succeeded after being retried.
+     */
+    public long recoveredCount() {
+        return recoveredCount.get();
+    }
+
+    /**
+     * Returns the number of errors passed on because the retry budget was used up.
+     */
+    public long budgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    /**
+     * Returns the number of retries by reason, e.g. {@code network} or {@code HTTP 503}.
+     */
+    public Map<String, Long> retryReasons() {
+        Map<String, Long> reasons = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : retryReasons.entrySet()) {
+            reasons.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(reasons);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[requests=" + requestCount.get() + ",attempts=" + attemptCount.get() + ",retries="
+                + retryCount.get() + ",recovered=" + recoveredCount.get() + ",budgetExhausted="
+                + budgetExhaustedCount.get() + "]";
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What the {@link MeteredClient} and {@link MeteredConverter} measured of the last request executed on the current
+ * thread, for the {@link MetricsInterceptor} to report along with the response.
+ * <p>
+ * Retrofit executes the request, converts the response and emits it on the same thread. Exchanges are numbered in the
+ * order they begin, so a response emitted on the thread of an exchange which began after the request was subscribed
+ * to came from the network, even if it is a part or a copy of the converted response.
+ */
+final class Exchange {
+
+    private static final ThreadLocal<Exchange> CURRENT = new ThreadLocal<Exchange>();
+    private static final AtomicLong LAST_NUMBER = new AtomicLong();
+
+    final long number = LAST_NUMBER.incrementAndGet();
+    final long[] phaseNanos = new long[Phase.values().length];
+    int status;
+    long responseBytes;
+    /** The size of the decompressed body, or -1 if it was not compressed. */
+    long decodedBytes = -1;
+    /** The converted response, or {@code null} if there is none (yet). */
+    Object response;
+    /** Whether the response was already reported, further subscribers share it. */
+    boolean reported;
+
+    private Exchange() {
+        Arrays.fill(phaseNanos, -1);
+    }
+
+    /**
+     * Starts a new exchange on the current thread.
+     */
+    static Exchange begin() {
+        Exchange exchange = new Exchange();
+        CURRENT.set(exchange);
+        return exchange;
+    }
+
+    /**
+     * Returns the number of the last exchange begun on any thread, later exchanges have a larger number.
+     */
+    static long lastNumber() {
+        return LAST_NUMBER.get();
+    }
+
+    /**
+     * Returns the last exchange started on the current thread, or {@code null}.
+     */
+    static Exchange current() {
+        return CURRENT.get();
+    }
+
+    void addNanos(Phase phase, long nanos) {
+        int index = phase.ordinal();
+        phaseNanos[index] = Math.max(0, phaseNanos[index]) + nanos;
+    }
+}
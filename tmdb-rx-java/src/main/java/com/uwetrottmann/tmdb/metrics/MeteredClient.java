@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+
+/**
+ * Wraps the HTTP client to time receiving the response headers and reading the body, and to record the status and the
+ * size of the body.
+ * <p>
+ * Retrofit clients do not expose connecting, a client which can time it reports it with
+ * {@link #recordPhase(Phase, long)} during {@link Client#execute(Request)}. The recorded size is that of the body
+ * as received, a client wrapping this one to decompress the body reports its decompressed size with
+ * {@link #recordDecodedBytes(long)}.
+ */
+public final class MeteredClient implements Client {
+
+    private final Client delegate;
+
+    public MeteredClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Records the time spent in the given phase, e.g. {@link Phase#DNS}, for the request executing on the current
+     * thread. Does nothing if there is none.
+     */
+    public static void recordPhase(Phase phase, long nanos) {
+        Exchange exchange = Exchange.current();
+        if (exchange != null) {
+            exchange.addNanos(phase, nanos);
+        }
+    }
+
+    /**
+     * Records that the given number of decompressed bytes were read from the body of the response received on the
+     * current thread. Does nothing if there is none.
+     */
+    public static void recordDecodedBytes(long bytes) {
+        Exchange exchange = Exchange.current();
+        if (exchange != null) {
+            exchange.decodedBytes = Math.max(0, exchange.decodedBytes) + bytes;
+        }
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Exchange exchange = Exchange.begin();
+        long start = System.nanoTime();
+        Response response = delegate.execute(request);
+        exchange.addNanos(Phase.TIME_TO_FIRST_BYTE, System.nanoTime() - start);
+        exchange.status = response.getStatus();
+
+        TypedInput body = response.getBody();
+        if (body == null) {
+            return response;
+        }
+        if (body instanceof TypedByteArray) {
+            // already read by the client
+            exchange.responseBytes = body.length();
+            return response;
+        }
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                new MeteredBody(body, exchange));
+    }
+
+    private static final class MeteredBody implements TypedInput {
+
+        private final TypedInput delegate;
+        private final Exchange exchange;
+
+        MeteredBody(TypedInput delegate, Exchange exchange) {
+            this.delegate = delegate;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public String mimeType() {
+            return delegate.mimeType();
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            return new FilterInputStream(delegate.in()) {
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    int read = super.read();
+                    exchange.addNanos(Phase.BODY, System.nanoTime() - start);
+                    if (read != -1) {
+                        exchange.responseBytes++;
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    long start = System.nanoTime();
+                    int read = super.read(buffer, offset, length);
+                    exchange.addNanos(Phase.BODY, System.nanoTime() - start);
+                    if (read > 0) {
+                        exchange.responseBytes += read;
+                    }
+                    return read;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import java.lang.reflect.Type;
+
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/**
+ * Wraps the converter to time deserializing responses.
+ */
+public final class MeteredConverter implements Converter {
+
+    private final Converter delegate;
+
+    public MeteredConverter(Converter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object fromBody(TypedInput body, Type type) throws ConversionException {
+        long start = System.nanoTime();
+        Object response = delegate.fromBody(body, type);
+        Exchange exchange = Exchange.current();
+        if (exchange != null && exchange.response == null) {
+            exchange.addNanos(Phase.DESERIALIZE, System.nanoTime() - start);
+            exchange.response = response;
+        }
+        return response;
+    }
+
+    @Override
+    public TypedOutput toBody(Object object) {
+        return delegate.toBody(object);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.ServiceRequest;
+
+import java.util.Arrays;
+
+import rx.Observable;
+import rx.Observer;
+import rx.functions.Func0;
+
+/**
+ * Reports the {@link RequestMetrics} of each response or error of a service method to a {@link MetricsListener}.
+ * <p>
+ * Should be the outermost interceptor, so responses from a cache are reported too. The phases of a request sent are
+ * only known if the client is a {@link MeteredClient} and the converter a {@link MeteredConverter}.
+ * <p>
+ * A response counts as from the network if an exchange began for it after it was subscribed to, also if it is only a
+ * part or a copy of the converted response, e.g. from a {@link com.uwetrottmann.tmdb.interceptors.RequestMerger} or
+ * put together from cached parts. Further responses of the same exchange count as coalesced.
+ */
+public class MetricsInterceptor implements ServiceInterceptor {
+
+    private final MetricsListener listener;
+
+    public MetricsInterceptor(MetricsListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Observable<?> intercept(final Chain chain) {
+        final ServiceRequest request = chain.request();
+        return Observable.defer(new Func0<Observable<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Observable<Object> call() {
+                final long start = System.nanoTime();
+                final long lastExchange = Exchange.lastNumber();
+                return ((Observable<Object>) chain.proceed(request)).doOnEach(new Observer<Object>() {
+                    private boolean reported;
+
+                    @Override
+                    public void onNext(Object response) {
+                        report(response, null);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        report(null, error);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+
+                    private void report(Object response, Throwable error) {
+                        if (!reported) {
+                            reported = true;
+                            listener.onResponse(measure(request, lastExchange, response, error,
+                                    System.nanoTime() - start));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param lastExchange The number of the last exchange begun before the request was subscribed to.
+     */
+    private static RequestMetrics measure(ServiceRequest request, long lastExchange, Object response, Throwable error,
+            long totalNanos) {
+        long[] phaseNanos = new long[Phase.values().length];
+        Arrays.fill(phaseNanos, -1);
+        phaseNanos[Phase.TOTAL.ordinal()] = totalNanos;
+
+        Exchange exchange = Exchange.current();
+        // an exchange on this thread begun since subscribing was sent for this request, or shared with it. A request
+        // coalesced with one already in flight shares its response, or if it failed, the error of an exchange which
+        // converted no response.
+        boolean fromExchange = exchange != null && (exchange.number > lastExchange
+                || (error != null ? exchange.response == null : exchange.response == response));
+        if (!fromExchange) {
+            // no request was sent, unless failing before receiving a response
+            RequestMetrics.Source source = error != null ? RequestMetrics.Source.NETWORK : RequestMetrics.Source.CACHE;
+            return new RequestMetrics(request, source, 0, 0, 0, phaseNanos, error);
+        }
+        if (exchange.reported) {
+            return new RequestMetrics(request, RequestMetrics.Source.COALESCED, exchange.status, 0, 0, phaseNanos,
+                    error);
+        }
+        exchange.reported = true;
+        for (Phase phase : Phase.values()) {
+            if (phase != Phase.TOTAL) {
+                phaseNanos[phase.ordinal()] = exchange.phaseNanos[phase.ordinal()];
+            }
+        }
+        return new RequestMetrics(request, RequestMetrics.Source.NETWORK, exchange.status, exchange.responseBytes,
+                exchange.decodedBytes >= 0 ? exchange.decodedBytes : exchange.responseBytes, phaseNanos, error);
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+/**
+ * Receives the {@link RequestMetrics} of every response or error of a service method, see
+ * {@link com.uwetrottmann.tmdb.Tmdb#setMetricsListener(MetricsListener)}.
+ * <p>
+ * Called on the thread emitting the response, before it reaches the subscriber, so implementations must be
+ * thread-safe and quick. {@link MetricsRecorder} aggregates the metrics per route.
+ */
+public interface MetricsListener {
+
+    void onResponse(RequestMetrics metrics);
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import com.uwetrottmann.tmdb.interceptors.CircuitBreaker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the {@link RequestMetrics} per route into {@link RouteMetrics}, with a {@link LatencyHistogram} for each
+ * {@link Phase}.
+ * <p>
+ * For example:
+ * <pre>
+ * MetricsRecorder metrics = new MetricsRecorder();
+ * tmdb.setMetricsListener(metrics);
+ * ...
+ * long p99 = metrics.route("/movie/{id}").histogram(Phase.TOTAL).valueAtPercentile(0.99);
+ * </pre>
+ * It also records the state changes of a {@link CircuitBreaker} it listens to.
+ */
+public class MetricsRecorder implements MetricsListener, CircuitBreaker.Listener {
+
+    private final ConcurrentHashMap<String, RouteMetrics> routes = new ConcurrentHashMap<String, RouteMetrics>();
+    private final ConcurrentHashMap<String, CircuitBreaker.State> circuitStates
+            = new ConcurrentHashMap<String, CircuitBreaker.State>();
+    private final ConcurrentHashMap<String, AtomicLong> circuitOpenedCounts
+            = new ConcurrentHashMap<String, AtomicLong>();
+
+    @Override
+    public void onResponse(RequestMetrics metrics) {
+        RouteMetrics route = routes.get(metrics.route());
+        if (route == null) {
+            routes.putIfAbsent(metrics.route(), new RouteMetrics(metrics.route()));
+            route = routes.get(metrics.route());
+        }
+        route.record(metrics);
+    }
+
+    @Override
+    public void onStateChanged(Class<?> service, CircuitBreaker.State from, CircuitBreaker.State to) {
+        String name = service.getSimpleName();
+        circuitStates.put(name, to);
+        if (to == CircuitBreaker.State.OPEN) {
+            AtomicLong count = circuitOpenedCounts.get(name);
+            if (count == null) {
+                circuitOpenedCounts.putIfAbsent(name, new AtomicLong());
+                count = circuitOpenedCounts.get(name);
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the metrics of the given route, e.g. {@code /movie/{id}}, or {@code null} if it had no responses.
+     */
+    public RouteMetrics route(String route) {
+        return routes.get(route);
+    }
+
+    /**
+     * Returns the metrics of all routes with responses, sorted by route.
+     */
+    public Map<String, RouteMetrics> routes() {
+        return Collections.unmodifiableMap(new TreeMap<String, RouteMetrics>(routes));
+    }
+
+    /**
+     * Returns the last reported circuit state of each service interface, by simple name, e.g. {@code MoviesService}.
+     */
+    public Map<String, CircuitBreaker.State> circuitStates() {
+        return Collections.unmodifiableMap(new TreeMap<String, CircuitBreaker.State>(circuitStates));
+    }
+
+    /**
+     * Returns how often the circuit of the given service interface opened, by simple name.
+     */
+    public long circuitOpenedCount(String service) {
+        AtomicLong count = circuitOpenedCounts.get(service);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Forget all metrics recorded so far.
+     */
+    public void reset() {
+        routes.clear();
+        circuitStates.clear();
+        circuitOpenedCounts.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MetricsRecorder[");
+        for (RouteMetrics route : routes().values()) {
+            builder.append("\n  ").append(route);
+        }
+        if (!circuitStates.isEmpty()) {
+            builder.append("\n  circuits=").append(circuitStates());
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+/**
+ * The phases of a service method call timed by the {@link MetricsInterceptor}.
+ */
+public enum Phase {
+
+    /** Resolving the host name, only reported by clients calling {@link MeteredClient#recordPhase(Phase, long)}. */
+    DNS,
+    /** Connecting, including TLS, only reported by clients calling {@link MeteredClient#recordPhase(Phase, long)}. */
+    CONNECT,
+    /** From sending the request until the response headers are received, including DNS and connecting. */
+    TIME_TO_FIRST_BYTE,
+    /** Reading the response body. */
+    BODY,
+    /** Converting the response body into the entity. */
+    DESERIALIZE,
+    /** From subscribing until the response or error is emitted, including waiting for the rate limiter. */
+    TOTAL
+}
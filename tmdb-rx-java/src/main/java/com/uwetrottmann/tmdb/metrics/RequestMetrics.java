@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import com.uwetrottmann.tmdb.ServiceRequest;
+
+import java.util.Arrays;
+
+/**
+ * What was measured for one response or error of a service method.
+ */
+public final class RequestMetrics {
+
+    /**
+     * Where the response came from.
+     */
+    public enum Source {
+        /** A request was sent. */
+        NETWORK,
+        /** Answered from a cache without sending a request. */
+        CACHE,
+        /**
+         * Shared with a concurrent identical request by the {@link com.uwetrottmann.tmdb.interceptors.RequestCoalescer},
+         * or with other requests merged by the {@link com.uwetrottmann.tmdb.interceptors.RequestMerger}.
+         */
+        COALESCED
+    }
+
+    private final ServiceRequest request;
+    private final Source source;
+    private final int status;
+    private final long responseBytes;
+    private final long decodedBytes;
+    private final long[] phaseNanos;
+    private final Throwable error;
+
+    RequestMetrics(ServiceRequest request, Source source, int status, long responseBytes, long decodedBytes,
+            long[] phaseNanos, Throwable error) {
+        this.request = request;
+        this.source = source;
+        this.status = status;
+        this.responseBytes = responseBytes;
+        this.decodedBytes = decodedBytes;
+        this.phaseNanos = phaseNanos;
+        this.error = error;
+    }
+
+    public ServiceRequest request() {
+        return request;
+    }
+
+    /**
+     * The route of the service method, e.g. {@code /movie/{id}}.
+     */
+    public String route() {
+        return request.route();
+    }
+
+    public Source source() {
+        return source;
+    }
+
+    /**
+     * The HTTP status code, or 0 if no response was received.
+     */
+    public int status() {
+        return status;
+    }
+
+    /**
+     * The number of bytes of the response body as received, i.e. compressed, or 0 if no response was received.
+     */
+    public long responseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * The number of bytes of the decompressed response body, the same as {@link #responseBytes()} if it was not
+     * compressed.
+     */
+    public long decodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * The time spent in the given phase in nanoseconds, or -1 if it was not measured.
+     */
+    public long nanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * The error emitted instead of a response, or {@code null}.
+     */
+    public Throwable error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics[" + request + "," + source + ",status=" + status + ",bytes=" + responseBytes
+                + ",decodedBytes=" + decodedBytes + ",nanos=" + Arrays.toString(phaseNanos) + (error != null ? ",error=" + error : "") + "]";
+    }
+}
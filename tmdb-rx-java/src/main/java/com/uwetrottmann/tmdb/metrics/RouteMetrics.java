@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of all responses of one route, see {@link MetricsRecorder}. Latencies are in microseconds.
+ */
+public final class RouteMetrics {
+
+    private final String route;
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+    private final ConcurrentHashMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final AtomicLong responseCount = new AtomicLong();
+    private final AtomicLong networkCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    RouteMetrics(String route) {
+        this.route = route;
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    void record(RequestMetrics metrics) {
+        responseCount.incrementAndGet();
+        switch (metrics.source()) {
+            case NETWORK:
+                networkCount.incrementAndGet();
+                break;
+            case CACHE:
+                cacheHitCount.incrementAndGet();
+                break;
+            case COALESCED:
+                coalescedCount.incrementAndGet();
+                break;
+        }
+        if (metrics.error() != null) {
+            errorCount.incrementAndGet();
+        }
+        if (metrics.source() == RequestMetrics.Source.NETWORK && metrics.status() != 0) {
+            AtomicLong count = statusCounts.get(metrics.status());
+            if (count == null) {
+                statusCounts.putIfAbsent(metrics.status(), new AtomicLong());
+                count = statusCounts.get(metrics.status());
+            }
+            count.incrementAndGet();
+        }
+        responseBytes.addAndGet(metrics.responseBytes());
+        decodedBytes.addAndGet(metrics.decodedBytes());
+        for (Phase phase : Phase.values()) {
+            long nanos = metrics.nanos(phase);
+            if (nanos >= 0) {
+                histograms.get(phase).record(nanos / 1000);
+            }
+        }
+    }
+
+    /**
+     * The route, e.g. {@code /movie/{id}}.
+     */
+    public String route() {
+        return route;
+    }
+
+    /**
+     * Returns the latencies of the given phase in microseconds. Only responses measuring the phase are counted, e.g.
+     * {@link Phase#BODY} is not measured for cache hits.
+     */
+    public LatencyHistogram histogram(Phase phase) {
+        return histograms.get(phase);
+    }
+
+    /**
+     * Returns the number of responses per HTTP status code of the requests sent.
+     */
+    public Map<Integer, Long> statusCounts() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Returns the number of responses and errors emitted.
+     */
+    public long responseCount() {
+        return responseCount.get();
+    }
+
+    /**
+     * Returns the number of responses and errors for which a request was sent.
+     */
+    public long networkCount() {
+        return networkCount.get();
+    }
+
+    public long cacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    public long coalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long errorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Returns the total size of the response bodies received.
+     */
+    public long responseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * Returns the total size of the response bodies after decompression.
+     */
+    public long decodedBytes() {
+        return decodedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        LatencyHistogram total = histogram(Phase.TOTAL);
+        return String.format("%s[responses=%d,network=%d,cacheHits=%d,coalesced=%d,errors=%d,bytes=%d,"
+                        + "decodedBytes=%d,status=%s,p50=%dus,p99=%dus,max=%dus]", route, responseCount(),
+                networkCount(), cacheHitCount(), coalescedCount(), errorCount(), responseBytes(), decodedBytes(),
+                statusCounts(), total.valueAtPercentile(0.5), total.valueAtPercentile(0.99), total.max());
+    }
+}
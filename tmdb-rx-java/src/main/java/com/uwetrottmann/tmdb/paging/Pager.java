@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.paging;
+
+import com.uwetrottmann.tmdb.entities.BaseResultsPage;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.PersonResultsPage;
+import com.uwetrottmann.tmdb.entities.TvResultsPage;
+import com.uwetrottmann.tmdb.entities.TvShow;
+
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Turns a paged service method into an {@link rx.Observable} of the results of all its pages.
+ * <p>
+ * The first page is fetched on subscription. Once it tells the number of pages, up to {@code concurrency} of the
+ * following pages are fetched at once while the results of earlier pages are emitted. Results are emitted in the order
+ * of the pages and only as requested by the subscriber, so a slow subscriber also slows down fetching: at most
+ * {@code concurrency} pages are buffered ahead. Unsubscribing, e.g. through {@link rx.Observable#take(int)}, cancels
+ * all page requests in flight. An error fetching a page is emitted after the results of the pages before it.
+ * <p>
+ * For example, to get all movies discovered by some criteria:
+ * <pre>
+ * Observable&lt;Movie&gt; movies = Pager.movies(new Func1&lt;Integer, Observable&lt;MovieResultsPage&gt;&gt;() {
+ *     public Observable&lt;MovieResultsPage&gt; call(Integer page) {
+ *         return tmdb.discoverService().discoverMovie(..., page, ...);
+ *     }
+ * }, 4);
+ * </pre>
+ */
+public final class Pager {
+
+    /** TMDb does not return pages after this one. */
+    public static final int MAX_PAGE = 1000;
+
+    private Pager() {
+    }
+
+    /**
+     * Emits the results of all pages starting at the first one.
+     *
+     * @param fetchPage Returns the request for the given page number.
+     * @param results Returns the results of a page.
+     * @param concurrency The maximum number of pages to fetch at once.
+     */
+    public static <P extends BaseResultsPage, T> Observable<T> results(Func1<Integer, Observable<P>> fetchPage,
+            Func1<P, List<T>> results, int concurrency) {
+        return results(fetchPage, results, 1, concurrency);
+    }
+
+    /**
+     * Emits the results of all pages starting at the given one.
+     */
+    public static <P extends BaseResultsPage, T> Observable<T> results(Func1<Integer, Observable<P>> fetchPage,
+            Func1<P, List<T>> results, int firstPage, int concurrency) {
+        if (firstPage < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("firstPage < 1 || concurrency < 1");
+        }
+        return Observable.create(new PagerOnSubscribe<P, T>(fetchPage, results, firstPage, concurrency));
+    }
+
+    public static Observable<Movie> movies(Func1<Integer, Observable<MovieResultsPage>> fetchPage,
+            int concurrency) {
+        return results(fetchPage, new Func1<MovieResultsPage, List<Movie>>() {
+            @Override
+            public List<Movie> call(MovieResultsPage page) {
+                return page.results;
+            }
+        }, concurrency);
+    }
+
+    public static Observable<TvShow> tvShows(Func1<Integer, Observable<TvResultsPage>> fetchPage,
+            int concurrency) {
+        return results(fetchPage, new Func1<TvResultsPage, List<TvShow>>() {
+            @Override
+            public List<TvShow> call(TvResultsPage page) {
+                return page.results;
+            }
+        }, concurrency);
+    }
+
+    public static Observable<PersonResultsPage.ResultsPage> people(
+            Func1<Integer, Observable<PersonResultsPage>> fetchPage, int concurrency) {
+        return results(fetchPage, new Func1<PersonResultsPage, List<PersonResultsPage.ResultsPage>>() {
+            @Override
+            public List<PersonResultsPage.ResultsPage> call(PersonResultsPage page) {
+                return page.results;
+            }
+        }, concurrency);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.paging;
+
+import com.uwetrottmann.tmdb.entities.BaseResultsPage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Emits the results of consecutive pages in order, fetching pages ahead of the subscriber but never more than
+ * {@code concurrency} at a time and never more than {@code concurrency} ahead of the page being emitted.
+ */
+final class PagerOnSubscribe<P extends BaseResultsPage, T> implements Observable.OnSubscribe<T> {
+
+    private final Func1<Integer, Observable<P>> fetchPage;
+    private final Func1<P, List<T>> results;
+    private final int firstPage;
+    private final int concurrency;
+
+    PagerOnSubscribe(Func1<Integer, Observable<P>> fetchPage, Func1<P, List<T>> results, int firstPage,
+            int concurrency) {
+        this.fetchPage = fetchPage;
+        this.results = results;
+        this.firstPage = firstPage;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> child) {
+        State state = new State(child);
+        child.add(state.subscriptions);
+        child.setProducer(state);
+    }
+
+    private static final class Page<T> {
+
+        final int number;
+        List<T> items;
+        int index;
+        Throwable error;
+
+        Page(int number) {
+            this.number = number;
+        }
+    }
+
+    private final class State implements Producer {
+
+        private final Subscriber<? super T> child;
+        private final CompositeSubscription subscriptions = new CompositeSubscription();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /** Pages in order, the head is the one being emitted. Guarded by this. */
+        private final ArrayDeque<Page<T>> window = new ArrayDeque<Page<T>>();
+        private long requested;
+        private int nextPage = firstPage;
+        /** The last page, unknown until the first page arrived. */
+        private int lastPage = -1;
+        private int inFlight;
+        private boolean terminated;
+
+        State(Subscriber<? super T> child) {
+            this.child = child;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                return;
+            }
+            synchronized (this) {
+                requested += n;
+                if (requested < 0) {
+                    requested = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (true) {
+                while (true) {
+                    if (child.isUnsubscribed()) {
+                        return;
+                    }
+                    T item = null;
+                    Throwable error = null;
+                    boolean completed = false;
+                    List<Page<T>> toFetch;
+                    synchronized (this) {
+                        if (terminated) {
+                            return;
+                        }
+                        Page<T> head = window.peek();
+                        while (head != null && head.items != null && head.index == head.items.size()) {
+                            window.poll();
+                            head = window.peek();
+                        }
+                        if (head == null) {
+                            completed = lastPage != -1 && nextPage > lastPage;
+                        } else if (head.error != null) {
+                            error = head.error;
+                        } else if (head.items != null && requested > 0) {
+                            item = head.items.get(head.index++);
+                            if (requested != Long.MAX_VALUE) {
+                                requested--;
+                            }
+                        }
+                        terminated = completed || error != null;
+                        toFetch = terminated ? Collections.<Page<T>>emptyList() : pagesToFetch();
+                    }
+
+                    for (Page<T> page : toFetch) {
+                        fetch(page);
+                    }
+                    if (error != null) {
+                        subscriptions.unsubscribe();
+                        child.onError(error);
+                        return;
+                    }
+                    if (completed) {
+                        child.onCompleted();
+                        return;
+                    }
+                    if (item == null) {
+                        break;
+                    }
+                    child.onNext(item);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Adds the pages which should be fetched now to the window. Until the first page arrived only it is fetched,
+         * then enough to keep up to {@code concurrency} pages ahead of the one being emitted.
+         */
+        private List<Page<T>> pagesToFetch() {
+            if (lastPage == -1) {
+                return nextPage == firstPage
+                        ? Collections.singletonList(addPage()) : Collections.<Page<T>>emptyList();
+            }
+            List<Page<T>> pages = null;
+            while (nextPage <= lastPage && inFlight < concurrency && window.size() <= concurrency) {
+                if (pages == null) {
+                    pages = new ArrayList<Page<T>>();
+                }
+                pages.add(addPage());
+            }
+            return pages != null ? pages : Collections.<Page<T>>emptyList();
+        }
+
+        private Page<T> addPage() {
+            Page<T> page = new Page<T>(nextPage++);
+            window.add(page);
+            inFlight++;
+            return page;
+        }
+
+        private void fetch(final Page<T> page) {
+            subscriptions.add(fetchPage.call(page.number).subscribe(new Subscriber<P>() {
+                private boolean received;
+
+                @Override
+                public void onNext(P resultsPage) {
+                    received = true;
+                    List<T> items = resultsPage != null ? results.call(resultsPage) : null;
+                    synchronized (State.this) {
+                        inFlight--;
+                        page.items = items != null ? items : Collections.<T>emptyList();
+                        if (page.number == firstPage) {
+                            int totalPages = resultsPage != null && resultsPage.total_pages != null
+                                    ? resultsPage.total_pages : firstPage;
+                            lastPage = Math.max(firstPage, Math.min(totalPages, Pager.MAX_PAGE));
+                        }
+                    }
+                    drain();
+                }
+
+                @Override
+                public void onCompleted() {
+                    if (!received) {
+                        onError(new IllegalStateException("No results page " + page.number));
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    synchronized (State.this) {
+                        inFlight--;
+                        page.error = e;
+                    }
+                    drain();
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.search;
+
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.PersonResultsPage;
+import com.uwetrottmann.tmdb.entities.TvResultsPage;
+import com.uwetrottmann.tmdb.entities.TvShow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Searches movies, shows and people in the {@link SearchIndex} of a {@link Tmdb} first and only sends a request to
+ * {@link com.uwetrottmann.tmdb.services.SearchService} if the index has too few matches, e.g. for type-ahead.
+ * <p>
+ * The results of remote searches pass through the index, so they are found locally afterwards. Without an index
+ * installed every search is sent. All methods are thread-safe.
+ */
+public class LocalFirstSearch {
+
+    private final Tmdb tmdb;
+    private volatile int minLocalResults = 1;
+    private volatile String language;
+
+    private final AtomicLong localCount = new AtomicLong();
+    private final AtomicLong remoteCount = new AtomicLong();
+
+    public LocalFirstSearch(Tmdb tmdb) {
+        this.tmdb = tmdb;
+    }
+
+    /**
+     * Set how many matches the index must have for a search to be answered locally. Defaults to 1.
+     */
+    public LocalFirstSearch setMinLocalResults(int minLocalResults) {
+        if (minLocalResults <= 0) {
+            throw new IllegalArgumentException("minLocalResults <= 0");
+        }
+        this.minLocalResults = minLocalResults;
+        return this;
+    }
+
+    /**
+     * Set the language of remote searches, or {@code null} for the default.
+     */
+    public LocalFirstSearch setLanguage(String language) {
+        this.language = language;
+        return this;
+    }
+
+    /**
+     * Emits up to {@code limit} movies matching the query, from the index if possible, else the first page of a remote
+     * search.
+     */
+    public Observable<List<Movie>> movies(final String query, final int limit) {
+        return search(query, limit, new Func0<List<Movie>>() {
+            @Override
+            public List<Movie> call() {
+                SearchIndex index = tmdb.getSearchIndex();
+                return index != null ? index.searchMovies(query, limit) : Collections.<Movie>emptyList();
+            }
+        }, new Func0<Observable<List<Movie>>>() {
+            @Override
+            public Observable<List<Movie>> call() {
+                return tmdb.searchService().movie(query, null, language, null, null, null, null)
+                        .map(new Func1<MovieResultsPage, List<Movie>>() {
+                            @Override
+                            public List<Movie> call(MovieResultsPage page) {
+                                return first(page.results, limit);
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Emits up to {@code limit} shows matching the query, from the index if possible, else the first page of a remote
+     * search.
+     */
+    public Observable<List<TvShow>> tvShows(final String query, final int limit) {
+        return search(query, limit, new Func0<List<TvShow>>() {
+            @Override
+            public List<TvShow> call() {
+                SearchIndex index = tmdb.getSearchIndex();
+                return index != null ? index.searchTvShows(query, limit) : Collections.<TvShow>emptyList();
+            }
+        }, new Func0<Observable<List<TvShow>>>() {
+            @Override
+            public Observable<List<TvShow>> call() {
+                return tmdb.searchService().tv(query, null, language, null, null)
+                        .map(new Func1<TvResultsPage, List<TvShow>>() {
+                            @Override
+                            public List<TvShow> call(TvResultsPage page) {
+                                return first(page.results, limit);
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Emits up to {@code limit} people matching the query, from the index if possible, else the first page of a remote
+     * search. People found remotely have just their id, name and profile path.
+     */
+    public Observable<List<Person>> people(final String query, final int limit) {
+        return search(query, limit, new Func0<List<Person>>() {
+            @Override
+            public List<Person> call() {
+                SearchIndex index = tmdb.getSearchIndex();
+                return index != null ? index.searchPeople(query, limit) : Collections.<Person>emptyList();
+            }
+        }, new Func0<Observable<List<Person>>>() {
+            @Override
+            public Observable<List<Person>> call() {
+                return tmdb.searchService().person(query, null, null, null)
+                        .map(new Func1<PersonResultsPage, List<Person>>() {
+                            @Override
+                            public List<Person> call(PersonResultsPage page) {
+                                List<PersonResultsPage.ResultsPage> results = first(page.results, limit);
+                                List<Person> people = new ArrayList<Person>(results.size());
+                                for (PersonResultsPage.ResultsPage result : results) {
+                                    people.add(SearchIndex.toPerson(result));
+                                }
+                                return people;
+                            }
+                        });
+            }
+        });
+    }
+
+    private <T> Observable<List<T>> search(final String query, final int limit, final Func0<List<T>> local,
+            final Func0<Observable<List<T>>> remote) {
+        return Observable.defer(new Func0<Observable<List<T>>>() {
+            @Override
+            public Observable<List<T>> call() {
+                if (query == null || SearchIndex.words(query).isEmpty() || limit <= 0) {
+                    return Observable.just(Collections.<T>emptyList());
+                }
+                List<T> results = local.call();
+                if (results.size() >= Math.min(minLocalResults, limit)) {
+                    localCount.incrementAndGet();
+                    return Observable.just(results);
+                }
+                remoteCount.incrementAndGet();
+                return remote.call();
+            }
+        });
+    }
+
+    private static <T> List<T> first(List<T> results, int limit) {
+        if (results == null) {
+            return Collections.emptyList();
+        }
+        return results.size() > limit ? new ArrayList<T>(results.subList(0, limit)) : results;
+    }
+
+    /**
+     * Returns the number of searches answered from the index.
+     */
+    public long localCount() {
+        return localCount.get();
+    }
+
+    /**
+     * Returns the number of searches sent to TMDb.
+     */
+    public long remoteCount() {
+        return remoteCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "LocalFirstSearch[local=%d,remote=%d]", localCount.get(), remoteCount.get());
+    }
+}
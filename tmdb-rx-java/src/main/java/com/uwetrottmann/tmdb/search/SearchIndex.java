@@ -0,0 +1,524 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.search;
+
+import com.uwetrottmann.tmdb.ServiceInterceptor;
+import com.uwetrottmann.tmdb.entities.FindResults;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.PersonResultsPage;
+import com.uwetrottmann.tmdb.entities.TvResultsPage;
+import com.uwetrottmann.tmdb.entities.TvShow;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.functions.Action1;
+
+/**
+ * An in-memory full-text index of the movies, shows and people seen in responses, to answer type-ahead queries without
+ * a request.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setSearchIndex(SearchIndex)}. Every {@link Movie},
+ * {@link TvShow} and {@link Person} emitted by a service method, including those in results pages, similar movies and
+ * find results, is then indexed by its {@code title} and {@code original_title}, or {@code name} and
+ * {@code original_name}. Use {@link LocalFirstSearch} to query the index and only search remotely if it has no match.
+ * <p>
+ * Text is normalized by decomposing it, dropping accents and apostrophes, lower-casing it and splitting it into words
+ * at any other character that is not a letter or digit. A query matches an entity if each of its words is the start of
+ * one of the entity's words, so {@code "brea ba"} matches {@code "Breaking Bad"}. Matches are ordered by decreasing
+ * popularity. The words are kept in a sorted map, so a prefix is a range of the map. The query word matching the
+ * fewest entities selects the candidates, which are checked for the other words and ranked in a heap of the requested
+ * size.
+ * <p>
+ * Each kind of entity keeps up to a maximum number of entities, the one indexed least recently is dropped to make room.
+ * Entities indexed again replace the previous version. Indexed entities are shared with the callers of the service
+ * methods and returned by queries, so they should be treated as read-only. All methods are thread-safe.
+ */
+public class SearchIndex implements ServiceInterceptor {
+
+    /** Default maximum number of entities of each kind, 50000. */
+    public static final int DEFAULT_MAX_ENTITIES = 50000;
+
+    private final Corpus<Movie> movies;
+    private final Corpus<TvShow> tvShows;
+    private final Corpus<Person> people;
+
+    private final AtomicLong indexedCount = new AtomicLong();
+    private final AtomicLong queryCount = new AtomicLong();
+
+    public SearchIndex() {
+        this(DEFAULT_MAX_ENTITIES);
+    }
+
+    /**
+     * @param maxEntities The maximum number of movies, and of shows and of people, to keep.
+     */
+    public SearchIndex(int maxEntities) {
+        if (maxEntities <= 0) {
+            throw new IllegalArgumentException("maxEntities <= 0");
+        }
+        movies = new Corpus<Movie>(maxEntities);
+        tvShows = new Corpus<TvShow>(maxEntities);
+        people = new Corpus<Person>(maxEntities);
+    }
+
+    @Override
+    public Observable<?> intercept(Chain chain) {
+        return chain.proceed(chain.request()).doOnNext(new Action1<Object>() {
+            @Override
+            public void call(Object response) {
+                index(response);
+            }
+        });
+    }
+
+    /**
+     * Indexes the movies, shows and people in the given response, e.g. to add those read from a store of your own.
+     * Responses of other types are ignored.
+     */
+    public void index(Object response) {
+        if (response instanceof Movie) {
+            Movie movie = (Movie) response;
+            add(movie);
+            if (movie.similar != null) {
+                addMovies(movie.similar.results);
+            }
+        } else if (response instanceof MovieResultsPage) {
+            addMovies(((MovieResultsPage) response).results);
+        } else if (response instanceof TvShow) {
+            add((TvShow) response);
+        } else if (response instanceof TvResultsPage) {
+            addTvShows(((TvResultsPage) response).results);
+        } else if (response instanceof Person) {
+            add((Person) response, null, true);
+        } else if (response instanceof PersonResultsPage) {
+            List<PersonResultsPage.ResultsPage> results = ((PersonResultsPage) response).results;
+            if (results != null) {
+                for (PersonResultsPage.ResultsPage result : results) {
+                    if (result != null) {
+                        // a stub must not replace a person indexed from its full details
+                        add(toPerson(result), result.popularity, false);
+                    }
+                }
+            }
+        } else if (response instanceof FindResults) {
+            FindResults results = (FindResults) response;
+            addMovies(results.movie_results);
+            addTvShows(results.tv_results);
+            if (results.person_results != null) {
+                for (Person person : results.person_results) {
+                    add(person, null, true);
+                }
+            }
+        }
+    }
+
+    private void addMovies(List<Movie> results) {
+        if (results != null) {
+            for (Movie movie : results) {
+                add(movie);
+            }
+        }
+    }
+
+    private void addTvShows(List<TvShow> results) {
+        if (results != null) {
+            for (TvShow show : results) {
+                add(show);
+            }
+        }
+    }
+
+    private void add(Movie movie) {
+        if (movie != null && movie.id != null) {
+            add(movies, movie.id, movie, movie.popularity, movie.title, movie.original_title, true);
+        }
+    }
+
+    private void add(TvShow show) {
+        if (show != null && show.id != null) {
+            add(tvShows, show.id, show, show.popularity, show.name, show.original_name, true);
+        }
+    }
+
+    private void add(Person person, Double popularity, boolean replace) {
+        if (person != null && person.id != null) {
+            add(people, person.id, person, popularity, person.name, null, replace);
+        }
+    }
+
+    private <T> void add(Corpus<T> corpus, int id, T entity, Double popularity, String text, String otherText,
+            boolean replace) {
+        Set<String> words = new LinkedHashSet<String>();
+        addWords(words, text);
+        addWords(words, otherText);
+        if (!words.isEmpty()) {
+            corpus.put(id, entity, popularity, words.toArray(new String[words.size()]), replace);
+            indexedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} indexed movies whose title or original title matches the query, the most popular
+     * first.
+     */
+    public List<Movie> searchMovies(String query, int limit) {
+        return search(movies, query, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} indexed shows whose name or original name matches the query, the most popular first.
+     */
+    public List<TvShow> searchTvShows(String query, int limit) {
+        return search(tvShows, query, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} indexed people whose name matches the query, the most popular first. People only
+     * known from {@link PersonResultsPage results pages} have just their id, name and profile path.
+     */
+    public List<Person> searchPeople(String query, int limit) {
+        return search(people, query, limit);
+    }
+
+    private <T> List<T> search(Corpus<T> corpus, String query, int limit) {
+        queryCount.incrementAndGet();
+        Set<String> words = new LinkedHashSet<String>();
+        addWords(words, query);
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        return corpus.search(words.toArray(new String[words.size()]), limit);
+    }
+
+    /**
+     * Returns the normalized words of the given text, as they are indexed and queried.
+     */
+    public static List<String> words(String text) {
+        Set<String> words = new LinkedHashSet<String>();
+        addWords(words, text);
+        return new ArrayList<String>(words);
+    }
+
+    private static void addWords(Set<String> words, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (c != '\'' && c != '\u2019' && Character.getType(c) != Character.NON_SPACING_MARK
+                    && word.length() > 0) {
+                words.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Returns a person with just the id, name and profile path of the given search result.
+     */
+    static Person toPerson(PersonResultsPage.ResultsPage result) {
+        Person person = new Person();
+        person.id = result.id;
+        person.name = result.name;
+        person.profile_path = result.profile_path;
+        return person;
+    }
+
+    /**
+     * Returns the number of indexed movies.
+     */
+    public int movieCount() {
+        return movies.size();
+    }
+
+    /**
+     * Returns the number of indexed shows.
+     */
+    public int tvShowCount() {
+        return tvShows.size();
+    }
+
+    /**
+     * Returns the number of indexed people.
+     */
+    public int personCount() {
+        return people.size();
+    }
+
+    /**
+     * Returns the number of times an entity was indexed, including again.
+     */
+    public long indexedCount() {
+        return indexedCount.get();
+    }
+
+    public long queryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Removes all indexed entities.
+     */
+    public void clear() {
+        movies.clear();
+        tvShows.clear();
+        people.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "SearchIndex[movies=%d,tvShows=%d,people=%d,queries=%d]",
+                movieCount(), tvShowCount(), personCount(), queryCount.get());
+    }
+
+    /**
+     * The entities of one kind and the index of their words.
+     */
+    private static final class Corpus<T> {
+
+        /** The most popular first, then the one indexed first. */
+        private static final Comparator<Document<?>> BY_RANK = new Comparator<Document<?>>() {
+            @Override
+            public int compare(Document<?> a, Document<?> b) {
+                int result = Double.compare(b.popularity, a.popularity);
+                return result != 0 ? result : (a.number < b.number ? -1 : (a.number == b.number ? 0 : 1));
+            }
+        };
+
+        private static final Comparator<Document<?>> WORST_FIRST = Collections.reverseOrder(BY_RANK);
+
+        private final int maxSize;
+        /** Documents by entity id, the one indexed least recently first. */
+        private final LinkedHashMap<Integer, Document<T>> byId = new LinkedHashMap<Integer, Document<T>>();
+        private final TreeMap<String, Postings> postings = new TreeMap<String, Postings>();
+        /** The number of the next document, increasing so postings stay sorted when appending. */
+        private int nextNumber;
+        /** Marks the documents already seen by the current query. */
+        private int queryStamp;
+
+        Corpus(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Indexes the entity under the given id. Unless {@code replace}, an entity already indexed under the id is
+         * kept and only its popularity is updated.
+         */
+        synchronized void put(int id, T entity, Double popularity, String[] words, boolean replace) {
+            Document<T> previous = byId.remove(id);
+            if (previous != null && !replace) {
+                entity = previous.entity;
+                words = previous.words;
+            }
+            double score = popularity != null ? popularity : (previous != null ? previous.popularity : 0);
+            if (previous != null && Arrays.equals(previous.words, words) && previous.popularity == score) {
+                // same words and rank, only replace the entity
+                previous.entity = entity;
+                byId.put(id, previous);
+                return;
+            }
+            if (previous != null) {
+                remove(previous);
+            }
+            Document<T> document = new Document<T>(nextNumber++, entity, score, words);
+            byId.put(id, document);
+            for (String word : words) {
+                Postings list = postings.get(word);
+                if (list == null) {
+                    list = new Postings();
+                    postings.put(word, list);
+                }
+                list.append(document);
+            }
+            if (byId.size() > maxSize) {
+                Iterator<Document<T>> eldest = byId.values().iterator();
+                Document<T> evicted = eldest.next();
+                eldest.remove();
+                remove(evicted);
+            }
+        }
+
+        private void remove(Document<T> document) {
+            for (String word : document.words) {
+                Postings list = postings.get(word);
+                if (list != null && list.remove(document.number) && list.size == 0) {
+                    postings.remove(word);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<T> search(String[] words, int limit) {
+            // the word matching the fewest documents selects the candidates, the others are checked against them
+            SortedMap<String, Postings> candidates = null;
+            int candidateWord = -1;
+            int candidateCount = Integer.MAX_VALUE;
+            for (int i = 0; i < words.length; i++) {
+                SortedMap<String, Postings> range = postings.subMap(words[i], words[i] + Character.MAX_VALUE);
+                int count = 0;
+                for (Postings list : range.values()) {
+                    count += list.size;
+                }
+                if (count == 0) {
+                    return Collections.emptyList();
+                }
+                if (count < candidateCount) {
+                    candidates = range;
+                    candidateWord = i;
+                    candidateCount = count;
+                }
+            }
+
+            // keep the best matches in a heap, the worst on top
+            PriorityQueue<Document<T>> best = new PriorityQueue<Document<T>>(Math.min(limit, 64), WORST_FIRST);
+            int stamp = ++queryStamp;
+            for (Postings list : candidates.values()) {
+                for (int i = 0; i < list.size; i++) {
+                    Document<T> document = (Document<T>) list.documents[i];
+                    if (document.stamp == stamp) {
+                        // has more than one word with the prefix
+                        continue;
+                    }
+                    document.stamp = stamp;
+                    if (!matches(document, words, candidateWord)) {
+                        continue;
+                    }
+                    if (best.size() < limit) {
+                        best.add(document);
+                    } else if (BY_RANK.compare(document, best.peek()) < 0) {
+                        best.poll();
+                        best.add(document);
+                    }
+                }
+            }
+
+            Object[] results = new Object[best.size()];
+            for (int i = results.length - 1; i >= 0; i--) {
+                results[i] = best.poll().entity;
+            }
+            return (List<T>) Arrays.asList(results);
+        }
+
+        /**
+         * Returns whether each of the given words, except the one at {@code skip}, starts one of the document's words.
+         */
+        private static boolean matches(Document<?> document, String[] words, int skip) {
+            for (int i = 0; i < words.length; i++) {
+                if (i == skip) {
+                    continue;
+                }
+                boolean found = false;
+                for (String word : document.words) {
+                    if (word.startsWith(words[i])) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return byId.size();
+        }
+
+        synchronized void clear() {
+            byId.clear();
+            postings.clear();
+        }
+    }
+
+    private static final class Document<T> {
+
+        final int number;
+        final double popularity;
+        final String[] words;
+        T entity;
+        /** The last query which saw this document, guarded by the corpus. */
+        int stamp;
+
+        Document(int number, T entity, double popularity, String[] words) {
+            this.number = number;
+            this.entity = entity;
+            this.popularity = popularity;
+            this.words = words;
+        }
+    }
+
+    /**
+     * The documents containing a word, sorted by number.
+     */
+    private static final class Postings {
+
+        Document<?>[] documents = new Document<?>[4];
+        int size;
+
+        void append(Document<?> document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+
+        boolean remove(int number) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middleNumber = documents[middle].number;
+                if (middleNumber < number) {
+                    low = middle + 1;
+                } else if (middleNumber > number) {
+                    high = middle - 1;
+                } else {
+                    System.arraycopy(documents, middle + 1, documents, middle, size - middle - 1);
+                    documents[--size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
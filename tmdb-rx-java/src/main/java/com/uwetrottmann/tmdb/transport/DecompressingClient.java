@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.transport;
+
+import com.uwetrottmann.tmdb.metrics.MeteredClient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+/**
+ * Asks for compressed responses and decompresses their bodies while they are read, so the converter parses the JSON
+ * straight from the network without the decompressed body ever being buffered.
+ * <p>
+ * Requests are sent with {@code Accept-Encoding: gzip, deflate} unless they already have an {@code Accept-Encoding}
+ * header. Bodies with a {@code Content-Encoding} of {@code gzip} or {@code deflate} are decompressed, the
+ * {@code Content-Encoding} and {@code Content-Length} headers of their response are removed. If this client wraps a
+ * {@link MeteredClient}, the number of decompressed bytes is reported with
+ * {@link MeteredClient#recordDecodedBytes(long)}.
+ */
+public final class DecompressingClient implements Client {
+
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String CONTENT_LENGTH = "Content-Length";
+    static final String ENCODINGS = "gzip, deflate";
+
+    private final Client delegate;
+
+    public DecompressingClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        if (header(request.getHeaders(), ACCEPT_ENCODING) == null) {
+            List<Header> headers = new ArrayList<Header>(request.getHeaders());
+            headers.add(new Header(ACCEPT_ENCODING, ENCODINGS));
+            request = new Request(request.getMethod(), request.getUrl(), headers, request.getBody());
+        }
+
+        Response response = delegate.execute(request);
+        String encoding = header(response.getHeaders(), CONTENT_ENCODING);
+        if (response.getBody() == null || encoding == null) {
+            return response;
+        }
+        encoding = encoding.trim();
+        boolean gzip = "gzip".equalsIgnoreCase(encoding);
+        if (!gzip && !"deflate".equalsIgnoreCase(encoding)) {
+            return response;
+        }
+
+        List<Header> headers = new ArrayList<Header>(response.getHeaders().size());
+        for (Header header : response.getHeaders()) {
+            if (!CONTENT_ENCODING.equalsIgnoreCase(header.getName())
+                    && !CONTENT_LENGTH.equalsIgnoreCase(header.getName())) {
+                headers.add(header);
+            }
+        }
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), headers,
+                new DecompressedBody(response.getBody(), gzip));
+    }
+
+    private static String header(List<Header> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Header header : headers) {
+            if (name.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static final class DecompressedBody implements TypedInput {
+
+        private final TypedInput delegate;
+        private final boolean gzip;
+
+        DecompressedBody(TypedInput delegate, boolean gzip) {
+            this.delegate = delegate;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public String mimeType() {
+            return delegate.mimeType();
+        }
+
+        @Override
+        public long length() {
+            // unknown until decompressed
+            return -1;
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            InputStream in = delegate.in();
+            return new FilterInputStream(gzip ? new GZIPInputStream(in) : new InflaterInputStream(in)) {
+                @Override
+                public int read() throws IOException {
+                    int read = super.read();
+                    if (read != -1) {
+                        MeteredClient.recordDecodedBytes(1);
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        MeteredClient.recordDecodedBytes(read);
+                    }
+                    return read;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.transport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.client.Client;
+
+/**
+ * The HTTP client settings of a {@link com.uwetrottmann.tmdb.Tmdb}: timeouts of each request, whether and how long
+ * connections are kept alive for reuse, and whether HTTP/2 may be used.
+ * <p>
+ * Install it with {@link com.uwetrottmann.tmdb.Tmdb#setTransport(Transport)}. A transport creates its client once and
+ * keeps using it, so share one transport among {@link com.uwetrottmann.tmdb.Tmdb} instances to let them share
+ * connections and skip the TCP and TLS handshakes of new ones.
+ * <p>
+ * If OkHttp is on the classpath it is used with a connection pool of its own. It multiplexes concurrent requests over
+ * a single HTTP/2 connection where the platform supports ALPN, and uses HTTP/1.1 otherwise. Without OkHttp,
+ * {@link java.net.HttpURLConnection} is used: it only speaks HTTP/1.1 and keeps idle connections in a pool shared by
+ * the whole process, sized by the {@code http.maxConnections} system property (5 per host by default), so
+ * {@link #setMaxIdleConnections(int)} and {@link #setKeepAliveDuration(long, TimeUnit)} have no effect.
+ */
+public class Transport {
+
+    /** Default connect timeout, 15 seconds like retrofit. */
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    /** Default read timeout, 20 seconds like retrofit. */
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(20);
+    /** Default number of idle connections kept, enough for a {@link com.uwetrottmann.tmdb.bulk.BulkFetcher}. */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    /** Default time idle connections are kept, five minutes. */
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    private boolean keepAlive = true;
+    private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    private boolean http2 = true;
+    private boolean useOkHttp = true;
+
+    private Client client;
+
+    /**
+     * Set how long to wait for a connection to be established, zero to wait indefinitely.
+     */
+    public synchronized Transport setConnectTimeout(long duration, TimeUnit unit) {
+        connectTimeoutMillis = unit.toMillis(duration);
+        client = null;
+        return this;
+    }
+
+    public synchronized long connectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Set how long to wait for data of a response, zero to wait indefinitely.
+     */
+    public synchronized Transport setReadTimeout(long duration, TimeUnit unit) {
+        readTimeoutMillis = unit.toMillis(duration);
+        client = null;
+        return this;
+    }
+
+    public synchronized long readTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * Set whether connections are kept open after a response to send further requests. Defaults to {@code true}.
+     */
+    public synchronized Transport setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        client = null;
+        return this;
+    }
+
+    public synchronized boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Set how many idle connections are kept for reuse. Defaults to {@link #DEFAULT_MAX_IDLE_CONNECTIONS}.
+     */
+    public synchronized Transport setMaxIdleConnections(int maxIdleConnections) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("maxIdleConnections < 0");
+        }
+        this.maxIdleConnections = maxIdleConnections;
+        client = null;
+        return this;
+    }
+
+    public synchronized int maxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    /**
+     * Set how long an idle connection is kept for reuse. Defaults to {@link #DEFAULT_KEEP_ALIVE_MILLIS}.
+     */
+    public synchronized Transport setKeepAliveDuration(long duration, TimeUnit unit) {
+        keepAliveMillis = unit.toMillis(duration);
+        client = null;
+        return this;
+    }
+
+    public synchronized long keepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Set whether HTTP/2 may be negotiated. Defaults to {@code true}, only supported with OkHttp.
+     */
+    public synchronized Transport setHttp2(boolean http2) {
+        this.http2 = http2;
+        client = null;
+        return this;
+    }
+
+    public synchronized boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * Set whether to use OkHttp if it is on the classpath. Defaults to {@code true}.
+     */
+    public synchronized Transport setUseOkHttp(boolean useOkHttp) {
+        this.useOkHttp = useOkHttp;
+        client = null;
+        return this;
+    }
+
+    public synchronized boolean isUseOkHttp() {
+        return useOkHttp;
+    }
+
+    /**
+     * Returns the client with the current settings, creating it on first use or after a setting changed.
+     */
+    public synchronized Client client() {
+        if (client == null) {
+            client = useOkHttp && isOkHttpAvailable() ? newOkClient() : new UrlConnectionTransport(this);
+        }
+        return client;
+    }
+
+    private static boolean isOkHttpAvailable() {
+        try {
+            Class.forName("com.squareup.okhttp.OkHttpClient");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Configures an {@code OkHttpClient} for retrofit's {@code OkClient}. OkHttp is an optional dependency, like for
+     * retrofit itself, so it is only accessed by reflection.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Client newOkClient() {
+        try {
+            Class<?> clientClass = Class.forName("com.squareup.okhttp.OkHttpClient");
+            Object okHttpClient = clientClass.newInstance();
+            clientClass.getMethod("setConnectTimeout", long.class, TimeUnit.class)
+                    .invoke(okHttpClient, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+            clientClass.getMethod("setReadTimeout", long.class, TimeUnit.class)
+                    .invoke(okHttpClient, readTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            Class<?> poolClass = Class.forName("com.squareup.okhttp.ConnectionPool");
+            Object pool = poolClass.getConstructor(int.class, long.class)
+                    .newInstance(keepAlive ? maxIdleConnections : 0, keepAliveMillis);
+            clientClass.getMethod("setConnectionPool", poolClass).invoke(okHttpClient, pool);
+
+            Class protocolClass = Class.forName("com.squareup.okhttp.Protocol");
+            List<Object> protocols = http2
+                    ? Arrays.<Object>asList(Enum.valueOf(protocolClass, "HTTP_2"),
+                            Enum.valueOf(protocolClass, "HTTP_1_1"))
+                    : Collections.<Object>singletonList(Enum.valueOf(protocolClass, "HTTP_1_1"));
+            clientClass.getMethod("setProtocols", List.class).invoke(okHttpClient, protocols);
+
+            return (Client) Class.forName("retrofit.client.OkClient").getConstructor(clientClass)
+                    .newInstance(okHttpClient);
+        } catch (Exception e) {
+            // an OkHttp version without these methods
+            return new UrlConnectionTransport(this);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Transport[connectTimeout=" + connectTimeoutMillis + "ms,readTimeout=" + readTimeoutMillis
+                + "ms,keepAlive=" + keepAlive + ",maxIdleConnections=" + maxIdleConnections
+                + ",keepAliveDuration=" + keepAliveMillis + "ms,http2=" + http2 + "]";
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Miguel Teixeira
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.uwetrottmann.tmdb.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import retrofit.client.Request;
+import retrofit.client.UrlConnectionClient;
+
+/**
+ * Sends requests with {@link HttpURLConnection}, applying the timeouts and keep-alive setting of a {@link Transport}.
+ */
+final class UrlConnectionTransport extends UrlConnectionClient {
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final boolean keepAlive;
+
+    UrlConnectionTransport(Transport transport) {
+        connectTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, transport.connectTimeoutMillis());
+        readTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, transport.readTimeoutMillis());
+        keepAlive = transport.isKeepAlive();
+    }
+
+    @Override
+    protected HttpURLConnection openConnection(Request request) throws IOException {
+        HttpURLConnection connection = super.openConnection(request);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        if (!keepAlive) {
+            connection.setRequestProperty("Connection", "close");
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,102 @@
+package com.uwetrottmann.tmdb;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DateParserTest {
+
+    private static final String[] TIME_ZONES = {
+            "UTC", "Europe/Berlin", "America/Los_Angeles", "America/Sao_Paulo", "Asia/Kolkata", "Pacific/Auckland"
+    };
+
+    @Test
+    public void test_matches_simple_date_format() throws ParseException {
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            SimpleDateFormat format = new SimpleDateFormat("yyy-MM-dd", Locale.US);
+            format.setTimeZone(timeZone);
+            DateParser parser = new DateParser(timeZone, false);
+            DateParser cachingParser = new DateParser(timeZone, true);
+
+            Calendar calendar = Calendar.getInstance(timeZone, Locale.US);
+            calendar.clear();
+            calendar.set(1890, Calendar.JANUARY, 1);
+            SimpleDateFormat printer = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            printer.setTimeZone(timeZone);
+            while (calendar.get(Calendar.YEAR) < 2040) {
+                String value = printer.format(calendar.getTime());
+                Date expected = format.parse(value);
+                assertThat(parser.parse(value)).as(id + " " + value).isEqualTo(expected);
+                assertThat(cachingParser.parse(value)).as(id + " " + value).isEqualTo(expected);
+                // hit the cache
+                assertThat(cachingParser.parse(value)).as(id + " " + value).isEqualTo(expected);
+                calendar.add(Calendar.DAY_OF_MONTH, 3);
+            }
+        }
+    }
+
+    @Test
+    public void test_lenient_like_simple_date_format() throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyy-MM-dd", Locale.US);
+        DateParser parser = new DateParser(TimeZone.getDefault(), true);
+
+        for (String value : new String[] { "2015-02-30", "2015-13-01", "2015-00-00", "1999-10-14T12:00:00" }) {
+            assertThat(parser.parse(value)).as(value).isEqualTo(format.parse(value));
+        }
+    }
+
+    @Test
+    public void test_invalid() {
+        DateParser parser = new DateParser(TimeZone.getDefault(), true);
+
+        assertThat(parser.parse(null)).isNull();
+        assertThat(parser.parse("")).isNull();
+        assertThat(parser.parse("1999")).isNull();
+        assertThat(parser.parse("1999/10/14")).isNull();
+        assertThat(parser.parse("199x-10-14")).isNull();
+    }
+
+    @Test
+    public void test_concurrent() throws Exception {
+        final DateParser parser = new DateParser(TimeZone.getTimeZone("Europe/Berlin"), true);
+        final SimpleDateFormat format = new SimpleDateFormat("yyy-MM-dd", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("Europe/Berlin"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int t = 0; t < 4; t++) {
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < 20000; i++) {
+                        String value = String.format(Locale.US, "%04d-%02d-%02d", 1950 + i % 70, 1 + i % 12, 1 + i % 28);
+                        Date expected;
+                        synchronized (format) {
+                            expected = format.parse(value);
+                        }
+                        assertThat(parser.parse(value)).isEqualTo(expected);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,151 @@
+package com.uwetrottmann.tmdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
+/**
+ * Answers requests with recorded {@link Fixtures} instead of contacting TMDb, and records the requested URLs.
+ */
+public class MockClient implements Client {
+
+    private final Map<String, String> fixtures = new ConcurrentHashMap<String, String>();
+    private final Map<String, List<Header>> fixtureHeaders = new ConcurrentHashMap<String, List<Header>>();
+    private final List<String> urls = Collections.synchronizedList(new ArrayList<String>());
+    private final List<List<Header>> requestHeaders = Collections.synchronizedList(new ArrayList<List<Header>>());
+    private final Queue<Response> queued = new ConcurrentLinkedQueue<Response>();
+    private volatile CountDownLatch release;
+    private volatile boolean gzip;
+
+    /**
+     * Answer requests of the given path, e.g. {@code /movie/550}, with the given fixture and response headers.
+     */
+    public MockClient fixture(String path, String fixture, Header... headers) {
+        fixtures.put(path, fixture);
+        fixtureHeaders.put(path, Arrays.asList(headers));
+        return this;
+    }
+
+    /**
+     * Answer the next request with the given status and headers instead of a fixture.
+     */
+    public MockClient enqueue(int status, Header... headers) {
+        queued.add(new Response("", status, "", Arrays.asList(headers),
+                new TypedByteArray("application/json", "{}".getBytes())));
+        return this;
+    }
+
+    /**
+     * Compress fixture bodies with gzip if the request accepts it.
+     */
+    public MockClient gzip() {
+        this.gzip = true;
+        return this;
+    }
+
+    /**
+     * Hold all responses until the given latch is released.
+     */
+    public MockClient hold(CountDownLatch release) {
+        this.release = release;
+        return this;
+    }
+
+    /**
+     * The URLs requested so far.
+     */
+    public List<String> urls() {
+        synchronized (urls) {
+            return new ArrayList<String>(urls);
+        }
+    }
+
+    /**
+     * The headers sent with the request of the given index.
+     */
+    public List<Header> requestHeaders(int request) {
+        return requestHeaders.get(request);
+    }
+
+    /**
+     * Returns a {@link Tmdb} sending its requests to this client.
+     */
+    public Tmdb tmdb() {
+        return new Tmdb() {
+            @Override
+            protected Client newClient() {
+                return MockClient.this;
+            }
+        }.setApiKey("key");
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        String url = request.getUrl();
+        synchronized (urls) {
+            urls.add(url);
+            requestHeaders.add(request.getHeaders());
+        }
+        CountDownLatch release = this.release;
+        if (release != null) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        Response next = queued.poll();
+        if (next != null) {
+            return new Response(url, next.getStatus(), next.getReason(), next.getHeaders(), next.getBody());
+        }
+
+        String path = url.substring(Tmdb.API_URL.length());
+        int query = path.indexOf('?');
+        if (query != -1) {
+            path = path.substring(0, query);
+        }
+        String fixture = fixtures.get(path);
+        if (fixture == null) {
+            return new Response(url, 404, "Not Found", Collections.<Header>emptyList(),
+                    new TypedByteArray("application/json", "{\"status_code\":34}".getBytes("UTF-8")));
+        }
+        byte[] body = Fixtures.bytes(fixture);
+        List<Header> headers = fixtureHeaders.get(path);
+        if (gzip && acceptsGzip(request)) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream out = new GZIPOutputStream(compressed);
+            out.write(body);
+            out.close();
+            body = compressed.toByteArray();
+            headers = new ArrayList<Header>(headers);
+            headers.add(new Header("Content-Encoding", "gzip"));
+        }
+        return new Response(url, 200, "OK", headers, new TypedByteArray("application/json", body));
+    }
+
+    private static boolean acceptsGzip(Request request) {
+        for (Header header : request.getHeaders()) {
+            if ("Accept-Encoding".equalsIgnoreCase(header.getName()) && header.getValue().contains("gzip")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
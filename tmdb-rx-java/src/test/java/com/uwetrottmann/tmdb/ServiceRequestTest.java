@@ -0,0 +1,61 @@
+package com.uwetrottmann.tmdb;
+
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+import com.uwetrottmann.tmdb.services.MoviesService;
+import com.uwetrottmann.tmdb.services.TvEpisodesService;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServiceRequestTest {
+
+    private static ServiceRequest request(Class<?> service, String name, Object... args) {
+        for (Method method : service.getMethods()) {
+            if (method.getName().equals(name)) {
+                return new ServiceRequest(service, ServiceMethod.get(method), args);
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    public void test_key_resolves_path() {
+        ServiceRequest request = request(TvEpisodesService.class, "episode", 1396, 1, 2, null, null);
+        assertThat(request.route()).isEqualTo("/tv/{id}/season/{season_number}/episode/{episode_number}");
+        assertThat(request.path()).isEqualTo("/tv/1396/season/1/episode/2");
+        assertThat(request.pathParameter("season_number")).isEqualTo("1");
+        assertThat(request.key()).isEqualTo("/tv/1396/season/1/episode/2");
+    }
+
+    @Test
+    public void test_key_sorts_query() {
+        ServiceRequest request = request(MoviesService.class, "summary", 550, "en",
+                new AppendToResponse(AppendToResponseItem.VIDEOS, AppendToResponseItem.CREDITS,
+                        AppendToResponseItem.VIDEOS));
+        assertThat(request.queryParameters()).containsKeys("append_to_response", "language");
+        assertThat(request.key()).isEqualTo("/movie/550?append_to_response=credits,videos&language=en");
+
+        ServiceRequest other = request(MoviesService.class, "summary", 550, "en",
+                new AppendToResponse(AppendToResponseItem.CREDITS, AppendToResponseItem.VIDEOS));
+        assertThat(other.key()).isEqualTo(request.key());
+    }
+
+    @Test
+    public void test_key_skips_empty_query() {
+        assertThat(request(MoviesService.class, "summary", 550, null, null).key()).isEqualTo("/movie/550");
+        assertThat(request(MoviesService.class, "summary", 550, null, new AppendToResponse()).key())
+                .isEqualTo("/movie/550");
+    }
+
+    @Test
+    public void test_with_args() {
+        ServiceRequest request = request(MoviesService.class, "summary", 550, null, null);
+        assertThat(request.withArgs(551, "de", null).key()).isEqualTo("/movie/551?language=de");
+        assertThat(request.responseType()).isEqualTo(Movie.class);
+    }
+}
@@ -0,0 +1,112 @@
+package com.uwetrottmann.tmdb;
+
+import com.uwetrottmann.tmdb.services.MoviesService;
+import com.uwetrottmann.tmdb.services.TvService;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit.RestAdapter;
+import retrofit.client.Client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TmdbTest {
+
+    @Test
+    public void test_services_are_cached() {
+        Tmdb tmdb = new Tmdb().setApiKey("key");
+
+        MoviesService moviesService = tmdb.moviesService();
+        assertThat(tmdb.moviesService()).isSameAs(moviesService);
+        assertThat(tmdb.tvService()).isSameAs(tmdb.tvService());
+    }
+
+    @Test
+    public void test_set_api_key_starts_new_generation() {
+        Tmdb tmdb = new Tmdb().setApiKey("key");
+        RestAdapter restAdapter = tmdb.getRestAdapter();
+        TvService tvService = tmdb.tvService();
+
+        tmdb.setApiKey("other");
+
+        assertThat(tmdb.getRestAdapter()).isNotSameAs(restAdapter);
+        assertThat(tmdb.tvService()).isNotSameAs(tvService);
+    }
+
+    @Test
+    public void test_concurrent_access_builds_once() throws Exception {
+        final AtomicInteger builds = new AtomicInteger();
+        final Tmdb tmdb = new Tmdb() {
+            @Override
+            protected RestAdapter.Builder newRestAdapterBuilder() {
+                builds.incrementAndGet();
+                return super.newRestAdapterBuilder();
+            }
+        }.setApiKey("key");
+
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<MoviesService>> results = new ArrayList<Future<MoviesService>>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<MoviesService>() {
+                @Override
+                public MoviesService call() throws Exception {
+                    start.await();
+                    return tmdb.moviesService();
+                }
+            }));
+        }
+        start.countDown();
+
+        MoviesService first = results.get(0).get();
+        for (Future<MoviesService> result : results) {
+            assertThat(result.get()).isSameAs(first);
+        }
+        assertThat(builds.get()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    private static Tmdb tmdb(final Client builderClient, final Client client) {
+        return new Tmdb() {
+            @Override
+            protected RestAdapter.Builder newRestAdapterBuilder() {
+                return super.newRestAdapterBuilder().setClient(builderClient);
+            }
+
+            @Override
+            protected Client newClient() {
+                return client;
+            }
+        }.setApiKey("key");
+    }
+
+    @Test
+    public void test_builder_client_kept_by_default() {
+        MockClient builderClient = new MockClient().fixture("/configuration", "configuration.json");
+
+        tmdb(builderClient, null).configurationService().configuration().toBlocking().single();
+
+        assertThat(builderClient.urls()).hasSize(1);
+    }
+
+    @Test
+    public void test_new_client_replaces_builder_client() {
+        MockClient builderClient = new MockClient().fixture("/configuration", "configuration.json");
+        MockClient client = new MockClient().fixture("/configuration", "configuration.json");
+
+        tmdb(builderClient, client).setCompression(true).configurationService().configuration().toBlocking().single();
+
+        assertThat(client.urls()).hasSize(1);
+        assertThat(builderClient.urls()).isEmpty();
+    }
+}
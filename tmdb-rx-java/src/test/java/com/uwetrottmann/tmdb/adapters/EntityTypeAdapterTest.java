@@ -0,0 +1,141 @@
+package com.uwetrottmann.tmdb.adapters;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.uwetrottmann.tmdb.DateParser;
+import com.uwetrottmann.tmdb.Fixtures;
+import com.uwetrottmann.tmdb.TmdbHelper;
+import com.uwetrottmann.tmdb.entities.Configuration;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.PersonCredits;
+import com.uwetrottmann.tmdb.entities.PersonResultsPage;
+import com.uwetrottmann.tmdb.entities.TvEpisode;
+import com.uwetrottmann.tmdb.entities.TvResultsPage;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EntityTypeAdapterTest {
+
+    private final Gson gson = TmdbHelper.getGsonBuilder().create();
+
+    /** Binds all entities by reflection, as before the streaming adapters were added. */
+    private final Gson reflectiveGson = new GsonBuilder()
+            .registerTypeAdapter(Integer.class, new IntegerTypeAdapter())
+            .registerTypeAdapter(Date.class, new DateTypeAdapter(new DateParser(TimeZone.getDefault(), false)))
+            .create();
+
+    @Test
+    public void test_same_as_reflection() throws Exception {
+        assertSameAsReflection("movie_550_append_all.json", Movie.class);
+        assertSameAsReflection("movie_550.json", Movie.class);
+        assertSameAsReflection("movie_550_credits.json", Credits.class);
+        assertSameAsReflection("movie_popular.json", MovieResultsPage.class);
+        assertSameAsReflection("tv_1396_append_all.json", TvShowComplete.class);
+        assertSameAsReflection("tv_1396_season_1.json", TvSeason.class);
+        assertSameAsReflection("tv_1396_season_1_episode_1.json", TvEpisode.class);
+        assertSameAsReflection("tv_popular.json", TvResultsPage.class);
+        assertSameAsReflection("person_287.json", Person.class);
+        assertSameAsReflection("person_287_combined_credits.json", PersonCredits.class);
+        assertSameAsReflection("person_popular.json", PersonResultsPage.class);
+        assertSameAsReflection("configuration.json", Configuration.class);
+    }
+
+    @Test
+    public void test_movie() {
+        Movie movie = gson.fromJson(Fixtures.string("movie_550_append_all.json"), Movie.class);
+
+        assertThat(movie.id).isEqualTo(550);
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(movie.budget).isEqualTo(63000000);
+        assertThat(movie.belongs_to_collection).isNull();
+        assertThat(movie.genres).hasSize(1);
+        assertThat(movie.credits.cast).isNotEmpty();
+        assertThat(movie.credits.crew).isNotEmpty();
+        assertThat(movie.credits.cast.get(0).character).isEqualTo("The Narrator");
+        assertThat(movie.videos.results).isNotEmpty();
+        assertThat(movie.releases.countries).isNotEmpty();
+        assertThat(movie.similar.results).hasSize(20);
+        assertThat(movie.similar.total_pages).isEqualTo(24);
+    }
+
+    @Test
+    public void test_lenient_integers() {
+        Movie movie = gson.fromJson("{\"budget\":1.5,\"revenue\":2787965087,\"runtime\":\"\",\"vote_count\":\"12\","
+                + "\"id\":null}", Movie.class);
+
+        // same as the previous JsonPrimitive.getAsInt() based deserializer
+        assertEquals(Integer.valueOf(1), movie.budget);
+        assertEquals(Integer.valueOf((int) 2787965087L), movie.revenue);
+        assertNull(movie.runtime);
+        assertEquals(Integer.valueOf(12), movie.vote_count);
+        assertNull(movie.id);
+    }
+
+    @Test
+    public void test_invalid_date() {
+        Person person = gson.fromJson(Fixtures.string("person_287.json"), Person.class);
+
+        assertNotNull(person.birthday);
+        assertNull(person.deathday);
+    }
+
+    @Test
+    public void test_write_round_trip() throws Exception {
+        TvShowComplete show = gson.fromJson(Fixtures.string("tv_1396_append_all.json"), TvShowComplete.class);
+
+        TvShowComplete copy = gson.fromJson(gson.toJson(show), TvShowComplete.class);
+
+        assertDeepEquals("show", show, copy);
+    }
+
+    private <T> void assertSameAsReflection(String fixture, Class<T> type) throws Exception {
+        String json = Fixtures.string(fixture);
+        assertDeepEquals(fixture, reflectiveGson.fromJson(json, type), gson.fromJson(json, type));
+    }
+
+    private static void assertDeepEquals(String path, Object expected, Object actual) throws Exception {
+        if (expected == null || actual == null) {
+            assertEquals(path, expected, actual);
+            return;
+        }
+        assertEquals(path, expected.getClass(), actual.getClass());
+        if (expected instanceof List) {
+            List<?> expectedList = (List<?>) expected;
+            List<?> actualList = (List<?>) actual;
+            assertEquals(path + ".size", expectedList.size(), actualList.size());
+            for (int i = 0; i < expectedList.size(); i++) {
+                assertDeepEquals(path + "[" + i + "]", expectedList.get(i), actualList.get(i));
+            }
+            return;
+        }
+        if (expected.getClass().getName().startsWith("java.")) {
+            assertEquals(path, expected, actual);
+            return;
+        }
+        for (Class<?> type = expected.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                assertDeepEquals(path + "." + field.getName(), field.get(expected), field.get(actual));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.uwetrottmann.tmdb.bulk;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit.client.Header;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkFetcherTest {
+
+    @Test
+    public void test_results_and_failures() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        Tmdb tmdb = client.tmdb();
+
+        BulkStatistics statistics = new BulkStatistics();
+        List<BulkResult<Movie>> results = BulkFetcher.movies(tmdb, null, null)
+                .setParallelism(2)
+                .fetch(Arrays.asList(550, 1, 550), statistics)
+                .toList().toBlocking().single();
+
+        assertThat(results).hasSize(3);
+        int succeeded = 0;
+        for (BulkResult<Movie> result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+                assertThat(result.id()).isEqualTo(550);
+                assertThat(result.value().id).isEqualTo(550);
+            } else {
+                assertThat(result.id()).isEqualTo(1);
+                assertThat(result.error()).isNotNull();
+            }
+        }
+        assertThat(succeeded).isEqualTo(2);
+        assertThat(statistics.completedCount()).isEqualTo(3);
+        assertThat(statistics.successCount()).isEqualTo(2);
+        assertThat(statistics.failureCount()).isEqualTo(1);
+        assertThat(statistics.errorCounts()).containsEntry("HTTP 404", 1);
+    }
+
+    @Test
+    public void test_retries_rate_limited_request() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json")
+                .enqueue(429, new Header("Retry-After", "0"));
+        Tmdb tmdb = client.tmdb();
+
+        List<BulkResult<Movie>> results = BulkFetcher.movies(tmdb, null, null)
+                .fetch(Arrays.asList(550))
+                .toList().toBlocking().single();
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(client.urls()).hasSize(2);
+    }
+
+    @Test
+    public void test_bounded_parallelism_and_completion_order() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        BulkFetcher<Integer> fetcher = new BulkFetcher<Integer>(new Func1<Integer, Observable<Integer>>() {
+            @Override
+            public Observable<Integer> call(final Integer id) {
+                return Observable.defer(new Func0<Observable<Integer>>() {
+                    @Override
+                    public Observable<Integer> call() {
+                        int current = inFlight.incrementAndGet();
+                        while (true) {
+                            int max = maxInFlight.get();
+                            if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                                break;
+                            }
+                        }
+                        // higher ids complete sooner
+                        return Observable.just(id)
+                                .delay(50 - id * 10, TimeUnit.MILLISECONDS,
+                                        Schedulers.io())
+                                .doOnTerminate(new Action0() {
+                                    @Override
+                                    public void call() {
+                                        inFlight.decrementAndGet();
+                                    }
+                                });
+                    }
+                });
+            }
+        }).setParallelism(3);
+
+        BulkStatistics statistics = new BulkStatistics();
+        List<Integer> ids = new ArrayList<Integer>();
+        for (BulkResult<Integer> result : fetcher.fetch(Arrays.asList(1, 2, 3), statistics)
+                .toList().toBlocking().single()) {
+            ids.add(result.id());
+        }
+
+        assertThat(ids).containsExactly(3, 2, 1);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(3);
+        assertThat(statistics.p99LatencyMillis()).isGreaterThanOrEqualTo(statistics.p50LatencyMillis());
+        assertThat(statistics.throughput()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.uwetrottmann.tmdb.bulk;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.TvSeason;
+import com.uwetrottmann.tmdb.interceptors.RateLimiter;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TvShowTreeFetcherTest {
+
+    private static MockClient client() {
+        MockClient client = new MockClient().fixture("/tv/1396", "tv_1396.json");
+        for (int season = 0; season <= 5; season++) {
+            client.fixture("/tv/1396/season/" + season, "tv_1396_season_1.json");
+            for (int episode = 1; episode <= 7; episode++) {
+                client.fixture("/tv/1396/season/" + season + "/episode/" + episode,
+                        "tv_1396_season_1_episode_1.json");
+            }
+        }
+        return client;
+    }
+
+    @Test
+    public void test_fetches_all_seasons() {
+        MockClient client = client();
+
+        List<TvShowTree.Node> nodes = new TvShowTreeFetcher(client.tmdb()).setParallelism(3)
+                .fetch(1396, null).toList().toBlocking().single();
+
+        assertThat(nodes).hasSize(7);
+        assertThat(nodes.get(0).show().name).isEqualTo("Breaking Bad");
+        assertThat(nodes.get(1).season()).isNotNull();
+        assertThat(client.urls()).hasSize(7);
+        assertThat(client.urls().get(0)).contains("append_to_response=credits%2Cimages%2Cexternal_ids");
+    }
+
+    @Test
+    public void test_fetches_episodes() {
+        MockClient client = client();
+
+        TvShowTree tree = new TvShowTreeFetcher(client.tmdb()).setFetchEpisodes(true)
+                .fetchTree(1396, null).toBlocking().single();
+
+        assertThat(tree.seasons()).hasSize(6);
+        TvSeason season = tree.season(3);
+        assertThat(season.episodes).hasSize(7);
+        // the episodes were requested on their own, with their credits
+        assertThat(season.episodes.get(0).credits).isNotNull();
+        assertThat(client.urls()).hasSize(1 + 6 + 6 * 7);
+    }
+
+    @Test
+    public void test_only_fetches_changed_seasons() {
+        MockClient client = client();
+        TvShowTreeFetcher fetcher = new TvShowTreeFetcher(client.tmdb());
+        TvShowTree tree = fetcher.fetchTree(1396, null).toBlocking().single();
+        TvSeason unchanged = tree.season(1);
+        // pretend an episode was added to the second season since
+        tree.show().seasons.get(2).episode_count = 12;
+
+        List<TvShowTree.Node> nodes = fetcher.fetch(1396, tree).toList().toBlocking().single();
+
+        assertThat(client.urls()).hasSize(7 + 2);
+        assertThat(client.urls().get(8)).contains("/tv/1396/season/2?");
+        int reused = 0;
+        for (TvShowTree.Node node : nodes) {
+            if (node.isReused()) {
+                reused++;
+            }
+        }
+        assertThat(reused).isEqualTo(5);
+        assertThat(TvShowTree.of(nodes).season(1)).isSameAs(unchanged);
+    }
+
+    @Test
+    public void test_parallelism_follows_rate_limit() {
+        Tmdb tmdb = new Tmdb().setRateLimiter(new RateLimiter(4, 1, TimeUnit.SECONDS));
+        assertThat(new TvShowTreeFetcher(tmdb).getParallelism()).isEqualTo(4);
+        assertThat(new TvShowTreeFetcher(new Tmdb()).getParallelism())
+                .isEqualTo(TvShowTreeFetcher.DEFAULT_PARALLELISM);
+    }
+}
@@ -0,0 +1,151 @@
+package com.uwetrottmann.tmdb.cache;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] body(int i, int size) {
+        byte[] body = new byte[size];
+        for (int j = 0; j < size; j++) {
+            body[j] = (byte) (i + j);
+        }
+        return body;
+    }
+
+    @Test
+    public void test_survives_reopen() throws IOException {
+        File directory = folder.getRoot();
+        DiskCache cache = new DiskCache(directory, 1024 * 1024, 100);
+        cache.put("/movie/550", body(1, 100), 60000);
+        cache.put("/movie/551", body(2, 200), 60000);
+        cache.put("/movie/550", body(3, 300), 60000);
+        cache.close();
+
+        cache = new DiskCache(directory, 1024 * 1024, 100);
+        assertThat(cache.get("/movie/550")).isEqualTo(body(3, 300));
+        assertThat(cache.get("/movie/551")).isEqualTo(body(2, 200));
+        assertThat(cache.get("/movie/552")).isNull();
+        assertThat(cache.entryCount()).isEqualTo(2);
+        assertThat(cache.hitCount()).isEqualTo(2);
+        assertThat(cache.missCount()).isEqualTo(1);
+        cache.close();
+    }
+
+    @Test
+    public void test_expires() throws IOException {
+        final long[] now = { 0 };
+        DiskCache cache = new DiskCache(folder.getRoot(), 1024 * 1024, 100) {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        cache.put("a", body(1, 10), 1000);
+        now[0] = 999;
+        assertThat(cache.get("a")).isNotNull();
+        now[0] = 1000;
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.entryCount()).isEqualTo(0);
+        cache.close();
+    }
+
+    @Test
+    public void test_stays_within_max_size() throws IOException {
+        // 64 KiB segments
+        DiskCache cache = new DiskCache(folder.getRoot(), 256 * 1024, 1000);
+        for (int i = 0; i < 200; i++) {
+            // overwrite the same few keys, so old segments are mostly garbage
+            cache.put("/movie/" + (i % 10), body(i, 10 * 1024), 60000);
+            assertThat(cache.size()).isLessThanOrEqualTo(256 * 1024);
+        }
+        assertThat(cache.compactionCount()).isGreaterThan(0);
+        assertThat(cache.evictionCount()).isEqualTo(0);
+        for (int i = 190; i < 200; i++) {
+            assertThat(cache.get("/movie/" + (i % 10))).isEqualTo(body(i, 10 * 1024));
+        }
+
+        // distinct keys do not fit, the oldest are evicted
+        for (int i = 0; i < 100; i++) {
+            cache.put("/tv/" + i, body(i, 10 * 1024), 60000);
+            assertThat(cache.size()).isLessThanOrEqualTo(256 * 1024);
+        }
+        assertThat(cache.evictionCount()).isGreaterThan(0);
+        assertThat(cache.get("/tv/0")).isNull();
+        assertThat(cache.get("/tv/99")).isEqualTo(body(99, 10 * 1024));
+        cache.close();
+    }
+
+    @Test
+    public void test_stays_within_max_entries() throws IOException {
+        DiskCache cache = new DiskCache(folder.getRoot(), 1024 * 1024, 10);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("/movie/" + i, body(i, 10), 60000);
+        }
+        assertThat(cache.entryCount()).isLessThanOrEqualTo(32);
+        assertThat(cache.get("/movie/999")).isEqualTo(body(999, 10));
+        cache.close();
+    }
+
+    @Test
+    public void test_corrupt_record_is_miss() throws IOException {
+        File directory = folder.getRoot();
+        DiskCache cache = new DiskCache(directory, 1024 * 1024, 100);
+        cache.put("a", body(1, 100), 60000);
+        cache.close();
+
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, "segment.0"), "rw");
+        segment.seek(50);
+        segment.write(0xff);
+        segment.close();
+
+        cache = new DiskCache(directory, 1024 * 1024, 100);
+        assertThat(cache.get("a")).isNull();
+        cache.close();
+    }
+
+    @Test
+    public void test_restarted_client_serves_from_disk() throws IOException {
+        File directory = folder.getRoot();
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550.json")
+                .fixture("/tv/1396", "tv_1396.json");
+
+        DiskCache cache = new DiskCache(directory, 1024 * 1024, 100);
+        Tmdb tmdb = client.tmdb().setDiskCache(cache);
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        tmdb.tvService().tv(1396, null, null).toBlocking().first();
+        assertThat(cache.writeCount()).isEqualTo(2);
+        cache.close();
+
+        cache = new DiskCache(directory, 1024 * 1024, 100);
+        tmdb = client.tmdb().setDiskCache(cache).setResponseCache(new ResponseCache(10));
+        Movie stored = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        TvShowComplete show = tmdb.tvService().tv(1396, null, null).toBlocking().first();
+        assertThat(client.urls()).hasSize(2);
+        assertThat(stored.title).isEqualTo(movie.title);
+        assertThat(stored.release_date).isEqualTo(movie.release_date);
+        assertThat(show.name).isEqualTo("Breaking Bad");
+
+        // not a cached type
+        cache.setTtl(Movie.class, 0, TimeUnit.SECONDS);
+        assertThat(cache.ttlMillis(Movie.class)).isEqualTo(0);
+        cache.close();
+    }
+}
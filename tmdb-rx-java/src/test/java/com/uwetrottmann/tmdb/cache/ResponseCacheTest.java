@@ -0,0 +1,269 @@
+package com.uwetrottmann.tmdb.cache;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.TmdbHelper;
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.TvShowComplete;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.converter.GsonConverter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheTest {
+
+    private static class TestCache extends ResponseCache {
+
+        long now;
+
+        TestCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void test_evicts_least_recently_used() {
+        ResponseCache cache = new ResponseCache(2);
+        cache.put("a", "A", 1000);
+        cache.put("b", "B", 1000);
+        assertThat(cache.get("a")).isEqualTo("A");
+        cache.put("c", "C", 1000);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.get("c")).isEqualTo("C");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(3);
+        assertThat(cache.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_expires() {
+        TestCache cache = new TestCache(10);
+        cache.put("a", "A", 1000);
+        cache.now = 999;
+        assertThat(cache.get("a")).isEqualTo("A");
+        cache.now = 1000;
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.expiredCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_route_ttl() {
+        ResponseCache cache = new ResponseCache(10)
+                .setDefaultTtl(5, TimeUnit.MINUTES)
+                .setTtl("/movie/{id}", 0, TimeUnit.SECONDS);
+        assertThat(cache.ttlMillis("/tv/{id}")).isEqualTo(TimeUnit.MINUTES.toMillis(5));
+        assertThat(cache.ttlMillis("/configuration")).isEqualTo(TimeUnit.DAYS.toMillis(1));
+        assertThat(cache.ttlMillis("/movie/{id}")).isEqualTo(0);
+    }
+
+    @Test
+    public void test_service_methods_use_cache() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        ResponseCache cache = new ResponseCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        Movie movie = tmdb.moviesService().summary(550, "en",
+                new AppendToResponse(AppendToResponseItem.VIDEOS, AppendToResponseItem.CREDITS))
+                .toBlocking().first();
+        Movie cached = tmdb.moviesService().summary(550, "en",
+                new AppendToResponse(AppendToResponseItem.CREDITS, AppendToResponseItem.VIDEOS))
+                .toBlocking().first();
+        tmdb.moviesService().summary(550, "de", null).toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(cached).isSameAs(movie);
+        assertThat(client.urls()).hasSize(2);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_errors_are_not_cached() {
+        MockClient client = new MockClient();
+        ResponseCache cache = new ResponseCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                tmdb.moviesService().summary(1, null, null).toBlocking().first();
+            } catch (RuntimeException expected) {
+            }
+        }
+        assertThat(client.urls()).hasSize(2);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_keeps_expired_responses_with_validators() {
+        TestCache cache = new TestCache(10);
+        cache.put("a", "A", 1000, new Validators("\"1\"", null));
+        cache.put("b", "B", 1000);
+        assertThat(cache.getStale("a")).isNull();
+        cache.now = 1000;
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getStale("a").value()).isEqualTo("A");
+        assertThat(cache.getStale("a").validators().etag()).isEqualTo("\"1\"");
+        assertThat(cache.getStale("b")).isNull();
+    }
+
+    @Test
+    public void test_revalidates_expired_responses() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json",
+                new Header("ETag", "\"v1\""), new Header("Last-Modified", "Sat, 17 Oct 2015 10:00:00 GMT"));
+        TestCache cache = new TestCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        cache.now = ResponseCache.DEFAULT_TTL_MILLIS;
+        client.enqueue(304, new Header("ETag", "\"v2\""));
+        Movie revalidated = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        Movie cached = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(revalidated).isSameAs(movie);
+        assertThat(cached).isSameAs(movie);
+        assertThat(client.urls()).hasSize(2);
+        assertThat(client.requestHeaders(0)).doesNotContain(new Header("If-None-Match", "\"v1\""));
+        assertThat(client.requestHeaders(1)).contains(new Header("If-None-Match", "\"v1\""),
+                new Header("If-Modified-Since", "Sat, 17 Oct 2015 10:00:00 GMT"));
+        assertThat(cache.revalidatedCount()).isEqualTo(1);
+
+        // the validators of the 304 are used from now on
+        cache.now = 2 * ResponseCache.DEFAULT_TTL_MILLIS;
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        assertThat(client.requestHeaders(2)).contains(new Header("If-None-Match", "\"v2\""));
+    }
+
+    @Test
+    public void test_validators_bound_to_converted_response() throws Exception {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json", new Header("ETag", "\"v1\""));
+        ValidatorRecordingConverter converter = new ValidatorRecordingConverter(
+                new GsonConverter(TmdbHelper.getGsonBuilder().create()));
+
+        Response response = new ValidatorRecordingClient(client).execute(new Request("GET",
+                Tmdb.API_URL + "/movie/550", Collections.<Header>emptyList(), null));
+        Object movie = converter.fromBody(response.getBody(), Movie.class);
+
+        // e.g. a part of the movie emitted before it
+        assertThat(ValidatorRecordingConverter.takeValidators(new Credits())).isNull();
+        assertThat(ValidatorRecordingConverter.takeValidators(movie).etag()).isEqualTo("\"v1\"");
+        assertThat(ValidatorRecordingConverter.takeValidators(movie).etag()).isEqualTo("\"v1\"");
+    }
+
+    @Test
+    public void test_replaces_modified_responses() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json", new Header("ETag", "\"v1\""));
+        TestCache cache = new TestCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        cache.now = ResponseCache.DEFAULT_TTL_MILLIS;
+        Movie modified = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(modified).isNotSameAs(movie);
+        assertThat(modified.title).isEqualTo("Fight Club");
+        assertThat(client.requestHeaders(1)).contains(new Header("If-None-Match", "\"v1\""));
+        assertThat(cache.revalidatedCount()).isEqualTo(0);
+        assertThat(tmdb.moviesService().summary(550, null, null).toBlocking().first()).isSameAs(modified);
+    }
+
+    @Test
+    public void test_appended_resources_are_cached_in_parts() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550_append_all.json");
+        ResponseCache cache = new ResponseCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        Movie movie = tmdb.moviesService().summary(550, null, new AppendToResponse(AppendToResponseItem.CREDITS,
+                AppendToResponseItem.VIDEOS, AppendToResponseItem.RELEASES, AppendToResponseItem.SIMILAR))
+                .toBlocking().first();
+
+        assertThat(tmdb.moviesService().credits(550).toBlocking().first()).isSameAs(movie.credits);
+        assertThat(tmdb.moviesService().videos(550, null).toBlocking().first()).isSameAs(movie.videos);
+        assertThat(tmdb.moviesService().releases(550).toBlocking().first()).isSameAs(movie.releases);
+        assertThat(tmdb.moviesService().similar(550, null, null).toBlocking().first()).isSameAs(movie.similar);
+        assertThat(client.urls()).hasSize(1);
+        assertThat(movie.credits).isNotNull();
+    }
+
+    @Test
+    public void test_requests_only_missing_parts() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550_append_all.json")
+                .fixture("/movie/550/credits", "movie_550_credits.json");
+        ResponseCache cache = new ResponseCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        Credits credits = tmdb.moviesService().credits(550).toBlocking().first();
+        Movie movie = tmdb.moviesService().summary(550, null,
+                new AppendToResponse(AppendToResponseItem.CREDITS, AppendToResponseItem.VIDEOS))
+                .toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(movie.credits).isSameAs(credits);
+        assertThat(movie.videos).isNotNull();
+        assertThat(client.urls()).hasSize(2);
+        assertThat(client.urls().get(1)).contains("append_to_response=videos").doesNotContain("credits");
+
+        // all parts are cached now, the movie is put together without a request
+        Movie assembled = tmdb.moviesService().summary(550, null,
+                new AppendToResponse(AppendToResponseItem.CREDITS)).toBlocking().first();
+        assertThat(assembled.credits).isSameAs(credits);
+        assertThat(assembled.videos).isNull();
+        assertThat(client.urls()).hasSize(2);
+    }
+
+    @Test
+    public void test_language_specific_parts_are_not_shared() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550_append_all.json")
+                .fixture("/movie/550/credits", "movie_550_credits.json");
+        ResponseCache cache = new ResponseCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        Movie movie = tmdb.moviesService().summary(550, "de", new AppendToResponse(AppendToResponseItem.CREDITS,
+                AppendToResponseItem.VIDEOS)).toBlocking().first();
+
+        // the credits method takes no language, so it might not return the same credits
+        assertThat(tmdb.moviesService().credits(550).toBlocking().first()).isNotSameAs(movie.credits);
+        assertThat(tmdb.moviesService().videos(550, "de").toBlocking().first()).isSameAs(movie.videos);
+        assertThat(client.urls()).hasSize(2);
+    }
+
+    @Test
+    public void test_appended_tv_resources_are_cached_in_parts() {
+        MockClient client = new MockClient().fixture("/tv/1396", "tv_1396_append_all.json");
+        ResponseCache cache = new ResponseCache(10);
+        Tmdb tmdb = client.tmdb().setResponseCache(cache);
+
+        TvShowComplete show = tmdb.tvService().tv(1396, null, new AppendToResponse(AppendToResponseItem.CREDITS,
+                AppendToResponseItem.IMAGES, AppendToResponseItem.EXTERNAL_IDS)).toBlocking().first();
+
+        assertThat(tmdb.tvService().credits(1396, null).toBlocking().first()).isSameAs(show.credits);
+        assertThat(tmdb.tvService().images(1396, null).toBlocking().first()).isSameAs(show.images);
+        assertThat(tmdb.tvService().externalIds(1396, null).toBlocking().first()).isSameAs(show.external_ids);
+        assertThat(client.urls()).hasSize(1);
+    }
+}
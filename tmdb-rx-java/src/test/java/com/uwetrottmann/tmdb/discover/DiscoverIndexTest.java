@@ -0,0 +1,142 @@
+package com.uwetrottmann.tmdb.discover;
+
+import com.uwetrottmann.tmdb.entities.CastMember;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.CrewMember;
+import com.uwetrottmann.tmdb.entities.Genre;
+import com.uwetrottmann.tmdb.entities.Keyword;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.ProductionCompany;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiscoverIndexTest {
+
+    static Movie movie(int id, double popularity, int... genreIds) {
+        Movie movie = new Movie();
+        movie.id = id;
+        movie.original_title = "Movie " + (char) ('A' + id % 26) + id;
+        movie.popularity = popularity;
+        movie.vote_average = (double) (id % 10);
+        movie.vote_count = id * 10;
+        movie.release_date = new Date(id * 86400000L);
+        movie.genres = new ArrayList<Genre>();
+        for (int genreId : genreIds) {
+            Genre genre = new Genre();
+            genre.id = genreId;
+            movie.genres.add(genre);
+        }
+        return movie;
+    }
+
+    /**
+     * 1000 movies, every one of genre 1, every second of genre 2 and every 100th of genre 3.
+     */
+    private static DiscoverIndex<Movie> catalog() {
+        DiscoverIndex.Builder<Movie> builder = DiscoverIndex.movies();
+        for (int id = 1; id <= 1000; id++) {
+            builder.add(movie(id, id, 1, id % 2 == 0 ? 2 : 1, id % 100 == 0 ? 3 : 1));
+        }
+        return builder.build();
+    }
+
+    private static List<Integer> ids(DiscoverIndex.Result<Movie> result) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Movie movie : result.results()) {
+            ids.add(movie.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void test_filters_by_facets() {
+        DiscoverIndex<Movie> index = catalog();
+
+        assertThat(index.count(DiscoverIndex.Facet.GENRE, 2)).isEqualTo(500);
+        DiscoverIndex.Result<Movie> result = index.discover(new DiscoverQuery()
+                .with(DiscoverIndex.Facet.GENRE, 2, 3), 0, 20);
+
+        assertThat(result.totalResults()).isEqualTo(10);
+        assertThat(ids(result)).containsExactly(1000, 900, 800, 700, 600, 500, 400, 300, 200, 100);
+
+        result = index.discover(new DiscoverQuery().withAny(DiscoverIndex.Facet.GENRE, 3, 4), 0, 20);
+        assertThat(result.totalResults()).isEqualTo(10);
+        assertThat(index.discover(new DiscoverQuery().with(DiscoverIndex.Facet.GENRE, 4), 0, 20).totalResults())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void test_filters_by_ranges_and_sorts() {
+        DiscoverIndex<Movie> index = catalog();
+
+        DiscoverIndex.Result<Movie> result = index.discover(new DiscoverQuery()
+                .range(DiscoverIndex.Column.VOTE_COUNT, 100d, 200d)
+                .range(DiscoverIndex.Column.VOTE_AVERAGE, 5d, null)
+                .sortBy(DiscoverIndex.Column.VOTE_COUNT, false), 0, 20);
+
+        assertThat(ids(result)).containsExactly(15, 16, 17, 18, 19);
+        assertThat(index.discover(new DiscoverQuery().range(DiscoverIndex.Column.VOTE_COUNT, 50d, 9990d), 0, 20)
+                .totalResults()).isEqualTo(995);
+
+        // both ways of sorting, walking the order and sorting ranks of few matches
+        DiscoverQuery all = new DiscoverQuery().sortBy(DiscoverIndex.Column.RELEASE_DATE, true);
+        assertThat(ids(index.discover(all, 0, 3))).containsExactly(1000, 999, 998);
+        DiscoverQuery few = new DiscoverQuery().with(DiscoverIndex.Facet.GENRE, 3)
+                .sortBy(DiscoverIndex.Column.RELEASE_DATE, false);
+        assertThat(ids(index.discover(few, 0, 3))).containsExactly(100, 200, 300);
+    }
+
+    @Test
+    public void test_pages() {
+        DiscoverIndex<Movie> index = catalog();
+        DiscoverQuery query = new DiscoverQuery().with(DiscoverIndex.Facet.GENRE, 2)
+                .sortBy(DiscoverIndex.Column.POPULARITY, false);
+
+        DiscoverIndex.Result<Movie> result = index.discover(query, 490, 20);
+
+        assertThat(result.totalResults()).isEqualTo(500);
+        assertThat(result.results()).hasSize(10);
+        assertThat(result.results().get(0).id).isEqualTo(982);
+        assertThat(index.discover(query, 500, 20).results()).isEmpty();
+    }
+
+    @Test
+    public void test_indexes_credits_companies_keywords_and_adult() {
+        Movie movie = movie(1, 10, 1);
+        movie.credits = new Credits();
+        CastMember actor = new CastMember();
+        actor.id = 287;
+        movie.credits.cast = Collections.singletonList(actor);
+        CrewMember director = new CrewMember();
+        director.id = 7467;
+        movie.credits.crew = Collections.singletonList(director);
+        ProductionCompany company = new ProductionCompany();
+        company.id = 508;
+        movie.production_companies = Collections.singletonList(company);
+        Keyword keyword = new Keyword();
+        keyword.id = 825;
+        Movie adult = movie(2, 20, 1);
+        adult.adult = true;
+        Movie untitled = movie(3, 30, 1);
+        untitled.original_title = null;
+        untitled.title = null;
+
+        DiscoverIndex<Movie> index = DiscoverIndex.movies().add(movie, Collections.singletonList(keyword))
+                .add(adult).add(untitled).add(new Movie()).build();
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(ids(index.discover(new DiscoverQuery().withPeople(287, 7467)
+                .with(DiscoverIndex.Facet.COMPANY, 508).with(DiscoverIndex.Facet.KEYWORD, 825), 0, 20)))
+                .containsExactly(1);
+        assertThat(ids(index.discover(new DiscoverQuery(), 0, 20))).containsExactly(3, 1);
+        assertThat(ids(index.discover(new DiscoverQuery().includeAdult(true)
+                .sortBy(DiscoverIndex.Column.ORIGINAL_TITLE, true), 0, 20))).containsExactly(2, 1, 3);
+    }
+}
@@ -0,0 +1,83 @@
+package com.uwetrottmann.tmdb.discover;
+
+import com.uwetrottmann.tmdb.entities.AppendToDiscoverResponse;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+import com.uwetrottmann.tmdb.entities.TvShow;
+import com.uwetrottmann.tmdb.enumerations.SortBy;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalDiscoverServiceTest {
+
+    private static Movie movie(int id, int year, int genreId) {
+        Movie movie = DiscoverIndexTest.movie(id, id, genreId);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, Calendar.JUNE, 1);
+        movie.release_date = calendar.getTime();
+        return movie;
+    }
+
+    @Test
+    public void test_discovers_movies() {
+        DiscoverIndex.Builder<Movie> builder = DiscoverIndex.movies();
+        for (int id = 1; id <= 50; id++) {
+            builder.add(movie(id, 1990 + id % 20, id % 3 == 0 ? 18 : 28));
+        }
+        LocalDiscoverService service = new LocalDiscoverService(builder.build(), null);
+
+        MovieResultsPage page = service.discoverMovie(false, true, null, 1, null, null, null, null, null,
+                SortBy.VOTE_COUNT_DESC, null, null, null, null, null, null, null, new AppendToDiscoverResponse(18),
+                null, null, 2000).toBlocking().single();
+
+        // ids divisible by 3 released in 2000: 30
+        assertThat(page.total_results).isEqualTo(1);
+        assertThat(page.results.get(0).id).isEqualTo(30);
+
+        page = service.discoverMovie(false, true, null, 2, null, null, null, null, null, SortBy.POPULARITY_ASC,
+                null, null, null, null, null, null, null, null, null, null, null).toBlocking().single();
+
+        assertThat(page.page).isEqualTo(2);
+        assertThat(page.total_pages).isEqualTo(3);
+        assertThat(page.total_results).isEqualTo(50);
+        assertThat(page.results).hasSize(20);
+        assertThat(page.results.get(0).id).isEqualTo(21);
+        assertThat(service.queryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_requires_index() {
+        LocalDiscoverService service = new LocalDiscoverService(null, null);
+
+        Throwable error = service.discoverTv(null, null, null, null, null, null, null, null, null, null)
+                .materialize().toBlocking().first().getThrowable();
+
+        assertThat(error).isInstanceOf(IllegalStateException.class);
+
+        service.setTvShows(DiscoverIndex.tvShows().add(new TvShow()).build());
+        assertThat(service.discoverTv(null, null, null, null, null, null, null, null, null, null)
+                .toBlocking().single().total_results).isEqualTo(0);
+    }
+
+    @Test
+    public void test_invalid_year_is_emitted_as_error() {
+        LocalDiscoverService service = new LocalDiscoverService(DiscoverIndex.movies().build(),
+                DiscoverIndex.tvShows().build());
+
+        Throwable error = service.discoverMovie(false, true, null, 1, "199x", null, null, null, null, null, null,
+                null, null, null, null, null, null, null, null, null, null).materialize().toBlocking().first()
+                .getThrowable();
+        assertThat(error).isInstanceOf(NumberFormatException.class);
+
+        error = service.discoverTv(null, null, null, "next year", null, null, null, null, null, null)
+                .materialize().toBlocking().first().getThrowable();
+        assertThat(error).isInstanceOf(NumberFormatException.class);
+        assertThat(service.discoverTv(null, null, null, " 2015 ", null, null, null, null, null, null)
+                .toBlocking().single().total_results).isEqualTo(0);
+    }
+}
@@ -0,0 +1,122 @@
+package com.uwetrottmann.tmdb.images;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.schedulers.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImageUrlBuilderTest {
+
+    private static final String POSTER = "/1yeVJox3rjo2jBKrrihIMj7uoS9.jpg";
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private ImageUrlBuilder builder(MockClient client) {
+        return new ImageUrlBuilder(client.tmdb(), Schedulers.immediate()) {
+            @Override
+            protected long currentTimeMillis() {
+                return now.get();
+            }
+        };
+    }
+
+    /**
+     * Waits for the background load started by the last call, the service responds on its own thread.
+     */
+    private static void awaitRefresh(ImageUrlBuilder builder) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (builder.isRefreshing() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(builder.isRefreshing()).isFalse();
+    }
+
+    @Test
+    public void test_picks_best_fitting_size() {
+        ImageConfiguration configuration = ImageConfiguration.DEFAULT;
+
+        assertThat(configuration.size(ImageUrlBuilder.Type.POSTER, 300)).isEqualTo("w342");
+        assertThat(configuration.size(ImageUrlBuilder.Type.POSTER, 342)).isEqualTo("w342");
+        assertThat(configuration.size(ImageUrlBuilder.Type.POSTER, 1)).isEqualTo("w92");
+        assertThat(configuration.size(ImageUrlBuilder.Type.POSTER, 2000)).isEqualTo("original");
+        assertThat(configuration.size(ImageUrlBuilder.Type.POSTER, 0)).isEqualTo("original");
+        assertThat(configuration.size(ImageUrlBuilder.Type.BACKDROP, 1000)).isEqualTo("w1280");
+        // height based sizes are skipped
+        assertThat(configuration.size(ImageUrlBuilder.Type.PROFILE, 300)).isEqualTo("original");
+    }
+
+    @Test
+    public void test_builds_urls() throws InterruptedException {
+        ImageUrlBuilder builder = builder(new MockClient().fixture("/configuration", "configuration.json"));
+        builder.configuration();
+        awaitRefresh(builder);
+
+        assertThat(builder.posterUrl(POSTER, 500)).isEqualTo("https://image.tmdb.org/t/p/w500" + POSTER);
+        assertThat(builder.stillUrl(POSTER, 200)).isEqualTo("https://image.tmdb.org/t/p/w300" + POSTER);
+        assertThat(builder.backdropUrl(null, 500)).isNull();
+        StringBuilder out = new StringBuilder("url: ");
+        builder.appendUrl(out, ImageUrlBuilder.Type.LOGO, POSTER, 40);
+        assertThat(out.toString()).isEqualTo("url: https://image.tmdb.org/t/p/w45" + POSTER);
+    }
+
+    @Test
+    public void test_loads_configuration_once_until_refresh() throws InterruptedException {
+        MockClient client = new MockClient().fixture("/configuration", "configuration.json");
+        ImageUrlBuilder builder = builder(client).setRefreshInterval(1, TimeUnit.HOURS);
+        assertThat(builder.isLoaded()).isFalse();
+
+        for (int i = 0; i < 100; i++) {
+            builder.posterUrl(POSTER, 185);
+        }
+        awaitRefresh(builder);
+
+        assertThat(builder.isLoaded()).isTrue();
+        assertThat(builder.configuration().sizes(ImageUrlBuilder.Type.STILL)).contains("w300");
+        assertThat(client.urls()).hasSize(1);
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(1));
+        builder.posterUrl(POSTER, 185);
+        awaitRefresh(builder);
+
+        assertThat(client.urls()).hasSize(2);
+        assertThat(builder.loadCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_keeps_default_and_retries_after_failure() throws InterruptedException {
+        MockClient client = new MockClient().enqueue(500);
+        ImageUrlBuilder builder = builder(client);
+
+        assertThat(builder.posterUrl(POSTER, 92)).isEqualTo("https://image.tmdb.org/t/p/w92" + POSTER);
+        awaitRefresh(builder);
+        assertThat(builder.isLoaded()).isFalse();
+        assertThat(builder.failureCount()).isEqualTo(1);
+
+        // not tried again right away
+        builder.posterUrl(POSTER, 92);
+        assertThat(client.urls()).hasSize(1);
+
+        client.fixture("/configuration", "configuration.json");
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        builder.posterUrl(POSTER, 92);
+        awaitRefresh(builder);
+
+        assertThat(client.urls()).hasSize(2);
+        assertThat(builder.isLoaded()).isTrue();
+    }
+
+    @Test
+    public void test_tmdb_shares_builder() {
+        MockClient client = new MockClient();
+
+        Tmdb tmdb = client.tmdb();
+        assertThat(tmdb.imageUrlBuilder()).isSameAs(tmdb.imageUrlBuilder());
+    }
+}
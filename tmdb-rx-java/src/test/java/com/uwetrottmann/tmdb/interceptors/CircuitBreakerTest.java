@@ -0,0 +1,153 @@
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.metrics.MetricsRecorder;
+import com.uwetrottmann.tmdb.services.MoviesService;
+import com.uwetrottmann.tmdb.services.TvService;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    /**
+     * A circuit breaker whose time only passes when told to.
+     */
+    private static class ManualCircuitBreaker extends CircuitBreaker {
+
+        long now = 1000;
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static void summary(Tmdb tmdb) {
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+    }
+
+    private static void fail503Times(MockClient client, Tmdb tmdb, int count) {
+        for (int i = 0; i < count; i++) {
+            client.enqueue(503);
+            try {
+                summary(tmdb);
+                fail("failing request succeeded");
+            } catch (RetrofitError ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void test_opens_after_failures() {
+        MockClient client = new MockClient().fixture("/tv/1396", "tv_1396.json");
+        MetricsRecorder metrics = new MetricsRecorder();
+        CircuitBreaker circuitBreaker = new CircuitBreaker().setWindow(4, 4).setListener(metrics);
+        Tmdb tmdb = client.tmdb().setCircuitBreaker(circuitBreaker);
+
+        fail503Times(client, tmdb, 4);
+        assertThat(circuitBreaker.state(MoviesService.class)).isEqualTo(CircuitBreaker.State.OPEN);
+        try {
+            summary(tmdb);
+            fail("request passed an open circuit");
+        } catch (RequestRejectedException e) {
+            assertThat(e.service()).isEqualTo(MoviesService.class);
+            assertThat(e.reason()).isEqualTo(RequestRejectedException.Reason.CIRCUIT_OPEN);
+        }
+        assertThat(client.urls()).hasSize(4);
+        assertThat(circuitBreaker.circuitOpenCount()).isEqualTo(1);
+        assertThat(metrics.circuitStates()).containsEntry("MoviesService", CircuitBreaker.State.OPEN);
+        assertThat(metrics.circuitOpenedCount("MoviesService")).isEqualTo(1);
+
+        // other services are not affected
+        tmdb.tvService().tv(1396, null, null).toBlocking().first();
+        assertThat(circuitBreaker.state(TvService.class)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void test_client_errors_do_not_open() {
+        MockClient client = new MockClient();
+        CircuitBreaker circuitBreaker = new CircuitBreaker().setWindow(4, 4);
+        Tmdb tmdb = client.tmdb().setCircuitBreaker(circuitBreaker);
+
+        for (int i = 0; i < 8; i++) {
+            try {
+                summary(tmdb);
+                fail("missing movie was found");
+            } catch (RetrofitError e) {
+                assertThat(e.getResponse().getStatus()).isEqualTo(404);
+            }
+        }
+        assertThat(circuitBreaker.state(MoviesService.class)).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void test_half_open_probes() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        MetricsRecorder metrics = new MetricsRecorder();
+        ManualCircuitBreaker circuitBreaker = new ManualCircuitBreaker();
+        circuitBreaker.setWindow(4, 4).setOpenDuration(10, TimeUnit.SECONDS, 2).setListener(metrics);
+        Tmdb tmdb = client.tmdb().setCircuitBreaker(circuitBreaker);
+
+        fail503Times(client, tmdb, 4);
+        circuitBreaker.now += TimeUnit.SECONDS.toMillis(10);
+
+        // a failed probe opens the circuit again
+        fail503Times(client, tmdb, 1);
+        assertThat(circuitBreaker.state(MoviesService.class)).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(metrics.circuitOpenedCount("MoviesService")).isEqualTo(2);
+
+        circuitBreaker.now += TimeUnit.SECONDS.toMillis(10);
+        summary(tmdb);
+        assertThat(circuitBreaker.state(MoviesService.class)).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        summary(tmdb);
+        assertThat(circuitBreaker.state(MoviesService.class)).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(metrics.circuitStates()).containsEntry("MoviesService", CircuitBreaker.State.CLOSED);
+        assertThat(client.urls()).hasSize(7);
+    }
+
+    @Test
+    public void test_bulkhead_limits_requests_in_flight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json").hold(release);
+        CircuitBreaker circuitBreaker = new CircuitBreaker().setMaxConcurrentRequests(1);
+        final Tmdb tmdb = client.tmdb().setCircuitBreaker(circuitBreaker);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Movie> held = executor.submit(new Callable<Movie>() {
+            @Override
+            public Movie call() throws Exception {
+                return tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            }
+        });
+        while (circuitBreaker.inFlight(MoviesService.class) < 1) {
+            Thread.sleep(10);
+        }
+        try {
+            summary(tmdb);
+            fail("request passed a full bulkhead");
+        } catch (RequestRejectedException e) {
+            assertThat(e.reason()).isEqualTo(RequestRejectedException.Reason.BULKHEAD_FULL);
+        }
+        release.countDown();
+
+        assertThat(held.get().title).isEqualTo("Fight Club");
+        assertThat(circuitBreaker.inFlight(MoviesService.class)).isEqualTo(0);
+        assertThat(circuitBreaker.bulkheadFullCount()).isEqualTo(1);
+        summary(tmdb);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,148 @@
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import rx.Observable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class RateLimiterTest {
+
+    private static class TestRateLimiter extends RateLimiter {
+
+        long now;
+
+        TestRateLimiter(int permits, long period, TimeUnit unit) {
+            super(permits, period, unit);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void test_requests_wait_in_line() {
+        TestRateLimiter limiter = new TestRateLimiter(2, 1, TimeUnit.SECONDS);
+        RateLimiter.Bucket bucket = limiter.bucket("key");
+
+        assertThat(bucket.reserve()).isEqualTo(0);
+        assertThat(bucket.reserve()).isEqualTo(0);
+        assertThat(bucket.reserve()).isEqualTo(500);
+        assertThat(bucket.reserve()).isEqualTo(1000);
+
+        limiter.now = 5000;
+        assertThat(bucket.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_buckets_per_api_key() {
+        TestRateLimiter limiter = new TestRateLimiter(1, 1, TimeUnit.SECONDS);
+        assertThat(limiter.bucket("key")).isSameAs(limiter.bucket("key"));
+
+        limiter.bucket("key").reserve();
+        assertThat(limiter.bucket("key").reserve()).isEqualTo(1000);
+        assertThat(limiter.bucket("other").reserve()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_retry_after_pauses() {
+        TestRateLimiter limiter = new TestRateLimiter(40, 10, TimeUnit.SECONDS);
+        RateLimiter.Bucket bucket = limiter.bucket("key");
+
+        bucket.onResponse(429, Collections.singletonList(new Header("Retry-After", "5")));
+        assertThat(bucket.reserve()).isEqualTo(5000);
+        assertThat(bucket.rejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_rate_limit_headers() {
+        TestRateLimiter limiter = new TestRateLimiter(40, 10, TimeUnit.SECONDS);
+        limiter.now = 1000000;
+        RateLimiter.Bucket bucket = limiter.bucket("key");
+
+        bucket.onResponse(200, headers("X-RateLimit-Remaining", "1", "X-RateLimit-Reset", "1003"));
+        assertThat(bucket.availablePermits()).isEqualTo(1);
+
+        bucket.onResponse(200, headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "1003"));
+        assertThat(bucket.reserve()).isEqualTo(3000);
+    }
+
+    private static List<Header> headers(String... namesAndValues) {
+        Header[] headers = new Header[namesAndValues.length / 2];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = new Header(namesAndValues[i * 2], namesAndValues[i * 2 + 1]);
+        }
+        return Arrays.asList(headers);
+    }
+
+    @Test
+    public void test_delays_subscription() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        RateLimiter limiter = new RateLimiter(1, 200, TimeUnit.MILLISECONDS);
+        Tmdb tmdb = client.tmdb().setRateLimiter(limiter);
+
+        long start = System.currentTimeMillis();
+        List<Movie> movies = Observable.merge(
+                tmdb.moviesService().summary(550, null, null),
+                tmdb.moviesService().summary(550, null, null),
+                tmdb.moviesService().summary(550, null, null)
+        ).toList().toBlocking().single();
+
+        assertThat(movies).hasSize(3);
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(400);
+        RateLimiter.Bucket bucket = limiter.bucket("key");
+        assertThat(bucket.requestCount()).isEqualTo(3);
+        assertThat(bucket.delayedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_unsubscribe_while_waiting_returns_token() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        TestRateLimiter limiter = new TestRateLimiter(1, 1, TimeUnit.SECONDS);
+        Tmdb tmdb = client.tmdb().setRateLimiter(limiter);
+        RateLimiter.Bucket bucket = limiter.bucket("key");
+
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        tmdb.moviesService().summary(550, null, null).subscribe().unsubscribe();
+
+        assertThat(bucket.delayedCount()).isEqualTo(1);
+        // the cancelled request gave its token back, so the next one waits for the first refill only
+        assertThat(bucket.reserve()).isEqualTo(1000);
+        assertThat(client.urls()).hasSize(1);
+    }
+
+    @Test
+    public void test_too_many_requests_pauses_bucket() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550.json")
+                .enqueue(429, new Header("Retry-After", "1"));
+        RateLimiter limiter = new RateLimiter(40, 10, TimeUnit.SECONDS);
+        Tmdb tmdb = client.tmdb().setRateLimiter(limiter);
+
+        try {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            fail();
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(429);
+        }
+        long start = System.currentTimeMillis();
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(900);
+        assertThat(limiter.bucket("key").rejectedCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,126 @@
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import rx.Observable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestCoalescerTest {
+
+    @Test
+    public void test_concurrent_requests_share_call() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json").hold(release);
+        RequestCoalescer coalescer = new RequestCoalescer();
+        final Tmdb tmdb = client.tmdb().setRequestCoalescer(coalescer);
+
+        int threads = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Movie>> results = new ArrayList<Future<Movie>>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(new Callable<Movie>() {
+                @Override
+                public Movie call() throws Exception {
+                    return tmdb.moviesService().summary(550, null, null).toBlocking().first();
+                }
+            }));
+        }
+        while (coalescer.collapsedCount() < threads - 1) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        Movie first = results.get(0).get();
+        for (Future<Movie> result : results) {
+            assertThat(result.get()).isSameAs(first);
+        }
+        assertThat(client.urls()).hasSize(1);
+        assertThat(coalescer.requestCount()).isEqualTo(threads);
+        assertThat(coalescer.inFlightCount()).isEqualTo(0);
+        executor.shutdown();
+    }
+
+    @Test
+    public void test_api_keys_do_not_share_calls() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json").hold(release);
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Tmdb tmdb = client.tmdb().setRequestCoalescer(coalescer);
+        Tmdb other = client.tmdb().setApiKey("other").setRequestCoalescer(coalescer);
+
+        Observable<List<Movie>> movies = Observable.merge(tmdb.moviesService().summary(550, null, null),
+                other.moviesService().summary(550, null, null)).toList().cache();
+        movies.subscribe();
+        // a call shared by both would stay the only one in flight
+        for (int i = 0; i < 100 && coalescer.inFlightCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertThat(movies.toBlocking().single()).hasSize(2);
+        assertThat(client.urls()).hasSize(2);
+        assertThat(coalescer.collapsedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_sequential_requests_are_sent() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Tmdb tmdb = client.tmdb().setRequestCoalescer(coalescer);
+
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        tmdb.moviesService().summary(550, "de", null).toBlocking().first();
+
+        assertThat(client.urls()).hasSize(3);
+        assertThat(coalescer.collapsedCount()).isEqualTo(0);
+        assertThat(coalescer.inFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_errors_are_shared() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MockClient client = new MockClient().hold(release);
+        RequestCoalescer coalescer = new RequestCoalescer();
+        final Tmdb tmdb = client.tmdb().setRequestCoalescer(coalescer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<Throwable>> results = new ArrayList<Future<Throwable>>();
+        for (int i = 0; i < 2; i++) {
+            results.add(executor.submit(new Callable<Throwable>() {
+                @Override
+                public Throwable call() throws Exception {
+                    try {
+                        tmdb.moviesService().summary(1, null, null).toBlocking().first();
+                        return null;
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }
+            }));
+        }
+        while (coalescer.collapsedCount() < 1) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertThat(results.get(0).get()).isNotNull();
+        assertThat(results.get(1).get()).isNotNull();
+        assertThat(client.urls()).hasSize(1);
+        assertThat(coalescer.inFlightCount()).isEqualTo(0);
+        executor.shutdown();
+    }
+}
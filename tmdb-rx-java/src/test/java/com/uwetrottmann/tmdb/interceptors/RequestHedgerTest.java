@@ -0,0 +1,134 @@
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import rx.schedulers.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestHedgerTest {
+
+    /**
+     * Delays responses by the queued delays, in the order the requests arrive.
+     */
+    private static class SlowClient extends MockClient {
+
+        final Queue<Long> delays = new ConcurrentLinkedQueue<Long>();
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            Long delay = delays.poll();
+            if (delay != null) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return super.execute(request);
+        }
+
+        Tmdb tmdb(final RequestHedger hedger) {
+            return new Tmdb() {
+                @Override
+                protected Client newClient() {
+                    return SlowClient.this;
+                }
+            }.setApiKey("key").setRequestHedger(hedger);
+        }
+    }
+
+    @Test
+    public void test_hedges_slow_requests() {
+        SlowClient client = new SlowClient();
+        client.fixture("/movie/550", "movie_550.json");
+        RequestHedger hedger = new RequestHedger(0.5, 5, Schedulers.computation());
+        Tmdb tmdb = client.tmdb(hedger);
+
+        for (int i = 0; i < 5; i++) {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        }
+        assertThat(hedger.hedgeDelayMicros("/movie/{id}")).isGreaterThanOrEqualTo(0);
+        assertThat(hedger.hedgeCount()).isEqualTo(0);
+
+        client.delays.add(TimeUnit.SECONDS.toMillis(5));
+        long start = System.nanoTime();
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+        // the slow request was cancelled while waiting, before it was answered
+        assertThat(client.urls()).hasSize(6);
+        assertThat(hedger.hedgeCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_slow_requests_raise_hedge_delay() {
+        SlowClient client = new SlowClient();
+        client.fixture("/movie/550", "movie_550.json");
+        RequestHedger hedger = new RequestHedger(0.5, 5, Schedulers.computation()).setBudget(1, 5);
+        Tmdb tmdb = client.tmdb(hedger);
+
+        for (int i = 0; i < 5; i++) {
+            client.delays.add(200L);
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        }
+        long delay = hedger.hedgeDelayMicros("/movie/{id}");
+        assertThat(delay).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(200));
+
+        for (int i = 0; i < 5; i++) {
+            // the request is slow, its hedge fast
+            client.delays.add(TimeUnit.SECONDS.toMillis(5));
+            client.delays.add(0L);
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        }
+
+        assertThat(hedger.hedgeWonCount()).isEqualTo(5);
+        // the cancelled requests count with the time they waited, not with the latency of their hedges
+        assertThat(hedger.hedgeDelayMicros("/movie/{id}")).isGreaterThan(delay);
+    }
+
+    @Test
+    public void test_budget_limits_hedges() {
+        SlowClient client = new SlowClient();
+        client.fixture("/movie/550", "movie_550.json");
+        RequestHedger hedger = new RequestHedger(0.5, 5, Schedulers.computation()).setBudget(0, 0);
+        Tmdb tmdb = client.tmdb(hedger);
+
+        for (int i = 0; i < 5; i++) {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        }
+        client.delays.add(200L);
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(client.urls()).hasSize(6);
+        assertThat(hedger.hedgeCount()).isEqualTo(0);
+        assertThat(hedger.budgetExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_only_hedges_given_routes() {
+        SlowClient client = new SlowClient();
+        client.fixture("/movie/550", "movie_550.json");
+        RequestHedger hedger = new RequestHedger(0.5, 5, Schedulers.computation()).setRoutes("/search/movie");
+        Tmdb tmdb = client.tmdb(hedger);
+
+        for (int i = 0; i < 5; i++) {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        }
+        assertThat(hedger.hedgeDelayMicros("/movie/{id}")).isEqualTo(-1);
+        assertThat(hedger.requestCount()).isEqualTo(0);
+    }
+}
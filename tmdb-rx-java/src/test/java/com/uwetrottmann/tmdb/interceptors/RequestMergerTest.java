@@ -0,0 +1,153 @@
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.cache.ResponseCache;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Images;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.Videos;
+import com.uwetrottmann.tmdb.services.MoviesService;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import retrofit.client.Header;
+import rx.Observable;
+import rx.functions.Func2;
+import rx.functions.Func4;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestMergerTest {
+
+    @Test
+    public void test_merges_parts_into_one_request() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550_append_all.json");
+        RequestMerger merger = new RequestMerger();
+        MoviesService service = client.tmdb().setRequestMerger(merger).moviesService();
+
+        List<Object> responses = Observable.zip(service.summary(550, null, null), service.credits(550),
+                service.videos(550, null), service.images(550, null),
+                new Func4<Movie, Credits, Videos, Images, List<Object>>() {
+                    @Override
+                    public List<Object> call(Movie movie, Credits credits, Videos videos, Images images) {
+                        return Arrays.<Object>asList(movie, credits, videos, images);
+                    }
+                }).toBlocking().first();
+
+        Movie movie = (Movie) responses.get(0);
+        assertThat(movie.title).isEqualTo("Fight Club");
+        // not asked for by the summary
+        assertThat(movie.credits).isNull();
+        assertThat(((Credits) responses.get(1)).cast).isNotEmpty();
+        assertThat(((Videos) responses.get(2)).results).isNotEmpty();
+        assertThat(((Images) responses.get(3)).posters).isNotEmpty();
+        assertThat(client.urls()).hasSize(1);
+        assertThat(client.urls().get(0)).contains("/movie/550?")
+                .contains("append_to_response=videos%2Ccredits%2Cimages");
+        assertThat(merger.requestCount()).isEqualTo(4);
+        assertThat(merger.callCount()).isEqualTo(1);
+        assertThat(merger.mergedCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void test_parts_are_cached_without_merged_validators() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550_append_all.json", new Header("ETag", "\"merged\""))
+                .fixture("/movie/550/credits", "movie_550_credits.json");
+        final long[] now = new long[1];
+        ResponseCache cache = new ResponseCache(10) {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        MoviesService service = client.tmdb().setResponseCache(cache).setRequestMerger(new RequestMerger())
+                .moviesService();
+
+        Observable.zip(service.credits(550), service.summary(550, null, null), new Func2<Credits, Movie, Object>() {
+            @Override
+            public Object call(Credits credits, Movie movie) {
+                return movie;
+            }
+        }).toBlocking().first();
+        now[0] = ResponseCache.DEFAULT_TTL_MILLIS;
+        service.credits(550).toBlocking().first();
+        service.summary(550, null, null).toBlocking().first();
+
+        assertThat(client.urls()).hasSize(3);
+        // neither the credits nor the summary were asked for with the merged request, so are not revalidated with it
+        assertThat(client.requestHeaders(1)).doesNotContain(new Header("If-None-Match", "\"merged\""));
+        assertThat(client.requestHeaders(2)).doesNotContain(new Header("If-None-Match", "\"merged\""));
+    }
+
+    @Test
+    public void test_api_keys_are_not_merged() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550_append_all.json")
+                .fixture("/movie/550/credits", "movie_550_credits.json");
+        RequestMerger merger = new RequestMerger();
+        MoviesService service = client.tmdb().setRequestMerger(merger).moviesService();
+        MoviesService other = client.tmdb().setApiKey("other").setRequestMerger(merger).moviesService();
+
+        Observable.zip(service.credits(550), other.summary(550, null, null), new Func2<Credits, Movie, Object>() {
+            @Override
+            public Object call(Credits credits, Movie movie) {
+                return movie;
+            }
+        }).toBlocking().first();
+
+        assertThat(client.urls()).hasSize(2);
+        assertThat(client.urls().get(0)).doesNotContain("append_to_response");
+        assertThat(client.urls().get(1)).doesNotContain("append_to_response");
+        assertThat(merger.mergedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_does_not_merge_other_resources() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550/credits", "movie_550_credits.json")
+                .fixture("/movie/551/credits", "movie_550_credits.json")
+                .fixture("/movie/550/similar", "movie_popular.json");
+        RequestMerger merger = new RequestMerger();
+        MoviesService service = client.tmdb().setRequestMerger(merger).moviesService();
+
+        Observable.zip(service.credits(550), service.credits(551), new Func2<Credits, Credits, Object>() {
+            @Override
+            public Object call(Credits first, Credits second) {
+                return first;
+            }
+        }).toBlocking().first();
+        // takes a page, so it is not a part of a movie
+        service.similar(550, 2, null).toBlocking().first();
+
+        assertThat(client.urls()).hasSize(3);
+        assertThat(client.urls().get(0)).contains("/movie/55").doesNotContain("append_to_response");
+        assertThat(merger.requestCount()).isEqualTo(2);
+        assertThat(merger.mergedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_requests_missing_parts_on_their_own() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550.json")
+                .fixture("/movie/550/credits", "movie_550_credits.json");
+        RequestMerger merger = new RequestMerger();
+        MoviesService service = client.tmdb().setRequestMerger(merger).moviesService();
+
+        Credits credits = Observable.zip(service.summary(550, null, null), service.credits(550),
+                new Func2<Movie, Credits, Credits>() {
+                    @Override
+                    public Credits call(Movie movie, Credits credits) {
+                        return credits;
+                    }
+                }).toBlocking().first();
+
+        assertThat(credits.cast).isNotEmpty();
+        assertThat(client.urls()).hasSize(2);
+        assertThat(merger.missingPartCount()).isEqualTo(1);
+    }
+}
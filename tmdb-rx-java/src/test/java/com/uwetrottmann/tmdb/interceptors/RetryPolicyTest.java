@@ -0,0 +1,136 @@
+package com.uwetrottmann.tmdb.interceptors;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.ServiceRequest;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+
+    private static RetryPolicy retryPolicy() {
+        return new RetryPolicy().setBackoff(1, 10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void test_retries_transient_errors() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json")
+                .enqueue(503)
+                .enqueue(429, new Header("Retry-After", "0"));
+        final List<Integer> failedAttempts = Collections.synchronizedList(new ArrayList<Integer>());
+        RetryPolicy retryPolicy = retryPolicy().setListener(new RetryPolicy.Listener() {
+            @Override
+            public void onAttemptFailed(ServiceRequest request, int attempt, Throwable error, long delayMillis) {
+                assertThat(delayMillis).isBetween(0L, 10L);
+                failedAttempts.add(attempt);
+            }
+        });
+        Tmdb tmdb = client.tmdb().setRetryPolicy(retryPolicy);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(client.urls()).hasSize(3);
+        assertThat(failedAttempts).containsExactly(1, 2);
+        assertThat(retryPolicy.requestCount()).isEqualTo(1);
+        assertThat(retryPolicy.attemptCount()).isEqualTo(3);
+        assertThat(retryPolicy.retryCount()).isEqualTo(2);
+        assertThat(retryPolicy.recoveredCount()).isEqualTo(1);
+        assertThat(retryPolicy.retryReasons()).containsEntry("HTTP 503", 1L).containsEntry("HTTP 429", 1L);
+    }
+
+    @Test
+    public void test_does_not_retry_before_retry_after() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json")
+                .enqueue(503, new Header("Retry-After", "3600"));
+        final List<Long> delays = Collections.synchronizedList(new ArrayList<Long>());
+        RetryPolicy retryPolicy = retryPolicy().setListener(new RetryPolicy.Listener() {
+            @Override
+            public void onAttemptFailed(ServiceRequest request, int attempt, Throwable error, long delayMillis) {
+                delays.add(delayMillis);
+            }
+        });
+        Tmdb tmdb = client.tmdb().setRetryPolicy(retryPolicy);
+
+        try {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            fail("request asked to retry after an hour succeeded");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(503);
+        }
+
+        // longer than the maximum delay, so passed on
+        assertThat(delays).containsExactly(-1L);
+        assertThat(client.urls()).hasSize(1);
+        assertThat(retryPolicy.retryCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_does_not_retry_client_errors() {
+        MockClient client = new MockClient();
+        RetryPolicy retryPolicy = retryPolicy();
+        Tmdb tmdb = client.tmdb().setRetryPolicy(retryPolicy);
+
+        try {
+            tmdb.moviesService().summary(1, null, null).toBlocking().first();
+            fail("missing movie was found");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(404);
+        }
+        assertThat(client.urls()).hasSize(1);
+        assertThat(retryPolicy.retryCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_gives_up_after_max_retries() {
+        MockClient client = new MockClient().enqueue(500).enqueue(502).enqueue(504);
+        RetryPolicy retryPolicy = retryPolicy().setMaxRetries(2);
+        Tmdb tmdb = client.tmdb().setRetryPolicy(retryPolicy);
+
+        try {
+            tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            fail("failing request succeeded");
+        } catch (RetrofitError e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(504);
+        }
+        assertThat(client.urls()).hasSize(3);
+        assertThat(retryPolicy.recoveredCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_budget_limits_retries() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        for (int i = 0; i < 4; i++) {
+            client.enqueue(503);
+        }
+        // one retry in reserve, then one for every other request
+        RetryPolicy retryPolicy = retryPolicy().setBudget(0.5, 1);
+        Tmdb tmdb = client.tmdb().setRetryPolicy(retryPolicy);
+
+        int failures = 0;
+        for (int i = 0; i < 3; i++) {
+            try {
+                tmdb.moviesService().summary(550, null, null).toBlocking().first();
+            } catch (RetrofitError e) {
+                failures++;
+            }
+        }
+
+        // the first request is retried and fails again, the budget then only allows one more retry
+        assertThat(retryPolicy.retryCount()).isEqualTo(2);
+        assertThat(retryPolicy.budgetExhaustedCount()).isGreaterThan(0);
+        assertThat(failures).isEqualTo(2);
+    }
+}
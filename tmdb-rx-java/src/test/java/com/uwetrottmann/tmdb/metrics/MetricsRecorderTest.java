@@ -0,0 +1,115 @@
+package com.uwetrottmann.tmdb.metrics;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.cache.ResponseCache;
+import com.uwetrottmann.tmdb.entities.AppendToResponse;
+import com.uwetrottmann.tmdb.entities.Credits;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.enumerations.AppendToResponseItem;
+import com.uwetrottmann.tmdb.interceptors.RequestMerger;
+import com.uwetrottmann.tmdb.services.MoviesService;
+
+import org.junit.Test;
+
+import retrofit.RetrofitError;
+import rx.Observable;
+import rx.functions.Func2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class MetricsRecorderTest {
+
+    @Test
+    public void test_records_network_requests_and_cache_hits() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json");
+        MetricsRecorder recorder = new MetricsRecorder();
+        Tmdb tmdb = client.tmdb().setMetricsListener(recorder).setResponseCache(new ResponseCache(10));
+
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+        tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        RouteMetrics route = recorder.route("/movie/{id}");
+        assertThat(route.responseCount()).isEqualTo(2);
+        assertThat(route.networkCount()).isEqualTo(1);
+        assertThat(route.cacheHitCount()).isEqualTo(1);
+        assertThat(route.statusCounts()).containsEntry(200, 1L);
+        assertThat(route.responseBytes()).isGreaterThan(0);
+        assertThat(route.histogram(Phase.TOTAL).count()).isEqualTo(2);
+        assertThat(route.histogram(Phase.TIME_TO_FIRST_BYTE).count()).isEqualTo(1);
+        assertThat(route.histogram(Phase.DESERIALIZE).count()).isEqualTo(1);
+        assertThat(route.histogram(Phase.DNS).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_records_merged_and_assembled_responses_as_network() {
+        MockClient client = new MockClient()
+                .fixture("/movie/550", "movie_550_append_all.json")
+                .fixture("/movie/550/credits", "movie_550_credits.json");
+        MetricsRecorder recorder = new MetricsRecorder();
+        MoviesService service = client.tmdb().setMetricsListener(recorder).setResponseCache(new ResponseCache(10))
+                .setRequestMerger(new RequestMerger()).moviesService();
+
+        // merged into one request, both receive a part or a copy of its response
+        Observable.zip(service.credits(550), service.summary(550, null, null), new Func2<Credits, Movie, Object>() {
+            @Override
+            public Object call(Credits credits, Movie movie) {
+                return movie;
+            }
+        }).toBlocking().first();
+        // put together from the cached credits and the requested videos
+        service.summary(550, null, new AppendToResponse(AppendToResponseItem.CREDITS, AppendToResponseItem.VIDEOS))
+                .toBlocking().first();
+        service.credits(550).toBlocking().first();
+
+        RouteMetrics movie = recorder.route("/movie/{id}");
+        RouteMetrics credits = recorder.route("/movie/{id}/credits");
+        assertThat(client.urls()).hasSize(2);
+        assertThat(movie.networkCount() + credits.networkCount()).isEqualTo(2);
+        assertThat(movie.coalescedCount() + credits.coalescedCount()).isEqualTo(1);
+        assertThat(movie.cacheHitCount()).isEqualTo(0);
+        assertThat(credits.cacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_records_errors() {
+        MockClient client = new MockClient();
+        MetricsRecorder recorder = new MetricsRecorder();
+        Tmdb tmdb = client.tmdb().setMetricsListener(recorder);
+
+        try {
+            tmdb.tvService().tv(1, null, null).toBlocking().first();
+            fail("missing show was found");
+        } catch (RetrofitError expected) {
+        }
+
+        RouteMetrics route = recorder.route("/tv/{id}");
+        assertThat(route.errorCount()).isEqualTo(1);
+        assertThat(route.networkCount()).isEqualTo(1);
+        assertThat(route.statusCounts()).containsEntry(404, 1L);
+        assertThat(route.histogram(Phase.DESERIALIZE).count()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_histogram_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.count()).isEqualTo(10000);
+        assertThat(histogram.max()).isEqualTo(10000);
+        assertThat(histogram.mean()).isEqualTo(5000.5);
+        // within the relative error of the buckets
+        assertThat(histogram.valueAtPercentile(0.5)).isBetween(5000L, 5080L);
+        assertThat(histogram.valueAtPercentile(0.99)).isBetween(9900L, 10000L);
+        assertThat(histogram.valueAtPercentile(1)).isEqualTo(10000);
+
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(3);
+        small.record(7);
+        assertThat(small.valueAtPercentile(0.5)).isEqualTo(3);
+        assertThat(small.valueAtPercentile(0.99)).isEqualTo(7);
+    }
+}
@@ -0,0 +1,185 @@
+package com.uwetrottmann.tmdb.paging;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.MovieResultsPage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Notification;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PagerTest {
+
+    private static final int RESULTS_PER_PAGE = 3;
+
+    /**
+     * Serves pages of movies whose ids count up, after a random delay.
+     */
+    private static class FakePages implements Func1<Integer, Observable<MovieResultsPage>> {
+
+        final int totalPages;
+        final int failingPage;
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Random random = new Random(42);
+
+        FakePages(int totalPages, int failingPage) {
+            this.totalPages = totalPages;
+            this.failingPage = failingPage;
+        }
+
+        @Override
+        public Observable<MovieResultsPage> call(final Integer page) {
+            Observable<MovieResultsPage> result;
+            if (page == failingPage) {
+                result = Observable.error(new IllegalStateException("page " + page));
+            } else {
+                MovieResultsPage resultsPage = new MovieResultsPage();
+                resultsPage.page = page;
+                resultsPage.total_pages = totalPages;
+                resultsPage.results = new ArrayList<Movie>();
+                for (int i = 0; i < RESULTS_PER_PAGE; i++) {
+                    Movie movie = new Movie();
+                    movie.id = (page - 1) * RESULTS_PER_PAGE + i;
+                    resultsPage.results.add(movie);
+                }
+                result = Observable.just(resultsPage);
+            }
+            final AtomicBoolean landed = new AtomicBoolean();
+            final Action0 land = new Action0() {
+                @Override
+                public void call() {
+                    if (landed.compareAndSet(false, true)) {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            };
+            return result
+                    .delay(random.nextInt(20), TimeUnit.MILLISECONDS)
+                    .doOnEach(new Action1<Notification<? super MovieResultsPage>>() {
+                        @Override
+                        public void call(Notification<? super MovieResultsPage> notification) {
+                            land.call();
+                        }
+                    })
+                    .doOnUnsubscribe(land)
+                    .doOnSubscribe(new Action0() {
+                        @Override
+                        public void call() {
+                            fetched.incrementAndGet();
+                            int current = inFlight.incrementAndGet();
+                            while (true) {
+                                int max = maxInFlight.get();
+                                if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                                    break;
+                                }
+                            }
+                        }
+                    });
+        }
+    }
+
+    private static List<Integer> ids(List<Movie> movies) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Movie movie : movies) {
+            ids.add(movie.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void test_emits_all_results_in_order() {
+        FakePages pages = new FakePages(20, -1);
+        List<Movie> movies = Pager.movies(pages, 4).toList().toBlocking().single();
+
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 20 * RESULTS_PER_PAGE; i++) {
+            expected.add(i);
+        }
+        assertThat(ids(movies)).isEqualTo(expected);
+        assertThat(pages.fetched.get()).isEqualTo(20);
+        assertThat(pages.maxInFlight.get()).isLessThanOrEqualTo(4);
+        assertThat(pages.maxInFlight.get()).isGreaterThan(1);
+    }
+
+    @Test
+    public void test_respects_backpressure() throws InterruptedException {
+        FakePages pages = new FakePages(100, -1);
+        TestSubscriber<Movie> subscriber = new TestSubscriber<Movie>(1);
+        Pager.movies(pages, 2).subscribe(subscriber);
+        Thread.sleep(300);
+
+        assertThat(subscriber.getOnNextEvents()).hasSize(1);
+        // the page being emitted and two ahead
+        assertThat(pages.fetched.get()).isEqualTo(3);
+
+        subscriber.requestMore(RESULTS_PER_PAGE * 2);
+        Thread.sleep(300);
+        assertThat(subscriber.getOnNextEvents()).hasSize(1 + RESULTS_PER_PAGE * 2);
+        assertThat(pages.fetched.get()).isEqualTo(5);
+        subscriber.unsubscribe();
+    }
+
+    @Test
+    public void test_take_stops_fetching() throws InterruptedException {
+        FakePages pages = new FakePages(100, -1);
+        List<Movie> movies = Pager.movies(pages, 3).take(4).toList().toBlocking().single();
+        Thread.sleep(100);
+
+        assertThat(ids(movies)).containsExactly(0, 1, 2, 3);
+        assertThat(pages.fetched.get()).isLessThanOrEqualTo(5);
+        assertThat(pages.inFlight.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_error_after_earlier_pages() {
+        FakePages pages = new FakePages(10, 3);
+        TestSubscriber<Movie> subscriber = new TestSubscriber<Movie>();
+        Pager.movies(pages, 4).subscribe(subscriber);
+        subscriber.awaitTerminalEvent();
+
+        assertThat(ids(subscriber.getOnNextEvents())).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(subscriber.getOnErrorEvents()).hasSize(1);
+    }
+
+    @Test
+    public void test_single_page() {
+        FakePages pages = new FakePages(1, -1);
+        assertThat(Pager.movies(pages, 4).count().toBlocking().single()).isEqualTo(RESULTS_PER_PAGE);
+        assertThat(pages.fetched.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_service_method() {
+        MockClient client = new MockClient().fixture("/movie/popular", "movie_popular.json");
+        final Tmdb tmdb = client.tmdb();
+
+        List<Movie> movies = Pager.movies(new Func1<Integer, Observable<MovieResultsPage>>() {
+            @Override
+            public Observable<MovieResultsPage> call(Integer page) {
+                return tmdb.moviesService().popular(page, null);
+            }
+        }, 2).take(50).toList().toBlocking().single();
+
+        assertThat(movies).hasSize(50);
+        assertThat(client.urls().get(0)).contains("page=1");
+        // later pages are requested concurrently, in any order
+        assertThat(client.urls().toString()).contains("page=2").contains("page=3");
+    }
+}
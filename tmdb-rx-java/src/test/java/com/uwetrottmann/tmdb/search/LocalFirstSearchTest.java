@@ -0,0 +1,43 @@
+package com.uwetrottmann.tmdb.search;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.entities.Movie;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalFirstSearchTest {
+
+    @Test
+    public void test_searches_remotely_only_on_miss() {
+        MockClient client = new MockClient().fixture("/search/movie", "movie_popular.json");
+        LocalFirstSearch search = new LocalFirstSearch(client.tmdb().setSearchIndex(new SearchIndex()));
+
+        List<Movie> remote = search.movies("oldboy", 5).toBlocking().single();
+        // the fixture is not filtered by the query
+        assertThat(remote).hasSize(5);
+        assertThat(client.urls()).hasSize(1);
+        assertThat(client.urls().get(0)).contains("query=oldboy");
+
+        List<Movie> local = search.movies("oldb", 5).toBlocking().single();
+
+        assertThat(local).hasSize(1);
+        assertThat(local.get(0).title).isEqualTo("Oldboy");
+        assertThat(client.urls()).hasSize(1);
+        assertThat(search.localCount()).isEqualTo(1);
+        assertThat(search.remoteCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_ignores_empty_query() {
+        MockClient client = new MockClient();
+        LocalFirstSearch search = new LocalFirstSearch(client.tmdb());
+
+        assertThat(search.tvShows(" ", 5).toBlocking().single()).isEmpty();
+        assertThat(search.people(null, 5).toBlocking().single()).isEmpty();
+        assertThat(client.urls()).isEmpty();
+    }
+}
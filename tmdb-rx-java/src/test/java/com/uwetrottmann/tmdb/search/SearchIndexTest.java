@@ -0,0 +1,119 @@
+package com.uwetrottmann.tmdb.search;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.entities.Person;
+import com.uwetrottmann.tmdb.entities.PersonResultsPage;
+import com.uwetrottmann.tmdb.entities.TvShow;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchIndexTest {
+
+    private static Movie movie(int id, String title, double popularity) {
+        Movie movie = new Movie();
+        movie.id = id;
+        movie.title = title;
+        movie.popularity = popularity;
+        return movie;
+    }
+
+    @Test
+    public void test_normalizes_words() {
+        assertThat(SearchIndex.words("Le Fabuleux Destin d'Am\u00e9lie  Poulain!")).containsExactly(
+                "le", "fabuleux", "destin", "damelie", "poulain");
+        assertThat(SearchIndex.words("WALL\u00b7E 2")).containsExactly("wall", "e", "2");
+        assertThat(SearchIndex.words(" - ")).isEmpty();
+    }
+
+    @Test
+    public void test_indexes_responses() {
+        SearchIndex index = new SearchIndex();
+        Tmdb tmdb = new MockClient()
+                .fixture("/movie/popular", "movie_popular.json")
+                .fixture("/tv/popular", "tv_popular.json")
+                .fixture("/person/popular", "person_popular.json")
+                .tmdb().setSearchIndex(index);
+
+        tmdb.moviesService().popular(null, null).toBlocking().single();
+        tmdb.tvService().popular(null, null).toBlocking().single();
+        tmdb.personService().popular(null).toBlocking().single();
+
+        List<Movie> movies = index.searchMovies("eTERnal sun", 10);
+        assertThat(movies).hasSize(1);
+        assertThat(movies.get(0).title).isEqualTo("Eternal Sunshine of the Spotless Mind");
+        List<TvShow> shows = index.searchTvShows("brea", 10);
+        assertThat(shows).hasSize(1);
+        assertThat(shows.get(0).name).isEqualTo("Breaking Bad");
+        List<Person> people = index.searchPeople("ritter", 10);
+        assertThat(people).hasSize(2);
+        // the most popular first
+        assertThat(people.get(0).name).isEqualTo("Michelle Ritter");
+        assertThat(index.searchMovies("xyz", 10)).isEmpty();
+    }
+
+    @Test
+    public void test_orders_by_popularity_and_limits() {
+        SearchIndex index = new SearchIndex();
+        index.index(movie(1, "The Dark Knight", 10));
+        index.index(movie(2, "The Dark Knight Rises", 30));
+        index.index(movie(3, "Dark City", 20));
+
+        List<Movie> movies = index.searchMovies("dark", 2);
+
+        assertThat(movies).extracting("id").containsExactly(2, 3);
+        assertThat(index.searchMovies("k d", 10)).extracting("id").containsExactly(2, 1);
+    }
+
+    @Test
+    public void test_replaces_and_evicts() {
+        SearchIndex index = new SearchIndex(2);
+        index.index(movie(1, "Alien", 1));
+        index.index(movie(2, "Aliens", 2));
+        index.index(movie(1, "Alien 3", 3));
+
+        assertThat(index.searchMovies("alien", 10)).extracting("id").containsExactly(1, 2);
+        assertThat(index.searchMovies("3", 10)).extracting("id").containsExactly(1);
+
+        // the least recently indexed movie is dropped
+        index.index(movie(4, "Prometheus", 4));
+
+        assertThat(index.movieCount()).isEqualTo(2);
+        assertThat(index.searchMovies("alien", 10)).extracting("id").containsExactly(1);
+    }
+
+    @Test
+    public void test_results_page_does_not_replace_person() {
+        SearchIndex index = new SearchIndex();
+        Person person = new Person();
+        person.id = 1;
+        person.name = "Bill Murray";
+        person.biography = "An American actor.";
+        index.index(person);
+
+        PersonResultsPage.ResultsPage result = new PersonResultsPage.ResultsPage();
+        result.id = 1;
+        result.name = "Bill Murray";
+        result.popularity = 5.0;
+        PersonResultsPage page = new PersonResultsPage();
+        page.results = Collections.singletonList(result);
+        index.index(page);
+
+        List<Person> people = index.searchPeople("murray", 10);
+        assertThat(people).hasSize(1);
+        assertThat(people.get(0)).isSameAs(person);
+
+        // a person only known from a results page is added
+        result.id = 2;
+        result.name = "Brian Doyle-Murray";
+        index.index(page);
+
+        assertThat(index.searchPeople("murray", 10)).extracting("id").containsExactly(1, 2);
+    }
+}
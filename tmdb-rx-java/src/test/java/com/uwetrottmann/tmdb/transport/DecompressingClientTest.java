@@ -0,0 +1,45 @@
+package com.uwetrottmann.tmdb.transport;
+
+import com.uwetrottmann.tmdb.MockClient;
+import com.uwetrottmann.tmdb.Tmdb;
+import com.uwetrottmann.tmdb.entities.Movie;
+import com.uwetrottmann.tmdb.metrics.MetricsRecorder;
+import com.uwetrottmann.tmdb.metrics.RouteMetrics;
+
+import org.junit.Test;
+
+import retrofit.client.Header;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecompressingClientTest {
+
+    @Test
+    public void test_decompresses_responses() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json").gzip();
+        MetricsRecorder recorder = new MetricsRecorder();
+        Tmdb tmdb = client.tmdb().setMetricsListener(recorder).setCompression(true);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(client.requestHeaders(0)).contains(new Header("Accept-Encoding", "gzip, deflate"));
+        RouteMetrics route = recorder.route("/movie/{id}");
+        assertThat(route.responseBytes()).isGreaterThan(0);
+        assertThat(route.decodedBytes()).isGreaterThan(route.responseBytes());
+    }
+
+    @Test
+    public void test_uncompressed_responses() {
+        MockClient client = new MockClient().fixture("/movie/550", "movie_550.json").gzip();
+        MetricsRecorder recorder = new MetricsRecorder();
+        Tmdb tmdb = client.tmdb().setMetricsListener(recorder).setCompression(false);
+
+        Movie movie = tmdb.moviesService().summary(550, null, null).toBlocking().first();
+
+        assertThat(movie.title).isEqualTo("Fight Club");
+        assertThat(client.requestHeaders(0)).isEmpty();
+        RouteMetrics route = recorder.route("/movie/{id}");
+        assertThat(route.decodedBytes()).isEqualTo(route.responseBytes());
+    }
+}